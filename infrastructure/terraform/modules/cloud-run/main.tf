@@ -3,6 +3,14 @@ resource "google_cloud_run_service" "backup_service" {
   location = var.region
 
   template {
+    metadata {
+      annotations = {
+        # Runs keep working after their request returns, so the CPU stays allocated between requests
+        "run.googleapis.com/cpu-throttling" = "false"
+        "autoscaling.knative.dev/minScale"  = var.min_instances
+      }
+    }
+
     spec {
       service_account_name = var.service_account_email
 
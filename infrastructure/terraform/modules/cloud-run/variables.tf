@@ -33,4 +33,10 @@ variable "memory" {
 variable "service_account_email" {
   description = "The service account email to use for the Cloud Run service"
   type        = string
+}
+
+variable "min_instances" {
+  description = "Minimum number of instances kept running, so that background runs are not lost by scaling to zero"
+  type        = string
+  default     = "1"
 }
\ No newline at end of file
@@ -5,21 +5,27 @@ import com.bigquery.app.backup.domain.DatastoreDiscoveryService;
 import com.bigquery.app.backup.dto.TableToBackup;
 import com.bigquery.app.common.config.BigQueryConfig;
 import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.run.domain.Run;
+import com.bigquery.app.run.domain.RunService;
+import com.bigquery.app.run.dto.RunResponse;
+import com.bigquery.app.run.dto.RunType;
 import com.google.cloud.bigquery.BigQuery;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.net.URI;
 import java.util.List;
 import java.util.Set;
 
-import static org.springframework.http.ResponseEntity.ok;
+import static org.springframework.http.ResponseEntity.accepted;
 import static org.springframework.util.CollectionUtils.isEmpty;
 
 @RestController
@@ -33,24 +39,51 @@ public class BackupController {
     private final DatastoreDiscoveryService datastoreDiscoveryService;
     private final BackupOrchestrator backupOrchestrator;
     private final BigQueryConfig bigQueryConfig;
+    private final RunService runService;
 
     @PostMapping("/backup")
-    public ResponseEntity<String> backupBigQuery(@RequestBody @Valid BackupRequest backupRequest) {
+    public ResponseEntity<RunResponse> backupBigQuery(@RequestBody @Valid BackupRequest backupRequest) {
         log.info("Received Backup Request: {}", backupRequest);
 
+        var exportOptions = backupRequest.backupStorage().gcsOptions().exportOptions();
+        if (!exportOptions.isCompressionSupported()) {
+            log.warn("Compression {} is not supported for format {}, exporting uncompressed files",
+                    exportOptions.compression(), exportOptions.format());
+        }
+
         BigQuery bigQueryClient = bigQueryConfig.createBigQueryClient(backupRequest.bigQuery().projectId());
         String gcsUri = backupRequest.backupStorage().gcsOptions().uri();
 
         // Validate GCS bucket permissions in order to fast fail
         gcsService.validateGcsBucket(gcsUri);
 
+        Run run = runService.start(RunType.BACKUP, backupRequest, r -> backup(bigQueryClient, backupRequest, r));
+
+        return accepted()
+                .location(URI.create("/api/v1/runs/" + run.getId()))
+                .body(RunResponse.from(run));
+    }
+
+    @PostMapping("/backup/{runId}/resume")
+    public ResponseEntity<RunResponse> resumeBackup(@PathVariable String runId) {
+        log.info("Received request to resume backup run {}", runId);
+
+        Run run = runService.resume(runId, RunType.BACKUP, BackupRequest.class, (backupRequest, r) -> backup(
+                bigQueryConfig.createBigQueryClient(backupRequest.bigQuery().projectId()), backupRequest, r));
+
+        return accepted()
+                .location(URI.create("/api/v1/runs/" + run.getId()))
+                .body(RunResponse.from(run));
+    }
+
+    private void backup(BigQuery bigQueryClient, BackupRequest backupRequest, Run run) {
         List<TableToBackup> tablesToBackup = backupRequest.bigQuery().tablesToBackup();
 
         if (isEmpty(tablesToBackup)) {
             log.info("No tables specified, discovering all datasets in project: {}",
                     backupRequest.bigQuery().projectId());
 
-            tablesToBackup = datastoreDiscoveryService.discoverAllDatasets(bigQueryClient);
+            tablesToBackup = datastoreDiscoveryService.discoverAllDatasets(bigQueryClient, run.getMetadataCalls());
             log.info("Discovered {} datasets for backup", tablesToBackup.size());
         }
 
@@ -66,10 +99,9 @@ public class BackupController {
                     tableToBackup.datasetName(),
                     discoveredTables,
                     backupRequest.backupStorage().gcsOptions(),
-                    backupRequest.backupTime()
+                    backupRequest.backupTime(),
+                    run
             );
         }
-
-        return ok("backup has been successfully taken");
     }
 }
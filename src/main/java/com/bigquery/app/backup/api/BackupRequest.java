@@ -5,9 +5,13 @@ import com.bigquery.app.backup.dto.BackupTime;
 import com.bigquery.app.backup.dto.BigQueryBackupDetails;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotNull;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 
 import static java.util.Objects.isNull;
 
@@ -24,6 +28,8 @@ public record BackupRequest(
         @Valid
         BackupTime backupTime
 ) {
+    private static final Duration MAX_TIME_TRAVEL = Duration.ofDays(7);
+
     public BackupRequest {
         if (isNull(backupTime)) {
             backupTime = new BackupTime(LocalDateTime.now(), "UTC");
@@ -33,4 +39,14 @@ public record BackupRequest(
     public BackupRequest(BigQueryBackupDetails bigQuery, BackupStorage backupStorage) {
         this(bigQuery, backupStorage, new BackupTime(LocalDateTime.now(), "UTC"));
     }
+
+    @AssertTrue(message = "With exportStrategy TIME_TRAVEL, backupTime must be within the last 7 days")
+    public boolean isTimeTravelWindowValid() {
+        if (isNull(backupStorage) || isNull(backupStorage.gcsOptions())
+                || isNull(backupStorage.gcsOptions().exportOptions())
+                || !backupStorage.gcsOptions().exportOptions().isTimeTravelExport()) {
+            return true;
+        }
+        return backupTime.toUtcZonedDateTime().isAfter(ZonedDateTime.now(ZoneOffset.UTC).minus(MAX_TIME_TRAVEL));
+    }
 }
@@ -1,7 +1,9 @@
 package com.bigquery.app.backup.domain;
 
+import com.bigquery.app.backup.dto.BackupTime;
 import com.bigquery.app.backup.dto.GcsOptions;
 import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.JobGroup;
 import com.bigquery.app.common.util.GcsPathUtil;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.TableId;
@@ -9,20 +11,24 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BackupExportService {
     private final BigQueryService bigQueryService;
 
-    public void exportSnapshotToStorage(BigQuery bigQueryClient,
-                                        String projectId,
-                                        String snapshotDataset,
-                                        String snapshotTableName,
-                                        String sourceDatasetName,
-                                        String sourceTableName,
-                                        GcsOptions gcsOptions,
-                                        String timestampSuffix) {
+    public CompletableFuture<Void> exportSnapshotToStorage(BigQuery bigQueryClient,
+                                                           String projectId,
+                                                           String snapshotDataset,
+                                                           String snapshotTableName,
+                                                           String sourceDatasetName,
+                                                           String sourceTableName,
+                                                           GcsOptions gcsOptions,
+                                                           String timestampSuffix,
+                                                           String location,
+                                                           JobGroup jobGroup) {
 
         TableId tableId = TableId.of(projectId, snapshotDataset, snapshotTableName);
 
@@ -37,15 +43,121 @@ public class BackupExportService {
 
         log.info("Exporting snapshot table {} to GCS: {}", tableId, destinationUri);
 
-        bigQueryService.executeExport(
+        if (gcsOptions.exportOptions().isExtractJobExport()) {
+            return bigQueryService.executeExtract(
+                    bigQueryClient,
+                    tableId,
+                    destinationUri,
+                    gcsOptions.exportOptions().format(),
+                    gcsOptions.exportOptions().header(),
+                    gcsOptions.exportOptions().fieldDelimiter(),
+                    gcsOptions.exportOptions().compressionCodec(),
+                    location,
+                    jobGroup
+            );
+        }
+
+        return bigQueryService.executeExport(
+                bigQueryClient,
+                tableId,
+                destinationUri,
+                gcsOptions.exportOptions().format(),
+                gcsOptions.exportOptions().header(),
+                gcsOptions.exportOptions().fieldDelimiter(),
+                gcsOptions.exportOptions().compressionCodec(),
+                gcsOptions.exportOptions().overwrite(),
+                location,
+                jobGroup
+        );
+    }
+
+    /**
+     * Exports the source table as it was at the backup time using time travel, without a snapshot.
+     */
+    public CompletableFuture<Void> exportTableAsOfToStorage(BigQuery bigQueryClient,
+                                                            String projectId,
+                                                            String sourceDatasetName,
+                                                            String sourceTableName,
+                                                            BackupTime backupTime,
+                                                            GcsOptions gcsOptions,
+                                                            String timestampSuffix,
+                                                            String location,
+                                                            JobGroup jobGroup) {
+
+        TableId tableId = TableId.of(projectId, sourceDatasetName, sourceTableName);
+
+        String destinationUri = GcsPathUtil.buildBackupFileUri(
+                gcsOptions.uri(),
+                timestampSuffix,
+                projectId,
+                sourceDatasetName,
+                sourceTableName,
+                gcsOptions.exportOptions().format()
+        );
+
+        log.info("Exporting table {} as of {} to GCS: {}", tableId, backupTime.toFormattedUtcString(), destinationUri);
+
+        return bigQueryService.executeExport(
+                bigQueryClient,
+                tableId,
+                backupTime.toFormattedUtcString(),
+                null,
+                destinationUri,
+                gcsOptions.exportOptions().format(),
+                gcsOptions.exportOptions().header(),
+                gcsOptions.exportOptions().fieldDelimiter(),
+                gcsOptions.exportOptions().compressionCodec(),
+                gcsOptions.exportOptions().overwrite(),
+                location,
+                jobGroup
+        );
+    }
+
+    /**
+     * Exports one partition of a table, read from its snapshot, or from the source table as of
+     * {@code systemTime} when the backup uses time travel.
+     */
+    public CompletableFuture<Void> exportPartitionToStorage(BigQuery bigQueryClient,
+                                                            String projectId,
+                                                            String exportDataset,
+                                                            String exportTableName,
+                                                            String systemTime,
+                                                            String sourceDatasetName,
+                                                            String sourceTableName,
+                                                            String partitionId,
+                                                            String partitionFilter,
+                                                            GcsOptions gcsOptions,
+                                                            String timestampSuffix,
+                                                            String location,
+                                                            JobGroup jobGroup) {
+
+        TableId tableId = TableId.of(projectId, exportDataset, exportTableName);
+
+        String destinationUri = GcsPathUtil.buildPartitionFileUri(
+                gcsOptions.uri(),
+                timestampSuffix,
+                projectId,
+                sourceDatasetName,
+                sourceTableName,
+                partitionId,
+                gcsOptions.exportOptions().format()
+        );
+
+        log.info("Exporting partition {} of table {} to GCS: {}", partitionId, tableId, destinationUri);
+
+        return bigQueryService.executeExport(
                 bigQueryClient,
                 tableId,
+                systemTime,
+                partitionFilter,
                 destinationUri,
                 gcsOptions.exportOptions().format(),
                 gcsOptions.exportOptions().header(),
                 gcsOptions.exportOptions().fieldDelimiter(),
-                gcsOptions.exportOptions().compression(),
-                gcsOptions.exportOptions().overwrite()
+                gcsOptions.exportOptions().compressionCodec(),
+                gcsOptions.exportOptions().overwrite(),
+                location,
+                jobGroup
         );
     }
 }
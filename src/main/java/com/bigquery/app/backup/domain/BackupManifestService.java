@@ -0,0 +1,264 @@
+package com.bigquery.app.backup.domain;
+
+import com.bigquery.app.backup.dto.BackupTime;
+import com.bigquery.app.backup.dto.GcsOptions;
+import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.ColumnSchema;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
+import com.bigquery.app.common.gcs.BackupManifest;
+import com.bigquery.app.common.gcs.ExportMarker;
+import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.common.gcs.TableLayout;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.DatasetId;
+import com.google.cloud.bigquery.SnapshotTableDefinition;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.storage.Blob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.bigquery.app.common.util.FutureUtil.await;
+import static com.bigquery.app.common.util.GcsPathUtil.buildBackupBasePath;
+import static com.bigquery.app.common.util.GcsPathUtil.buildBackupManifestUri;
+import static com.bigquery.app.common.util.GcsPathUtil.buildExportMarkerUri;
+import static com.bigquery.app.common.util.GcsPathUtil.buildTableLayoutUri;
+import static com.bigquery.app.common.util.JobUtil.createExportMarkerPattern;
+import static com.bigquery.app.common.util.JobUtil.createTableNamePattern;
+import static com.bigquery.app.common.util.TimeUtil.formatTimestampForFileName;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Describes the tables of a dataset backup in a single manifest object. Row counts and schemas are
+ * read from the snapshots the files were exported from, with one query each for the whole dataset.
+ * Time-travel backups have no snapshots, so these are read from the source tables instead. Each
+ * exported table also gets a layout object with its full schema, partitioning and clustering, and a
+ * marker once its export is complete.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BackupManifestService {
+    private final BigQueryService bigQueryService;
+    private final GcsService gcsService;
+    private final SnapshotService snapshotService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Writes the manifest and returns the entries of the exported tables by table name, which are empty
+     * when the manifest could not be written. Only tables exported by this run come with their source URIs
+     * and layout; tables exported by an earlier attempt are written without them.
+     */
+    public Map<String, BackupManifest.TableEntry> writeManifest(BigQuery bigQueryClient,
+                                           String projectId,
+                                           String datasetName,
+                                           Set<String> exportedTables,
+                                           Map<String, String> referencedTables,
+                                           Map<String, ExportedTable> exportedByRun,
+                                           DatasetId snapshotDatasetId,
+                                           GcsOptions gcsOptions,
+                                           BackupTime backupTime) {
+
+        var timestampSuffix = formatTimestampForFileName(backupTime.toUtcZonedDateTime());
+        var format = gcsOptions.exportOptions().format();
+        var tables = new ArrayList<BackupManifest.TableEntry>();
+
+        try {
+            if (!exportedTables.isEmpty()) {
+                tables.addAll(describeExportedTables(bigQueryClient, projectId, datasetName, exportedTables,
+                        exportedByRun, snapshotDatasetId, gcsOptions, timestampSuffix));
+            }
+            referencedTables.forEach((tableName, referencedBackup) -> tables.add(
+                    new BackupManifest.TableEntry(tableName, referencedBackup, List.of(), 0, 0, null, null,
+                            null)));
+            tables.sort(Comparator.comparing(BackupManifest.TableEntry::tableName));
+
+            var manifest = new BackupManifest(projectId, datasetName, timestampSuffix, format,
+                    gcsOptions.exportOptions().compressionCodec(), tables);
+            var manifestUri = buildBackupManifestUri(gcsOptions.uri(), timestampSuffix, projectId, datasetName);
+            gcsService.writeJsonObject(manifestUri, objectMapper.writeValueAsString(manifest));
+            log.info("Wrote backup manifest for dataset {} with {} tables", datasetName, tables.size());
+
+            var exportedEntries = new HashMap<String, BackupManifest.TableEntry>();
+            tables.stream()
+                    .filter(table -> exportedTables.contains(table.tableName()))
+                    .forEach(table -> exportedEntries.put(table.tableName(), table));
+            return exportedEntries;
+        } catch (Exception e) {
+            // Restore falls back to listing the backup files, so a missing manifest only costs time
+            log.warn("Failed to write backup manifest for dataset {}: {}", datasetName, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * Writes the schema, partitioning and clustering of an exported table next to its files, read from
+     * the snapshot it was exported from or, without a snapshot, from the source table as of the backup
+     * time, and returns it for the manifest. Restore infers the schema when there is no layout, so a
+     * failure is only logged.
+     */
+    public Optional<TableLayout> writeTableLayout(BigQuery bigQueryClient,
+                                 String projectId,
+                                 String datasetName,
+                                 String tableName,
+                                 DatasetId snapshotDatasetId,
+                                 BackupTime backupTime,
+                                 GcsOptions gcsOptions,
+                                 String timestampSuffix,
+                                 MetadataCallCounter metadataCalls) {
+        try {
+            var layout = isNull(snapshotDatasetId)
+                    ? readSourceLayout(bigQueryClient, TableId.of(projectId, datasetName, tableName), backupTime,
+                            metadataCalls)
+                    : readSnapshotLayout(bigQueryClient, TableId.of(projectId, snapshotDatasetId.getDataset(),
+                            snapshotService.getSnapshotTableName(tableName, timestampSuffix)), metadataCalls);
+            if (layout.isEmpty()) {
+                log.warn("Table {}.{} has no schema, restore will infer it", datasetName, tableName);
+                return Optional.empty();
+            }
+
+            var layoutUri = buildTableLayoutUri(gcsOptions.uri(), timestampSuffix, projectId, datasetName, tableName);
+            gcsService.writeJsonObject(layoutUri, objectMapper.writeValueAsString(layout.get()));
+            log.info("Wrote layout for table {}.{}", datasetName, tableName);
+            return layout;
+        } catch (Exception e) {
+            log.warn("Failed to write layout for table {}.{}: {}", datasetName, tableName, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Marks the export of a table as complete. Without the marker a re-run of the same backup time exports
+     * the table again, so a failure is only logged.
+     */
+    public void writeExportMarker(String projectId,
+                                  String datasetName,
+                                  String tableName,
+                                  GcsOptions gcsOptions,
+                                  String timestampSuffix) {
+        var format = gcsOptions.exportOptions().format();
+        try {
+            var markerUri = buildExportMarkerUri(gcsOptions.uri(), timestampSuffix, projectId, datasetName,
+                    tableName, format);
+            var marker = new ExportMarker(tableName, timestampSuffix, format, Instant.now().toString());
+            gcsService.writeJsonObject(markerUri, objectMapper.writeValueAsString(marker));
+        } catch (Exception e) {
+            log.warn("Failed to mark export of table {}.{} as complete: {}", datasetName, tableName, e.getMessage());
+        }
+    }
+
+    /**
+     * The tables of the dataset whose export to the given backup time and format is already complete,
+     * found with a single listing of the backup folder. When the listing fails every table is exported.
+     */
+    public Set<String> findExportedTables(String projectId,
+                                          String datasetName,
+                                          GcsOptions gcsOptions,
+                                          BackupTime backupTime) {
+        var timestampSuffix = formatTimestampForFileName(backupTime.toUtcZonedDateTime());
+        try {
+            return gcsService.findTableFilesFromGcsFiles(
+                    gcsService.getBucket(gcsOptions.uri()),
+                    buildBackupBasePath(gcsOptions.uri(), timestampSuffix, projectId, datasetName),
+                    createExportMarkerPattern(gcsOptions.exportOptions().format())).keySet();
+        } catch (Exception e) {
+            log.warn("Failed to look up exported tables of dataset {}: {}", datasetName, e.getMessage());
+            return Set.of();
+        }
+    }
+
+    private Optional<TableLayout> readSnapshotLayout(BigQuery bigQueryClient,
+                                                     TableId snapshotTableId,
+                                                     MetadataCallCounter metadataCalls) {
+        metadataCalls.record("getTable");
+        var table = bigQueryClient.getTable(snapshotTableId);
+        if (isNull(table)) {
+            return Optional.empty();
+        }
+        if (table.getDefinition() instanceof SnapshotTableDefinition definition) {
+            return TableLayout.of(definition);
+        }
+        // Snapshots taken with a copy job are standard tables
+        if (table.getDefinition() instanceof StandardTableDefinition definition) {
+            return TableLayout.of(definition);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Partitioning and clustering are read from the table as it is, only its columns are read as of the
+     * backup time, which is what the time-travel export wrote.
+     */
+    private Optional<TableLayout> readSourceLayout(BigQuery bigQueryClient,
+                                                   TableId tableId,
+                                                   BackupTime backupTime,
+                                                   MetadataCallCounter metadataCalls) {
+        metadataCalls.record("getTable");
+        var table = bigQueryClient.getTable(tableId);
+        if (isNull(table) || !(table.getDefinition() instanceof StandardTableDefinition definition)) {
+            return Optional.empty();
+        }
+        var schema = bigQueryService.getSchemaAsOf(bigQueryClient, tableId, backupTime.toFormattedUtcString(),
+                metadataCalls);
+        return TableLayout.of(definition).map(layout -> isNull(schema) ? layout : layout.withSchema(schema));
+    }
+
+    private List<BackupManifest.TableEntry> describeExportedTables(BigQuery bigQueryClient,
+                                                                   String projectId,
+                                                                   String datasetName,
+                                                                   Set<String> exportedTables,
+                                                                   Map<String, ExportedTable> exportedByRun,
+                                                                   DatasetId snapshotDatasetId,
+                                                                   GcsOptions gcsOptions,
+                                                                   String timestampSuffix) {
+
+        var snapshotted = nonNull(snapshotDatasetId);
+        var metadataDataset = snapshotted ? snapshotDatasetId.getDataset() : datasetName;
+        var metadataFuture = bigQueryService.getTableMetadata(bigQueryClient, projectId, metadataDataset);
+        var schemasFuture = bigQueryService.getColumnSchemas(bigQueryClient, projectId, metadataDataset);
+        var snapshotMetadata = await(metadataFuture);
+        var snapshotSchemas = await(schemasFuture);
+        var tableFiles = gcsService.findTableFilesFromGcsFiles(
+                gcsService.getBucket(gcsOptions.uri()),
+                buildBackupBasePath(gcsOptions.uri(), timestampSuffix, projectId, datasetName),
+                createTableNamePattern(gcsOptions.exportOptions().format()));
+
+        var entries = new ArrayList<BackupManifest.TableEntry>();
+        for (String tableName : exportedTables) {
+            var snapshotTableName = snapshotted
+                    ? snapshotService.getSnapshotTableName(tableName, timestampSuffix)
+                    : tableName;
+            var metadata = snapshotMetadata.get(snapshotTableName);
+            var files = tableFiles.getOrDefault(tableName, List.of());
+            var exported = exportedByRun.get(tableName);
+
+            entries.add(new BackupManifest.TableEntry(
+                    tableName,
+                    null,
+                    files.stream().map(blob -> "gs://" + blob.getBucket() + "/" + blob.getName()).toList(),
+                    files.stream().mapToLong(BackupManifestService::sizeOf).sum(),
+                    isNull(metadata) ? 0 : metadata.numRows(),
+                    snapshotSchemas.getOrDefault(snapshotTableName, List.<ColumnSchema>of()),
+                    isNull(exported) ? null : exported.sourceUris(),
+                    isNull(exported) ? null : exported.layout()
+            ));
+        }
+        return entries;
+    }
+
+    private static long sizeOf(Blob blob) {
+        return isNull(blob.getSize()) ? 0 : blob.getSize();
+    }
+}
@@ -2,94 +2,409 @@ package com.bigquery.app.backup.domain;
 
 import com.bigquery.app.backup.dto.BackupTime;
 import com.bigquery.app.backup.dto.GcsOptions;
+import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.DatasetMetadataCache;
+import com.bigquery.app.common.bigquery.JobGroup;
+import com.bigquery.app.common.concurrent.TaskWindow;
 import com.bigquery.app.common.concurrent.ThreadingService;
+import com.bigquery.app.common.exception.ValidationException;
+import com.bigquery.app.common.gcs.BackupManifest;
+import com.bigquery.app.common.gcs.TableManifest;
+import com.bigquery.app.common.retry.RetryExecutor;
+import com.bigquery.app.run.domain.CodecUsage;
+import com.bigquery.app.run.domain.Run;
+import com.bigquery.app.run.domain.TableRun;
+import com.bigquery.app.run.dto.RunState;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.DatasetId;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
-import static com.bigquery.app.common.util.DatasetUtil.getDatasetLocation;
+import static com.bigquery.app.common.util.FutureUtil.await;
+import static com.bigquery.app.common.util.FutureUtil.unwrap;
+import static com.bigquery.app.common.util.GcsPathUtil.buildBackupFileUri;
+import static com.bigquery.app.common.util.TableOrderUtil.largestFirst;
+import static com.bigquery.app.common.util.TimeUtil.formatTimestampForFileName;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toSet;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BackupOrchestrator {
+    private static final long DEFAULT_MAX_TIME_TRAVEL_HOURS = 168;
+
     private final SnapshotService snapshotService;
     private final BackupExportService exportService;
     private final ThreadingService threadingService;
+    private final RetryExecutor retryExecutor;
+    private final IncrementalBackupService incrementalBackupService;
+    private final BackupManifestService backupManifestService;
+    private final DatasetMetadataCache datasetMetadataCache;
+    private final BigQueryService bigQueryService;
+    private final ShardedExportService shardedExportService;
 
     public void exportTables(BigQuery bigQueryClient,
                              String datasetName,
                              Set<String> tableNames,
                              GcsOptions gcsOptions,
-                             BackupTime backupTime) {
+                             BackupTime backupTime,
+                             Run run) {
+
+        run.getJobs().throwIfCancelled();
+        run.registerTables(datasetName, tableNames);
 
         var projectId = bigQueryClient.getOptions().getProjectId();
-        var sourceDatasetId = DatasetId.of(projectId, datasetName);
-        var location = getDatasetLocation(bigQueryClient, sourceDatasetId);
 
-        var snapshotDatasetId = snapshotService.ensureSnapshotDatasetExists(
-                bigQueryClient, projectId, location);
+        if (gcsOptions.exportOptions().isTimeTravelExport()) {
+            checkTimeTravelWindow(bigQueryClient, projectId, datasetName, backupTime, run);
+        }
+
+        var tablesToExport = tableNames;
+        Map<String, String> referencedTables = Map.of();
+        IncrementalPlan incrementalPlan = null;
+        if (gcsOptions.exportOptions().isIncrementalBackup()) {
+            incrementalPlan = planIncrementalBackup(bigQueryClient, projectId, datasetName, tableNames,
+                    gcsOptions, backupTime, run);
+            tablesToExport = incrementalPlan.changedTables();
+            referencedTables = incrementalPlan.unchangedTables();
+
+            if (tablesToExport.isEmpty()) {
+                log.info("No table in dataset {} changed since its last backup", datasetName);
+                backupManifestService.writeManifest(bigQueryClient, projectId, datasetName, tablesToExport,
+                        referencedTables, Map.of(), null, gcsOptions, backupTime);
+                return;
+            }
+        }
+
+        // Tables that succeeded in the run this one resumes already have their files
+        var completedTables = run.completedEarlier(datasetName, tablesToExport);
+        if (!completedTables.isEmpty()) {
+            log.info("{} tables of dataset {} were already exported by run {}", completedTables.size(),
+                    datasetName, run.getResumedFrom());
+            tablesToExport = tablesToExport.stream()
+                    .filter(tableName -> !completedTables.contains(tableName))
+                    .collect(toCollection(LinkedHashSet::new));
+        }
+
+        // An earlier attempt at the same backup time may have completed some tables without a run to resume
+        var markedTables = backupManifestService.findExportedTables(projectId, datasetName, gcsOptions,
+                backupTime);
+        var alreadyExported = tablesToExport.stream()
+                .filter(markedTables::contains)
+                .collect(toSet());
+        if (!alreadyExported.isEmpty()) {
+            log.info("{} tables of dataset {} were already exported by an earlier attempt", alreadyExported.size(),
+                    datasetName);
+            alreadyExported.forEach(tableName -> run.table(datasetName, tableName).succeedWithEarlierExport());
+            tablesToExport = tablesToExport.stream()
+                    .filter(tableName -> !alreadyExported.contains(tableName))
+                    .collect(toCollection(LinkedHashSet::new));
+        }
+
+        var exportOptions = gcsOptions.exportOptions();
+        var needsTableSizes = tablesToExport.size() > 1 || exportOptions.isShardedExport();
+        var tableSizes = exportOptions.isMultiThreaded() && needsTableSizes
+                ? tableSizes(bigQueryClient, projectId, datasetName, incrementalPlan)
+                : Map.<String, Long>of();
+        if (!tableSizes.isEmpty()) {
+            tablesToExport = largestFirst(tablesToExport, tableSizes);
+        }
+
+        var incrementalPartitionPlans = isNull(incrementalPlan)
+                ? Map.<String, PartitionPlan>of()
+                : incrementalPlan.partitionPlans();
+        var partitionPlans = exportOptions.isShardedExport()
+                ? withShardPlans(bigQueryClient, projectId, datasetName, tablesToExport, tableSizes,
+                        incrementalPartitionPlans, gcsOptions, run)
+                : incrementalPartitionPlans;
+
+        // Jobs run where the dataset is, and are only found again by their ids with its location
+        var location = datasetMetadataCache.getLocation(bigQueryClient, DatasetId.of(projectId, datasetName),
+                run.getMetadataCalls());
+
+        // Time-travel exports read the source tables directly, so there is no snapshot dataset
+        var snapshotDatasetId = gcsOptions.exportOptions().isTimeTravelExport()
+                ? null
+                : snapshotService.ensureSnapshotDatasetExists(bigQueryClient, projectId, location,
+                        run.getMetadataCalls());
+
+        var snapshotBatches = planSnapshotBatches(bigQueryClient, projectId, datasetName, tablesToExport,
+                snapshotDatasetId, gcsOptions, backupTime, location, run.getJobs());
 
         var useMultiThreading = gcsOptions.exportOptions().isMultiThreaded();
+        var exportedByRun = new ConcurrentHashMap<String, ExportedTable>();
 
         if (useMultiThreading) {
-            threadingService.configureThreadPoolForExport(gcsOptions.exportOptions());
-            processTablesInParallel(bigQueryClient, projectId, datasetName, tableNames,
-                    snapshotDatasetId, gcsOptions, backupTime);
+            threadingService.configureThreadPoolForExport(run.getId(), gcsOptions.exportOptions());
+            try {
+                processTablesInParallel(bigQueryClient, projectId, datasetName, tablesToExport,
+                        snapshotDatasetId, gcsOptions, backupTime, partitionPlans, snapshotBatches, exportedByRun,
+                        location, threadingService.getBackupExecutor(run.getId()), run);
+            } finally {
+                threadingService.releaseRun(run.getId());
+            }
         } else {
-            tableNames.forEach(tableName -> processTable(
-                    bigQueryClient,
-                    projectId,
-                    datasetName,
-                    tableName,
-                    snapshotDatasetId,
-                    gcsOptions,
-                    backupTime
-            ));
+            // Without a run executor only one table is in flight, so its few blocking steps use the common pool
+            var executor = ForkJoinPool.commonPool();
+            tablesToExport.forEach(tableName -> {
+                var tableRun = run.table(datasetName, tableName);
+                var future = snapshotTable(bigQueryClient, projectId, datasetName, tableName,
+                        snapshotDatasetId, backupTime, snapshotBatches.get(tableName), tableRun, location,
+                        executor, run.getJobs())
+                        .thenComposeAsync(timestampSuffix -> exportTable(bigQueryClient, projectId, datasetName,
+                                tableName, snapshotDatasetId, gcsOptions, backupTime, timestampSuffix,
+                                partitionPlans.get(tableName), exportedByRun, tableRun, location, executor, run),
+                                executor);
+
+                await(trackCompletion(future, tableRun, run, false));
+            });
+        }
+
+        var backedUpTables = new HashSet<>(tablesToExport);
+        backedUpTables.addAll(completedTables);
+        backedUpTables.addAll(alreadyExported);
+        var exportedTables = backupManifestService.writeManifest(bigQueryClient, projectId, datasetName,
+                backedUpTables, referencedTables, exportedByRun, snapshotDatasetId, gcsOptions, backupTime);
+        recordTableSizes(datasetName, exportedTables, gcsOptions, run);
+
+        if (nonNull(incrementalPlan)) {
+            incrementalBackupService.saveState(incrementalPlan, gcsOptions, backupTime);
         }
     }
 
-    private void processTablesInParallel(BigQuery bigQueryClient,
+    /**
+     * The URIs restore loads an exported table from: the files of each of its partitions when it was exported
+     * partition by partition, the files of the whole table otherwise.
+     */
+    private List<String> sourceUris(String projectId,
+                                    String datasetName,
+                                    String tableName,
+                                    PartitionPlan partitionPlan,
+                                    GcsOptions gcsOptions,
+                                    String timestampSuffix) {
+
+        if (nonNull(partitionPlan)) {
+            return incrementalBackupService.partitionFiles(projectId, datasetName, tableName, partitionPlan,
+                            gcsOptions, timestampSuffix).stream()
+                    .map(TableManifest.PartitionFile::uri)
+                    .toList();
+        }
+        return List.of(buildBackupFileUri(gcsOptions.uri(), timestampSuffix, projectId, datasetName, tableName,
+                gcsOptions.exportOptions().format()));
+    }
+
+    /**
+     * Records the rows and bytes of the exported tables and adds the tables exported by this run to its
+     * per-codec totals. Sizes are only known from the manifest, so nothing is recorded for a dataset whose
+     * manifest could not be written.
+     */
+    private void recordTableSizes(String datasetName,
+                                  Map<String, BackupManifest.TableEntry> exportedTables,
+                                  GcsOptions gcsOptions,
+                                  Run run) {
+
+        var codec = CodecUsage.key(gcsOptions.exportOptions().format(),
+                gcsOptions.exportOptions().compressionCodec());
+        exportedTables.forEach((tableName, entry) -> {
+            var tableRun = run.table(datasetName, tableName);
+            if (tableRun.getState() != RunState.SUCCEEDED) {
+                return;
+            }
+            tableRun.recordSize(entry.numRows(), entry.numBytes());
+            if (!tableRun.isCompletedEarlier() && !tableRun.isAlreadyExported()) {
+                run.getCodecUsage().record(codec, entry.numBytes(), tableRun);
+            }
+        });
+    }
+
+    /**
+     * Sizes of the dataset's tables in bytes, taken from the incremental plan when there is one and
+     * read with a single metadata query otherwise. Only used for ordering and sharding, so a failure
+     * is not fatal.
+     */
+    private Map<String, Long> tableSizes(BigQuery bigQueryClient,
                                          String projectId,
                                          String datasetName,
-                                         Set<String> tableNames,
-                                         DatasetId snapshotDatasetId,
-                                         GcsOptions gcsOptions,
-                                         BackupTime backupTime) {
+                                         IncrementalPlan incrementalPlan) {
+        try {
+            var tableMetadata = nonNull(incrementalPlan)
+                    ? incrementalPlan.tableMetadata()
+                    : await(bigQueryService.getTableMetadata(bigQueryClient, projectId, datasetName));
 
-        log.info("Processing {} tables in parallel", tableNames.size());
-        var futures = new ArrayList<CompletableFuture<Void>>();
+            var sizes = new HashMap<String, Long>();
+            tableMetadata.forEach((tableName, metadata) -> sizes.put(tableName, metadata.numBytes()));
+            return sizes;
+        } catch (RuntimeException e) {
+            log.warn("Could not read table sizes of dataset {}, keeping discovery order: {}",
+                    datasetName, e.getMessage());
+            return Map.of();
+        }
+    }
 
-        for (String tableName : tableNames) {
-            var future = threadingService.submitBackupTask(() -> {
-                log.info("Starting backup for table {}.{} in thread: {}",
-                        datasetName, tableName, Thread.currentThread().getName());
+    /**
+     * Adds shard plans for the large tables that are not already exported partition by partition.
+     * Shards are exported like changed partitions, so the partition plans of both kinds are merged. If
+     * the shards cannot be planned, the tables are exported with one job each.
+     */
+    private Map<String, PartitionPlan> withShardPlans(BigQuery bigQueryClient,
+                                                      String projectId,
+                                                      String datasetName,
+                                                      Set<String> tablesToExport,
+                                                      Map<String, Long> tableSizes,
+                                                      Map<String, PartitionPlan> partitionPlans,
+                                                      GcsOptions gcsOptions,
+                                                      Run run) {
 
-                processTable(
-                        bigQueryClient,
-                        projectId,
-                        datasetName,
-                        tableName,
-                        snapshotDatasetId,
-                        gcsOptions,
-                        backupTime
-                );
+        var unpartitionedTables = new HashSet<>(tablesToExport);
+        unpartitionedTables.removeAll(partitionPlans.keySet());
 
-                log.info("Completed backup for table {}.{}", datasetName, tableName);
-            });
+        Map<String, PartitionPlan> shardPlans;
+        try {
+            shardPlans = shardedExportService.plan(bigQueryClient, projectId, datasetName, unpartitionedTables,
+                    tableSizes, gcsOptions.exportOptions().exportShards(), run.getMetadataCalls());
+        } catch (RuntimeException e) {
+            log.warn("Could not plan export shards of dataset {}, exporting tables whole: {}",
+                    datasetName, e.getMessage());
+            return partitionPlans;
+        }
+        if (shardPlans.isEmpty()) {
+            return partitionPlans;
+        }
 
-            futures.add(future);
+        var plans = new HashMap<>(partitionPlans);
+        plans.putAll(shardPlans);
+        return plans;
+    }
+
+    /**
+     * Tables are read as of the backup time, which must lie within the time travel window of their dataset,
+     * {@code max_time_travel_hours} of 48 to 168 hours.
+     */
+    private void checkTimeTravelWindow(BigQuery bigQueryClient,
+                                       String projectId,
+                                       String datasetName,
+                                       BackupTime backupTime,
+                                       Run run) {
+
+        run.getMetadataCalls().record("getDataset");
+        var dataset = bigQueryClient.getDataset(DatasetId.of(projectId, datasetName));
+        var maxTimeTravelHours = nonNull(dataset) && nonNull(dataset.getMaxTimeTravelHours())
+                ? dataset.getMaxTimeTravelHours()
+                : DEFAULT_MAX_TIME_TRAVEL_HOURS;
+
+        var windowStart = ZonedDateTime.now(ZoneOffset.UTC).minusHours(maxTimeTravelHours);
+        if (!backupTime.toUtcZonedDateTime().isAfter(windowStart)) {
+            throw new ValidationException(String.format(
+                    "Backup time %s is outside the time travel window of dataset %s, which reaches back %d hours "
+                            + "to %s; use exportStrategy SNAPSHOT or a later backupTime",
+                    backupTime.toUtcZonedDateTime(), datasetName, maxTimeTravelHours, windowStart));
         }
+    }
+
+    private IncrementalPlan planIncrementalBackup(BigQuery bigQueryClient,
+                                                  String projectId,
+                                                  String datasetName,
+                                                  Set<String> tableNames,
+                                                  GcsOptions gcsOptions,
+                                                  BackupTime backupTime,
+                                                  Run run) {
+
+        var plan = incrementalBackupService.plan(bigQueryClient, projectId, datasetName, tableNames, gcsOptions);
+        incrementalBackupService.writeReferences(plan, gcsOptions, backupTime);
+        plan.unchangedTables().forEach((tableName, referencedBackup) ->
+                run.table(datasetName, tableName).skip(referencedBackup));
+        return plan;
+    }
+
+    /**
+     * Groups the tables into script jobs of {@code snapshotBatchSize} snapshots each, keyed by table name.
+     * Empty when snapshots are created one job per table, as they always are with copy jobs.
+     */
+    private Map<String, SnapshotBatch> planSnapshotBatches(BigQuery bigQueryClient,
+                                                          String projectId,
+                                                          String datasetName,
+                                                          Set<String> tableNames,
+                                                          DatasetId snapshotDatasetId,
+                                                          GcsOptions gcsOptions,
+                                                          BackupTime backupTime,
+                                                          String location,
+                                                          JobGroup jobGroup) {
+
+        if (!gcsOptions.exportOptions().isSnapshotBatched() || !snapshotService.supportsBatches()) {
+            return Map.of();
+        }
+
+        var batchSize = gcsOptions.exportOptions().snapshotBatchSize();
+        var orderedTables = List.copyOf(tableNames);
+        var batches = new HashMap<String, SnapshotBatch>();
+        for (int from = 0; from < orderedTables.size(); from += batchSize) {
+            var batchTables = orderedTables.subList(from, Math.min(from + batchSize, orderedTables.size()));
+            var batch = new SnapshotBatch(() -> snapshotService.createTableSnapshots(
+                    bigQueryClient, projectId, datasetName, batchTables, snapshotDatasetId, backupTime, location,
+                    jobGroup));
+            batchTables.forEach(tableName -> batches.put(tableName, batch));
+        }
+
+        log.info("Snapshotting {} tables of dataset {} in {} scripts", orderedTables.size(), datasetName,
+                (orderedTables.size() + batchSize - 1) / batchSize);
+        return batches;
+    }
+
+    private void processTablesInParallel(BigQuery bigQueryClient,
+                                         String projectId,
+                                         String datasetName,
+                                         Set<String> tableNames,
+                                         DatasetId snapshotDatasetId,
+                                         GcsOptions gcsOptions,
+                                         BackupTime backupTime,
+                                         Map<String, PartitionPlan> partitionPlans,
+                                         Map<String, SnapshotBatch> snapshotBatches,
+                                         Map<String, ExportedTable> exportedByRun,
+                                         String location,
+                                         Executor executor,
+                                         Run run) {
+
+        log.info("Processing {} tables in parallel", tableNames.size());
+        var window = new TaskWindow(gcsOptions.exportOptions().submissionWindow());
+        var failFast = gcsOptions.exportOptions().isFailFast();
 
         try {
-            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            for (String tableName : tableNames) {
+                if (run.getJobs().isCancelled()) {
+                    break;
+                }
+                var tableRun = run.table(datasetName, tableName);
+                window.submit(() -> trackCompletion(threadingService.submitBackupPipeline(run.getId(),
+                        () -> snapshotTable(bigQueryClient, projectId, datasetName, tableName,
+                                snapshotDatasetId, backupTime, snapshotBatches.get(tableName), tableRun,
+                                location, executor, run.getJobs()),
+                        timestampSuffix -> exportTable(bigQueryClient, projectId, datasetName,
+                                tableName, snapshotDatasetId, gcsOptions, backupTime, timestampSuffix,
+                                partitionPlans.get(tableName), exportedByRun, tableRun, location, executor, run)
+                ), tableRun, run, failFast));
+            }
+
+            window.awaitAll();
+            run.getJobs().throwIfCancelled();
             log.info("All parallel backup tasks completed successfully");
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -101,27 +416,238 @@ public class BackupOrchestrator {
         }
     }
 
-    private void processTable(BigQuery bigQueryClient,
-                              String projectId,
-                              String datasetName,
-                              String tableName,
-                              DatasetId snapshotDatasetId,
-                              GcsOptions gcsOptions,
-                              BackupTime backupTime) {
+    private CompletableFuture<String> snapshotTable(BigQuery bigQueryClient,
+                                                    String projectId,
+                                                    String datasetName,
+                                                    String tableName,
+                                                    DatasetId snapshotDatasetId,
+                                                    BackupTime backupTime,
+                                                    SnapshotBatch snapshotBatch,
+                                                    TableRun tableRun,
+                                                    String location,
+                                                    Executor executor,
+                                                    JobGroup jobGroup) {
+
+        // A table still waiting for the snapshot stage when the run is cancelled is not started
+        if (jobGroup.isCancelled()) {
+            return CompletableFuture.failedFuture(jobGroup.cancellation());
+        }
+
+        log.info("Starting backup for table {}.{}", datasetName, tableName);
+        tableRun.start();
+
+        // A snapshot taken by the resumed run may have expired since, so it is always taken; the statement
+        // keeps a snapshot that is still there, as snapshots are named after the backup time
+        if (isNull(snapshotDatasetId)) {
+            return CompletableFuture.completedFuture(formatTimestampForFileName(backupTime.toUtcZonedDateTime()));
+        }
+
+        var snapshot = isNull(snapshotBatch)
+                ? snapshotSingleTable(bigQueryClient, projectId, datasetName, tableName,
+                        snapshotDatasetId, backupTime, tableRun, location, jobGroup)
+                : snapshotInBatch(bigQueryClient, projectId, datasetName, tableName,
+                        snapshotDatasetId, backupTime, snapshotBatch, tableRun, location, executor, jobGroup);
+        return snapshot.thenApply(timestampSuffix -> {
+            tableRun.markSnapshotDone();
+            return timestampSuffix;
+        });
+    }
+
+    private CompletableFuture<String> snapshotInBatch(BigQuery bigQueryClient,
+                                                      String projectId,
+                                                      String datasetName,
+                                                      String tableName,
+                                                      DatasetId snapshotDatasetId,
+                                                      BackupTime backupTime,
+                                                      SnapshotBatch snapshotBatch,
+                                                      TableRun tableRun,
+                                                      String location,
+                                                      Executor executor,
+                                                      JobGroup jobGroup) {
+
+        // A table whose statement failed, or every table of a script that failed as a whole, is
+        // snapshotted again on its own so that it gets the usual per-table retries
+        return snapshotBatch.result()
+                .exceptionally(throwable -> {
+                    log.warn("Snapshot script for table {}.{} failed: {}", datasetName, tableName,
+                            unwrap(throwable).getMessage());
+                    return null;
+                })
+                .thenComposeAsync(result -> {
+                    if (nonNull(result) && !result.failedTables().containsKey(tableName)) {
+                        return CompletableFuture.completedFuture(result.timestampSuffix());
+                    }
+                    if (nonNull(result)) {
+                        log.warn("Snapshot of table {}.{} failed in script: {}", datasetName, tableName,
+                                result.failedTables().get(tableName));
+                    }
+                    return snapshotSingleTable(bigQueryClient, projectId, datasetName, tableName,
+                            snapshotDatasetId, backupTime, tableRun, location, jobGroup);
+                }, executor);
+    }
+
+    private CompletableFuture<String> snapshotSingleTable(BigQuery bigQueryClient,
+                                                          String projectId,
+                                                          String datasetName,
+                                                          String tableName,
+                                                          DatasetId snapshotDatasetId,
+                                                          BackupTime backupTime,
+                                                          TableRun tableRun,
+                                                          String location,
+                                                          JobGroup jobGroup) {
+
+        return retryExecutor.execute("snapshot", tableRun.getRetryBudget(),
+                () -> snapshotService.createTableSnapshot(
+                        bigQueryClient, projectId, datasetName, tableName,
+                        snapshotDatasetId, backupTime, location, jobGroup));
+    }
+
+    private CompletableFuture<Void> exportTable(BigQuery bigQueryClient,
+                                                String projectId,
+                                                String datasetName,
+                                                String tableName,
+                                                DatasetId snapshotDatasetId,
+                                                GcsOptions gcsOptions,
+                                                BackupTime backupTime,
+                                                String timestampSuffix,
+                                                PartitionPlan partitionPlan,
+                                                Map<String, ExportedTable> exportedByRun,
+                                                TableRun tableRun,
+                                                String location,
+                                                Executor executor,
+                                                Run run) {
+
+        // The export completes on a job callback thread, which must not wait on GCS and BigQuery metadata calls
+        return exportTableFiles(bigQueryClient, projectId, datasetName, tableName, snapshotDatasetId, gcsOptions,
+                backupTime, timestampSuffix, partitionPlan, tableRun, location, executor, run.getJobs())
+                .thenRunAsync(() -> {
+                    var layout = backupManifestService.writeTableLayout(bigQueryClient, projectId, datasetName,
+                            tableName, snapshotDatasetId, backupTime, gcsOptions, timestampSuffix,
+                            run.getMetadataCalls());
+                    exportedByRun.put(tableName, new ExportedTable(sourceUris(projectId, datasetName, tableName,
+                            partitionPlan, gcsOptions, timestampSuffix), layout.orElse(null)));
+                }, executor)
+                .thenRun(() -> backupManifestService.writeExportMarker(projectId, datasetName, tableName,
+                        gcsOptions, timestampSuffix));
+    }
+
+    private CompletableFuture<Void> exportTableFiles(BigQuery bigQueryClient,
+                                                     String projectId,
+                                                     String datasetName,
+                                                     String tableName,
+                                                     DatasetId snapshotDatasetId,
+                                                     GcsOptions gcsOptions,
+                                                     BackupTime backupTime,
+                                                     String timestampSuffix,
+                                                     PartitionPlan partitionPlan,
+                                                     TableRun tableRun,
+                                                     String location,
+                                                     Executor executor,
+                                                     JobGroup jobGroup) {
+
+        if (nonNull(partitionPlan)) {
+            return exportPartitions(bigQueryClient, projectId, datasetName, tableName, snapshotDatasetId,
+                    gcsOptions, backupTime, timestampSuffix, partitionPlan, tableRun, location, executor, jobGroup);
+        }
+
+        if (isNull(snapshotDatasetId)) {
+            return retryExecutor.execute("export", tableRun.getRetryBudget(),
+                    () -> exportService.exportTableAsOfToStorage(
+                            bigQueryClient,
+                            projectId,
+                            datasetName,
+                            tableName,
+                            backupTime,
+                            gcsOptions,
+                            timestampSuffix,
+                            location,
+                            jobGroup
+                    ));
+        }
+
+        return retryExecutor.execute("export", tableRun.getRetryBudget(),
+                () -> exportService.exportSnapshotToStorage(
+                        bigQueryClient,
+                        projectId,
+                        snapshotDatasetId.getDataset(),
+                        snapshotService.getSnapshotTableName(tableName, timestampSuffix),
+                        datasetName,
+                        tableName,
+                        gcsOptions,
+                        timestampSuffix,
+                        location,
+                        jobGroup
+                ));
+    }
+
+    private CompletableFuture<Void> exportPartitions(BigQuery bigQueryClient,
+                                                     String projectId,
+                                                     String datasetName,
+                                                     String tableName,
+                                                     DatasetId snapshotDatasetId,
+                                                     GcsOptions gcsOptions,
+                                                     BackupTime backupTime,
+                                                     String timestampSuffix,
+                                                     PartitionPlan partitionPlan,
+                                                     TableRun tableRun,
+                                                     String location,
+                                                     Executor executor,
+                                                     JobGroup jobGroup) {
+
+        var timeTravel = isNull(snapshotDatasetId);
+        var exportDataset = timeTravel ? datasetName : snapshotDatasetId.getDataset();
+        var exportTableName = timeTravel ? tableName : snapshotService.getSnapshotTableName(tableName, timestampSuffix);
+        var systemTime = timeTravel ? backupTime.toFormattedUtcString() : null;
+        var futures = partitionPlan.changedPartitionFilters().entrySet().stream()
+                .map(partition -> retryExecutor.execute("export", tableRun.getRetryBudget(),
+                        () -> exportService.exportPartitionToStorage(
+                                bigQueryClient,
+                                projectId,
+                                exportDataset,
+                                exportTableName,
+                                systemTime,
+                                datasetName,
+                                tableName,
+                                partition.getKey(),
+                                partition.getValue(),
+                                gcsOptions,
+                                timestampSuffix,
+                                location,
+                                jobGroup
+                        )))
+                .toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(futures)
+                .thenRunAsync(() -> incrementalBackupService.writeTableManifest(projectId, datasetName, tableName,
+                        partitionPlan, gcsOptions, timestampSuffix), executor);
+    }
+
+    /**
+     * Records the outcome of the table. When the run fails fast, a failed table cancels the run's other
+     * jobs, which then end as cancelled instead of failed.
+     */
+    private CompletableFuture<Void> trackCompletion(CompletableFuture<Void> future,
+                                                    TableRun tableRun,
+                                                    Run run,
+                                                    boolean failFast) {
+        return future.whenComplete((ignored, throwable) -> {
+            if (isNull(throwable)) {
+                tableRun.succeed();
+                log.info("Completed backup for table {}.{}", tableRun.getDatasetName(), tableRun.getTableName());
+                return;
+            }
 
-        var timestampSuffix = snapshotService.createTableSnapshot(
-                bigQueryClient, projectId, datasetName, tableName,
-                snapshotDatasetId, backupTime);
+            var cause = unwrap(throwable);
+            if (cause instanceof CancellationException) {
+                tableRun.cancel();
+                return;
+            }
 
-        exportService.exportSnapshotToStorage(
-                bigQueryClient,
-                projectId,
-                snapshotDatasetId.getDataset(),
-                snapshotService.getSnapshotTableName(tableName, timestampSuffix),
-                datasetName,
-                tableName,
-                gcsOptions,
-                timestampSuffix
-        );
+            tableRun.fail(cause);
+            if (failFast && run.getJobs().cancel("table " + tableRun.getKey() + " failed")) {
+                log.warn("Backup of table {} failed, cancelling the other tables of run {}",
+                        tableRun.getKey(), run.getId());
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package com.bigquery.app.backup.domain;
 
 import com.bigquery.app.backup.dto.BackupTime;
 import com.bigquery.app.backup.dto.TableToBackup;
+import com.bigquery.app.common.bigquery.DatasetMetadataCache;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
 import com.bigquery.app.common.config.BackupProperties;
 import com.bigquery.app.common.exception.ResourceNotFoundException;
 import com.google.api.gax.paging.Page;
@@ -34,6 +36,7 @@ import static org.springframework.util.StringUtils.hasText;
 public class DatastoreDiscoveryService {
 
     private final BackupProperties backupProperties;
+    private final DatasetMetadataCache datasetMetadataCache;
 
     public Set<String> discoverTables(BigQuery bigQueryClient,
                                       TableToBackup tableToBackup,
@@ -64,14 +67,18 @@ public class DatastoreDiscoveryService {
         return discoveredTables;
     }
 
-    public List<TableToBackup> discoverAllDatasets(BigQuery bigQueryClient) {
+    public List<TableToBackup> discoverAllDatasets(BigQuery bigQueryClient, MetadataCallCounter callCounter) {
         var result = new ArrayList<TableToBackup>();
 
-        var datasets = bigQueryClient.listDatasets(
+        callCounter.record("listDatasets");
+        var datasetPage = bigQueryClient.listDatasets(
                 bigQueryClient.getOptions().getProjectId()
         );
+        // iterateAll fetches the pages after the first one on every iteration, so they are listed once
+        var datasets = StreamSupport.stream(datasetPage.iterateAll().spliterator(), false).toList();
+        datasetMetadataCache.putAll(datasets);
 
-        for (Dataset dataset : datasets.iterateAll()) {
+        for (Dataset dataset : datasets) {
             var datasetName = dataset.getDatasetId().getDataset();
 
             if (datasetName.equals(backupProperties.getDataset().getSnapshot().getName())) {
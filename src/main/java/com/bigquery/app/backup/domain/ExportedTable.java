@@ -0,0 +1,15 @@
+package com.bigquery.app.backup.domain;
+
+import com.bigquery.app.common.gcs.TableLayout;
+
+import java.util.List;
+
+/**
+ * What the backup manifest records of a table exported by the run: the URIs restore loads it from and
+ * its layout, which is empty when it could not be read.
+ */
+public record ExportedTable(
+        List<String> sourceUris,
+        TableLayout layout
+) {
+}
@@ -0,0 +1,400 @@
+package com.bigquery.app.backup.domain;
+
+import com.bigquery.app.backup.dto.BackupState;
+import com.bigquery.app.backup.dto.BackupTime;
+import com.bigquery.app.backup.dto.GcsOptions;
+import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.PartitionFilter;
+import com.bigquery.app.common.bigquery.PartitionMetadata;
+import com.bigquery.app.common.bigquery.TableMetadata;
+import com.bigquery.app.common.config.BackupProperties;
+import com.bigquery.app.common.exception.ServiceException;
+import com.bigquery.app.common.gcs.BackupReference;
+import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.common.gcs.TableManifest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TimePartitioning;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.bigquery.app.common.util.FutureUtil.await;
+import static com.bigquery.app.common.util.GcsPathUtil.buildBackupStateUri;
+import static com.bigquery.app.common.util.GcsPathUtil.buildPartitionFileUri;
+import static com.bigquery.app.common.util.GcsPathUtil.buildTableManifestUri;
+import static com.bigquery.app.common.util.GcsPathUtil.buildTableReferenceUri;
+import static com.bigquery.app.common.util.TimeUtil.formatTimestampForFileName;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Decides which tables of a dataset changed since its last successful backup. A table is unchanged
+ * when its last-modified time and size match the backup state stored in GCS; unchanged tables are
+ * written as references to the backup that holds their files instead of being exported again. In
+ * partition mode, changed time-partitioned tables are compared partition by partition as well, and
+ * consecutive changed partitions are exported together.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IncrementalBackupService {
+    private final BigQueryService bigQueryService;
+    private final GcsService gcsService;
+    private final ObjectMapper objectMapper;
+    private final BackupProperties backupProperties;
+
+    public IncrementalPlan plan(BigQuery bigQueryClient,
+                                String projectId,
+                                String datasetName,
+                                Set<String> tableNames,
+                                GcsOptions gcsOptions) {
+
+        var format = gcsOptions.exportOptions().format();
+        var previousState = loadState(gcsOptions.uri(), projectId, datasetName)
+                .filter(state -> format.equalsIgnoreCase(state.format()))
+                .orElse(null);
+        var tableMetadata = await(bigQueryService.getTableMetadata(bigQueryClient, projectId, datasetName));
+
+        var changedTables = new HashSet<String>();
+        var unchangedTables = new HashMap<String, String>();
+
+        for (String tableName : tableNames) {
+            var previous = isNull(previousState) ? null : previousState.tables().get(tableName);
+            var current = tableMetadata.get(tableName);
+
+            if (isUnchanged(previous, current)) {
+                unchangedTables.put(tableName, previous.backupTimestamp());
+            } else {
+                changedTables.add(tableName);
+            }
+        }
+
+        log.info("Incremental backup of dataset {}: {} changed, {} unchanged tables",
+                datasetName, changedTables.size(), unchangedTables.size());
+
+        var partitionMetadata = gcsOptions.exportOptions().isIncrementalPartitionBackup() && !changedTables.isEmpty()
+                ? await(bigQueryService.getPartitionMetadata(bigQueryClient, projectId, datasetName))
+                : Map.<String, List<PartitionMetadata>>of();
+        var partitionPlans = planPartitions(bigQueryClient, projectId, datasetName, changedTables, previousState,
+                partitionMetadata);
+
+        return new IncrementalPlan(projectId, datasetName, changedTables, unchangedTables,
+                tableMetadata, previousState, partitionPlans, partitionMetadata);
+    }
+
+    private Map<String, PartitionPlan> planPartitions(BigQuery bigQueryClient,
+                                                      String projectId,
+                                                      String datasetName,
+                                                      Set<String> changedTables,
+                                                      BackupState previousState,
+                                                      Map<String, List<PartitionMetadata>> partitionMetadata) {
+
+        var partitionPlans = new HashMap<String, PartitionPlan>();
+
+        for (String tableName : changedTables) {
+            var partitions = partitionMetadata.get(tableName);
+            if (isNull(partitions) || partitions.isEmpty()) {
+                continue;
+            }
+
+            var previous = isNull(previousState) ? null : previousState.tables().get(tableName);
+            var previousPartitions = isNull(previous) || isNull(previous.partitions())
+                    ? Map.<String, BackupState.PartitionState>of()
+                    : previous.partitions();
+
+            planTablePartitions(bigQueryClient, TableId.of(projectId, datasetName, tableName),
+                    partitions, previousPartitions)
+                    .ifPresent(partitionPlan -> {
+                        partitionPlans.put(tableName, partitionPlan);
+                        log.info("Table {}.{}: {} changed, {} unchanged partitions", datasetName, tableName,
+                                partitionPlan.changedPartitionFilters().size(),
+                                partitionPlan.unchangedPartitions().size());
+                    });
+        }
+
+        return partitionPlans;
+    }
+
+    /**
+     * Without partition state to compare with, as for a table backed up for the first time or last exported
+     * in full, and when more than the configured share of its partitions changed, the table is exported in
+     * full, as a single job then does the work of many. Files of earlier backups are only reused when every
+     * partition they hold is unchanged.
+     */
+    private Optional<PartitionPlan> planTablePartitions(BigQuery bigQueryClient,
+                                                        TableId tableId,
+                                                        List<PartitionMetadata> partitions,
+                                                        Map<String, BackupState.PartitionState> previousPartitions) {
+
+        if (previousPartitions.isEmpty()) {
+            log.info("Table {} has no partition state, exporting it in full", tableId.getTable());
+            return Optional.empty();
+        }
+
+        var partitionLastModified = new HashMap<String, Long>();
+        partitions.forEach(partition -> partitionLastModified.put(partition.partitionId(),
+                partition.lastModifiedTime()));
+
+        var modifiedPartitions = partitions.stream()
+                .filter(partition -> !isUnchanged(previousPartitions.get(partition.partitionId()), partition))
+                .count();
+        var maxChangedShare = backupProperties.getIncremental().getMaxChangedPartitionShare();
+        if (modifiedPartitions > maxChangedShare * partitions.size()) {
+            log.info("{} of {} partitions of table {} changed, exporting it in full", modifiedPartitions,
+                    partitions.size(), tableId.getTable());
+            return Optional.empty();
+        }
+
+        var table = bigQueryClient.getTable(tableId);
+        if (isNull(table) || !(table.getDefinition() instanceof StandardTableDefinition definition)
+                || isNull(definition.getTimePartitioning())) {
+            log.info("Table {} is not time-partitioned, exporting it in full", tableId.getTable());
+            return Optional.empty();
+        }
+
+        var partitioning = definition.getTimePartitioning();
+        var columnType = PartitionFilter.resolveColumnType(definition);
+
+        // Files holding a partition that changed or is gone would restore its old rows
+        var outdatedFiles = new HashSet<String>();
+        previousPartitions.forEach((partitionId, previous) -> {
+            if (!Long.valueOf(previous.lastModifiedTime()).equals(partitionLastModified.get(partitionId))) {
+                outdatedFiles.add(fileKey(partitionId, previous));
+            }
+        });
+
+        var changedPartitionIds = new ArrayList<String>();
+        var unchangedPartitions = new HashMap<String, BackupState.PartitionState>();
+        for (PartitionMetadata partition : partitions) {
+            var previous = previousPartitions.get(partition.partitionId());
+            if (isUnchanged(previous, partition) && nonNull(previous.backupTimestamp())
+                    && !outdatedFiles.contains(fileKey(partition.partitionId(), previous))) {
+                unchangedPartitions.put(partition.partitionId(), previous);
+            } else {
+                changedPartitionIds.add(partition.partitionId());
+            }
+        }
+
+        var changedPartitionFilters = new HashMap<String, String>();
+        var changedPartitionFiles = new HashMap<String, String>();
+        for (List<String> range : consecutiveRanges(partitioning, changedPartitionIds)) {
+            var first = range.get(0);
+            var last = range.get(range.size() - 1);
+            var fileId = range.size() == 1 ? first : first + "-" + last;
+            var filter = range.size() == 1
+                    ? PartitionFilter.forPartition(partitioning, columnType, first)
+                    : PartitionFilter.forPartitions(partitioning, columnType, first, last);
+            if (filter.isEmpty()) {
+                log.info("Partition {} of table {} cannot be exported separately, exporting the table in full",
+                        fileId, tableId.getTable());
+                return Optional.empty();
+            }
+            changedPartitionFilters.put(fileId, filter.get());
+            range.forEach(partitionId -> changedPartitionFiles.put(partitionId, fileId));
+        }
+
+        return Optional.of(new PartitionPlan(changedPartitionFilters, changedPartitionFiles, partitionLastModified,
+                unchangedPartitions));
+    }
+
+    /**
+     * Splits the partitions into runs of consecutive time partitions of at most {@code maxPartitionsPerRange}
+     * each. Partitions that are not time ranges, such as {@code __NULL__}, are runs of their own.
+     */
+    private List<List<String>> consecutiveRanges(TimePartitioning partitioning, List<String> partitionIds) {
+        var maxPartitions = backupProperties.getIncremental().getMaxPartitionsPerRange();
+        var ranges = new ArrayList<List<String>>();
+        List<String> range = null;
+
+        for (String partitionId : partitionIds.stream().sorted().toList()) {
+            if (nonNull(range) && range.size() < maxPartitions
+                    && PartitionFilter.isFollowedBy(partitioning, range.get(range.size() - 1), partitionId)) {
+                range.add(partitionId);
+                continue;
+            }
+            range = new ArrayList<>(List.of(partitionId));
+            ranges.add(range);
+        }
+
+        return ranges;
+    }
+
+    private static boolean isUnchanged(BackupState.PartitionState previous, PartitionMetadata current) {
+        return nonNull(previous) && previous.lastModifiedTime() == current.lastModifiedTime();
+    }
+
+    private static String fileKey(String partitionId, BackupState.PartitionState state) {
+        return state.backupTimestamp() + "/" + state.fileIdOr(partitionId);
+    }
+
+    public void writeReferences(IncrementalPlan plan, GcsOptions gcsOptions, BackupTime backupTime) {
+        var timestampSuffix = formatTimestampForFileName(backupTime.toUtcZonedDateTime());
+        var format = gcsOptions.exportOptions().format();
+
+        plan.unchangedTables().forEach((tableName, referencedBackup) -> {
+            var referenceUri = buildTableReferenceUri(gcsOptions.uri(), timestampSuffix,
+                    plan.projectId(), plan.datasetName(), tableName);
+            gcsService.writeJsonObject(referenceUri, toJson(new BackupReference(referencedBackup, format)));
+            log.info("Table {}.{} unchanged, referencing backup {}", plan.datasetName(), tableName, referencedBackup);
+        });
+    }
+
+    public void saveState(IncrementalPlan plan, GcsOptions gcsOptions, BackupTime backupTime) {
+        var timestampSuffix = formatTimestampForFileName(backupTime.toUtcZonedDateTime());
+        var backupTimeMillis = backupTime.toUtcZonedDateTime().toInstant().toEpochMilli();
+
+        var tables = new HashMap<String, BackupState.TableState>();
+        if (nonNull(plan.previousState())) {
+            tables.putAll(plan.previousState().tables());
+        }
+
+        for (String tableName : plan.changedTables()) {
+            var metadata = plan.tableMetadata().get(tableName);
+            var partitionPlan = plan.partitionPlans().get(tableName);
+            if (nonNull(metadata) && nonNull(partitionPlan)) {
+                tables.put(tableName, partitionedTableState(metadata, partitionPlan, timestampSuffix, backupTimeMillis));
+                continue;
+            }
+            // Files hold the table as of the backup time; a later modification is not in them.
+            if (isNull(metadata) || metadata.lastModifiedTime() > backupTimeMillis) {
+                tables.remove(tableName);
+                continue;
+            }
+            tables.put(tableName, new BackupState.TableState(metadata.lastModifiedTime(), metadata.numBytes(),
+                    timestampSuffix, fullyExportedPartitions(plan.partitionMetadata().get(tableName))));
+        }
+
+        var state = new BackupState(plan.projectId(), plan.datasetName(),
+                gcsOptions.exportOptions().format(), tables);
+        gcsService.writeJsonObject(buildBackupStateUri(gcsOptions.uri(), plan.projectId(), plan.datasetName()),
+                toJson(state));
+        log.info("Saved backup state for dataset {} with {} tables", plan.datasetName(), tables.size());
+    }
+
+    public void writeTableManifest(String projectId,
+                                   String datasetName,
+                                   String tableName,
+                                   PartitionPlan partitionPlan,
+                                   GcsOptions gcsOptions,
+                                   String timestampSuffix) {
+
+        var format = gcsOptions.exportOptions().format();
+        var partitionFiles = partitionFiles(projectId, datasetName, tableName, partitionPlan, gcsOptions,
+                timestampSuffix);
+
+        var manifestUri = buildTableManifestUri(gcsOptions.uri(), timestampSuffix, projectId, datasetName, tableName);
+        gcsService.writeJsonObject(manifestUri, toJson(new TableManifest(format, partitionFiles)));
+        log.info("Wrote manifest for table {}.{} with {} partitions", datasetName, tableName, partitionFiles.size());
+    }
+
+    /**
+     * The files of every partition of the table, changed partitions in this backup and unchanged ones in
+     * the backups that hold them.
+     */
+    public List<TableManifest.PartitionFile> partitionFiles(String projectId,
+                                                            String datasetName,
+                                                            String tableName,
+                                                            PartitionPlan partitionPlan,
+                                                            GcsOptions gcsOptions,
+                                                            String timestampSuffix) {
+
+        var format = gcsOptions.exportOptions().format();
+        var partitionFiles = new ArrayList<TableManifest.PartitionFile>();
+
+        // Partitions exported together as a range share their files
+        var reusedFiles = new HashSet<String>();
+        partitionPlan.unchangedPartitions().forEach((partitionId, state) -> {
+            var fileId = state.fileIdOr(partitionId);
+            if (reusedFiles.add(fileKey(partitionId, state))) {
+                partitionFiles.add(new TableManifest.PartitionFile(fileId, state.backupTimestamp(),
+                        buildPartitionFileUri(gcsOptions.uri(), state.backupTimestamp(), projectId, datasetName,
+                                tableName, fileId, format)));
+            }
+        });
+        partitionPlan.changedPartitionFilters().keySet().forEach(fileId -> partitionFiles.add(
+                new TableManifest.PartitionFile(fileId, timestampSuffix,
+                        buildPartitionFileUri(gcsOptions.uri(), timestampSuffix, projectId, datasetName,
+                                tableName, fileId, format))));
+        partitionFiles.sort(Comparator.comparing(TableManifest.PartitionFile::partitionId));
+        return partitionFiles;
+    }
+
+    private static BackupState.TableState partitionedTableState(TableMetadata metadata,
+                                                                PartitionPlan partitionPlan,
+                                                                String timestampSuffix,
+                                                                long backupTimeMillis) {
+
+        // A partition modified after the backup time is exported again next time, with those exported alongside it
+        var outdatedFiles = new HashSet<String>();
+        partitionPlan.changedPartitionFiles().forEach((partitionId, fileId) -> {
+            if (partitionPlan.partitionLastModified().get(partitionId) > backupTimeMillis) {
+                outdatedFiles.add(fileId);
+            }
+        });
+
+        var partitions = new HashMap<>(partitionPlan.unchangedPartitions());
+        partitionPlan.changedPartitionFiles().forEach((partitionId, fileId) -> {
+            if (!outdatedFiles.contains(fileId)) {
+                partitions.put(partitionId, new BackupState.PartitionState(
+                        partitionPlan.partitionLastModified().get(partitionId), timestampSuffix,
+                        fileId.equals(partitionId) ? null : fileId));
+            }
+        });
+
+        var lastModified = metadata.lastModifiedTime() <= backupTimeMillis ? metadata.lastModifiedTime() : -1;
+        return new BackupState.TableState(lastModified, metadata.numBytes(), timestampSuffix, partitions);
+    }
+
+    /**
+     * Partitions of a table exported in full are recorded without files, so that the next backup can compare
+     * them and export the changed ones.
+     */
+    private static Map<String, BackupState.PartitionState> fullyExportedPartitions(List<PartitionMetadata> partitions) {
+        if (isNull(partitions) || partitions.isEmpty()) {
+            return null;
+        }
+        var states = new HashMap<String, BackupState.PartitionState>();
+        partitions.forEach(partition -> states.put(partition.partitionId(),
+                new BackupState.PartitionState(partition.lastModifiedTime(), null, null)));
+        return states;
+    }
+
+    private Optional<BackupState> loadState(String gcsUri, String projectId, String datasetName) {
+        return gcsService.readObject(buildBackupStateUri(gcsUri, projectId, datasetName))
+                .map(content -> {
+                    try {
+                        return objectMapper.readValue(content, BackupState.class);
+                    } catch (JsonProcessingException e) {
+                        log.warn("Ignoring unreadable backup state for dataset {}: {}", datasetName, e.getMessage());
+                        return null;
+                    }
+                });
+    }
+
+    private static boolean isUnchanged(BackupState.TableState previous, TableMetadata current) {
+        return nonNull(previous) && nonNull(current)
+                && previous.lastModifiedTime() == current.lastModifiedTime()
+                && previous.numBytes() == current.numBytes();
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new ServiceException("Backup", "Failed to serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.bigquery.app.backup.domain;
+
+import com.bigquery.app.backup.dto.BackupState;
+import com.bigquery.app.common.bigquery.PartitionMetadata;
+import com.bigquery.app.common.bigquery.TableMetadata;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outcome of comparing a dataset's tables with its last successful backup: the tables to export and,
+ * for unchanged tables, the backup that already holds their data. Changed tables with a partition plan
+ * are exported partition by partition. In partition mode the partitions of the changed tables are kept
+ * as well, so that tables exported in full can be compared partition by partition next time.
+ */
+public record IncrementalPlan(
+        String projectId,
+        String datasetName,
+        Set<String> changedTables,
+        Map<String, String> unchangedTables,
+        Map<String, TableMetadata> tableMetadata,
+        BackupState previousState,
+        Map<String, PartitionPlan> partitionPlans,
+        Map<String, List<PartitionMetadata>> partitionMetadata
+) {
+}
@@ -0,0 +1,19 @@
+package com.bigquery.app.backup.domain;
+
+import com.bigquery.app.backup.dto.BackupState;
+
+import java.util.Map;
+
+/**
+ * Partitions of a changed table split by whether they need exporting: changed partitions with the
+ * condition selecting their rows, unchanged partitions with the backup that already holds them.
+ * Consecutive changed partitions are exported together, so the filters are keyed by the id of the
+ * exported range and each changed partition is mapped to the range holding it.
+ */
+public record PartitionPlan(
+        Map<String, String> changedPartitionFilters,
+        Map<String, String> changedPartitionFiles,
+        Map<String, Long> partitionLastModified,
+        Map<String, BackupState.PartitionState> unchangedPartitions
+) {
+}
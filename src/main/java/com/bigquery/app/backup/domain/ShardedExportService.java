@@ -0,0 +1,118 @@
+package com.bigquery.app.backup.domain;
+
+import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
+import com.bigquery.app.common.bigquery.PartitionFilter;
+import com.bigquery.app.common.bigquery.PartitionMetadata;
+import com.bigquery.app.common.config.BackupProperties;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.bigquery.app.common.util.FutureUtil.await;
+import static java.util.Objects.isNull;
+
+/**
+ * Splits large time-partitioned tables into shards of consecutive partitions, so that a table is
+ * exported by several jobs running side by side instead of one. Shards are exported and restored
+ * like the partitions of an incremental partition backup: each to its own folder, listed together
+ * in the table's manifest.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ShardedExportService {
+    static final String SHARD_ID_FORMAT = "shard-%03d";
+
+    private final BigQueryService bigQueryService;
+    private final BackupProperties backupProperties;
+
+    public Map<String, PartitionPlan> plan(BigQuery bigQueryClient,
+                                           String projectId,
+                                           String datasetName,
+                                           Set<String> tableNames,
+                                           Map<String, Long> tableSizes,
+                                           int shardCount,
+                                           MetadataCallCounter metadataCalls) {
+
+        var minTableSize = backupProperties.getSharding().getMinTableSize().toBytes();
+        var largeTables = tableNames.stream()
+                .filter(tableName -> tableSizes.getOrDefault(tableName, 0L) >= minTableSize)
+                .toList();
+        if (largeTables.isEmpty()) {
+            return Map.of();
+        }
+
+        var partitionMetadata = await(bigQueryService.getPartitionMetadata(bigQueryClient, projectId, datasetName));
+        var shardPlans = new HashMap<String, PartitionPlan>();
+
+        for (String tableName : largeTables) {
+            var partitions = partitionMetadata.get(tableName);
+            if (isNull(partitions) || partitions.isEmpty()) {
+                continue;
+            }
+
+            metadataCalls.record("getTable");
+            planTableShards(bigQueryClient.getTable(TableId.of(projectId, datasetName, tableName)), partitions,
+                    shardCount).ifPresent(shardPlan -> {
+                shardPlans.put(tableName, shardPlan);
+                log.info("Exporting table {}.{} in {} shards", datasetName, tableName,
+                        shardPlan.changedPartitionFilters().size());
+            });
+        }
+
+        return shardPlans;
+    }
+
+    /**
+     * Cuts the sorted time partitions into {@code shardCount} ranges of about the same number of partitions.
+     * The first range is open towards the past and includes NULL values, the last is open towards the
+     * future, so the shards hold every row of the table even if partitions were added or dropped since
+     * the partitions were listed.
+     */
+    private static Optional<PartitionPlan> planTableShards(Table table,
+                                                           List<PartitionMetadata> partitions,
+                                                           int shardCount) {
+
+        if (isNull(table) || !(table.getDefinition() instanceof StandardTableDefinition definition)
+                || isNull(definition.getTimePartitioning())) {
+            return Optional.empty();
+        }
+
+        var partitioning = definition.getTimePartitioning();
+        var partitionIds = partitions.stream()
+                .map(PartitionMetadata::partitionId)
+                .filter(partitionId -> PartitionFilter.isTimePartition(partitioning, partitionId))
+                .sorted()
+                .toList();
+        var shards = Math.min(shardCount, partitionIds.size());
+        if (shards < 2) {
+            return Optional.empty();
+        }
+
+        var columnType = PartitionFilter.resolveColumnType(definition);
+        var shardFilters = new TreeMap<String, String>();
+        for (int shard = 0; shard < shards; shard++) {
+            var from = shard == 0 ? null : partitionIds.get(shard * partitionIds.size() / shards);
+            var to = shard == shards - 1 ? null : partitionIds.get((shard + 1) * partitionIds.size() / shards);
+            var filter = PartitionFilter.forRange(partitioning, columnType, from, to);
+            if (filter.isEmpty()) {
+                return Optional.empty();
+            }
+            shardFilters.put(SHARD_ID_FORMAT.formatted(shard), filter.get());
+        }
+
+        return Optional.of(new PartitionPlan(shardFilters, Map.of(), Map.of(), Map.of()));
+    }
+}
@@ -0,0 +1,33 @@
+package com.bigquery.app.backup.domain;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static java.util.Objects.isNull;
+
+/**
+ * A group of tables of one dataset snapshotted by a single script job. The job is started by the first
+ * table of the group that reaches the snapshot stage; the others share its result.
+ */
+public class SnapshotBatch {
+    private final Supplier<CompletableFuture<Result>> script;
+    private CompletableFuture<Result> result;
+
+    SnapshotBatch(Supplier<CompletableFuture<Result>> script) {
+        this.script = script;
+    }
+
+    synchronized CompletableFuture<Result> result() {
+        if (isNull(result)) {
+            result = script.get();
+        }
+        return result;
+    }
+
+    /**
+     * Timestamp suffix of the snapshots and the error message per table whose statement failed.
+     */
+    public record Result(String timestampSuffix, Map<String, String> failedTables) {
+    }
+}
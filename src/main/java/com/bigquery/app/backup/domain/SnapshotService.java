@@ -2,6 +2,9 @@ package com.bigquery.app.backup.domain;
 
 import com.bigquery.app.backup.dto.BackupTime;
 import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.DatasetMetadataCache;
+import com.bigquery.app.common.bigquery.JobGroup;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
 import com.bigquery.app.common.config.BackupProperties;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.DatasetId;
@@ -9,6 +12,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import static com.bigquery.app.common.util.TimeUtil.formatTimestampForFileName;
 
 @Service
@@ -17,45 +24,103 @@ import static com.bigquery.app.common.util.TimeUtil.formatTimestampForFileName;
 public class SnapshotService {
     private final BigQueryService bigQueryService;
     private final BackupProperties backupProperties;
+    private final DatasetMetadataCache datasetMetadataCache;
 
-    public DatasetId ensureSnapshotDatasetExists(BigQuery bigQueryClient, String projectId, String location) {
+    public DatasetId ensureSnapshotDatasetExists(BigQuery bigQueryClient,
+                                                 String projectId,
+                                                 String location,
+                                                 MetadataCallCounter callCounter) {
         var snapshotDatasetId = DatasetId.of(projectId,
                 backupProperties.getDataset().getSnapshot().getName());
 
-        bigQueryService.ensureDatasetExists(
+        datasetMetadataCache.ensureExists(
                 bigQueryClient,
                 snapshotDatasetId,
                 "Dataset containing table snapshots for backup",
-                location
+                location,
+                callCounter
         );
 
         return snapshotDatasetId;
     }
 
-    public String createTableSnapshot(BigQuery bigQueryClient,
-                                      String projectId,
-                                      String datasetName,
-                                      String tableName,
-                                      DatasetId snapshotDatasetId,
-                                      BackupTime backupTime) {
+    public CompletableFuture<String> createTableSnapshot(BigQuery bigQueryClient,
+                                                         String projectId,
+                                                         String datasetName,
+                                                         String tableName,
+                                                         DatasetId snapshotDatasetId,
+                                                         BackupTime backupTime,
+                                                         String location,
+                                                         JobGroup jobGroup) {
 
         var timestampSuffix = formatTimestampForFileName(backupTime.toUtcZonedDateTime());
         var snapshotTableName = getSnapshotTableName(tableName, timestampSuffix);
 
         log.info("Creating snapshot for table: {}.{}", datasetName, tableName);
 
-        bigQueryService.createSnapshotOfTable(
+        var snapshotProperties = backupProperties.getDataset().getSnapshot();
+        if (snapshotProperties.getMethod() == BackupProperties.SnapshotMethod.COPY_JOB) {
+            return bigQueryService.createSnapshotOfTableWithCopyJob(
+                    bigQueryClient,
+                    projectId,
+                    datasetName,
+                    tableName,
+                    snapshotDatasetId.getDataset(),
+                    snapshotTableName,
+                    backupTime.toUtcZonedDateTime().toInstant().toEpochMilli(),
+                    snapshotProperties.getExpirationDays(),
+                    location,
+                    jobGroup
+            ).thenApply(ignored -> timestampSuffix);
+        }
+
+        return bigQueryService.createSnapshotOfTable(
                 bigQueryClient,
                 projectId,
                 datasetName,
                 tableName,
                 snapshotDatasetId.getDataset(),
                 snapshotTableName,
-                backupTime.toFormattedUtcString(),
-                backupProperties.getDataset().getSnapshot().getExpirationDays()
-        );
+                backupTime.toUtcZonedDateTime().toInstant().toEpochMilli(),
+                backupProperties.getDataset().getSnapshot().getExpirationDays(),
+                location,
+                jobGroup
+        ).thenApply(ignored -> timestampSuffix);
+    }
+
+    public CompletableFuture<SnapshotBatch.Result> createTableSnapshots(BigQuery bigQueryClient,
+                                                                       String projectId,
+                                                                       String datasetName,
+                                                                       List<String> tableNames,
+                                                                       DatasetId snapshotDatasetId,
+                                                                       BackupTime backupTime,
+                                                                       String location,
+                                                                       JobGroup jobGroup) {
+
+        var timestampSuffix = formatTimestampForFileName(backupTime.toUtcZonedDateTime());
+        var snapshotTables = new LinkedHashMap<String, String>();
+        tableNames.forEach(tableName -> snapshotTables.put(tableName, getSnapshotTableName(tableName, timestampSuffix)));
+
+        log.info("Creating snapshots for {} tables of dataset {}", tableNames.size(), datasetName);
+
+        return bigQueryService.createSnapshotsOfTables(
+                bigQueryClient,
+                projectId,
+                datasetName,
+                snapshotTables,
+                snapshotDatasetId.getDataset(),
+                backupTime.toUtcZonedDateTime().toInstant().toEpochMilli(),
+                backupProperties.getDataset().getSnapshot().getExpirationDays(),
+                location,
+                jobGroup
+        ).thenApply(failedTables -> new SnapshotBatch.Result(timestampSuffix, failedTables));
+    }
 
-        return timestampSuffix;
+    /**
+     * Snapshots created with DDL statements can share a script job; copy jobs snapshot one table each.
+     */
+    public boolean supportsBatches() {
+        return backupProperties.getDataset().getSnapshot().getMethod() == BackupProperties.SnapshotMethod.DDL;
     }
 
     public String getSnapshotTableName(String tableName, String timestampSuffix) {
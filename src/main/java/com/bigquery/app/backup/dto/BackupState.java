@@ -0,0 +1,40 @@
+package com.bigquery.app.backup.dto;
+
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Per-dataset record of the last successful backup of each table, used by incremental backups to
+ * detect unchanged tables.
+ */
+public record BackupState(
+        String projectId,
+        String datasetName,
+        String format,
+        Map<String, TableState> tables
+) {
+    public record TableState(
+            long lastModifiedTime,
+            long numBytes,
+            String backupTimestamp,
+            Map<String, PartitionState> partitions
+    ) {
+    }
+
+    /**
+     * Set for tables backed up in partition mode; the backup timestamp names the backup holding the
+     * partition's files and the file id their folder, which is the id of the range for partitions exported
+     * together and empty for a partition exported on its own. Partitions of a table exported in full have
+     * no backup timestamp, as they have no files of their own.
+     */
+    public record PartitionState(
+            long lastModifiedTime,
+            String backupTimestamp,
+            String fileId
+    ) {
+        public String fileIdOr(String partitionId) {
+            return isNull(fileId) ? partitionId : fileId;
+        }
+    }
+}
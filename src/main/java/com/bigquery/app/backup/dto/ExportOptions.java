@@ -8,7 +8,9 @@ import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import static java.util.Objects.*;
 import static java.util.Objects.isNull;
@@ -23,8 +25,25 @@ public record ExportOptions(
         String compression,
         String fieldDelimiter,
         Integer threadPoolSize,
-        Integer threadQueueCapacity
+        Integer threadQueueCapacity,
+        Integer snapshotConcurrency,
+        Integer stageQueueCapacity,
+        Boolean incremental,
+        Boolean incrementalPartitions,
+        Integer snapshotBatchSize,
+        ExportStrategy exportStrategy,
+        Integer exportShards,
+        Boolean failFast
 ) {
+    public static final String NO_COMPRESSION = "NONE";
+
+    private static final Map<String, Set<String>> SUPPORTED_COMPRESSION = Map.of(
+            "CSV", Set.of("GZIP"),
+            "JSON", Set.of("GZIP"),
+            "AVRO", Set.of("DEFLATE", "SNAPPY"),
+            "PARQUET", Set.of("SNAPPY", "GZIP", "ZSTD")
+    );
+
     private static ExportProperties.DefaultProperties defaults;
 
     @JsonCreator
@@ -35,7 +54,15 @@ public record ExportOptions(
             @JsonProperty("compression") String compression,
             @JsonProperty("fieldDelimiter") String fieldDelimiter,
             @JsonProperty("threadPoolSize") Integer threadPoolSize,
-            @JsonProperty("threadQueueCapacity") Integer threadQueueCapacity
+            @JsonProperty("threadQueueCapacity") Integer threadQueueCapacity,
+            @JsonProperty("snapshotConcurrency") Integer snapshotConcurrency,
+            @JsonProperty("stageQueueCapacity") Integer stageQueueCapacity,
+            @JsonProperty("incremental") Boolean incremental,
+            @JsonProperty("incrementalPartitions") Boolean incrementalPartitions,
+            @JsonProperty("snapshotBatchSize") Integer snapshotBatchSize,
+            @JsonProperty("exportStrategy") ExportStrategy exportStrategy,
+            @JsonProperty("exportShards") Integer exportShards,
+            @JsonProperty("failFast") Boolean failFast
     ) {
 
         this.format = nonNull(format) ? format : defaults.getFormat();
@@ -45,6 +72,16 @@ public record ExportOptions(
         this.fieldDelimiter = fieldDelimiter;
         this.threadPoolSize = threadPoolSize;
         this.threadQueueCapacity = threadQueueCapacity;
+        this.snapshotConcurrency = nonNull(snapshotConcurrency) ? snapshotConcurrency : defaults.getSnapshotConcurrency();
+        this.stageQueueCapacity = nonNull(stageQueueCapacity) ? stageQueueCapacity : defaults.getStageQueueCapacity();
+        this.incremental = nonNull(incremental) ? incremental : defaults.isIncremental();
+        this.incrementalPartitions = nonNull(incrementalPartitions)
+                ? incrementalPartitions
+                : defaults.isIncrementalPartitions();
+        this.snapshotBatchSize = nonNull(snapshotBatchSize) ? snapshotBatchSize : defaults.getSnapshotBatchSize();
+        this.exportStrategy = nonNull(exportStrategy) ? exportStrategy : defaults.getExportStrategy();
+        this.exportShards = nonNull(exportShards) ? exportShards : defaults.getExportShards();
+        this.failFast = nonNull(failFast) ? failFast : defaults.isFailFast();
     }
 
     public static void setDefaults(ExportProperties exportProperties) {
@@ -69,7 +106,99 @@ public record ExportOptions(
         return isNull(threadQueueCapacity) || nonNull(threadPoolSize);
     }
 
+    @AssertTrue(message = "If snapshotConcurrency is specified, it must be greater than 0")
+    public boolean isSnapshotConcurrencyValid() {
+        return isNull(snapshotConcurrency) || snapshotConcurrency > 0;
+    }
+
+    @AssertTrue(message = "If stageQueueCapacity is specified, it must not be negative")
+    public boolean isStageQueueCapacityValid() {
+        return isNull(stageQueueCapacity) || stageQueueCapacity >= 0;
+    }
+
+    @AssertTrue(message = "If incrementalPartitions is enabled, incremental must also be enabled")
+    public boolean isIncrementalPartitionsValid() {
+        return !Boolean.TRUE.equals(incrementalPartitions) || Boolean.TRUE.equals(incremental);
+    }
+
+    @AssertTrue(message = "If snapshotBatchSize is specified, it must be greater than 0")
+    public boolean isSnapshotBatchSizeValid() {
+        return isNull(snapshotBatchSize) || snapshotBatchSize > 0;
+    }
+
+    @AssertTrue(message = "If exportShards is specified, it must be greater than 0")
+    public boolean isExportShardsValid() {
+        return isNull(exportShards) || exportShards > 0;
+    }
+
+    @AssertTrue(message = "With exportStrategy EXTRACT_JOB, incrementalPartitions and exportShards greater than 1 "
+            + "are not supported, as extract jobs cannot filter rows, and overwrite must be true, as extract jobs "
+            + "always overwrite existing files")
+    public boolean isExtractJobOptionsValid() {
+        if (!isExtractJobExport()) {
+            return true;
+        }
+        return !Boolean.TRUE.equals(incrementalPartitions) && (isNull(exportShards) || exportShards == 1)
+                && Boolean.TRUE.equals(overwrite);
+    }
+
+    /**
+     * Whether the format supports the requested codec: GZIP for CSV and JSON, DEFLATE and SNAPPY for AVRO,
+     * SNAPPY, GZIP and ZSTD for PARQUET. Other codecs are accepted, as they always were, and ignored.
+     */
+    public boolean isCompressionSupported() {
+        if (!hasText(compression) || NO_COMPRESSION.equalsIgnoreCase(compression) || isNull(format)) {
+            return true;
+        }
+        return SUPPORTED_COMPRESSION.getOrDefault(format.toUpperCase(), Set.of())
+                .contains(compression.toUpperCase());
+    }
+
+    /**
+     * The codec the export files are written with, {@code NONE} when they are not compressed, including
+     * when the format does not support the requested codec.
+     */
+    public String compressionCodec() {
+        return hasText(compression) && isCompressionSupported() ? compression.toUpperCase() : NO_COMPRESSION;
+    }
+
+    public boolean isIncrementalBackup() {
+        return Boolean.TRUE.equals(incremental);
+    }
+
+    public boolean isIncrementalPartitionBackup() {
+        return isIncrementalBackup() && Boolean.TRUE.equals(incrementalPartitions);
+    }
+
+    public boolean isSnapshotBatched() {
+        return !isTimeTravelExport() && nonNull(snapshotBatchSize) && snapshotBatchSize > 1;
+    }
+
+    public boolean isTimeTravelExport() {
+        return exportStrategy == ExportStrategy.TIME_TRAVEL;
+    }
+
+    public boolean isExtractJobExport() {
+        return exportStrategy == ExportStrategy.EXTRACT_JOB;
+    }
+
+    public boolean isShardedExport() {
+        return isMultiThreaded() && nonNull(exportShards) && exportShards > 1;
+    }
+
     public boolean isMultiThreaded() {
         return nonNull(threadPoolSize) && threadPoolSize > 1;
     }
+
+    public boolean isFailFast() {
+        return Boolean.TRUE.equals(failFast);
+    }
+
+    /**
+     * Tables of a parallel backup that are submitted but not finished at any time: as many as the
+     * snapshot stage, the stage queue and the export stage hold together.
+     */
+    public int submissionWindow() {
+        return snapshotConcurrency + stageQueueCapacity + threadPoolSize;
+    }
 }
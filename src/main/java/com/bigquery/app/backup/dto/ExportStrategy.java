@@ -0,0 +1,10 @@
+package com.bigquery.app.backup.dto;
+
+public enum ExportStrategy {
+    /** Snapshot each table as of the backup time, then export the snapshot. */
+    SNAPSHOT,
+    /** Export each table as of the backup time with time travel; no snapshot job and no snapshot dataset. */
+    TIME_TRAVEL,
+    /** Snapshot each table, then export the snapshot with an extract job instead of an EXPORT DATA query. */
+    EXTRACT_JOB
+}
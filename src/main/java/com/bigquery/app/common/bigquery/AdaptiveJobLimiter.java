@@ -0,0 +1,147 @@
+package com.bigquery.app.common.bigquery;
+
+import com.bigquery.app.common.concurrent.ConcurrencyLimiter;
+import com.bigquery.app.common.config.AdaptiveConcurrencyProperties;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.JobConfiguration;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static com.bigquery.app.common.util.FutureUtil.unwrap;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Limits BigQuery jobs in flight per project and job type with additive increase and
+ * multiplicative decrease. A limit grows by one after a full window of successful jobs and is cut by
+ * {@code backoffRatio} when BigQuery answers with a rate-limit or quota error. The job that hit the
+ * error fails; it is retried by the {@link com.bigquery.app.common.retry.RetryExecutor} of its table, which
+ * charges the retry to the table's budget.
+ * <p>
+ * A job that has to wait for a permit is created on a thread of the submission pool once it gets one.
+ * Permits are released by the callbacks of finished jobs, whose threads must not block on creating the next job.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdaptiveJobLimiter {
+    private static final String DEFAULT_PROJECT = "default";
+    private static final Set<String> RATE_LIMIT_REASONS =
+            Set.of("rateLimitExceeded", "quotaExceeded", "jobRateLimitExceeded");
+    private static final Executor DIRECT = Runnable::run;
+
+    private final AdaptiveConcurrencyProperties properties;
+    private final Map<String, AimdLimit> limits = new ConcurrentHashMap<>();
+    private final ExecutorService queuedSubmissions = Executors.newCachedThreadPool(daemonThreadFactory());
+
+    @PreDestroy
+    public void stop() {
+        queuedSubmissions.shutdown();
+    }
+
+    public <T> CompletableFuture<T> submit(BigQuery bigQuery, JobConfiguration.Type jobType,
+                                           Supplier<CompletableFuture<T>> job) {
+        var key = key(projectOf(bigQuery), jobType);
+        var limit = limits.computeIfAbsent(key, AimdLimit::new);
+        return limit.limiter.submit(job, DIRECT, queuedSubmissions)
+                .whenComplete((value, error) -> {
+                    if (isNull(error)) {
+                        limit.onSuccess();
+                    } else if (isRateLimited(unwrap(error))) {
+                        limit.onRateLimited();
+                    }
+                });
+    }
+
+    public int getLimit(String projectId, JobConfiguration.Type jobType) {
+        var limit = limits.get(key(projectId, jobType));
+        return nonNull(limit) ? limit.limiter.getLimit() : properties.getInitialLimit();
+    }
+
+    public int getInFlight(String projectId, JobConfiguration.Type jobType) {
+        var limit = limits.get(key(projectId, jobType));
+        return nonNull(limit) ? limit.limiter.getInFlight() : 0;
+    }
+
+    static boolean isRateLimited(Throwable throwable) {
+        if (!(throwable instanceof BigQueryException e)) {
+            return false;
+        }
+        if (e.getCode() == 429) {
+            return true;
+        }
+        var reason = nonNull(e.getError()) ? e.getError().getReason() : e.getReason();
+        return e.getCode() == 403 && nonNull(reason) && RATE_LIMIT_REASONS.contains(reason);
+    }
+
+    private static String projectOf(BigQuery bigQuery) {
+        var options = bigQuery.getOptions();
+        return nonNull(options) && nonNull(options.getProjectId()) ? options.getProjectId() : DEFAULT_PROJECT;
+    }
+
+    private static String key(String projectId, JobConfiguration.Type jobType) {
+        return projectId + "/" + jobType;
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory() {
+        var threadFactory = new CustomizableThreadFactory("bq-job-submit-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    private final class AimdLimit {
+        private final String key;
+        private final ConcurrencyLimiter limiter;
+        private int successes;
+        private long lastDecreaseNanos;
+
+        private AimdLimit(String key) {
+            this.key = key;
+            this.limiter = new ConcurrencyLimiter(properties.getInitialLimit());
+            this.lastDecreaseNanos = System.nanoTime() - properties.getDecreaseCooldown().toNanos();
+        }
+
+        private void onSuccess() {
+            int newLimit;
+            synchronized (this) {
+                var current = limiter.getLimit();
+                if (++successes < current || current >= properties.getMaxLimit()) {
+                    return;
+                }
+                successes = 0;
+                newLimit = current + 1;
+            }
+            log.debug("Raising {} job limit to {}", key, newLimit);
+            limiter.setLimit(newLimit);
+        }
+
+        private void onRateLimited() {
+            int newLimit;
+            synchronized (this) {
+                var now = System.nanoTime();
+                if (now - lastDecreaseNanos < properties.getDecreaseCooldown().toNanos()) {
+                    return;
+                }
+                lastDecreaseNanos = now;
+                successes = 0;
+                newLimit = Math.max(properties.getMinLimit(),
+                        (int) (limiter.getLimit() * properties.getBackoffRatio()));
+            }
+            log.warn("BigQuery rate limit hit for {} jobs, lowering limit to {}", key, newLimit);
+            limiter.setLimit(newLimit);
+        }
+    }
+}
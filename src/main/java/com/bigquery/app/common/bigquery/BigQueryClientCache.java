@@ -0,0 +1,120 @@
+package com.bigquery.app.common.bigquery;
+
+import com.google.cloud.bigquery.BigQuery;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Keeps one BigQuery client per project, so repeated requests for the same project skip the credential
+ * lookup and transport setup of a new client. Holds at most {@code maxSize} clients, evicting the least
+ * recently used one, and drops clients not used for {@code expireAfterAccess}. Reports the standard
+ * {@code cache.gets}, {@code cache.evictions} and {@code cache.size} metrics under the cache name
+ * {@value #CACHE_NAME}.
+ */
+@Slf4j
+public class BigQueryClientCache {
+    static final String CACHE_NAME = "bigquery-clients";
+
+    private final int maxSize;
+    private final long expireAfterAccessNanos;
+    private final Function<String, BigQuery> clientFactory;
+    private final LongSupplier nanoClock;
+    private final Map<String, Entry> clients = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public BigQueryClientCache(int maxSize,
+                               Duration expireAfterAccess,
+                               Function<String, BigQuery> clientFactory,
+                               MeterRegistry meterRegistry) {
+        this(maxSize, expireAfterAccess, clientFactory, meterRegistry, System::nanoTime);
+    }
+
+    BigQueryClientCache(int maxSize,
+                        Duration expireAfterAccess,
+                        Function<String, BigQuery> clientFactory,
+                        MeterRegistry meterRegistry,
+                        LongSupplier nanoClock) {
+        this.maxSize = maxSize;
+        this.expireAfterAccessNanos = expireAfterAccess.toNanos();
+        this.clientFactory = clientFactory;
+        this.nanoClock = nanoClock;
+
+        this.hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions").tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        meterRegistry.gauge("cache.size", Tags.of("cache", CACHE_NAME),
+                this, BigQueryClientCache::size);
+    }
+
+    public synchronized BigQuery get(String projectId) {
+        var now = nanoClock.getAsLong();
+        evictExpired(now);
+
+        var entry = clients.get(projectId);
+        if (nonNull(entry)) {
+            hits.increment();
+            entry.lastAccess = now;
+            return entry.client;
+        }
+
+        misses.increment();
+        log.info("Creating BigQuery client for project {}", projectId);
+        var client = clientFactory.apply(projectId);
+        clients.put(projectId, new Entry(client, now));
+        evictOverflow();
+        return client;
+    }
+
+    public synchronized int size() {
+        return clients.size();
+    }
+
+    private void evictExpired(long now) {
+        // Access order puts the least recently used client first
+        var iterator = clients.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var eldest = iterator.next();
+            if (now - eldest.getValue().lastAccess < expireAfterAccessNanos) {
+                return;
+            }
+            log.debug("Evicting idle BigQuery client for project {}", eldest.getKey());
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private void evictOverflow() {
+        var iterator = clients.entrySet().iterator();
+        while (clients.size() > maxSize && iterator.hasNext()) {
+            log.debug("Evicting least recently used BigQuery client for project {}", iterator.next().getKey());
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry {
+        private final BigQuery client;
+        private long lastAccess;
+
+        private Entry(BigQuery client, long lastAccess) {
+            this.client = client;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
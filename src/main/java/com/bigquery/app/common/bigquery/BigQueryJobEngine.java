@@ -0,0 +1,263 @@
+package com.bigquery.app.common.bigquery;
+
+import com.bigquery.app.common.config.JobEngineProperties;
+import com.bigquery.app.common.exception.ServiceException;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.JobStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Submits BigQuery jobs without waiting on them. Every in-flight job is tracked by a single
+ * poller thread which checks the job status with exponential backoff and completes the
+ * future returned by {@link #submit(BigQuery, JobInfo)} once the job is done. Jobs submitted with a
+ * {@link JobGroup} are registered in it while they run, so that the group can cancel them.
+ * <p>
+ * A job submitted with a job id is created as the first free attempt of that id. When an attempt already
+ * exists, for example because a timed-out request is retried, the engine attaches to it while it runs
+ * instead of starting the same work twice.
+ */
+@Service
+@Slf4j
+public class BigQueryJobEngine {
+    private final JobEngineProperties properties;
+    private final Map<JobId, TrackedJob> inFlightJobs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService poller;
+    private final ExecutorService completionExecutor;
+
+    public BigQueryJobEngine(JobEngineProperties properties) {
+        this.properties = properties;
+        this.poller = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("bq-job-poller-"));
+        this.completionExecutor = Executors.newFixedThreadPool(
+                properties.getCompletionThreads(), daemonThreadFactory("bq-job-callback-"));
+    }
+
+    @PostConstruct
+    public void start() {
+        var tickMillis = properties.getPollTick().toMillis();
+        poller.scheduleWithFixedDelay(this::pollDueJobs, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        log.info("BigQuery job engine started with poll tick {}ms", tickMillis);
+    }
+
+    @PreDestroy
+    public void stop() {
+        poller.shutdownNow();
+        inFlightJobs.values().forEach(trackedJob -> trackedJob.future.completeExceptionally(
+                new ServiceException("BigQuery", "Job engine stopped before job " + trackedJob.jobId + " finished")));
+        inFlightJobs.clear();
+        completionExecutor.shutdown();
+    }
+
+    public CompletableFuture<Job> submit(BigQuery bigQuery, JobInfo jobInfo) {
+        return submit(bigQuery, jobInfo, null);
+    }
+
+    public CompletableFuture<Job> submit(BigQuery bigQuery, JobInfo jobInfo, JobGroup group) {
+        if (nonNull(group) && group.isCancelled()) {
+            return CompletableFuture.failedFuture(group.cancellation());
+        }
+
+        Job job;
+        try {
+            job = create(bigQuery, jobInfo);
+        } catch (BigQueryException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        var future = new CompletableFuture<Job>();
+
+        if (isDone(job)) {
+            complete(job, future, group);
+            return future;
+        }
+
+        var jobId = job.getJobId();
+        inFlightJobs.put(jobId, new TrackedJob(bigQuery, jobId, future, group,
+                properties.getInitialPollInterval().toNanos()));
+        if (nonNull(group)) {
+            group.add(bigQuery, jobId);
+        }
+        log.debug("Tracking BigQuery job {} ({} in flight)", jobId, inFlightJobs.size());
+        return future;
+    }
+
+    private Job create(BigQuery bigQuery, JobInfo jobInfo) {
+        var jobId = jobInfo.getJobId();
+        if (isNull(jobId)) {
+            return bigQuery.create(jobInfo);
+        }
+
+        for (int attempt = 0; attempt < properties.getMaxJobIdAttempts(); attempt++) {
+            var attemptJobId = JobId.newBuilder()
+                    .setProject(jobId.getProject())
+                    .setJob(jobId.getJob() + "_" + attempt)
+                    .setLocation(jobId.getLocation())
+                    .build();
+            try {
+                return bigQuery.create(JobInfo.newBuilder(jobInfo.getConfiguration()).setJobId(attemptJobId).build());
+            } catch (BigQueryException e) {
+                if (e.getCode() != 409) {
+                    throw e;
+                }
+                var existing = bigQuery.getJob(attemptJobId);
+                if (canAttach(existing)) {
+                    log.info("Attaching to existing BigQuery job {}", attemptJobId);
+                    return existing;
+                }
+                log.debug("BigQuery job {} already exists and cannot be reused, trying the next attempt", attemptJobId);
+            }
+        }
+        throw new BigQueryException(409, "All " + properties.getMaxJobIdAttempts() + " attempts of BigQuery job "
+                + jobId.getJob() + " already exist");
+    }
+
+    /**
+     * Only a job that is still running is attached to. A finished job is run again under the next attempt,
+     * as the request that finds it may be a deliberate re-run whose tables or files were changed since.
+     */
+    private boolean canAttach(Job job) {
+        return nonNull(job) && !isDone(job);
+    }
+
+    public int getInFlightJobCount() {
+        return inFlightJobs.size();
+    }
+
+    void pollDueJobs() {
+        var now = System.nanoTime();
+
+        for (TrackedJob trackedJob : inFlightJobs.values()) {
+            if (trackedJob.nextPollAtNanos - now > 0) {
+                continue;
+            }
+            poll(trackedJob);
+        }
+    }
+
+    private void poll(TrackedJob trackedJob) {
+        try {
+            var job = trackedJob.bigQuery.getJob(trackedJob.jobId);
+            trackedJob.consecutiveFailures = 0;
+
+            if (isNull(job)) {
+                untrack(trackedJob);
+                trackedJob.future.completeExceptionally(
+                        new BigQueryException(404, "Job not found: " + trackedJob.jobId));
+            } else if (isDone(job)) {
+                untrack(trackedJob);
+                complete(job, trackedJob.future, trackedJob.group);
+            } else {
+                trackedJob.backoff();
+            }
+        } catch (RuntimeException e) {
+            trackedJob.consecutiveFailures++;
+            log.warn("Failed to poll BigQuery job {} ({} consecutive failures): {}",
+                    trackedJob.jobId, trackedJob.consecutiveFailures, e.getMessage());
+
+            if (trackedJob.consecutiveFailures >= properties.getMaxConsecutivePollFailures()) {
+                untrack(trackedJob);
+                trackedJob.future.completeExceptionally(e);
+            } else {
+                trackedJob.backoff();
+            }
+        }
+    }
+
+    private void untrack(TrackedJob trackedJob) {
+        inFlightJobs.remove(trackedJob.jobId);
+        if (nonNull(trackedJob.group)) {
+            trackedJob.group.remove(trackedJob.jobId);
+        }
+    }
+
+    /**
+     * Completes the future with the job's outcome. A job of a cancelled group that ended with an error
+     * was most likely stopped by the cancellation, so it fails with the group's cancellation instead of
+     * an error that could be retried.
+     */
+    private void complete(Job job, CompletableFuture<Job> future, JobGroup group) {
+        var error = job.getStatus().getError();
+
+        completionExecutor.execute(() -> {
+            if (nonNull(error) && nonNull(group) && group.isCancelled()) {
+                log.debug("BigQuery job {} of a cancelled group ended: {}", job.getJobId(), error);
+                future.completeExceptionally(group.cancellation());
+            } else if (nonNull(error)) {
+                log.debug("BigQuery job {} failed: {}", job.getJobId(), error);
+                future.completeExceptionally(toException(error));
+            } else {
+                future.complete(job);
+            }
+        });
+    }
+
+    private static boolean isDone(Job job) {
+        return nonNull(job.getStatus()) && JobStatus.State.DONE.equals(job.getStatus().getState());
+    }
+
+    static BigQueryException toException(BigQueryError error) {
+        var code = switch (String.valueOf(error.getReason())) {
+            case "duplicate" -> 409;
+            case "notFound" -> 404;
+            case "accessDenied", "rateLimitExceeded", "quotaExceeded" -> 403;
+            case "invalid", "invalidQuery" -> 400;
+            default -> 500;
+        };
+        return new BigQueryException(code, error.getMessage(), error);
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory(String namePrefix) {
+        var threadFactory = new CustomizableThreadFactory(namePrefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    private final class TrackedJob {
+        private final BigQuery bigQuery;
+        private final JobId jobId;
+        private final CompletableFuture<Job> future;
+        private final JobGroup group;
+        private long pollIntervalNanos;
+        private long nextPollAtNanos;
+        private int consecutiveFailures;
+
+        private TrackedJob(BigQuery bigQuery,
+                           JobId jobId,
+                           CompletableFuture<Job> future,
+                           JobGroup group,
+                           long pollIntervalNanos) {
+            this.bigQuery = bigQuery;
+            this.jobId = jobId;
+            this.future = future;
+            this.group = group;
+            this.pollIntervalNanos = pollIntervalNanos;
+            this.nextPollAtNanos = System.nanoTime() + pollIntervalNanos;
+        }
+
+        private void backoff() {
+            var maxIntervalNanos = properties.getMaxPollInterval().toNanos();
+            pollIntervalNanos = Math.min(maxIntervalNanos,
+                    (long) (pollIntervalNanos * properties.getPollBackoffMultiplier()));
+            nextPollAtNanos = System.nanoTime() + pollIntervalNanos;
+        }
+    }
+}
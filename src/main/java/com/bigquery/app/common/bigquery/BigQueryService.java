@@ -3,18 +3,46 @@ package com.bigquery.app.common.bigquery;
 import com.bigquery.app.common.exception.ConflictException;
 import com.bigquery.app.common.exception.ServiceException;
 import com.bigquery.app.common.exception.ValidationException;
+import com.bigquery.app.common.gcs.TableLayout;
 import com.google.cloud.bigquery.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import static com.bigquery.app.common.util.FutureUtil.unwrap;
+import static com.bigquery.app.common.util.JobUtil.deterministicJobId;
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class BigQueryService {
+    static final String EXPORT_BYTES_METRIC = "backup.export.bytes";
+    static final String EXPORT_DURATION_METRIC = "backup.export.duration";
+    static final String SNAPSHOT_DURATION_METRIC = "backup.snapshot.duration";
+
+    private final BigQueryJobEngine jobEngine;
+    private final AdaptiveJobLimiter jobLimiter;
+    private final MeterRegistry meterRegistry;
 
-    public Dataset ensureDatasetExists(BigQuery bigQuery, DatasetId datasetId, String description, String location) {
+    public Dataset ensureDatasetExists(BigQuery bigQuery,
+                                       DatasetId datasetId,
+                                       String description,
+                                       String location,
+                                       MetadataCallCounter callCounter) {
+        callCounter.record("getDataset");
         var dataset = bigQuery.getDataset(datasetId);
 
         if (nonNull(dataset)) {
@@ -28,22 +56,30 @@ public class BigQueryService {
                 .setLocation(location)
                 .build();
 
+        callCounter.record("createDataset");
         var createdDataset = bigQuery.create(datasetInfo);
         log.info("Created dataset: {}", datasetId.getDataset());
         return createdDataset;
     }
 
-    public void createSnapshotOfTable(
+    /**
+     * Creates the snapshot with a {@code CREATE SNAPSHOT TABLE IF NOT EXISTS} statement. A snapshot the
+     * statement skipped because it already exists is only reused if it was taken at {@code snapshotTimeMillis}.
+     */
+    public CompletableFuture<Void> createSnapshotOfTable(
             BigQuery bigQuery,
             String projectId,
             String sourceDataset,
             String sourceTable,
             String destinationDataset,
             String snapshotTable,
-            String snapshotTime,
-            long expirationDays
+            long snapshotTimeMillis,
+            long expirationDays,
+            String location,
+            JobGroup jobGroup
     ) {
-        log.info("Creating snapshot for table {}.{} at time {}", sourceDataset, sourceTable, snapshotTime);
+        log.info("Creating snapshot for table {}.{} at time {}", sourceDataset, sourceTable,
+                Instant.ofEpochMilli(snapshotTimeMillis));
 
         var query = buildSnapshotQuery(
                 projectId,
@@ -52,35 +88,179 @@ public class BigQueryService {
                 projectId,
                 sourceDataset,
                 sourceTable,
-                snapshotTime,
+                snapshotTimeMillis,
                 expirationDays
         );
 
-        try {
-            executeQuery(bigQuery, query);
-            log.info("Created snapshot: {}.{}", destinationDataset, snapshotTable);
-        } catch (BigQueryException e) {
-            if (e.getCode() == 409) {
-                var snapshotId = String.format("%s.%s", destinationDataset, snapshotTable);
-                log.warn("Snapshot already exists: {}", snapshotId);
-                throw new ConflictException("Snapshot", snapshotId);
-            }
-            throw e;
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new ServiceException("Snapshot Creation", "Snapshot creation was interrupted", e);
-        }
+        var jobId = deterministicJobId("snapshot", location, projectId, sourceDataset, sourceTable,
+                destinationDataset, snapshotTable);
+        return submitQuery(bigQuery, query, jobId, jobGroup)
+                .thenAccept(job -> {
+                    recordJobDuration(SNAPSHOT_DURATION_METRIC, job, "method", "ddl");
+                    if (job.getStatistics() instanceof JobStatistics.QueryStatistics statistics
+                            && "SKIP".equals(statistics.getDdlOperationPerformed())) {
+                        checkSnapshotTime(bigQuery, TableId.of(projectId, destinationDataset, snapshotTable),
+                                snapshotTimeMillis);
+                        log.info("Reusing existing snapshot: {}.{}", destinationDataset, snapshotTable);
+                        return;
+                    }
+                    log.info("Created snapshot: {}.{}", destinationDataset, snapshotTable);
+                });
+    }
+
+    /**
+     * Creates the snapshot with a copy job of operation type SNAPSHOT, reading the source table as of
+     * {@code snapshotTimeMillis} through a snapshot decorator. No SQL is parsed and no query slots are used.
+     */
+    public CompletableFuture<Void> createSnapshotOfTableWithCopyJob(
+            BigQuery bigQuery,
+            String projectId,
+            String sourceDataset,
+            String sourceTable,
+            String destinationDataset,
+            String snapshotTable,
+            long snapshotTimeMillis,
+            long expirationDays,
+            String location,
+            JobGroup jobGroup
+    ) {
+        log.info("Creating snapshot for table {}.{} at time {} with a copy job",
+                sourceDataset, sourceTable, Instant.ofEpochMilli(snapshotTimeMillis));
+
+        var copyConfig = CopyJobConfiguration.newBuilder(
+                        TableId.of(projectId, destinationDataset, snapshotTable),
+                        TableId.of(projectId, sourceDataset, sourceTable + "@" + snapshotTimeMillis))
+                .setOperationType("SNAPSHOT")
+                .setDestinationExpirationTime(Instant.now().plus(Duration.ofDays(expirationDays)).toString())
+                .build();
+
+        var jobId = deterministicJobId("snapshot", location, projectId, sourceDataset, sourceTable,
+                destinationDataset, snapshotTable);
+        return submitJob(bigQuery, JobInfo.of(jobId, copyConfig), jobGroup)
+                .<Void>thenApply(job -> {
+                    recordJobDuration(SNAPSHOT_DURATION_METRIC, job, "method", "copy_job");
+                    log.info("Created snapshot: {}.{}", destinationDataset, snapshotTable);
+                    return null;
+                })
+                .exceptionally(throwable -> {
+                    // A copy job fails with 409 when its destination exists
+                    if (!(unwrap(throwable) instanceof BigQueryException e) || e.getCode() != 409) {
+                        throw asRuntimeException(unwrap(throwable));
+                    }
+                    checkSnapshotTime(bigQuery, TableId.of(projectId, destinationDataset, snapshotTable),
+                            snapshotTimeMillis);
+                    log.info("Reusing existing snapshot: {}.{}", destinationDataset, snapshotTable);
+                    return null;
+                });
+    }
+
+    /**
+     * Creates the snapshots of several tables of one dataset with a single script job. Every statement has
+     * its own exception handler, so a failing table does not stop the others; the returned map holds the
+     * error message per failed source table. Snapshots that already existed but were taken at another time
+     * are reported as failed too.
+     */
+    public CompletableFuture<Map<String, String>> createSnapshotsOfTables(
+            BigQuery bigQuery,
+            String projectId,
+            String sourceDataset,
+            Map<String, String> snapshotTables,
+            String destinationDataset,
+            long snapshotTimeMillis,
+            long expirationDays,
+            String location,
+            JobGroup jobGroup
+    ) {
+        log.info("Creating {} snapshots for dataset {} at time {} in one script",
+                snapshotTables.size(), sourceDataset, Instant.ofEpochMilli(snapshotTimeMillis));
+
+        var script = new StringBuilder("""
+                DECLARE failures ARRAY<STRUCT<table_name STRING, error_message STRING>> DEFAULT [];
+                """);
+        snapshotTables.forEach((sourceTable, snapshotTable) -> script.append("""
+                BEGIN
+                %s;
+                EXCEPTION WHEN ERROR THEN
+                  SET failures = ARRAY_CONCAT(failures, [STRUCT(%s AS table_name, @@error.message AS error_message)]);
+                END;
+                """.formatted(
+                buildSnapshotQuery(projectId, destinationDataset, snapshotTable, projectId, sourceDataset,
+                        sourceTable, snapshotTimeMillis, expirationDays).strip(),
+                stringLiteral(sourceTable))));
+        script.append("""
+                SET failures = ARRAY_CONCAT(failures, ARRAY(
+                  SELECT AS STRUCT base_table_name AS table_name,
+                    FORMAT('Snapshot %%s exists but was taken at %%t', table_name, snapshot_time) AS error_message
+                  FROM `%s.%s`.INFORMATION_SCHEMA.TABLE_SNAPSHOTS
+                  WHERE table_name IN (%s) AND snapshot_time != TIMESTAMP_MILLIS(%d)));
+                SELECT table_name, error_message FROM UNNEST(failures);
+                """.formatted(projectId, destinationDataset,
+                String.join(", ", snapshotTables.values().stream().map(BigQueryService::stringLiteral).toList()),
+                snapshotTimeMillis));
+
+        var keyParts = new ArrayList<>(List.of(projectId, sourceDataset, destinationDataset));
+        snapshotTables.forEach((sourceTable, snapshotTable) -> keyParts.add(sourceTable + "=" + snapshotTable));
+        var jobId = deterministicJobId("snapshot_batch", location, keyParts.toArray(String[]::new));
+        return submitQuery(bigQuery, script.toString(), jobId, jobGroup)
+                .thenApply(job -> {
+                    var failures = toSnapshotFailures(job);
+                    log.info("Created {} of {} snapshots for dataset {}",
+                            snapshotTables.size() - failures.size(), snapshotTables.size(), sourceDataset);
+                    return failures;
+                });
+    }
+
+    public CompletableFuture<Void> executeExport(
+            BigQuery bigQuery,
+            TableId sourceTable,
+            String destinationUri,
+            String format,
+            Boolean header,
+            String fieldDelimiter,
+            String compression,
+            Boolean overwrite,
+            String location,
+            JobGroup jobGroup
+    ) {
+        return executeExport(bigQuery, sourceTable, null, destinationUri, format, header,
+                fieldDelimiter, compression, overwrite, location, jobGroup);
+    }
+
+    public CompletableFuture<Void> executeExport(
+            BigQuery bigQuery,
+            TableId sourceTable,
+            String rowFilter,
+            String destinationUri,
+            String format,
+            Boolean header,
+            String fieldDelimiter,
+            String compression,
+            Boolean overwrite,
+            String location,
+            JobGroup jobGroup
+    ) {
+        return executeExport(bigQuery, sourceTable, null, rowFilter, destinationUri, format, header,
+                fieldDelimiter, compression, overwrite, location, jobGroup);
     }
 
-    public void executeExport(
+    /**
+     * Exports the rows of {@code sourceTable} matching {@code rowFilter}, as of {@code systemTime} when given.
+     * Reading a past state of the table relies on time travel, so {@code systemTime} must lie within the
+     * time travel window of the source dataset.
+     */
+    public CompletableFuture<Void> executeExport(
             BigQuery bigQuery,
             TableId sourceTable,
+            String systemTime,
+            String rowFilter,
             String destinationUri,
             String format,
             Boolean header,
             String fieldDelimiter,
             String compression,
-            Boolean overwrite
+            Boolean overwrite,
+            String location,
+            JobGroup jobGroup
     ) {
         log.info("Exporting table {} to GCS: {}", sourceTable, destinationUri);
 
@@ -91,31 +271,80 @@ public class BigQueryService {
 
         if ("CSV".equalsIgnoreCase(format)) {
             optionsBuilder.append(String.format(", header=%s", header))
-                    .append(String.format(", field_delimiter='%s'", fieldDelimiter))
-                    .append(String.format(", compression='%s'", compression));
+                    .append(String.format(", field_delimiter='%s'", fieldDelimiter));
+        }
+        if (isCompressed(compression)) {
+            optionsBuilder.append(String.format(", compression='%s'", compression.toUpperCase()));
         }
 
         var exportQuery = """
-                EXPORT DATA OPTIONS (%s) AS SELECT * FROM %s.%s.%s
+                EXPORT DATA OPTIONS (%s) AS SELECT * FROM %s.%s.%s%s%s
                 """.formatted(
                 optionsBuilder,
                 sourceTable.getProject(),
                 sourceTable.getDataset(),
-                sourceTable.getTable()
+                sourceTable.getTable(),
+                nonNull(systemTime) ? " FOR SYSTEM_TIME AS OF TIMESTAMP('%s')".formatted(systemTime) : "",
+                nonNull(rowFilter) ? " WHERE " + rowFilter : ""
         );
 
         log.info("Export query:\n{}", exportQuery);
 
-        try {
-            executeQuery(bigQuery, exportQuery);
-            log.info("Successfully exported table {} to GCS.", sourceTable);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new ServiceException("BigQuery", "Export operation was interrupted", e);
+        // The query holds the table, row filter and destination as well as every export option
+        var jobId = deterministicJobId("export", location, exportQuery);
+        return submitQuery(bigQuery, exportQuery, jobId, jobGroup)
+                .thenAccept(job -> {
+                    recordExport("export_data", format, compression, job);
+                    log.info("Successfully exported table {} to GCS.", sourceTable);
+                });
+    }
+
+    /**
+     * Exports the table with an extract job. Extract jobs run in the shared extract pool instead of
+     * consuming query slots, but always overwrite existing files and cannot filter rows.
+     */
+    public CompletableFuture<Void> executeExtract(
+            BigQuery bigQuery,
+            TableId sourceTable,
+            String destinationUri,
+            String format,
+            Boolean header,
+            String fieldDelimiter,
+            String compression,
+            String location,
+            JobGroup jobGroup
+    ) {
+        log.info("Extracting table {} to GCS: {}", sourceTable, destinationUri);
+
+        var configBuilder = ExtractJobConfiguration.newBuilder(sourceTable, destinationUri);
+
+        switch (format.toUpperCase()) {
+            case "CSV" -> configBuilder.setFormat("CSV")
+                    .setPrintHeader(header)
+                    .setFieldDelimiter(fieldDelimiter);
+            case "JSON" -> configBuilder.setFormat("NEWLINE_DELIMITED_JSON");
+            case "AVRO" -> configBuilder.setFormat("AVRO")
+                    .setUseAvroLogicalTypes(true);
+            case "PARQUET" -> configBuilder.setFormat("PARQUET");
+            default -> throw new ValidationException("Unsupported format: " + format);
+        }
+        if (isCompressed(compression)) {
+            configBuilder.setCompression(compression.toUpperCase());
         }
+
+        var extractConfig = configBuilder.build();
+        log.info("Extract job configuration: {}", extractConfig);
+
+        var jobId = deterministicJobId("extract", location, sourceTable.getProject(), sourceTable.getDataset(),
+                sourceTable.getTable(), destinationUri, format, compression, String.valueOf(header), fieldDelimiter);
+        return submitJob(bigQuery, JobInfo.of(jobId, extractConfig), jobGroup)
+                .thenAccept(job -> {
+                    recordExport("extract_job", format, compression, job);
+                    log.info("Successfully extracted table {} to GCS.", sourceTable);
+                });
     }
 
-    public void executeImport(
+    public CompletableFuture<Void> executeImport(
             BigQuery bigQuery,
             TableId destinationTable,
             String sourceUri,
@@ -124,12 +353,63 @@ public class BigQueryService {
             String fieldDelimiter,
             boolean ignoreUnknownValues,
             int maxBadRecords,
-            JobInfo.WriteDisposition writeDisposition
+            JobInfo.WriteDisposition writeDisposition,
+            String location,
+            JobGroup jobGroup
     ) {
-        log.info("Importing from GCS: {} to table: {}", sourceUri, destinationTable);
+        return executeImport(bigQuery, destinationTable, List.of(sourceUri), format, header, fieldDelimiter,
+                ignoreUnknownValues, maxBadRecords, writeDisposition, location, jobGroup);
+    }
 
-        var configBuilder = LoadJobConfiguration.newBuilder(destinationTable, sourceUri)
-                .setAutodetect(true);
+    public CompletableFuture<Void> executeImport(
+            BigQuery bigQuery,
+            TableId destinationTable,
+            List<String> sourceUris,
+            String format,
+            boolean header,
+            String fieldDelimiter,
+            boolean ignoreUnknownValues,
+            int maxBadRecords,
+            JobInfo.WriteDisposition writeDisposition,
+            String location,
+            JobGroup jobGroup
+    ) {
+        return executeImport(bigQuery, destinationTable, sourceUris, format, header, fieldDelimiter,
+                ignoreUnknownValues, maxBadRecords, writeDisposition, null, location, jobGroup);
+    }
+
+    /**
+     * Loads the files into the table. Without a layout the schema is inferred from the files, otherwise
+     * the load carries the backed-up partitioning and clustering, and CSV and JSON files are read with
+     * the backed-up schema. Avro and Parquet files describe their own schema.
+     */
+    public CompletableFuture<Void> executeImport(
+            BigQuery bigQuery,
+            TableId destinationTable,
+            List<String> sourceUris,
+            String format,
+            boolean header,
+            String fieldDelimiter,
+            boolean ignoreUnknownValues,
+            int maxBadRecords,
+            JobInfo.WriteDisposition writeDisposition,
+            TableLayout layout,
+            String location,
+            JobGroup jobGroup
+    ) {
+        log.info("Importing from GCS: {} to table: {}", sourceUris, destinationTable);
+
+        var configBuilder = LoadJobConfiguration.newBuilder(destinationTable, sourceUris)
+                .setAutodetect(isNull(layout));
+
+        if (nonNull(layout)) {
+            configBuilder.setTimePartitioning(layout.toTimePartitioning())
+                    .setRangePartitioning(layout.toRangePartitioning())
+                    .setClustering(layout.toClustering());
+            if (Set.of("CSV", "JSON").contains(format.toUpperCase())) {
+                configBuilder.setSchema(layout.toSchema());
+            }
+        }
 
         switch (format.toUpperCase()) {
             case "CSV" -> configBuilder.setFormatOptions(CsvOptions.newBuilder()
@@ -152,29 +432,257 @@ public class BigQueryService {
         var loadConfig = configBuilder.build();
         log.info("Load job configuration: {}", loadConfig);
 
+        var jobId = deterministicJobId("load", location, destinationTable.getProject(),
+                destinationTable.getDataset(), destinationTable.getTable(), String.join(",", sourceUris), format,
+                String.valueOf(writeDisposition), String.valueOf(header), fieldDelimiter,
+                String.valueOf(ignoreUnknownValues), String.valueOf(maxBadRecords), String.valueOf(layout));
+        return submitJob(bigQuery, JobInfo.of(jobId, loadConfig), jobGroup)
+                .<Void>thenApply(job -> {
+                    log.info("Table {} successfully imported from {}", destinationTable, sourceUris);
+                    return null;
+                })
+                .exceptionally(throwable -> {
+                    var cause = unwrap(throwable);
+                    if (cause instanceof CancellationException cancellation) {
+                        throw cancellation;
+                    }
+                    var errorMsg = cause instanceof BigQueryException e && nonNull(e.getError())
+                            ? e.getError().toString()
+                            : cause.getMessage();
+                    log.error("Error loading table {}: {}", destinationTable, errorMsg);
+                    throw new ServiceException("BigQuery", "Failed to import to table: " + destinationTable, cause);
+                });
+    }
+
+    /**
+     * Creates an empty table and returns whether it was created, false when it already exists.
+     */
+    public boolean createTable(BigQuery bigQuery, TableInfo tableInfo, MetadataCallCounter callCounter) {
+        callCounter.record("createTable");
         try {
-            var loadJob = bigQuery.create(JobInfo.of(loadConfig));
-            loadJob = loadJob.waitFor();
-
-            if (loadJob.isDone() && isNull(loadJob.getStatus().getError())) {
-                log.info("Table {} successfully imported from {}", destinationTable, sourceUri);
-            } else {
-                var status = loadJob.getStatus();
-                var errorMsg = nonNull(status.getError()) ? status.getError().toString() : "Unknown error";
-                log.error("Error loading table {}: {}", destinationTable, errorMsg);
-                throw new ServiceException("BigQuery", "Failed to import to table: " + destinationTable,
-                        new Exception(errorMsg));
+            bigQuery.create(tableInfo);
+            log.info("Created table: {}", tableInfo.getTableId());
+            return true;
+        } catch (BigQueryException e) {
+            if (e.getCode() == 409) {
+                log.info("Table already exists: {}", tableInfo.getTableId());
+                return false;
             }
+            throw new ServiceException("BigQuery", "Failed to create table: " + tableInfo.getTableId(), e);
+        }
+    }
+
+    /**
+     * The schema of a table as of the given time, read with a dry run of a time-travel query, which
+     * neither reads nor bills any data.
+     */
+    public Schema getSchemaAsOf(BigQuery bigQuery,
+                                TableId tableId,
+                                String systemTime,
+                                MetadataCallCounter callCounter) {
+        var query = "SELECT * FROM `%s.%s.%s` FOR SYSTEM_TIME AS OF TIMESTAMP('%s')".formatted(
+                tableId.getProject(), tableId.getDataset(), tableId.getTable(), systemTime);
+        var queryConfig = QueryJobConfiguration.newBuilder(query)
+                .setDryRun(true)
+                .build();
+
+        callCounter.record("dryRunQuery");
+        try {
+            JobStatistics.QueryStatistics statistics = bigQuery.create(JobInfo.of(queryConfig)).getStatistics();
+            return statistics.getSchema();
+        } catch (BigQueryException e) {
+            throw new ServiceException("BigQuery", "Failed to read schema of table: " + tableId, e);
+        }
+    }
+
+    public CompletableFuture<Map<String, TableMetadata>> getTableMetadata(BigQuery bigQuery,
+                                                                          String projectId,
+                                                                          String datasetName) {
+        var query = """
+                SELECT table_id, last_modified_time, size_bytes, row_count
+                FROM `%s.%s.__TABLES__`
+                """.formatted(projectId, datasetName);
+
+        return submitQuery(bigQuery, query).thenApply(BigQueryService::toTableMetadata);
+    }
+
+    public CompletableFuture<Map<String, List<PartitionMetadata>>> getPartitionMetadata(BigQuery bigQuery,
+                                                                                        String projectId,
+                                                                                        String datasetName) {
+        var query = """
+                SELECT table_name, partition_id, UNIX_MILLIS(last_modified_time) AS last_modified_time
+                FROM `%s.%s.INFORMATION_SCHEMA.PARTITIONS`
+                WHERE partition_id IS NOT NULL
+                """.formatted(projectId, datasetName);
+
+        return submitQuery(bigQuery, query).thenApply(BigQueryService::toPartitionMetadata);
+    }
+
+    public CompletableFuture<Map<String, List<ColumnSchema>>> getColumnSchemas(BigQuery bigQuery,
+                                                                              String projectId,
+                                                                              String datasetName) {
+        var query = """
+                SELECT table_name, column_name, data_type, is_nullable
+                FROM `%s.%s.INFORMATION_SCHEMA.COLUMNS`
+                ORDER BY table_name, ordinal_position
+                """.formatted(projectId, datasetName);
+
+        return submitQuery(bigQuery, query).thenApply(BigQueryService::toColumnSchemas);
+    }
+
+    public CompletableFuture<Job> submitQuery(BigQuery bigQuery, String query) {
+        return submitQuery(bigQuery, query, null);
+    }
+
+    public CompletableFuture<Job> submitQuery(BigQuery bigQuery, String query, JobGroup jobGroup) {
+        var queryConfig = QueryJobConfiguration.newBuilder(query).build();
+        return submitJob(bigQuery, JobInfo.of(queryConfig), jobGroup);
+    }
+
+    private CompletableFuture<Job> submitQuery(BigQuery bigQuery, String query, JobId jobId, JobGroup jobGroup) {
+        var queryConfig = QueryJobConfiguration.newBuilder(query).build();
+        return submitJob(bigQuery, JobInfo.of(jobId, queryConfig), jobGroup);
+    }
+
+    private CompletableFuture<Job> submitJob(BigQuery bigQuery, JobInfo jobInfo, JobGroup jobGroup) {
+        JobConfiguration configuration = jobInfo.getConfiguration();
+        return jobLimiter.submit(bigQuery, configuration.getType(),
+                () -> jobEngine.submit(bigQuery, jobInfo, jobGroup));
+    }
+
+    /**
+     * Records the bytes read and the execution time of an export job per strategy, format and codec,
+     * so that their throughput can be compared.
+     */
+    private void recordExport(String strategy, String format, String compression, Job job) {
+        var codec = isCompressed(compression) ? compression.toUpperCase() : "NONE";
+        var tags = new String[]{"strategy", strategy, "format", format.toUpperCase(), "compression", codec};
+        recordJobDuration(EXPORT_DURATION_METRIC, job, tags);
+
+        JobStatistics statistics = job.getStatistics();
+        if (isNull(statistics)) {
+            return;
+        }
+
+        Long bytes = null;
+        if (statistics instanceof JobStatistics.ExtractStatistics extractStatistics) {
+            bytes = extractStatistics.getInputBytes();
+        } else if (statistics instanceof JobStatistics.QueryStatistics queryStatistics) {
+            bytes = queryStatistics.getTotalBytesProcessed();
+        }
+        if (nonNull(bytes)) {
+            meterRegistry.counter(EXPORT_BYTES_METRIC, tags).increment(bytes);
+        }
+    }
+
+    private void recordJobDuration(String metric, Job job, String... tags) {
+        JobStatistics statistics = job.getStatistics();
+        if (nonNull(statistics) && nonNull(statistics.getStartTime()) && nonNull(statistics.getEndTime())) {
+            meterRegistry.timer(metric, tags)
+                    .record(Duration.ofMillis(statistics.getEndTime() - statistics.getStartTime()));
+        }
+    }
+
+    private static boolean isCompressed(String compression) {
+        return nonNull(compression) && !compression.isBlank() && !"NONE".equalsIgnoreCase(compression);
+    }
+
+    /**
+     * The snapshot names carry the backup time to the second, so an existing snapshot was usually taken by an
+     * earlier attempt at the same backup and can be reused. One taken at another time would back up other
+     * rows and is reported as a conflict instead.
+     */
+    private static void checkSnapshotTime(BigQuery bigQuery, TableId snapshotId, long snapshotTimeMillis) {
+        var snapshot = bigQuery.getTable(snapshotId);
+        var snapshotTime = nonNull(snapshot)
+                && snapshot.getDefinition() instanceof SnapshotTableDefinition definition
+                && nonNull(definition.getSnapshotTime())
+                ? Instant.parse(definition.getSnapshotTime())
+                : null;
+
+        if (isNull(snapshotTime) || snapshotTime.toEpochMilli() != snapshotTimeMillis) {
+            var snapshotName = String.format("%s.%s", snapshotId.getDataset(), snapshotId.getTable());
+            log.warn("Snapshot {} exists but was taken at {} instead of {}", snapshotName, snapshotTime,
+                    Instant.ofEpochMilli(snapshotTimeMillis));
+            throw new ConflictException("Snapshot", snapshotName);
+        }
+    }
+
+    private static Map<String, TableMetadata> toTableMetadata(Job job) {
+        try {
+            var metadata = new HashMap<String, TableMetadata>();
+            for (FieldValueList row : job.getQueryResults().iterateAll()) {
+                var tableName = row.get("table_id").getStringValue();
+                metadata.put(tableName, new TableMetadata(
+                        tableName,
+                        row.get("last_modified_time").getLongValue(),
+                        row.get("size_bytes").getLongValue(),
+                        row.get("row_count").getLongValue()
+                ));
+            }
+            return metadata;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            log.error("Import interrupted for table {}", destinationTable, e);
-            throw new ServiceException("BigQuery", "Import interrupted for table: " + destinationTable, e);
+            throw new ServiceException("BigQuery", "Interrupted while reading table metadata", e);
         }
     }
 
-    public TableResult executeQuery(BigQuery bigQuery, String query) throws InterruptedException {
-        var queryConfig = QueryJobConfiguration.newBuilder(query).build();
-        return bigQuery.query(queryConfig);
+    private static Map<String, String> toSnapshotFailures(Job job) {
+        try {
+            var failures = new HashMap<String, String>();
+            for (FieldValueList row : job.getQueryResults().iterateAll()) {
+                failures.put(row.get("table_name").getStringValue(), row.get("error_message").getStringValue());
+            }
+            return failures;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("BigQuery", "Interrupted while reading snapshot script results", e);
+        }
+    }
+
+    private static Map<String, List<PartitionMetadata>> toPartitionMetadata(Job job) {
+        try {
+            var metadata = new HashMap<String, List<PartitionMetadata>>();
+            for (FieldValueList row : job.getQueryResults().iterateAll()) {
+                metadata.computeIfAbsent(row.get("table_name").getStringValue(), tableName -> new ArrayList<>())
+                        .add(new PartitionMetadata(
+                                row.get("partition_id").getStringValue(),
+                                row.get("last_modified_time").getLongValue()
+                        ));
+            }
+            return metadata;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("BigQuery", "Interrupted while reading partition metadata", e);
+        }
+    }
+
+    private static Map<String, List<ColumnSchema>> toColumnSchemas(Job job) {
+        try {
+            var schemas = new HashMap<String, List<ColumnSchema>>();
+            for (FieldValueList row : job.getQueryResults().iterateAll()) {
+                schemas.computeIfAbsent(row.get("table_name").getStringValue(), tableName -> new ArrayList<>())
+                        .add(new ColumnSchema(
+                                row.get("column_name").getStringValue(),
+                                row.get("data_type").getStringValue(),
+                                "YES".equals(row.get("is_nullable").getStringValue())
+                        ));
+            }
+            return schemas;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("BigQuery", "Interrupted while reading column schemas", e);
+        }
+    }
+
+    private static RuntimeException asRuntimeException(Throwable throwable) {
+        return throwable instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new ServiceException("BigQuery", throwable.getMessage(), throwable);
+    }
+
+    private static String stringLiteral(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
     }
 
     private String buildSnapshotQuery(
@@ -184,17 +692,17 @@ public class BigQueryService {
             String sourceProjectId,
             String sourceDataset,
             String sourceTableName,
-            String backupTimeString,
+            long snapshotTimeMillis,
             long expirationDays
     ) {
         return """
-                CREATE SNAPSHOT TABLE %s.%s.%s
+                CREATE SNAPSHOT TABLE IF NOT EXISTS %s.%s.%s
                 CLONE %s.%s.%s
-                FOR SYSTEM_TIME AS OF TIMESTAMP('%s')
+                FOR SYSTEM_TIME AS OF TIMESTAMP_MILLIS(%d)
                 OPTIONS(expiration_timestamp = TIMESTAMP_ADD(CURRENT_TIMESTAMP(), INTERVAL %d DAY))
                 """.formatted(
                 projectId, backupDatasetName, snapshotTableName,
                 sourceProjectId, sourceDataset, sourceTableName,
-                backupTimeString, expirationDays);
+                snapshotTimeMillis, expirationDays);
     }
 }
@@ -0,0 +1,8 @@
+package com.bigquery.app.common.bigquery;
+
+public record ColumnSchema(
+        String name,
+        String dataType,
+        boolean nullable
+) {
+}
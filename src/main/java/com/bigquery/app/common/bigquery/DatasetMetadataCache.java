@@ -0,0 +1,111 @@
+package com.bigquery.app.common.bigquery;
+
+import com.bigquery.app.common.config.MetadataCacheProperties;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Dataset;
+import com.google.cloud.bigquery.DatasetId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import static com.bigquery.app.common.util.DatasetUtil.getDatasetLocation;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Remembers for {@code ttl} which datasets exist and where they are located, keyed by {@link DatasetId}.
+ * Filled by the lookups themselves and by {@code listDatasets} results, so repeated runs over the same
+ * datasets skip the {@code getDataset} round trips. Only existing datasets are cached; a dataset deleted
+ * within the TTL surfaces as a failure of the job that uses it.
+ */
+@Component
+@Slf4j
+public class DatasetMetadataCache {
+    static final String CACHE_NAME = "dataset-metadata";
+
+    private final BigQueryService bigQueryService;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final Map<DatasetId, Entry> datasets = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public DatasetMetadataCache(BigQueryService bigQueryService,
+                                MetadataCacheProperties properties,
+                                MeterRegistry meterRegistry) {
+        this(bigQueryService, properties, meterRegistry, System::nanoTime);
+    }
+
+    DatasetMetadataCache(BigQueryService bigQueryService,
+                         MetadataCacheProperties properties,
+                         MeterRegistry meterRegistry,
+                         LongSupplier nanoClock) {
+        this.bigQueryService = bigQueryService;
+        this.ttlNanos = properties.getTtl().toNanos();
+        this.nanoClock = nanoClock;
+        this.hits = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", CACHE_NAME).tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    public void putAll(Iterable<Dataset> listedDatasets) {
+        listedDatasets.forEach(dataset -> {
+            if (nonNull(dataset.getLocation())) {
+                put(dataset.getDatasetId(), dataset.getLocation());
+            }
+        });
+    }
+
+    public String getLocation(BigQuery bigQuery, DatasetId datasetId, MetadataCallCounter callCounter) {
+        var cached = lookup(datasetId);
+        if (nonNull(cached)) {
+            return cached.location();
+        }
+
+        callCounter.record("getDataset");
+        var location = getDatasetLocation(bigQuery, datasetId);
+        put(datasetId, location);
+        return location;
+    }
+
+    public void ensureExists(BigQuery bigQuery,
+                             DatasetId datasetId,
+                             String description,
+                             String location,
+                             MetadataCallCounter callCounter) {
+        if (nonNull(lookup(datasetId))) {
+            log.debug("Dataset {} known to exist", datasetId.getDataset());
+            return;
+        }
+
+        var dataset = bigQueryService.ensureDatasetExists(bigQuery, datasetId, description, location, callCounter);
+        put(datasetId, nonNull(dataset.getLocation()) ? dataset.getLocation() : location);
+    }
+
+    private Entry lookup(DatasetId datasetId) {
+        var entry = datasets.get(datasetId);
+        if (isNull(entry) || nanoClock.getAsLong() - entry.cachedAt() >= ttlNanos) {
+            if (nonNull(entry)) {
+                datasets.remove(datasetId, entry);
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    private void put(DatasetId datasetId, String location) {
+        datasets.put(datasetId, new Entry(location, nanoClock.getAsLong()));
+    }
+
+    private record Entry(String location, long cachedAt) {
+    }
+}
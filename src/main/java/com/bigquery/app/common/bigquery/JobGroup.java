@@ -0,0 +1,77 @@
+package com.bigquery.app.common.bigquery;
+
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.JobId;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * The BigQuery jobs one run has in flight. Cancelling the group cancels those jobs in BigQuery, and
+ * jobs submitted afterwards fail with a {@link CancellationException} before they are created.
+ */
+@Slf4j
+public class JobGroup {
+    private final Map<JobId, BigQuery> runningJobs = new ConcurrentHashMap<>();
+    private final AtomicReference<String> cancellationReason = new AtomicReference<>();
+
+    /**
+     * Cancels the group and every job of it still running. Returns false when the group was already
+     * cancelled.
+     */
+    public boolean cancel(String reason) {
+        if (!cancellationReason.compareAndSet(null, reason)) {
+            return false;
+        }
+
+        log.info("Cancelling {} running BigQuery jobs: {}", runningJobs.size(), reason);
+        runningJobs.forEach((jobId, bigQuery) -> cancelJob(bigQuery, jobId));
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return nonNull(cancellationReason.get());
+    }
+
+    public CancellationException cancellation() {
+        return new CancellationException("Cancelled: " + cancellationReason.get());
+    }
+
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw cancellation();
+        }
+    }
+
+    public int getRunningJobCount() {
+        return runningJobs.size();
+    }
+
+    void add(BigQuery bigQuery, JobId jobId) {
+        runningJobs.put(jobId, bigQuery);
+
+        // The group may have been cancelled while the job was being created
+        if (isCancelled()) {
+            cancelJob(bigQuery, jobId);
+        }
+    }
+
+    void remove(JobId jobId) {
+        runningJobs.remove(jobId);
+    }
+
+    private static void cancelJob(BigQuery bigQuery, JobId jobId) {
+        try {
+            bigQuery.cancel(jobId);
+            log.info("Requested cancellation of BigQuery job {}", jobId);
+        } catch (BigQueryException e) {
+            log.warn("Could not cancel BigQuery job {}: {}", jobId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.bigquery.app.common.bigquery;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the BigQuery metadata calls (such as {@code getDataset} or {@code listDatasets}) made on behalf
+ * of one run, so that the effect of the dataset metadata cache is visible per run.
+ */
+public class MetadataCallCounter {
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+
+    public void record(String call) {
+        calls.computeIfAbsent(call, ignored -> new LongAdder()).increment();
+    }
+
+    public Map<String, Long> getCounts() {
+        var counts = new TreeMap<String, Long>();
+        calls.forEach((call, count) -> counts.put(call, count.sum()));
+        return counts;
+    }
+}
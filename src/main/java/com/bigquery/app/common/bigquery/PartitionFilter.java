@@ -0,0 +1,179 @@
+package com.bigquery.app.common.bigquery;
+
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.TimePartitioning;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Builds the condition selecting a single partition of a time-partitioned table from the partition
+ * id reported by {@code INFORMATION_SCHEMA.PARTITIONS}. Partitions that cannot be selected this way,
+ * such as {@code __UNPARTITIONED__}, yield an empty result.
+ */
+@Slf4j
+@NoArgsConstructor
+public final class PartitionFilter {
+    public static final String NULL_PARTITION_ID = "__NULL__";
+
+    private static final String INGESTION_TIME_COLUMN = "_PARTITIONTIME";
+    private static final DateTimeFormatter HOUR_ID = DateTimeFormatter.ofPattern("yyyyMMddHH");
+    private static final DateTimeFormatter MONTH_ID = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter DATE_LITERAL = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter DATETIME_LITERAL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public static Optional<String> forPartition(TimePartitioning partitioning,
+                                                LegacySQLTypeName columnType,
+                                                String partitionId) {
+        var column = isNull(partitioning.getField())
+                ? INGESTION_TIME_COLUMN
+                : "`" + partitioning.getField() + "`";
+
+        if (NULL_PARTITION_ID.equals(partitionId)) {
+            return isNull(partitioning.getField()) ? Optional.empty() : Optional.of(column + " IS NULL");
+        }
+
+        return forPartitions(partitioning, columnType, partitionId, partitionId);
+    }
+
+    /**
+     * Builds the condition selecting the time partitions from {@code firstPartitionId} through
+     * {@code lastPartitionId}, both included.
+     */
+    public static Optional<String> forPartitions(TimePartitioning partitioning,
+                                                 LegacySQLTypeName columnType,
+                                                 String firstPartitionId,
+                                                 String lastPartitionId) {
+        var column = isNull(partitioning.getField())
+                ? INGESTION_TIME_COLUMN
+                : "`" + partitioning.getField() + "`";
+
+        try {
+            var start = parsePartitionStart(partitioning.getType(), firstPartitionId);
+            var end = partitionEnd(partitioning.getType(), parsePartitionStart(partitioning.getType(), lastPartitionId));
+            var type = isNull(partitioning.getField()) ? LegacySQLTypeName.TIMESTAMP : columnType;
+
+            return literal(type, start).flatMap(from -> literal(type, end)
+                    .map(to -> "%s >= %s AND %s < %s".formatted(column, from, column, to)));
+        } catch (DateTimeParseException e) {
+            log.debug("Partitions {} to {} cannot be selected by time: {}", firstPartitionId, lastPartitionId,
+                    e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether the time partition {@code nextPartitionId} starts where {@code partitionId} ends, so that
+     * both can be selected as one range without selecting anything in between.
+     */
+    public static boolean isFollowedBy(TimePartitioning partitioning, String partitionId, String nextPartitionId) {
+        try {
+            var end = partitionEnd(partitioning.getType(), parsePartitionStart(partitioning.getType(), partitionId));
+            return end.equals(parsePartitionStart(partitioning.getType(), nextPartitionId));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds the condition selecting the rows from the start of {@code fromPartitionId} up to, but not
+     * including, the start of {@code toPartitionId}. A missing bound leaves that side open; the range
+     * without a lower bound also selects rows whose partitioning value is NULL, so that consecutive
+     * ranges from the first to the last together select every row of the table.
+     */
+    public static Optional<String> forRange(TimePartitioning partitioning,
+                                            LegacySQLTypeName columnType,
+                                            String fromPartitionId,
+                                            String toPartitionId) {
+        var column = isNull(partitioning.getField())
+                ? INGESTION_TIME_COLUMN
+                : "`" + partitioning.getField() + "`";
+        var type = isNull(partitioning.getField()) ? LegacySQLTypeName.TIMESTAMP : columnType;
+
+        try {
+            var from = isNull(fromPartitionId)
+                    ? Optional.<String>empty()
+                    : literal(type, parsePartitionStart(partitioning.getType(), fromPartitionId));
+            var to = isNull(toPartitionId)
+                    ? Optional.<String>empty()
+                    : literal(type, parsePartitionStart(partitioning.getType(), toPartitionId));
+            if ((nonNull(fromPartitionId) && from.isEmpty()) || (nonNull(toPartitionId) && to.isEmpty())) {
+                return Optional.empty();
+            }
+
+            if (from.isEmpty()) {
+                return Optional.of(to.map(bound -> "(%s < %s OR %s IS NULL)".formatted(column, bound, column))
+                        .orElse("TRUE"));
+            }
+            if (to.isEmpty()) {
+                return Optional.of("%s >= %s".formatted(column, from.get()));
+            }
+            return Optional.of("%s >= %s AND %s < %s".formatted(column, from.get(), column, to.get()));
+        } catch (DateTimeParseException e) {
+            log.debug("Range {} to {} cannot be selected by time: {}", fromPartitionId, toPartitionId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether the partition id names a time range, as opposed to {@code __NULL__} or {@code __UNPARTITIONED__}.
+     */
+    public static boolean isTimePartition(TimePartitioning partitioning, String partitionId) {
+        try {
+            parsePartitionStart(partitioning.getType(), partitionId);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    public static LegacySQLTypeName resolveColumnType(StandardTableDefinition definition) {
+        var partitioning = definition.getTimePartitioning();
+        if (isNull(partitioning.getField()) || isNull(definition.getSchema())) {
+            return LegacySQLTypeName.TIMESTAMP;
+        }
+        return definition.getSchema().getFields().get(partitioning.getField()).getType();
+    }
+
+    private static LocalDateTime parsePartitionStart(TimePartitioning.Type type, String partitionId) {
+        return switch (type) {
+            case HOUR -> LocalDateTime.parse(partitionId, HOUR_ID);
+            case DAY -> LocalDate.parse(partitionId, DateTimeFormatter.BASIC_ISO_DATE).atStartOfDay();
+            case MONTH -> YearMonth.parse(partitionId, MONTH_ID).atDay(1).atStartOfDay();
+            case YEAR -> Year.parse(partitionId).atDay(1).atStartOfDay();
+        };
+    }
+
+    private static LocalDateTime partitionEnd(TimePartitioning.Type type, LocalDateTime start) {
+        return switch (type) {
+            case HOUR -> start.plusHours(1);
+            case DAY -> start.plusDays(1);
+            case MONTH -> start.plusMonths(1);
+            case YEAR -> start.plusYears(1);
+        };
+    }
+
+    private static Optional<String> literal(LegacySQLTypeName type, LocalDateTime value) {
+        if (LegacySQLTypeName.DATE.equals(type)) {
+            return Optional.of("DATE '%s'".formatted(value.format(DATE_LITERAL)));
+        }
+        if (LegacySQLTypeName.DATETIME.equals(type)) {
+            return Optional.of("DATETIME '%s'".formatted(value.format(DATETIME_LITERAL)));
+        }
+        if (LegacySQLTypeName.TIMESTAMP.equals(type)) {
+            return Optional.of("TIMESTAMP '%s UTC'".formatted(value.format(DATETIME_LITERAL)));
+        }
+        return Optional.empty();
+    }
+}
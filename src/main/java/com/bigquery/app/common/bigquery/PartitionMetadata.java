@@ -0,0 +1,7 @@
+package com.bigquery.app.common.bigquery;
+
+public record PartitionMetadata(
+        String partitionId,
+        long lastModifiedTime
+) {
+}
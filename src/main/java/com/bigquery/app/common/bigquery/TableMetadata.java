@@ -0,0 +1,9 @@
+package com.bigquery.app.common.bigquery;
+
+public record TableMetadata(
+        String tableName,
+        long lastModifiedTime,
+        long numBytes,
+        long numRows
+) {
+}
@@ -0,0 +1,115 @@
+package com.bigquery.app.common.concurrent;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static com.bigquery.app.common.util.FutureUtil.defer;
+import static com.bigquery.app.common.util.FutureUtil.unwrap;
+import static java.util.Objects.nonNull;
+
+/**
+ * Caps the number of asynchronous tasks in flight. A task holds its permit until the future it
+ * returns completes, not just while its thread is busy, so waiting on BigQuery costs no thread.
+ */
+@Slf4j
+public class ConcurrencyLimiter {
+    private final Queue<Runnable> waiting = new ArrayDeque<>();
+    private int limit;
+    private int inFlight;
+
+    public ConcurrencyLimiter(int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task, Executor executor) {
+        return submit(task, executor, executor);
+    }
+
+    /**
+     * Starts the task on {@code executor} when a permit is free, and otherwise on {@code queuedExecutor}
+     * once one is released. Permits are released on whichever thread completed the previous task.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task,
+                                           Executor executor,
+                                           Executor queuedExecutor) {
+        var result = new CompletableFuture<T>();
+
+        boolean startNow;
+        synchronized (this) {
+            startNow = inFlight < limit;
+            if (startNow) {
+                inFlight++;
+            } else {
+                waiting.add(() -> start(task, queuedExecutor, result));
+            }
+        }
+
+        if (startNow) {
+            start(task, executor, result);
+        }
+        return result;
+    }
+
+    public void setLimit(int limit) {
+        var startable = new ArrayList<Runnable>();
+        synchronized (this) {
+            this.limit = Math.max(1, limit);
+            while (inFlight < this.limit && !waiting.isEmpty()) {
+                inFlight++;
+                startable.add(waiting.poll());
+            }
+        }
+        startable.forEach(Runnable::run);
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> task, Executor executor, CompletableFuture<T> result) {
+        try {
+            executor.execute(() -> defer(task).whenComplete((value, error) -> {
+                release();
+                if (nonNull(error)) {
+                    result.completeExceptionally(unwrap(error));
+                } else {
+                    result.complete(value);
+                }
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Executor rejected task: {}", e.getMessage());
+            release();
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void release() {
+        Runnable next = null;
+        synchronized (this) {
+            if (inFlight <= limit) {
+                next = waiting.poll();
+            }
+            if (next == null) {
+                inFlight--;
+            }
+        }
+
+        if (nonNull(next)) {
+            next.run();
+        }
+    }
+}
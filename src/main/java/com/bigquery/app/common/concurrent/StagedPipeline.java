@@ -0,0 +1,84 @@
+package com.bigquery.app.common.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.bigquery.app.common.util.FutureUtil.unwrap;
+import static java.util.Objects.nonNull;
+
+/**
+ * Runs two dependent asynchronous stages, each with its own concurrency limit. Items that finished
+ * the first stage and wait for the second are bounded by the queue capacity: an item is admitted
+ * only while fewer than {@code firstStageLimit + queueCapacity} admitted items have not yet started
+ * their second stage.
+ */
+public class StagedPipeline {
+    private final ConcurrencyLimiter admission = new ConcurrencyLimiter(1);
+    private final ConcurrencyLimiter firstStage = new ConcurrencyLimiter(1);
+    private final ConcurrencyLimiter secondStage = new ConcurrencyLimiter(1);
+
+    public void configure(int firstStageLimit, int secondStageLimit, int queueCapacity) {
+        firstStage.setLimit(firstStageLimit);
+        secondStage.setLimit(secondStageLimit);
+        admission.setLimit(firstStage.getLimit() + Math.max(0, queueCapacity));
+    }
+
+    public <A, B> CompletableFuture<B> submit(Supplier<CompletableFuture<A>> first,
+                                              Function<A, CompletableFuture<B>> second,
+                                              Executor executor) {
+        var result = new CompletableFuture<B>();
+
+        admission.submit(() -> firstStage.submit(first, executor)
+                        .thenCompose(value -> startSecondStage(value, second, executor, result)),
+                Runnable::run
+        ).whenComplete((ignored, error) -> {
+            if (nonNull(error)) {
+                result.completeExceptionally(unwrap(error));
+            }
+        });
+
+        return result;
+    }
+
+    public int getFirstStageInFlight() {
+        return firstStage.getInFlight();
+    }
+
+    public int getSecondStageInFlight() {
+        return secondStage.getInFlight();
+    }
+
+    /**
+     * Items not yet started on the first stage, including those not yet admitted.
+     */
+    public int getFirstStageWaiting() {
+        return admission.getWaiting() + firstStage.getWaiting();
+    }
+
+    public int getSecondStageWaiting() {
+        return secondStage.getWaiting();
+    }
+
+    private <A, B> CompletableFuture<Void> startSecondStage(A value,
+                                                            Function<A, CompletableFuture<B>> second,
+                                                            Executor executor,
+                                                            CompletableFuture<B> result) {
+        var secondStageStarted = new CompletableFuture<Void>();
+
+        secondStage.submit(() -> {
+            secondStageStarted.complete(null);
+            return second.apply(value);
+        }, executor).whenComplete((output, error) -> {
+            secondStageStarted.complete(null);
+            if (nonNull(error)) {
+                result.completeExceptionally(unwrap(error));
+            } else {
+                result.complete(output);
+            }
+        });
+
+        return secondStageStarted;
+    }
+}
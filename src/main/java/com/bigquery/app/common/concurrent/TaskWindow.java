@@ -0,0 +1,64 @@
+package com.bigquery.app.common.concurrent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static com.bigquery.app.common.util.FutureUtil.unwrap;
+import static java.util.Objects.nonNull;
+
+/**
+ * Bounds the number of tasks that were submitted but have not finished. Submitting blocks the caller
+ * while the window is full, so a loop over thousands of tables streams them through the run's pool
+ * and only holds the tasks inside the window, not a future per table.
+ */
+public class TaskWindow {
+    private final int size;
+    private final Semaphore slots;
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+    public TaskWindow(int size) {
+        this.size = Math.max(1, size);
+        this.slots = new Semaphore(this.size);
+    }
+
+    /**
+     * Starts the task once a slot is free. The slot is given back when the future the task returns
+     * completes, including any stages the caller added to it.
+     */
+    public void submit(Supplier<CompletableFuture<?>> task) throws InterruptedException {
+        slots.acquire();
+
+        CompletableFuture<?> future;
+        try {
+            future = task.get();
+        } catch (RuntimeException e) {
+            firstFailure.compareAndSet(null, e);
+            slots.release();
+            return;
+        }
+
+        future.whenComplete((ignored, error) -> {
+            if (nonNull(error)) {
+                firstFailure.compareAndSet(null, unwrap(error));
+            }
+            slots.release();
+        });
+    }
+
+    /**
+     * Waits for every submitted task and fails with the first failure, like
+     * {@link CompletableFuture#allOf} followed by {@code get()}.
+     */
+    public void awaitAll() throws InterruptedException, ExecutionException {
+        slots.acquire(size);
+        slots.release(size);
+
+        var failure = firstFailure.get();
+        if (nonNull(failure)) {
+            throw new ExecutionException(failure);
+        }
+    }
+}
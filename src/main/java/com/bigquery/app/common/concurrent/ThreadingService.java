@@ -1,55 +1,209 @@
 package com.bigquery.app.common.concurrent;
 
 import com.bigquery.app.backup.dto.ExportOptions;
+import com.bigquery.app.common.config.ThreadPoolProperties;
 import com.bigquery.app.restore.dto.ImportOptions;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
 
+import static java.util.Objects.isNull;
+
+/**
+ * Gives every backup and restore run its own executor and in-flight job limits, so that overlapping
+ * runs neither resize each other's pools nor wait behind each other's tables. A run's executor is
+ * shut down and its metrics removed when the run is released.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ThreadingService {
-    private final ThreadPoolTaskExecutor backupTaskExecutor;
-    private final ThreadPoolTaskExecutor restoreTaskExecutor;
+    static final String ACTIVE_TASKS_METRIC = "run.tasks.active";
+    static final String QUEUED_TASKS_METRIC = "run.tasks.queued";
+
+    /**
+     * Runs a task the pool has no room for on the submitting thread instead of failing its table. Tasks
+     * only submit jobs, so this is short. A pool that was shut down still rejects.
+     */
+    static final RejectedExecutionHandler RUN_ON_CALLER = (task, pool) -> {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("The executor of the run was shut down");
+        }
+        task.run();
+    };
+
+    private final ThreadPoolProperties threadPoolProperties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, BackupRunExecutor> backupExecutors = new ConcurrentHashMap<>();
+    private final Map<String, RestoreRunExecutor> restoreExecutors = new ConcurrentHashMap<>();
+
+    public void configureThreadPoolForExport(String runId, ExportOptions exportOptions) {
+        shutdown(backupExecutors.remove(runId));
 
-    public void configureThreadPoolForExport(ExportOptions exportOptions) {
         var threadPoolSize = exportOptions.threadPoolSize();
-        var queueCapacity = exportOptions.threadQueueCapacity();
+        var executor = createExecutor("backup", runId, threadPoolSize, exportOptions.threadQueueCapacity(),
+                threadPoolProperties.getBackup());
+
+        log.info("Configuring backup pipeline of run {} with snapshot concurrency: {}, export concurrency: {}, stage queue capacity: {}",
+                runId, exportOptions.snapshotConcurrency(), threadPoolSize, exportOptions.stageQueueCapacity());
 
-        log.info("Configuring backup thread pool with size: {}, queue capacity: {}",
-                threadPoolSize, queueCapacity);
+        var pipeline = new StagedPipeline();
+        pipeline.configure(
+                exportOptions.snapshotConcurrency(),
+                threadPoolSize,
+                exportOptions.stageQueueCapacity()
+        );
 
-        backupTaskExecutor.setCorePoolSize(threadPoolSize);
-        backupTaskExecutor.setMaxPoolSize(threadPoolSize);
+        var meters = List.of(
+                gauge(ACTIVE_TASKS_METRIC, runId, "snapshot", pipeline, StagedPipeline::getFirstStageInFlight),
+                gauge(QUEUED_TASKS_METRIC, runId, "snapshot", pipeline, StagedPipeline::getFirstStageWaiting),
+                gauge(ACTIVE_TASKS_METRIC, runId, "export", pipeline, StagedPipeline::getSecondStageInFlight),
+                gauge(QUEUED_TASKS_METRIC, runId, "export", pipeline, StagedPipeline::getSecondStageWaiting)
+        );
 
-        Optional.ofNullable(queueCapacity)
-                .ifPresent(backupTaskExecutor::setQueueCapacity);
+        backupExecutors.put(runId, new BackupRunExecutor(executor, pipeline, meters));
     }
 
-    public void configureThreadPoolForImport(ImportOptions importOptions) {
+    public void configureThreadPoolForImport(String runId, ImportOptions importOptions) {
+        shutdown(restoreExecutors.remove(runId));
+
         var threadPoolSize = importOptions.threadPoolSize();
-        var queueCapacity = importOptions.threadQueueCapacity();
+        var executor = createExecutor("restore", runId, threadPoolSize, importOptions.threadQueueCapacity(),
+                threadPoolProperties.getRestore());
+
+        log.info("Configuring restore in-flight job limit of run {}: {}", runId, threadPoolSize);
+        var limiter = new ConcurrencyLimiter(threadPoolSize);
+
+        var meters = List.of(
+                gauge(ACTIVE_TASKS_METRIC, runId, "restore", limiter, ConcurrencyLimiter::getInFlight),
+                gauge(QUEUED_TASKS_METRIC, runId, "restore", limiter, ConcurrencyLimiter::getWaiting)
+        );
+
+        restoreExecutors.put(runId, new RestoreRunExecutor(executor, limiter, meters));
+    }
+
+    /**
+     * Runs the snapshot stage limited by {@code snapshotConcurrency} and then the export stage limited by
+     * {@code threadPoolSize}, with at most {@code stageQueueCapacity} snapshotted tables waiting for export.
+     * The executor thread is only used to submit jobs; waiting for BigQuery happens without a thread.
+     */
+    public <S, T> CompletableFuture<T> submitBackupPipeline(String runId,
+                                                            Supplier<CompletableFuture<S>> snapshotStage,
+                                                            Function<S, CompletableFuture<T>> exportStage) {
+        var runExecutor = backupExecutors.get(runId);
+        if (isNull(runExecutor)) {
+            throw new IllegalStateException("No backup executor configured for run " + runId);
+        }
+        return runExecutor.pipeline().submit(snapshotStage, exportStage, runExecutor.executor());
+    }
+
+    /**
+     * The run's backup executor, for the steps between a table's jobs that block on GCS or BigQuery metadata
+     * calls and so must not run on the threads that complete jobs.
+     */
+    public Executor getBackupExecutor(String runId) {
+        var runExecutor = backupExecutors.get(runId);
+        if (isNull(runExecutor)) {
+            throw new IllegalStateException("No backup executor configured for run " + runId);
+        }
+        return runExecutor.executor();
+    }
+
+    /**
+     * The run's restore executor, for retrying the steps of a table that block on GCS or BigQuery metadata
+     * calls before its load job is submitted.
+     */
+    public Executor getRestoreExecutor(String runId) {
+        var runExecutor = restoreExecutors.get(runId);
+        if (isNull(runExecutor)) {
+            throw new IllegalStateException("No restore executor configured for run " + runId);
+        }
+        return runExecutor.executor();
+    }
+
+    /**
+     * Starts the job on the run's restore executor once fewer than {@code threadPoolSize} of the run's
+     * restore jobs are in flight. The executor thread is only used to submit the job; waiting for
+     * BigQuery happens without a thread.
+     */
+    public <T> CompletableFuture<T> submitRestoreJob(String runId, Supplier<CompletableFuture<T>> job) {
+        var runExecutor = restoreExecutors.get(runId);
+        if (isNull(runExecutor)) {
+            throw new IllegalStateException("No restore executor configured for run " + runId);
+        }
+        return runExecutor.limiter().submit(job, runExecutor.executor());
+    }
+
+    /**
+     * Shuts down the run's executors once their queued tasks have run and removes the run's metrics.
+     */
+    public void releaseRun(String runId) {
+        shutdown(backupExecutors.remove(runId));
+        shutdown(restoreExecutors.remove(runId));
+    }
 
-        log.info("Configuring restore thread pool with size: {}, queue capacity: {}",
-                threadPoolSize, queueCapacity);
+    private ThreadPoolTaskExecutor createExecutor(String name,
+                                                  String runId,
+                                                  int threadPoolSize,
+                                                  Integer queueCapacity,
+                                                  ThreadPoolProperties.ThreadPoolConfig defaults) {
+        var config = new ThreadPoolProperties.ThreadPoolConfig();
+        config.setCoreSize(threadPoolSize);
+        config.setMaxSize(threadPoolSize);
+        config.setQueueCapacity(Optional.ofNullable(queueCapacity).orElse(defaults.getQueueCapacity()));
+        config.setNamePrefix(defaults.getNamePrefix() + runId.substring(0, Math.min(8, runId.length())) + "-");
+
+        log.info("Configuring {} thread pool of run {} with size: {}, queue capacity: {}",
+                name, runId, threadPoolSize, config.getQueueCapacity());
+
+        var executor = ThreadPoolProperties.createTaskExecutor(config);
+        executor.getThreadPoolExecutor().setRejectedExecutionHandler(RUN_ON_CALLER);
+        return executor;
+    }
+
+    private <T> Meter gauge(String metric, String runId, String stage, T source, ToDoubleFunction<T> value) {
+        return Gauge.builder(metric, source, value)
+                .tag("run", runId)
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    private void shutdown(RunExecutor runExecutor) {
+        if (isNull(runExecutor)) {
+            return;
+        }
+        runExecutor.meters().forEach(meterRegistry::remove);
+        runExecutor.executor().shutdown();
+    }
 
-        restoreTaskExecutor.setCorePoolSize(threadPoolSize);
-        restoreTaskExecutor.setMaxPoolSize(threadPoolSize);
+    private sealed interface RunExecutor permits BackupRunExecutor, RestoreRunExecutor {
+        ThreadPoolTaskExecutor executor();
 
-        Optional.ofNullable(queueCapacity)
-                .ifPresent(restoreTaskExecutor::setQueueCapacity);
+        List<Meter> meters();
     }
 
-    public CompletableFuture<Void> submitBackupTask(Runnable task) {
-        return CompletableFuture.runAsync(task, backupTaskExecutor);
+    private record BackupRunExecutor(ThreadPoolTaskExecutor executor, StagedPipeline pipeline, List<Meter> meters)
+            implements RunExecutor {
     }
 
-    public CompletableFuture<Void> submitRestoreTask(Runnable task) {
-        return CompletableFuture.runAsync(task, restoreTaskExecutor);
+    private record RestoreRunExecutor(ThreadPoolTaskExecutor executor, ConcurrencyLimiter limiter, List<Meter> meters)
+            implements RunExecutor {
     }
 }
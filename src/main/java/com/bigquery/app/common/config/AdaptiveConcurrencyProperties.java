@@ -0,0 +1,19 @@
+package com.bigquery.app.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bigquery.adaptive-concurrency")
+@Data
+public class AdaptiveConcurrencyProperties {
+
+    private int initialLimit = 10;
+    private int minLimit = 1;
+    private int maxLimit = 100;
+    private double backoffRatio = 0.5;
+    private Duration decreaseCooldown = Duration.ofSeconds(5);
+}
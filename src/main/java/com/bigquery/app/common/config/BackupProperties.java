@@ -3,6 +3,7 @@ package com.bigquery.app.common.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 @Configuration
 @ConfigurationProperties(prefix = "backup")
@@ -10,6 +11,8 @@ import org.springframework.context.annotation.Configuration;
 public class BackupProperties {
 
     private DatasetProperties dataset = new DatasetProperties();
+    private ShardingProperties sharding = new ShardingProperties();
+    private IncrementalProperties incremental = new IncrementalProperties();
 
     @Data
     public static class DatasetProperties {
@@ -20,6 +23,27 @@ public class BackupProperties {
             private String name = "table_snapshots_dataset";
             private String prefix = "_SNAPSHOT_";
             private long expirationDays = 1;
+            private SnapshotMethod method = SnapshotMethod.DDL;
         }
     }
+
+    @Data
+    public static class ShardingProperties {
+        private DataSize minTableSize = DataSize.ofGigabytes(10);
+    }
+
+    @Data
+    public static class IncrementalProperties {
+        /** Share of changed partitions above which a table is exported in full instead. */
+        private double maxChangedPartitionShare = 0.5;
+        /** Most consecutive changed partitions exported together by one job. */
+        private int maxPartitionsPerRange = 31;
+    }
+
+    public enum SnapshotMethod {
+        /** CREATE SNAPSHOT TABLE statement run as a query job. */
+        DDL,
+        /** Copy job with operation type SNAPSHOT, no SQL and no query slots. */
+        COPY_JOB
+    }
 }
@@ -0,0 +1,16 @@
+package com.bigquery.app.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bigquery.client-cache")
+@Data
+public class BigQueryClientProperties {
+
+    private int maxSize = 50;
+    private Duration expireAfterAccess = Duration.ofMinutes(30);
+}
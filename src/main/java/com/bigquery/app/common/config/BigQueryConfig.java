@@ -1,16 +1,63 @@
 package com.bigquery.app.common.config;
 
+import com.bigquery.app.common.bigquery.BigQueryClientCache;
+import com.bigquery.app.common.exception.ServiceException;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.auth.Credentials;
+import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.http.HttpTransportOptions;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Hands out cached BigQuery clients per project. All clients share one HTTP transport and one set of
+ * application default credentials, so a new project only costs building its options.
+ */
 @Configuration
 public class BigQueryConfig {
+    private final HttpTransport httpTransport = new NetHttpTransport();
+    private final BigQueryClientCache clientCache;
+    private Credentials credentials;
+
+    public BigQueryConfig(BigQueryClientProperties properties, MeterRegistry meterRegistry) {
+        this.clientCache = new BigQueryClientCache(
+                properties.getMaxSize(),
+                properties.getExpireAfterAccess(),
+                this::buildBigQueryClient,
+                meterRegistry
+        );
+    }
 
     public BigQuery createBigQueryClient(String sourceProjectId) {
+        return clientCache.get(sourceProjectId);
+    }
+
+    private BigQuery buildBigQueryClient(String projectId) {
         return BigQueryOptions.newBuilder()
-                .setProjectId(sourceProjectId)
+                .setProjectId(projectId)
+                .setCredentials(sharedCredentials())
+                .setTransportOptions(HttpTransportOptions.newBuilder()
+                        .setHttpTransportFactory(() -> httpTransport)
+                        .build())
                 .build()
                 .getService();
     }
+
+    private synchronized Credentials sharedCredentials() {
+        if (isNull(credentials)) {
+            try {
+                credentials = GoogleCredentials.getApplicationDefault();
+            } catch (IOException e) {
+                throw new ServiceException("BigQuery", "Failed to load application default credentials", e);
+            }
+        }
+        return credentials;
+    }
 }
@@ -16,7 +16,13 @@ import org.springframework.context.annotation.Configuration;
         ThreadPoolProperties.class,
         ExportProperties.class,
         ImportProperties.class,
-        GcsProperties.class
+        GcsProperties.class,
+        RunProperties.class,
+        JobEngineProperties.class,
+        AdaptiveConcurrencyProperties.class,
+        RetryProperties.class,
+        BigQueryClientProperties.class,
+        MetadataCacheProperties.class
 })
 @RequiredArgsConstructor
 @Slf4j
@@ -1,5 +1,6 @@
 package com.bigquery.app.common.config;
 
+import com.bigquery.app.backup.dto.ExportStrategy;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
@@ -20,5 +21,13 @@ public class ExportProperties {
         private String fieldDelimiter = ",";
         private Integer threadPoolSize = 4;
         private Integer threadQueueCapacity = 10;
+        private Integer snapshotConcurrency = 8;
+        private Integer stageQueueCapacity = 20;
+        private boolean incremental = false;
+        private boolean incrementalPartitions = false;
+        private Integer snapshotBatchSize = 1;
+        private ExportStrategy exportStrategy = ExportStrategy.SNAPSHOT;
+        private Integer exportShards = 1;
+        private boolean failFast = false;
     }
 }
\ No newline at end of file
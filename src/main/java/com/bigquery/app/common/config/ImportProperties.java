@@ -22,5 +22,6 @@ public class ImportProperties {
         private String restoreRegion = "europe-west3";
         private Integer threadPoolSize = 5;
         private Integer threadQueueCapacity = 15;
+        private Boolean failFast = false;
     }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.bigquery.app.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bigquery.job-engine")
+@Data
+public class JobEngineProperties {
+
+    private Duration pollTick = Duration.ofMillis(100);
+    private Duration initialPollInterval = Duration.ofMillis(500);
+    private Duration maxPollInterval = Duration.ofSeconds(10);
+    private double pollBackoffMultiplier = 1.5;
+    private int maxConsecutivePollFailures = 5;
+    private int completionThreads = 4;
+    // Jobs with a deterministic id get an attempt number; a failed attempt is retried under the next one
+    private int maxJobIdAttempts = 20;
+}
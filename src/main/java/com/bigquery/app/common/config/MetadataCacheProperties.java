@@ -0,0 +1,15 @@
+package com.bigquery.app.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "bigquery.metadata-cache")
+@Data
+public class MetadataCacheProperties {
+
+    private Duration ttl = Duration.ofMinutes(10);
+}
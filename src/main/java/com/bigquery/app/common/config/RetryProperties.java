@@ -0,0 +1,18 @@
+package com.bigquery.app.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "retry")
+@Data
+public class RetryProperties {
+
+    private Duration baseDelay = Duration.ofSeconds(1);
+    private Duration maxDelay = Duration.ofMinutes(1);
+    private int maxRetriesPerTable = 5;
+    private int maxRetriesPerRun = 100;
+}
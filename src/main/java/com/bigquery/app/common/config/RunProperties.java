@@ -0,0 +1,51 @@
+package com.bigquery.app.common.config;
+
+import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.run.domain.GcsRunJournal;
+import com.bigquery.app.run.domain.InMemoryRunJournal;
+import com.bigquery.app.run.domain.RunJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Duration;
+
+import static org.springframework.util.StringUtils.hasText;
+
+@Configuration
+@ConfigurationProperties(prefix = "run")
+@EnableScheduling
+@Data
+@Slf4j
+public class RunProperties {
+
+    private RetentionProperties retention = new RetentionProperties();
+    private JournalProperties journal = new JournalProperties();
+
+    @Data
+    public static class RetentionProperties {
+        private int maxRuns = 100;
+    }
+
+    @Data
+    public static class JournalProperties {
+        // GCS location of the run journal; without one, runs are journaled in memory only
+        private String uri;
+        // How often the progress of running runs is written, GCS allows one write per second per object
+        private Duration checkpointInterval = Duration.ofSeconds(10);
+    }
+
+    @Bean
+    public RunJournal runJournal(GcsService gcsService, ObjectMapper objectMapper) {
+        if (!hasText(journal.getUri())) {
+            log.warn("No run journal location configured, runs lost with the process cannot be resumed");
+            return new InMemoryRunJournal();
+        }
+        log.info("Journaling runs to {}", journal.getUri());
+        return new GcsRunJournal(gcsService, objectMapper, journal.getUri());
+    }
+}
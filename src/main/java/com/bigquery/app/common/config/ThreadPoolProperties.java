@@ -13,8 +13,11 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 @Data
 public class ThreadPoolProperties {
 
+    // Backup and restore runs each get their own executor; only the name prefix and the default queue
+    // capacity of these are used
     private ThreadPoolConfig backup = new ThreadPoolConfig();
     private ThreadPoolConfig restore = new ThreadPoolConfig();
+    private ThreadPoolConfig run = new ThreadPoolConfig();
 
     @Data
     public static class ThreadPoolConfig {
@@ -24,24 +27,23 @@ public class ThreadPoolProperties {
         private String namePrefix = "task-";
     }
 
-    @Bean(name = "backupTaskExecutor")
-    public ThreadPoolTaskExecutor backupTaskExecutor() {
+    @Bean(name = "runTaskExecutor")
+    public ThreadPoolTaskExecutor runTaskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(backup.getCoreSize());
-        executor.setMaxPoolSize(backup.getMaxSize());
-        executor.setQueueCapacity(backup.getQueueCapacity());
-        executor.setThreadNamePrefix(backup.getNamePrefix());
+        executor.setCorePoolSize(run.getCoreSize());
+        executor.setMaxPoolSize(run.getMaxSize());
+        executor.setQueueCapacity(run.getQueueCapacity());
+        executor.setThreadNamePrefix(run.getNamePrefix());
         executor.initialize();
         return executor;
     }
 
-    @Bean(name = "restoreTaskExecutor")
-    public ThreadPoolTaskExecutor restoreTaskExecutor() {
+    public static ThreadPoolTaskExecutor createTaskExecutor(ThreadPoolConfig config) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(restore.getCoreSize());
-        executor.setMaxPoolSize(restore.getMaxSize());
-        executor.setQueueCapacity(restore.getQueueCapacity());
-        executor.setThreadNamePrefix(restore.getNamePrefix());
+        executor.setCorePoolSize(config.getCoreSize());
+        executor.setMaxPoolSize(config.getMaxSize());
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix(config.getNamePrefix());
         executor.initialize();
         return executor;
     }
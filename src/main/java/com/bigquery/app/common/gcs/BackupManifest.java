@@ -0,0 +1,36 @@
+package com.bigquery.app.common.gcs;
+
+import com.bigquery.app.common.bigquery.ColumnSchema;
+
+import java.util.List;
+
+/**
+ * Written once per dataset at the end of a backup so that restore can find the backed-up tables by
+ * reading a single object instead of listing every export shard. Tables left unchanged by an incremental
+ * backup carry the backup they reference and no files of their own. Manifests written before the
+ * codec was recorded have no {@code compression}.
+ * <p>
+ * Tables exported by the run that wrote the manifest also carry the URIs to load them from, including
+ * unchanged partitions of earlier backups, and their layout, so that restore reads nothing else. Without
+ * them, as in older manifests, restore reads the table's own manifest and layout objects.
+ */
+public record BackupManifest(
+        String projectId,
+        String datasetName,
+        String backupTimestamp,
+        String format,
+        String compression,
+        List<TableEntry> tables
+) {
+    public record TableEntry(
+            String tableName,
+            String referencedBackup,
+            List<String> files,
+            long numBytes,
+            long numRows,
+            List<ColumnSchema> schema,
+            List<String> sourceUris,
+            TableLayout layout
+    ) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.bigquery.app.common.gcs;
+
+/**
+ * Stored in place of a table's export files when the table was unchanged since an earlier backup.
+ * {@code backupTimestamp} names the backup whose files hold the table's data.
+ */
+public record BackupReference(
+        String backupTimestamp,
+        String format
+) {
+}
@@ -0,0 +1,13 @@
+package com.bigquery.app.common.gcs;
+
+/**
+ * Written next to the files of a table once all of them are exported and its layout is written. A backup
+ * re-run for the same backup time skips the tables that have one, so only the missing work is redone.
+ */
+public record ExportMarker(
+        String tableName,
+        String backupTimestamp,
+        String format,
+        String completedAt
+) {
+}
@@ -3,21 +3,29 @@ package com.bigquery.app.common.gcs;
 import com.bigquery.app.common.exception.PermissionException;
 import com.bigquery.app.common.exception.ResourceNotFoundException;
 import com.bigquery.app.common.exception.ValidationException;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Bucket;
 import com.google.cloud.storage.Storage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.bigquery.app.common.util.GcsPathUtil.extractBucketName;
 import static com.bigquery.app.common.util.GcsPathUtil.getPathWithoutBucket;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.isNull;
 
 @Service
@@ -54,6 +62,23 @@ public class GcsService {
         return bucket;
     }
 
+    public Optional<String> readObject(String gcsUri) {
+        var blob = storage.get(BlobId.fromGsUtilUri(gcsUri));
+        if (isNull(blob)) {
+            log.debug("Object does not exist: {}", gcsUri);
+            return Optional.empty();
+        }
+        return Optional.of(new String(blob.getContent(), UTF_8));
+    }
+
+    public void writeJsonObject(String gcsUri, String content) {
+        var blobInfo = BlobInfo.newBuilder(BlobId.fromGsUtilUri(gcsUri))
+                .setContentType("application/json")
+                .build();
+        storage.create(blobInfo, content.getBytes(UTF_8));
+        log.debug("Wrote object: {}", gcsUri);
+    }
+
     private void validateBucketExists(String bucketName) {
         var bucket = storage.get(bucketName);
 
@@ -104,6 +129,39 @@ public class GcsService {
         return discoveredTables;
     }
 
+    public Map<String, List<Blob>> findTableFilesFromGcsFiles(Bucket bucket, String basePath, Pattern pattern) {
+        return findTableFilesPerPattern(bucket, basePath, List.of(pattern)).get(0);
+    }
+
+    /**
+     * Lists the path once and groups the files matching each pattern by table name, in the order of the
+     * patterns. A file is grouped under the first pattern it matches.
+     */
+    public List<Map<String, List<Blob>>> findTableFilesPerPattern(Bucket bucket,
+                                                                  String basePath,
+                                                                  List<Pattern> patterns) {
+        log.info("Collecting table files from GCS path: {}", basePath);
+        var tableFiles = new ArrayList<Map<String, List<Blob>>>();
+        patterns.forEach(pattern -> tableFiles.add(new HashMap<>()));
+        var pathWithoutBucket = getPathWithoutBucket(basePath);
+
+        bucket.list(Storage.BlobListOption.prefix(pathWithoutBucket))
+                .iterateAll()
+                .forEach(blob -> {
+                    var fileName = blob.getName().substring(blob.getName().lastIndexOf('/') + 1);
+                    for (int i = 0; i < patterns.size(); i++) {
+                        Matcher matcher = patterns.get(i).matcher(fileName);
+                        if (matcher.matches()) {
+                            tableFiles.get(i).computeIfAbsent(matcher.group(1), tableName -> new ArrayList<>())
+                                    .add(blob);
+                            return;
+                        }
+                    }
+                });
+
+        return tableFiles;
+    }
+
     public void validateFileFormat(String fileName, String expectedFormat) {
         var actualExtension = fileName.substring(fileName.lastIndexOf('.') + 1);
 
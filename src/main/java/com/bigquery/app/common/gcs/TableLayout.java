@@ -0,0 +1,185 @@
+package com.bigquery.app.common.gcs;
+
+import com.google.cloud.bigquery.Clustering;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.RangePartitioning;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.SnapshotTableDefinition;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.TimePartitioning;
+
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Stored next to a table's export files so that restore can recreate the table with its schema,
+ * partitioning and clustering instead of inferring the schema from the files. Read from the snapshot
+ * the files were exported from, or for time-travel backups from the source table as of the backup
+ * time, so that it describes the columns of the files.
+ */
+public record TableLayout(
+        List<Column> schema,
+        TimePartition timePartitioning,
+        RangePartition rangePartitioning,
+        List<String> clusteringFields
+) {
+    public record Column(
+            String name,
+            String type,
+            String mode,
+            String description,
+            List<Column> fields
+    ) {
+    }
+
+    public record TimePartition(
+            String type,
+            String field,
+            Long expirationMs,
+            Boolean requirePartitionFilter
+    ) {
+    }
+
+    public record RangePartition(
+            String field,
+            Long start,
+            Long end,
+            Long interval
+    ) {
+    }
+
+    /**
+     * Empty for tables without a schema, which have nothing to restore a layout from.
+     */
+    public static Optional<TableLayout> of(StandardTableDefinition definition) {
+        return of(definition.getSchema(), definition.getTimePartitioning(), definition.getRangePartitioning(),
+                definition.getClustering());
+    }
+
+    /**
+     * Empty for snapshots without a schema, which have nothing to restore a layout from.
+     */
+    public static Optional<TableLayout> of(SnapshotTableDefinition definition) {
+        return of(definition.getSchema(), definition.getTimePartitioning(), definition.getRangePartitioning(),
+                definition.getClustering());
+    }
+
+    private static Optional<TableLayout> of(Schema schema,
+                                            TimePartitioning timePartitioning,
+                                            RangePartitioning rangePartitioning,
+                                            Clustering clustering) {
+        if (isNull(schema)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new TableLayout(
+                toColumns(schema.getFields()),
+                isNull(timePartitioning) ? null : new TimePartition(
+                        timePartitioning.getType().name(),
+                        timePartitioning.getField(),
+                        timePartitioning.getExpirationMs(),
+                        timePartitioning.getRequirePartitionFilter()),
+                isNull(rangePartitioning) || isNull(rangePartitioning.getRange()) ? null : new RangePartition(
+                        rangePartitioning.getField(),
+                        rangePartitioning.getRange().getStart(),
+                        rangePartitioning.getRange().getEnd(),
+                        rangePartitioning.getRange().getInterval()),
+                isNull(clustering) ? null : clustering.getFields()
+        ));
+    }
+
+    /**
+     * The layout with the columns of another schema, for a table whose columns changed since the time its
+     * files were exported as of.
+     */
+    public TableLayout withSchema(Schema otherSchema) {
+        return new TableLayout(toColumns(otherSchema.getFields()), timePartitioning, rangePartitioning,
+                clusteringFields);
+    }
+
+    /**
+     * The layout without partitioning and clustering, for loading into a table that already exists and
+     * keeps its own.
+     */
+    public TableLayout schemaOnly() {
+        return new TableLayout(schema, null, null, null);
+    }
+
+    public Schema toSchema() {
+        return Schema.of(toFields(schema));
+    }
+
+    public TimePartitioning toTimePartitioning() {
+        if (isNull(timePartitioning)) {
+            return null;
+        }
+        return TimePartitioning.newBuilder(TimePartitioning.Type.valueOf(timePartitioning.type()))
+                .setField(timePartitioning.field())
+                .setExpirationMs(timePartitioning.expirationMs())
+                .setRequirePartitionFilter(timePartitioning.requirePartitionFilter())
+                .build();
+    }
+
+    public RangePartitioning toRangePartitioning() {
+        if (isNull(rangePartitioning)) {
+            return null;
+        }
+        return RangePartitioning.newBuilder()
+                .setField(rangePartitioning.field())
+                .setRange(RangePartitioning.Range.newBuilder()
+                        .setStart(rangePartitioning.start())
+                        .setEnd(rangePartitioning.end())
+                        .setInterval(rangePartitioning.interval())
+                        .build())
+                .build();
+    }
+
+    public Clustering toClustering() {
+        if (isNull(clusteringFields) || clusteringFields.isEmpty()) {
+            return null;
+        }
+        return Clustering.newBuilder().setFields(clusteringFields).build();
+    }
+
+    public StandardTableDefinition toDefinition() {
+        return StandardTableDefinition.newBuilder()
+                .setSchema(toSchema())
+                .setTimePartitioning(toTimePartitioning())
+                .setRangePartitioning(toRangePartitioning())
+                .setClustering(toClustering())
+                .build();
+    }
+
+    private static List<Column> toColumns(FieldList fields) {
+        return fields.stream()
+                .map(field -> new Column(
+                        field.getName(),
+                        field.getType().name(),
+                        isNull(field.getMode()) ? null : field.getMode().name(),
+                        field.getDescription(),
+                        isNull(field.getSubFields()) ? null : toColumns(field.getSubFields())))
+                .toList();
+    }
+
+    private static List<Field> toFields(List<Column> columns) {
+        return columns.stream()
+                .map(column -> {
+                    var subFields = nonNull(column.fields()) ? FieldList.of(toFields(column.fields())) : null;
+                    var builder = Field.newBuilder(column.name(), LegacySQLTypeName.valueOfStrict(column.type()),
+                            subFields);
+                    if (nonNull(column.mode())) {
+                        builder.setMode(Field.Mode.valueOf(column.mode()));
+                    }
+                    if (nonNull(column.description())) {
+                        builder.setDescription(column.description());
+                    }
+                    return builder.build();
+                })
+                .toList();
+    }
+}
@@ -0,0 +1,19 @@
+package com.bigquery.app.common.gcs;
+
+import java.util.List;
+
+/**
+ * Stored in place of a table's export files when the table was exported partition by partition. The
+ * partitions together hold the full table; unchanged partitions point to the files of earlier backups.
+ */
+public record TableManifest(
+        String format,
+        List<PartitionFile> partitions
+) {
+    public record PartitionFile(
+            String partitionId,
+            String backupTimestamp,
+            String uri
+    ) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.bigquery.app.common.retry;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Caps how many retries a unit of work may spend. A child budget also draws from its parent, so a
+ * table's budget can be limited on its own and as part of its run.
+ */
+public class RetryBudget {
+    private final RetryBudget parent;
+    private final int limit;
+    private int used;
+
+    public RetryBudget(int limit) {
+        this(limit, null);
+    }
+
+    private RetryBudget(int limit, RetryBudget parent) {
+        this.limit = limit;
+        this.parent = parent;
+    }
+
+    public RetryBudget child(int limit) {
+        return new RetryBudget(limit, this);
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (used >= limit) {
+            return false;
+        }
+        if (nonNull(parent) && !parent.tryAcquire()) {
+            return false;
+        }
+        used++;
+        return true;
+    }
+
+    public synchronized int getUsed() {
+        return used;
+    }
+}
@@ -0,0 +1,112 @@
+package com.bigquery.app.common.retry;
+
+import com.bigquery.app.common.config.RetryProperties;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.storage.StorageException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.bigquery.app.common.util.FutureUtil.defer;
+import static com.bigquery.app.common.util.FutureUtil.unwrap;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Retries asynchronous BigQuery and GCS calls that fail with a transient error. Delays follow
+ * decorrelated jitter: each delay is drawn between the base delay and three times the previous one,
+ * capped at the maximum delay. Every retry is charged to a {@link RetryBudget} and counted in the
+ * {@value #RETRY_METRIC} metric.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RetryExecutor {
+    static final String RETRY_METRIC = "backup.restore.retries";
+
+    private static final Set<Integer> RETRYABLE_CODES = Set.of(408, 429, 500, 502, 503, 504);
+    private static final Set<String> RETRYABLE_REASONS =
+            Set.of("backendError", "internalError", "rateLimitExceeded", "jobRateLimitExceeded", "quotaExceeded");
+
+    private final RetryProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public <T> CompletableFuture<T> execute(String operation, RetryBudget budget, Supplier<CompletableFuture<T>> call) {
+        return execute(operation, budget, ForkJoinPool.commonPool(), call);
+    }
+
+    /**
+     * Makes the retries on {@code executor}, for calls that block before they return their future.
+     */
+    public <T> CompletableFuture<T> execute(String operation, RetryBudget budget, Executor executor,
+                                            Supplier<CompletableFuture<T>> call) {
+        return execute(operation, budget, executor, call, properties.getBaseDelay().toMillis());
+    }
+
+    private <T> CompletableFuture<T> execute(String operation, RetryBudget budget, Executor executor,
+                                             Supplier<CompletableFuture<T>> call, long previousDelayMillis) {
+        return defer(call)
+                .handle((value, error) -> {
+                    if (isNull(error)) {
+                        return CompletableFuture.completedFuture(value);
+                    }
+
+                    var cause = unwrap(error);
+                    var reason = retryableReason(cause);
+                    if (reason.isEmpty() || !budget.tryAcquire()) {
+                        return CompletableFuture.<T>failedFuture(cause);
+                    }
+
+                    var delayMillis = nextDelayMillis(previousDelayMillis);
+                    meterRegistry.counter(RETRY_METRIC, "operation", operation, "reason", reason.get()).increment();
+                    log.warn("Retrying {} in {}ms after transient error ({}): {}",
+                            operation, delayMillis, reason.get(), cause.getMessage());
+
+                    var delayed = CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS, executor);
+                    return CompletableFuture.supplyAsync(
+                                    () -> execute(operation, budget, executor, call, delayMillis), delayed)
+                            .thenCompose(Function.identity());
+                })
+                .thenCompose(Function.identity());
+    }
+
+    long nextDelayMillis(long previousDelayMillis) {
+        var baseMillis = properties.getBaseDelay().toMillis();
+        var upperMillis = Math.max(baseMillis, previousDelayMillis * 3);
+        var delayMillis = upperMillis > baseMillis
+                ? ThreadLocalRandom.current().nextLong(baseMillis, upperMillis + 1)
+                : baseMillis;
+        return Math.min(properties.getMaxDelay().toMillis(), delayMillis);
+    }
+
+    static Optional<String> retryableReason(Throwable throwable) {
+        for (var cause = throwable; nonNull(cause); cause = cause.getCause()) {
+            if (cause instanceof BigQueryException e) {
+                var reason = nonNull(e.getError()) ? e.getError().getReason() : e.getReason();
+                if (nonNull(reason) && RETRYABLE_REASONS.contains(reason)) {
+                    return Optional.of(reason);
+                }
+                return RETRYABLE_CODES.contains(e.getCode())
+                        ? Optional.of(String.valueOf(e.getCode()))
+                        : Optional.empty();
+            }
+            if (cause instanceof StorageException e) {
+                return RETRYABLE_CODES.contains(e.getCode())
+                        ? Optional.of(String.valueOf(e.getCode()))
+                        : Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+}
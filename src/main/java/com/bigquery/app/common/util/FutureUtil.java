@@ -0,0 +1,46 @@
+package com.bigquery.app.common.util;
+
+import com.bigquery.app.common.exception.ServiceException;
+import lombok.NoArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static java.util.Objects.nonNull;
+
+@Component
+@NoArgsConstructor
+public final class FutureUtil {
+
+    public static Throwable unwrap(Throwable throwable) {
+        var cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && nonNull(cause.getCause())) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    public static <T> CompletableFuture<T> defer(Supplier<CompletableFuture<T>> supplier) {
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            var cause = unwrap(e);
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ServiceException("Async", cause.getMessage(), cause);
+        }
+    }
+}
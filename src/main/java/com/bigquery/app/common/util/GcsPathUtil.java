@@ -42,6 +42,84 @@ public final class GcsPathUtil {
         return basePath;
     }
 
+    public static String buildTableReferenceUri(String baseUri,
+                                                String timestamp,
+                                                String projectId,
+                                                String datasetName,
+                                                String tableName) {
+        var uri = String.format("%s/%s/%s/%s/%s/%s.ref.json",
+                baseUri, backupPath, timestamp, projectId, datasetName, tableName);
+        log.debug("Built table reference URI: {}", uri);
+        return uri;
+    }
+
+    public static String buildPartitionFileUri(String baseUri,
+                                               String timestamp,
+                                               String projectId,
+                                               String datasetName,
+                                               String tableName,
+                                               String partitionId,
+                                               String format) {
+        var uri = String.format("%s/%s/%s/%s/%s/%s/partitions/%s/%s-*.%s",
+                baseUri, backupPath, timestamp, projectId, datasetName, tableName, partitionId, tableName,
+                format.toLowerCase());
+        log.debug("Built partition file URI: {}", uri);
+        return uri;
+    }
+
+    public static String buildTableManifestUri(String baseUri,
+                                               String timestamp,
+                                               String projectId,
+                                               String datasetName,
+                                               String tableName) {
+        var uri = String.format("%s/%s/%s/%s/%s/%s.manifest.json",
+                baseUri, backupPath, timestamp, projectId, datasetName, tableName);
+        log.debug("Built table manifest URI: {}", uri);
+        return uri;
+    }
+
+    public static String buildTableLayoutUri(String baseUri,
+                                             String timestamp,
+                                             String projectId,
+                                             String datasetName,
+                                             String tableName) {
+        var uri = String.format("%s/%s/%s/%s/%s/%s.layout.json",
+                baseUri, backupPath, timestamp, projectId, datasetName, tableName);
+        log.debug("Built table layout URI: {}", uri);
+        return uri;
+    }
+
+    public static String buildExportMarkerUri(String baseUri,
+                                              String timestamp,
+                                              String projectId,
+                                              String datasetName,
+                                              String tableName,
+                                              String format) {
+        var uri = String.format("%s/%s/%s/%s/%s/%s.%s.done.json",
+                baseUri, backupPath, timestamp, projectId, datasetName, tableName, format.toLowerCase());
+        log.debug("Built export marker URI: {}", uri);
+        return uri;
+    }
+
+    public static String buildBackupManifestUri(String baseUri,
+                                                String timestamp,
+                                                String projectId,
+                                                String datasetName) {
+        var uri = String.format("%s/%s/%s/%s/%s/_manifest.json",
+                baseUri, backupPath, timestamp, projectId, datasetName);
+        log.debug("Built backup manifest URI: {}", uri);
+        return uri;
+    }
+
+    public static String buildBackupStateUri(String baseUri,
+                                             String projectId,
+                                             String datasetName) {
+        var uri = String.format("%s/%s/_state/%s/%s.json",
+                baseUri, backupPath, projectId, datasetName);
+        log.debug("Built backup state URI: {}", uri);
+        return uri;
+    }
+
     public static String extractBucketName(String gcsUri) {
         return of(gcsUri)
                 .map(GCS_URI_PATTERN::matcher)
@@ -1,12 +1,18 @@
 package com.bigquery.app.common.util;
 
+import com.google.cloud.bigquery.JobId;
 import com.google.cloud.bigquery.JobInfo;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.regex.Pattern;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 @Component
 @Slf4j
 @NoArgsConstructor
@@ -22,9 +28,39 @@ public final class JobUtil {
         return disposition;
     }
 
+    /**
+     * Job id derived from the stage and what the job works on. The key names the tables and files of one
+     * backup, which carry its timestamp, so a retried request gets the job ids of the original request.
+     * The id carries the location of the job's datasets, without which BigQuery only finds jobs in the
+     * US and EU multi-regions.
+     */
+    public static JobId deterministicJobId(String stage, String location, String... keyParts) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (String keyPart : keyParts) {
+                digest.update(String.valueOf(keyPart).getBytes(UTF_8));
+                digest.update((byte) 0);
+            }
+            return JobId.newBuilder()
+                    .setJob("bqbackup_" + stage + "_" + HexFormat.of().formatHex(digest.digest(), 0, 20))
+                    .setLocation(location)
+                    .build();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     public static Pattern createTableNamePattern(String format) {
         var patternString = "(?i)^([^-]+)-.*\\." + format;
         log.debug("Created table name pattern: {}", patternString);
         return Pattern.compile(patternString);
     }
+
+    public static Pattern createTableReferencePattern() {
+        return Pattern.compile("(?i)^([^-.]+)\\.(ref|manifest)\\.json");
+    }
+
+    public static Pattern createExportMarkerPattern(String format) {
+        return Pattern.compile("(?i)^([^-.]+)\\." + format + "\\.done\\.json");
+    }
 }
\ No newline at end of file
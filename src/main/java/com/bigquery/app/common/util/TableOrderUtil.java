@@ -0,0 +1,27 @@
+package com.bigquery.app.common.util;
+
+import lombok.NoArgsConstructor;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+@NoArgsConstructor
+public final class TableOrderUtil {
+
+    /**
+     * Orders the tables by size, largest first, so that under a concurrency limit the longest jobs start
+     * first instead of trailing at the end of the run. Tables without a known size come last; ties are
+     * ordered by name to keep the order stable.
+     */
+    public static Set<String> largestFirst(Collection<String> tableNames, Map<String, Long> sizes) {
+        var ordered = tableNames.stream()
+                .sorted(Comparator.<String>comparingLong(tableName -> sizes.getOrDefault(tableName, -1L))
+                        .reversed()
+                        .thenComparing(Comparator.naturalOrder()))
+                .toList();
+        return new LinkedHashSet<>(ordered);
+    }
+}
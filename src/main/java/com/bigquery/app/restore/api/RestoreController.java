@@ -2,18 +2,25 @@ package com.bigquery.app.restore.api;
 
 import com.bigquery.app.common.config.BigQueryConfig;
 import com.bigquery.app.restore.domain.RestoreOrchestrator;
+import com.bigquery.app.run.domain.Run;
+import com.bigquery.app.run.domain.RunService;
+import com.bigquery.app.run.dto.RunResponse;
+import com.bigquery.app.run.dto.RunType;
 import com.google.cloud.bigquery.BigQuery;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import static org.springframework.http.ResponseEntity.ok;
+import java.net.URI;
+
+import static org.springframework.http.ResponseEntity.accepted;
 
 
 @RestController
@@ -25,15 +32,32 @@ public class RestoreController {
 
     private final RestoreOrchestrator restoreOrchestrator;
     private final BigQueryConfig bigQueryConfig;
+    private final RunService runService;
 
     @PostMapping("/restore")
-    public ResponseEntity<String> restoreTables(@Valid @RequestBody RestoreRequest request) {
+    public ResponseEntity<RunResponse> restoreTables(@Valid @RequestBody RestoreRequest request) {
         log.info("Received restore request for project: {}", request.bigQuery().projectId());
 
         BigQuery bigQueryClient = bigQueryConfig.createBigQueryClient(request.bigQuery().projectId());
 
-        restoreOrchestrator.restore(bigQueryClient, request);
+        Run run = runService.start(RunType.RESTORE, request,
+                r -> restoreOrchestrator.restore(bigQueryClient, request, r));
+
+        return accepted()
+                .location(URI.create("/api/v1/runs/" + run.getId()))
+                .body(RunResponse.from(run));
+    }
+
+    @PostMapping("/restore/{runId}/resume")
+    public ResponseEntity<RunResponse> resumeRestore(@PathVariable String runId) {
+        log.info("Received request to resume restore run {}", runId);
+
+        Run run = runService.resume(runId, RunType.RESTORE, RestoreRequest.class, (request, r) ->
+                restoreOrchestrator.restore(bigQueryConfig.createBigQueryClient(request.bigQuery().projectId()),
+                        request, r));
 
-        return ok("restore has been successfully processed");
+        return accepted()
+                .location(URI.create("/api/v1/runs/" + run.getId()))
+                .body(RunResponse.from(run));
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.bigquery.app.restore.domain;
+
+import com.bigquery.app.common.gcs.BackupManifest;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tables found in a dataset backup, largest first, with the size of their backup files and the
+ * format and codec the files were written with. Tables found in the backup manifest come with their
+ * entry, which is empty for backups without a manifest.
+ */
+public record BackedUpTables(
+        Set<String> tableNames,
+        Map<String, Long> tableSizes,
+        String codec,
+        Map<String, BackupManifest.TableEntry> manifestEntries
+) {
+}
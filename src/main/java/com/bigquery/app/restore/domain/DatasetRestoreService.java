@@ -1,9 +1,9 @@
 package com.bigquery.app.restore.domain;
 
-import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.DatasetMetadataCache;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
 import com.bigquery.app.common.config.RestoreProperties;
 import com.google.cloud.bigquery.BigQuery;
-import com.google.cloud.bigquery.Dataset;
 import com.google.cloud.bigquery.DatasetId;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,13 +15,14 @@ import static com.bigquery.app.common.util.DatasetUtil.createPrefixedDatasetName
 @RequiredArgsConstructor
 @Slf4j
 public class DatasetRestoreService {
-    private final BigQueryService bigQueryService;
+    private final DatasetMetadataCache datasetMetadataCache;
     private final RestoreProperties restoreProperties;
 
     public String createDestinationDataset(
             BigQuery bigQuery,
             String sourceDatasetName,
-            String location) {
+            String location,
+            MetadataCallCounter callCounter) {
 
         String destinationDatasetName = createPrefixedDatasetName(
                 restoreProperties.getDataset().getPrefix(), sourceDatasetName);
@@ -31,13 +32,14 @@ public class DatasetRestoreService {
         String projectId = bigQuery.getOptions().getProjectId();
         DatasetId datasetId = DatasetId.of(projectId, destinationDatasetName);
 
-        Dataset dataset = bigQueryService.ensureDatasetExists(
+        datasetMetadataCache.ensureExists(
                 bigQuery,
                 datasetId,
                 "Restored dataset from backup",
-                location
+                location,
+                callCounter
         );
 
-        return dataset.getDatasetId().getDataset();
+        return datasetId.getDataset();
     }
 }
@@ -1,27 +1,52 @@
 package com.bigquery.app.restore.domain;
 
+import com.bigquery.app.common.exception.ValidationException;
+import com.bigquery.app.common.gcs.BackupManifest;
 import com.bigquery.app.common.gcs.GcsService;
 import com.bigquery.app.common.util.JobUtil;
 import com.bigquery.app.restore.dto.GcsOptions;
+import com.bigquery.app.run.domain.CodecUsage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.Bucket;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static com.bigquery.app.common.util.GcsPathUtil.buildBackupBasePath;
+import static com.bigquery.app.common.util.GcsPathUtil.buildBackupManifestUri;
+import static com.bigquery.app.common.util.TableOrderUtil.largestFirst;
+import static java.util.Objects.isNull;
 
+/**
+ * Finds the tables of a dataset backup and returns them largest first, so that a parallel restore
+ * starts its longest load jobs before the short ones. Sizes come from the backup manifest, or from
+ * the exported files when there is none.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class GcsTableDiscoveryService {
     private final GcsService gcsService;
+    private final ObjectMapper objectMapper;
 
-    public Set<String> discoverBackedUpTables(GcsOptions gcsOptions, String datasetName) {
+    public BackedUpTables discoverBackedUpTables(GcsOptions gcsOptions, String datasetName) {
         log.info("Discovering backed up tables for dataset: {}", datasetName);
 
+        var manifest = readManifest(gcsOptions, datasetName);
+        if (manifest.isPresent()) {
+            return tablesFromManifest(manifest.get(), gcsOptions);
+        }
+
         String gcsBasePath = buildBackupBasePath(
                 gcsOptions.uri(),
                 gcsOptions.backupTimestamp(),
@@ -29,17 +54,70 @@ public class GcsTableDiscoveryService {
                 datasetName
         );
 
-        log.info("Scanning GCS path: {}", gcsBasePath);
+        log.info("No backup manifest for dataset {}, scanning GCS path: {}", datasetName, gcsBasePath);
 
         Bucket bucket = gcsService.getBucket(gcsOptions.uri());
 
         Pattern tableNamePattern = JobUtil.createTableNamePattern(gcsOptions.importOptions().format());
 
-        return gcsService.findTableNamesFromGcsFiles(
-                bucket,
-                gcsBasePath,
-                tableNamePattern,
-                gcsOptions.importOptions().format()
+        // Tables left unchanged by an incremental backup are stored as references to earlier files,
+        // tables exported partition by partition as manifests; both are found in the same listing
+        var tableFiles = gcsService.findTableFilesPerPattern(bucket, gcsBasePath,
+                List.of(tableNamePattern, JobUtil.createTableReferencePattern()));
+
+        var expectedFormat = gcsOptions.importOptions().format();
+        var tableSizes = new HashMap<String, Long>();
+        tableFiles.get(0).forEach((tableName, files) -> {
+            files.forEach(blob -> gcsService.validateFileFormat(blob.getName(), expectedFormat));
+            tableSizes.put(tableName, files.stream().mapToLong(GcsTableDiscoveryService::sizeOf).sum());
+        });
+        tableFiles.get(1).keySet().forEach(tableName -> tableSizes.putIfAbsent(tableName, 0L));
+
+        // Without a manifest the codec is unknown; Avro and Parquet files name it only inside
+        return new BackedUpTables(largestFirst(tableSizes.keySet(), tableSizes), tableSizes,
+                CodecUsage.key(expectedFormat, null), Map.of());
+    }
+
+    private Optional<BackupManifest> readManifest(GcsOptions gcsOptions, String datasetName) {
+        var manifestUri = buildBackupManifestUri(
+                gcsOptions.uri(),
+                gcsOptions.backupTimestamp(),
+                gcsOptions.projectIdOfBackup(),
+                datasetName
         );
+
+        return gcsService.readObject(manifestUri)
+                .flatMap(content -> {
+                    try {
+                        return Optional.of(objectMapper.readValue(content, BackupManifest.class));
+                    } catch (JsonProcessingException e) {
+                        log.warn("Ignoring unreadable backup manifest {}: {}", manifestUri, e.getMessage());
+                        return Optional.empty();
+                    }
+                });
+    }
+
+    private BackedUpTables tablesFromManifest(BackupManifest manifest, GcsOptions gcsOptions) {
+        var expectedFormat = gcsOptions.importOptions().format();
+        if (!manifest.format().equalsIgnoreCase(expectedFormat)) {
+            log.error("Backup format mismatch. Expected: {}, Found: {} for dataset {}",
+                    expectedFormat, manifest.format(), manifest.datasetName());
+            throw new ValidationException(String.format("Extension mismatch. Expected: %s, Found: %s",
+                    expectedFormat, manifest.format()));
+        }
+
+        var tableSizes = manifest.tables().stream()
+                .collect(Collectors.toMap(BackupManifest.TableEntry::tableName, BackupManifest.TableEntry::numBytes,
+                        Long::sum));
+        var entries = manifest.tables().stream()
+                .collect(Collectors.toMap(BackupManifest.TableEntry::tableName, Function.identity(),
+                        (first, second) -> first));
+        log.info("Found {} tables in the backup manifest of dataset {}", tableSizes.size(), manifest.datasetName());
+        return new BackedUpTables(largestFirst(tableSizes.keySet(), tableSizes), tableSizes,
+                CodecUsage.key(manifest.format(), manifest.compression()), entries);
+    }
+
+    private static long sizeOf(Blob blob) {
+        return isNull(blob.getSize()) ? 0 : blob.getSize();
     }
 }
@@ -1,18 +1,29 @@
 package com.bigquery.app.restore.domain;
 
+import com.bigquery.app.common.concurrent.TaskWindow;
 import com.bigquery.app.common.concurrent.ThreadingService;
 import com.bigquery.app.common.exception.ServiceException;
+import com.bigquery.app.common.retry.RetryExecutor;
 import com.bigquery.app.restore.api.RestoreRequest;
 import com.bigquery.app.restore.dto.GcsOptions;
+import com.bigquery.app.run.domain.Run;
+import com.bigquery.app.run.domain.TableRun;
 import com.google.cloud.bigquery.BigQuery;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
+import static com.bigquery.app.common.util.FutureUtil.await;
+import static com.bigquery.app.common.util.FutureUtil.unwrap;
+import static java.util.Objects.isNull;
+import static java.util.stream.Collectors.toCollection;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -21,8 +32,9 @@ public class RestoreOrchestrator {
     private final DatasetRestoreService datasetRestoreService;
     private final TableRestoreService tableRestoreService;
     private final ThreadingService threadingService;
+    private final RetryExecutor retryExecutor;
 
-    public void restore(BigQuery bigQueryClient, RestoreRequest request) {
+    public void restore(BigQuery bigQueryClient, RestoreRequest request, Run run) {
         log.info("Starting restore process");
 
         var gcsOptions = request.restoreStorage().gcsOptions();
@@ -31,12 +43,16 @@ public class RestoreOrchestrator {
         var useMultiThreading = gcsOptions.importOptions().isMultiThreaded();
 
         if (useMultiThreading) {
-            threadingService.configureThreadPoolForImport(gcsOptions.importOptions());
+            threadingService.configureThreadPoolForImport(run.getId(), gcsOptions.importOptions());
         }
 
-        datasetsToRestore.forEach(datasetName ->
-                restoreDataset(bigQueryClient, gcsOptions, datasetName, useMultiThreading)
-        );
+        try {
+            datasetsToRestore.forEach(datasetName ->
+                    restoreDataset(bigQueryClient, gcsOptions, datasetName, useMultiThreading, run)
+            );
+        } finally {
+            threadingService.releaseRun(run.getId());
+        }
 
         log.info("Restore process completed successfully");
     }
@@ -45,18 +61,22 @@ public class RestoreOrchestrator {
             BigQuery destinationBigQuery,
             GcsOptions gcsOptions,
             String sourceDatasetName,
-            boolean useMultiThreading) {
+            boolean useMultiThreading,
+            Run run) {
 
+        run.getJobs().throwIfCancelled();
         log.info("Processing dataset to restore: {}", sourceDatasetName);
 
         var destinationDatasetName = datasetRestoreService.createDestinationDataset(
                 destinationBigQuery,
                 sourceDatasetName,
-                gcsOptions.importOptions().restoreRegion()
+                gcsOptions.importOptions().restoreRegion(),
+                run.getMetadataCalls()
         );
 
-        var tablesToRestore = tableDiscoveryService.discoverBackedUpTables(
+        var backedUpTables = tableDiscoveryService.discoverBackedUpTables(
                 gcsOptions, sourceDatasetName);
+        var tablesToRestore = backedUpTables.tableNames();
 
         log.info("Found {} tables to restore in dataset {}: {}",
                 tablesToRestore.size(), destinationDatasetName, tablesToRestore);
@@ -66,18 +86,32 @@ public class RestoreOrchestrator {
             return;
         }
 
+        run.registerTables(sourceDatasetName, tablesToRestore);
+
+        // Tables that succeeded in the run this one resumes are already restored
+        var completedTables = run.completedEarlier(sourceDatasetName, tablesToRestore);
+        if (!completedTables.isEmpty()) {
+            log.info("{} tables of dataset {} were already restored by run {}", completedTables.size(),
+                    sourceDatasetName, run.getResumedFrom());
+            tablesToRestore = tablesToRestore.stream()
+                    .filter(tableName -> !completedTables.contains(tableName))
+                    .collect(toCollection(LinkedHashSet::new));
+        }
+
         if (useMultiThreading) {
             restoreTablesConcurrently(destinationBigQuery, gcsOptions, sourceDatasetName,
-                    destinationDatasetName, tablesToRestore);
+                    destinationDatasetName, tablesToRestore, backedUpTables, run);
         } else {
             tablesToRestore.forEach(tableName ->
-                    tableRestoreService.restoreTable(
+                    await(restoreTable(
                             destinationBigQuery,
                             gcsOptions,
                             sourceDatasetName,
                             destinationDatasetName,
-                            tableName
-                    )
+                            tableName,
+                            backedUpTables,
+                            run
+                    ))
             );
         }
 
@@ -89,34 +123,33 @@ public class RestoreOrchestrator {
             GcsOptions gcsOptions,
             String sourceDatasetName,
             String destinationDatasetName,
-            java.util.Set<String> tablesToRestore) {
+            Set<String> tablesToRestore,
+            BackedUpTables backedUpTables,
+            Run run) {
 
         log.info("Restoring {} tables concurrently for dataset {}",
                 tablesToRestore.size(), sourceDatasetName);
 
-        var tableFutures = new ArrayList<CompletableFuture<Void>>();
-
-        for (String tableName : tablesToRestore) {
-            var future = threadingService.submitRestoreTask(() -> {
-                log.info("Starting restore for table {}.{} in thread: {}",
-                        sourceDatasetName, tableName, Thread.currentThread().getName());
+        var window = new TaskWindow(gcsOptions.importOptions().submissionWindow());
 
-                tableRestoreService.restoreTable(
+        try {
+            for (String tableName : tablesToRestore) {
+                if (run.getJobs().isCancelled()) {
+                    break;
+                }
+                window.submit(() -> threadingService.submitRestoreJob(run.getId(), () -> restoreTable(
                         bigQuery,
                         gcsOptions,
                         sourceDatasetName,
                         destinationDatasetName,
-                        tableName
-                );
-
-                log.info("Completed restore for table {}.{}", sourceDatasetName, tableName);
-            });
-
-            tableFutures.add(future);
-        }
-
-        try {
-            CompletableFuture.allOf(tableFutures.toArray(new CompletableFuture[0])).get();
+                        tableName,
+                        backedUpTables,
+                        run
+                )));
+            }
+
+            window.awaitAll();
+            run.getJobs().throwIfCancelled();
             log.info("All parallel table restore tasks completed successfully for dataset {}", sourceDatasetName);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -125,4 +158,71 @@ public class RestoreOrchestrator {
             throw new ServiceException("Restore", "Error during parallel table restore: " + e.getCause().getMessage(), e.getCause());
         }
     }
-}
\ No newline at end of file
+
+    private CompletableFuture<Void> restoreTable(
+            BigQuery bigQuery,
+            GcsOptions gcsOptions,
+            String sourceDatasetName,
+            String destinationDatasetName,
+            String tableName,
+            BackedUpTables backedUpTables,
+            Run run) {
+
+        var jobs = run.getJobs();
+        var tableRun = run.table(sourceDatasetName, tableName);
+
+        // A table still waiting for a slot when the run is cancelled is not started
+        if (jobs.isCancelled()) {
+            tableRun.cancel();
+            return CompletableFuture.failedFuture(jobs.cancellation());
+        }
+
+        log.info("Starting restore for table {}.{}", sourceDatasetName, tableName);
+        tableRun.start();
+
+        return retryExecutor.execute("restore", tableRun.getRetryBudget(),
+                threadingService.getRestoreExecutor(run.getId()),
+                () -> tableRestoreService.restoreTable(
+                        bigQuery,
+                        gcsOptions,
+                        sourceDatasetName,
+                        destinationDatasetName,
+                        tableName,
+                        backedUpTables.manifestEntries().get(tableName),
+                        run.getMetadataCalls(),
+                        jobs
+                )).whenComplete((ignored, throwable) -> {
+            if (isNull(throwable)) {
+                tableRun.succeed();
+                recordTableSize(tableName, backedUpTables, tableRun, run);
+                log.info("Completed restore for table {}.{}", sourceDatasetName, tableName);
+                return;
+            }
+
+            var cause = unwrap(throwable);
+            if (cause instanceof CancellationException) {
+                tableRun.cancel();
+                return;
+            }
+
+            tableRun.fail(cause);
+            if (gcsOptions.importOptions().isFailFast() && jobs.cancel("table " + tableRun.getKey() + " failed")) {
+                log.warn("Restore of table {} failed, cancelling the other tables of run {}",
+                        tableRun.getKey(), run.getId());
+            }
+        });
+    }
+
+    /**
+     * Records the backup size of a restored table and adds it to the run's per-codec totals. Tables without
+     * files of their own in this backup, such as references to earlier backups, say nothing about the codec
+     * and are left out.
+     */
+    private static void recordTableSize(String tableName, BackedUpTables backedUpTables, TableRun tableRun, Run run) {
+        var bytes = backedUpTables.tableSizes().getOrDefault(tableName, 0L);
+        if (bytes > 0) {
+            tableRun.recordSize(null, bytes);
+            run.getCodecUsage().record(backedUpTables.codec(), bytes, tableRun);
+        }
+    }
+}
@@ -1,84 +1,247 @@
 package com.bigquery.app.restore.domain;
 
 import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.JobGroup;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
 import com.bigquery.app.common.exception.ServiceException;
+import com.bigquery.app.common.gcs.BackupManifest;
+import com.bigquery.app.common.gcs.BackupReference;
+import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.common.gcs.TableLayout;
+import com.bigquery.app.common.gcs.TableManifest;
 import com.bigquery.app.restore.dto.GcsOptions;
 import com.bigquery.app.restore.dto.ImportOptions;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TableInfo;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import static com.bigquery.app.common.util.FutureUtil.defer;
+import static com.bigquery.app.common.util.FutureUtil.unwrap;
 import static com.bigquery.app.common.util.GcsPathUtil.buildBackupFileUri;
+import static com.bigquery.app.common.util.GcsPathUtil.buildTableLayoutUri;
+import static com.bigquery.app.common.util.GcsPathUtil.buildTableManifestUri;
+import static com.bigquery.app.common.util.GcsPathUtil.buildTableReferenceUri;
 import static com.bigquery.app.common.util.JobUtil.resolveWriteDisposition;
+import static java.util.Objects.nonNull;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TableRestoreService {
     private final BigQueryService bigQueryService;
+    private final GcsService gcsService;
+    private final ObjectMapper objectMapper;
 
-    public void restoreTable(
+    /**
+     * Restores the table from the files listed in its backup manifest entry. Without an entry, or for entries
+     * that do not list them, the table's reference, manifest and layout objects are read instead.
+     */
+    public CompletableFuture<Void> restoreTable(
             BigQuery bigQuery,
             GcsOptions gcsOptions,
             String sourceDatasetName,
             String destinationDatasetName,
-            String tableName) {
+            String tableName,
+            BackupManifest.TableEntry manifestEntry,
+            MetadataCallCounter metadataCalls,
+            JobGroup jobGroup) {
 
         log.info("Restoring table: {}.{} to {}.{}",
                 sourceDatasetName, tableName, destinationDatasetName, tableName);
 
-        String sourceUri = buildBackupFileUri(
-                gcsOptions.uri(),
-                gcsOptions.backupTimestamp(),
-                gcsOptions.projectIdOfBackup(),
-                sourceDatasetName,
-                tableName,
-                gcsOptions.importOptions().format()
-        );
+        var backupTimestamp = resolveBackupTimestamp(gcsOptions, sourceDatasetName, tableName, manifestEntry);
+        var sourceUris = nonNull(manifestEntry) && nonNull(manifestEntry.sourceUris())
+                ? manifestEntry.sourceUris()
+                : resolveSourceUris(gcsOptions, backupTimestamp, sourceDatasetName, tableName);
+
+        log.info("Source URIs for restore: {}", sourceUris);
 
-        log.info("Source URI for restore: {}", sourceUri);
+        if (sourceUris.isEmpty()) {
+            log.info("Table {}.{} has no partitions in backup {}, nothing to restore",
+                    sourceDatasetName, tableName, backupTimestamp);
+            return CompletableFuture.completedFuture(null);
+        }
 
         TableId destinationTableId = TableId.of(destinationDatasetName, tableName);
 
         JobInfo.WriteDisposition writeDisposition = resolveWriteDisposition(
                 gcsOptions.importOptions().writeDisposition());
 
-        try {
-            importTableFromGcs(
-                    bigQuery,
-                    destinationTableId,
-                    sourceUri,
-                    gcsOptions.importOptions(),
-                    writeDisposition
-            );
+        var layout = nonNull(manifestEntry) && nonNull(manifestEntry.layout())
+                ? Optional.of(manifestEntry.layout())
+                : resolveLayout(gcsOptions, backupTimestamp, sourceDatasetName, tableName);
+
+        return defer(() -> importTableFromGcs(
+                bigQuery,
+                destinationTableId,
+                sourceUris,
+                gcsOptions.importOptions(),
+                writeDisposition,
+                layout.map(tableLayout -> createDestinationTable(
+                        bigQuery, destinationTableId, tableLayout, metadataCalls)).orElse(null),
+                jobGroup
+        )).<Void>thenApply(ignored -> {
             log.info("Table {} successfully restored to {}.{}",
                     tableName, destinationDatasetName, tableName);
-        } catch (Exception e) {
-            log.error("Error restoring table {}: {}", tableName, e.getMessage());
-            throw new ServiceException("Restore", "Failed to restore table: " + tableName, e);
+            return null;
+        }).exceptionally(throwable -> {
+            var cause = unwrap(throwable);
+            if (cause instanceof CancellationException cancellation) {
+                throw cancellation;
+            }
+            log.error("Error restoring table {}: {}", tableName, cause.getMessage());
+            throw new ServiceException("Restore", "Failed to restore table: " + tableName, cause);
+        });
+    }
+
+    private String resolveBackupTimestamp(GcsOptions gcsOptions,
+                                          String sourceDatasetName,
+                                          String tableName,
+                                          BackupManifest.TableEntry manifestEntry) {
+        if (nonNull(manifestEntry)) {
+            return Optional.ofNullable(manifestEntry.referencedBackup())
+                    .map(referencedBackup -> logReference(gcsOptions, sourceDatasetName, tableName, referencedBackup))
+                    .orElse(gcsOptions.backupTimestamp());
         }
+
+        var referenceUri = buildTableReferenceUri(
+                gcsOptions.uri(),
+                gcsOptions.backupTimestamp(),
+                gcsOptions.projectIdOfBackup(),
+                sourceDatasetName,
+                tableName
+        );
+
+        return gcsService.readObject(referenceUri)
+                .map(content -> {
+                    try {
+                        return objectMapper.readValue(content, BackupReference.class).backupTimestamp();
+                    } catch (JsonProcessingException e) {
+                        throw new ServiceException("Restore", "Invalid backup reference: " + referenceUri, e);
+                    }
+                })
+                .map(referencedBackup -> logReference(gcsOptions, sourceDatasetName, tableName, referencedBackup))
+                .orElse(gcsOptions.backupTimestamp());
+    }
+
+    private static String logReference(GcsOptions gcsOptions,
+                                       String sourceDatasetName,
+                                       String tableName,
+                                       String referencedBackup) {
+        log.info("Table {}.{} was unchanged in backup {}, restoring files of backup {}",
+                sourceDatasetName, tableName, gcsOptions.backupTimestamp(), referencedBackup);
+        return referencedBackup;
+    }
+
+    /**
+     * The layout written next to the table's files, empty for backups made before layouts were written.
+     */
+    private Optional<TableLayout> resolveLayout(GcsOptions gcsOptions,
+                                                String backupTimestamp,
+                                                String sourceDatasetName,
+                                                String tableName) {
+        var layoutUri = buildTableLayoutUri(
+                gcsOptions.uri(),
+                backupTimestamp,
+                gcsOptions.projectIdOfBackup(),
+                sourceDatasetName,
+                tableName
+        );
+
+        return gcsService.readObject(layoutUri)
+                .map(content -> {
+                    try {
+                        return objectMapper.readValue(content, TableLayout.class);
+                    } catch (JsonProcessingException e) {
+                        throw new ServiceException("Restore", "Invalid table layout: " + layoutUri, e);
+                    }
+                });
+    }
+
+    /**
+     * Creates the destination table with the backed-up layout and returns the layout to load with. A table
+     * that already exists keeps its partitioning and clustering, since a load cannot change them.
+     */
+    private TableLayout createDestinationTable(BigQuery bigQuery,
+                                               TableId tableId,
+                                               TableLayout layout,
+                                               MetadataCallCounter metadataCalls) {
+        var created = bigQueryService.createTable(bigQuery, TableInfo.of(tableId, layout.toDefinition()),
+                metadataCalls);
+        if (created) {
+            return layout;
+        }
+
+        log.info("Table {} already exists, loading it with the backed-up schema only", tableId);
+        return layout.schemaOnly();
+    }
+
+    private List<String> resolveSourceUris(GcsOptions gcsOptions,
+                                           String backupTimestamp,
+                                           String sourceDatasetName,
+                                           String tableName) {
+        var manifestUri = buildTableManifestUri(
+                gcsOptions.uri(),
+                backupTimestamp,
+                gcsOptions.projectIdOfBackup(),
+                sourceDatasetName,
+                tableName
+        );
+
+        return gcsService.readObject(manifestUri)
+                .map(content -> {
+                    try {
+                        return objectMapper.readValue(content, TableManifest.class);
+                    } catch (JsonProcessingException e) {
+                        throw new ServiceException("Restore", "Invalid table manifest: " + manifestUri, e);
+                    }
+                })
+                .map(manifest -> manifest.partitions().stream()
+                        .map(TableManifest.PartitionFile::uri)
+                        .toList())
+                .orElseGet(() -> List.of(buildBackupFileUri(
+                        gcsOptions.uri(),
+                        backupTimestamp,
+                        gcsOptions.projectIdOfBackup(),
+                        sourceDatasetName,
+                        tableName,
+                        gcsOptions.importOptions().format()
+                )));
     }
 
-    private void importTableFromGcs(
+    private CompletableFuture<Void> importTableFromGcs(
             BigQuery bigQuery,
             TableId tableId,
-            String sourceUri,
+            List<String> sourceUris,
             ImportOptions importOptions,
-            JobInfo.WriteDisposition writeDisposition) {
+            JobInfo.WriteDisposition writeDisposition,
+            TableLayout layout,
+            JobGroup jobGroup) {
 
-        bigQueryService.executeImport(
+        return bigQueryService.executeImport(
                 bigQuery,
                 tableId,
-                sourceUri,
+                sourceUris,
                 importOptions.format(),
                 importOptions.header(),
                 importOptions.fieldDelimiter(),
                 importOptions.ignoreUnknownValues(),
                 importOptions.maxBadRecords(),
-                writeDisposition
+                writeDisposition,
+                layout,
+                importOptions.restoreRegion(),
+                jobGroup
         );
     }
 }
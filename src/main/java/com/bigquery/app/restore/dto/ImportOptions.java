@@ -21,7 +21,8 @@ public record ImportOptions(
         Integer maxBadRecords,
         @NotBlank String writeDisposition,
         Integer threadPoolSize,
-        Integer threadQueueCapacity
+        Integer threadQueueCapacity,
+        Boolean failFast
 ) {
     private static ImportProperties.DefaultProperties defaults;
 
@@ -35,7 +36,8 @@ public record ImportOptions(
             @JsonProperty("maxBadRecords") Integer maxBadRecords,
             @JsonProperty("writeDisposition") String writeDisposition,
             @JsonProperty("threadPoolSize") Integer threadPoolSize,
-            @JsonProperty("threadQueueCapacity") Integer threadQueueCapacity
+            @JsonProperty("threadQueueCapacity") Integer threadQueueCapacity,
+            @JsonProperty("failFast") Boolean failFast
     ) {
         this.restoreRegion = nonNull(restoreRegion) ? restoreRegion : defaults.getRestoreRegion();
         this.format = nonNull(format) ? format : defaults.getFormat();
@@ -46,6 +48,7 @@ public record ImportOptions(
         this.writeDisposition = nonNull(writeDisposition) ? writeDisposition : defaults.getWriteDisposition();
         this.threadPoolSize = threadPoolSize;
         this.threadQueueCapacity = threadQueueCapacity;
+        this.failFast = nonNull(failFast) ? failFast : defaults.getFailFast();
     }
 
     public static void setDefaults(ImportProperties importProperties) {
@@ -73,4 +76,16 @@ public record ImportOptions(
     public boolean isMultiThreaded() {
         return nonNull(threadPoolSize) && threadPoolSize > 1;
     }
+
+    public boolean isFailFast() {
+        return Boolean.TRUE.equals(failFast);
+    }
+
+    /**
+     * Tables of a parallel restore that are submitted but not finished at any time: the load jobs in
+     * flight and up to {@code threadQueueCapacity} tables waiting for one.
+     */
+    public int submissionWindow() {
+        return threadPoolSize + (isNull(threadQueueCapacity) ? 0 : threadQueueCapacity);
+    }
 }
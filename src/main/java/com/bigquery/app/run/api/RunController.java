@@ -0,0 +1,34 @@
+package com.bigquery.app.run.api;
+
+import com.bigquery.app.run.domain.RunService;
+import com.bigquery.app.run.dto.RunResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.ResponseEntity.accepted;
+import static org.springframework.http.ResponseEntity.ok;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1")
+public class RunController {
+
+    private final RunService runService;
+
+    @GetMapping("/runs/{runId}")
+    public ResponseEntity<RunResponse> getRun(@PathVariable String runId) {
+        return ok(runService.findRun(runId)
+                .map(RunResponse::from)
+                .orElseGet(() -> RunResponse.from(runService.getJournaledRun(runId))));
+    }
+
+    @PostMapping("/runs/{runId}/cancel")
+    public ResponseEntity<RunResponse> cancelRun(@PathVariable String runId) {
+        return accepted().body(RunResponse.from(runService.cancel(runId)));
+    }
+}
@@ -0,0 +1,48 @@
+package com.bigquery.app.run.domain;
+
+import com.bigquery.app.run.dto.CodecSummary;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Sums the file bytes and table durations of one run per format and codec, so that formats can be
+ * compared by the size of their files and by how long tables take to export or load with them.
+ */
+public class CodecUsage {
+    public static final String UNKNOWN_CODEC = "UNKNOWN";
+
+    private final Map<String, Totals> totals = new ConcurrentHashMap<>();
+
+    public static String key(String format, String codec) {
+        return format.toUpperCase() + "/" + (isNull(codec) ? UNKNOWN_CODEC : codec.toUpperCase());
+    }
+
+    public void record(String codecKey, long bytes, TableRun tableRun) {
+        var codecTotals = totals.computeIfAbsent(codecKey, ignored -> new Totals());
+        codecTotals.tables.increment();
+        codecTotals.bytes.add(bytes);
+        if (nonNull(tableRun.getStartedAt()) && nonNull(tableRun.getFinishedAt())) {
+            codecTotals.durationMs.add(Duration.between(tableRun.getStartedAt(), tableRun.getFinishedAt()).toMillis());
+        }
+    }
+
+    public Map<String, CodecSummary> getSummary() {
+        var summary = new TreeMap<String, CodecSummary>();
+        totals.forEach((codecKey, codecTotals) -> summary.put(codecKey, new CodecSummary(
+                codecTotals.tables.sum(), codecTotals.bytes.sum(), codecTotals.durationMs.sum())));
+        return summary;
+    }
+
+    private static class Totals {
+        private final LongAdder tables = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder durationMs = new LongAdder();
+    }
+}
@@ -0,0 +1,46 @@
+package com.bigquery.app.run.domain;
+
+import com.bigquery.app.common.exception.ServiceException;
+import com.bigquery.app.common.gcs.GcsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+
+/**
+ * Keeps one JSON object per run under {@code uri}, so runs can be resumed by any instance and after a
+ * restart.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class GcsRunJournal implements RunJournal {
+    private final GcsService gcsService;
+    private final ObjectMapper objectMapper;
+    private final String uri;
+
+    @Override
+    public void save(RunRecord record) {
+        try {
+            gcsService.writeJsonObject(recordUri(record.runId()), objectMapper.writeValueAsString(record));
+        } catch (JsonProcessingException e) {
+            throw new ServiceException("Run journal", "Could not serialize run " + record.runId(), e);
+        }
+    }
+
+    @Override
+    public Optional<RunRecord> find(String runId) {
+        return gcsService.readObject(recordUri(runId)).map(content -> {
+            try {
+                return objectMapper.readValue(content, RunRecord.class);
+            } catch (JsonProcessingException e) {
+                throw new ServiceException("Run journal", "Could not read journal of run " + runId, e);
+            }
+        });
+    }
+
+    private String recordUri(String runId) {
+        return (uri.endsWith("/") ? uri : uri + "/") + runId + ".json";
+    }
+}
@@ -0,0 +1,23 @@
+package com.bigquery.app.run.domain;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps run records in memory, which allows resuming failed runs but not runs lost with the process.
+ * Used when no journal location is configured, and in tests.
+ */
+public class InMemoryRunJournal implements RunJournal {
+    private final Map<String, RunRecord> records = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(RunRecord record) {
+        records.put(record.runId(), record);
+    }
+
+    @Override
+    public Optional<RunRecord> find(String runId) {
+        return Optional.ofNullable(records.get(runId));
+    }
+}
@@ -0,0 +1,130 @@
+package com.bigquery.app.run.domain;
+
+import com.bigquery.app.common.bigquery.JobGroup;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
+import com.bigquery.app.common.retry.RetryBudget;
+import com.bigquery.app.run.dto.RunState;
+import com.bigquery.app.run.dto.RunType;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+@Getter
+public class Run {
+    private final String id;
+    private final RunType type;
+    private final Instant createdAt;
+    private volatile RunState state = RunState.PENDING;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private final Map<String, TableRun> tables = new ConcurrentSkipListMap<>();
+    private final RetryBudget retryBudget;
+    private final int maxRetriesPerTable;
+    private final MetadataCallCounter metadataCalls = new MetadataCallCounter();
+    private final CodecUsage codecUsage = new CodecUsage();
+    private final JobGroup jobs = new JobGroup();
+    private volatile boolean cancelRequested;
+    private final JsonNode request;
+    private final String resumedFrom;
+    private final Map<String, RunRecord.TableRecord> previousTables;
+
+    public Run(RunType type, int maxRetriesPerRun, int maxRetriesPerTable) {
+        this(type, maxRetriesPerRun, maxRetriesPerTable, null, null);
+    }
+
+    /**
+     * A run of {@code request}. When {@code previous} is given, the run resumes it: tables take over
+     * the progress they made there as they are registered.
+     */
+    public Run(RunType type, int maxRetriesPerRun, int maxRetriesPerTable, JsonNode request, RunRecord previous) {
+        this.id = UUID.randomUUID().toString();
+        this.type = type;
+        this.createdAt = Instant.now();
+        this.retryBudget = new RetryBudget(maxRetriesPerRun);
+        this.maxRetriesPerTable = maxRetriesPerTable;
+        this.request = request;
+        this.resumedFrom = isNull(previous) ? null : previous.runId();
+        this.previousTables = isNull(previous)
+                ? Map.of()
+                : previous.tables().stream()
+                        .collect(Collectors.toMap(RunRecord.TableRecord::key, Function.identity()));
+    }
+
+    public void registerTables(String datasetName, Collection<String> tableNames) {
+        tableNames.forEach(tableName -> table(datasetName, tableName));
+    }
+
+    public TableRun table(String datasetName, String tableName) {
+        return tables.computeIfAbsent(TableRun.key(datasetName, tableName), key -> {
+            var tableRun = new TableRun(datasetName, tableName, retryBudget.child(maxRetriesPerTable));
+            var previous = previousTables.get(key);
+            if (nonNull(previous)) {
+                tableRun.resumeFrom(previous, resumedFrom);
+            }
+            return tableRun;
+        });
+    }
+
+    /**
+     * The given tables of the dataset that already succeeded in the run this run resumes.
+     */
+    public Set<String> completedEarlier(String datasetName, Collection<String> tableNames) {
+        return tableNames.stream()
+                .filter(tableName -> table(datasetName, tableName).isCompletedEarlier())
+                .collect(Collectors.toSet());
+    }
+
+    public List<TableRun> getTables() {
+        return new ArrayList<>(tables.values());
+    }
+
+    public void start() {
+        startedAt = Instant.now();
+        state = RunState.RUNNING;
+    }
+
+    public void succeed() {
+        finishedAt = Instant.now();
+        state = RunState.SUCCEEDED;
+    }
+
+    public void fail(Throwable cause) {
+        finishedAt = Instant.now();
+        error = nonNull(cause.getMessage()) ? cause.getMessage() : cause.getClass().getSimpleName();
+        state = RunState.FAILED;
+    }
+
+    /**
+     * Asks the run to stop: its running BigQuery jobs are cancelled and no further table is started.
+     * The run reaches the {@code CANCELLED} state once its work has stopped.
+     */
+    public void cancel() {
+        cancelRequested = true;
+        jobs.cancel("run " + id + " was cancelled on request");
+    }
+
+    /**
+     * Finishes a run that stopped because it was cancelled. Tables that never started are cancelled too.
+     */
+    public void finishCancelled() {
+        tables.values().stream()
+                .filter(table -> table.getState() == RunState.PENDING)
+                .forEach(TableRun::cancel);
+        finishedAt = Instant.now();
+        state = RunState.CANCELLED;
+    }
+}
@@ -0,0 +1,14 @@
+package com.bigquery.app.run.domain;
+
+import java.util.Optional;
+
+/**
+ * Durable store of run progress, written while a run is in progress so that it can be resumed after a
+ * failure or a restart.
+ */
+public interface RunJournal {
+
+    void save(RunRecord record);
+
+    Optional<RunRecord> find(String runId);
+}
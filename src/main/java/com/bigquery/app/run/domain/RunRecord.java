@@ -0,0 +1,77 @@
+package com.bigquery.app.run.domain;
+
+import com.bigquery.app.run.dto.RunState;
+import com.bigquery.app.run.dto.RunType;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The journaled progress of a run: its request and, for every table, how far the table got. A run that
+ * failed, was cancelled or was lost with the process can be resumed from it.
+ */
+public record RunRecord(
+        String runId,
+        RunType type,
+        RunState state,
+        Instant createdAt,
+        Instant startedAt,
+        Instant finishedAt,
+        String error,
+        String resumedFrom,
+        JsonNode request,
+        List<TableRecord> tables
+) {
+    public static RunRecord from(Run run) {
+        var tables = run.getTables().stream()
+                .map(TableRecord::from)
+                .toList();
+
+        return new RunRecord(
+                run.getId(),
+                run.getType(),
+                run.getState(),
+                run.getCreatedAt(),
+                run.getStartedAt(),
+                run.getFinishedAt(),
+                run.getError(),
+                run.getResumedFrom(),
+                run.getRequest(),
+                tables
+        );
+    }
+
+    /**
+     * {@code completedInRun} is set for tables that succeeded in an earlier run and were carried over.
+     */
+    public record TableRecord(
+            String datasetName,
+            String tableName,
+            RunState state,
+            boolean snapshotDone,
+            Long rows,
+            Long bytes,
+            Instant finishedAt,
+            String completedInRun,
+            String error
+    ) {
+        static TableRecord from(TableRun tableRun) {
+            return new TableRecord(
+                    tableRun.getDatasetName(),
+                    tableRun.getTableName(),
+                    tableRun.getState(),
+                    tableRun.isSnapshotDone(),
+                    tableRun.getRows(),
+                    tableRun.getBytes(),
+                    tableRun.getFinishedAt(),
+                    tableRun.getCompletedInRun(),
+                    tableRun.getError()
+            );
+        }
+
+        String key() {
+            return TableRun.key(datasetName, tableName);
+        }
+    }
+}
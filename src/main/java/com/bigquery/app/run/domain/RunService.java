@@ -0,0 +1,223 @@
+package com.bigquery.app.run.domain;
+
+import com.bigquery.app.common.config.RetryProperties;
+import com.bigquery.app.common.config.RunProperties;
+import com.bigquery.app.common.exception.ConflictException;
+import com.bigquery.app.common.exception.ResourceNotFoundException;
+import com.bigquery.app.common.exception.ServiceException;
+import com.bigquery.app.common.exception.ValidationException;
+import com.bigquery.app.run.dto.RunState;
+import com.bigquery.app.run.dto.RunType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RunService {
+    private final ThreadPoolTaskExecutor runTaskExecutor;
+    private final RunProperties runProperties;
+    private final RetryProperties retryProperties;
+    private final RunJournal runJournal;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+    private final Map<String, RunRecord> lastCheckpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Starts {@code work} as a run of {@code request}. The request is journaled with the run's progress so
+     * that the run can be resumed.
+     */
+    public Run start(RunType type, Object request, Consumer<Run> work) {
+        var run = new Run(type, retryProperties.getMaxRetriesPerRun(), retryProperties.getMaxRetriesPerTable(),
+                objectMapper.valueToTree(request), null);
+        return submit(run, work);
+    }
+
+    /**
+     * Starts a new run of the request of a failed, cancelled or lost run. Tables that succeeded in that
+     * run are not processed again, and tables whose snapshot was taken keep it.
+     */
+    public <T> Run resume(String runId, RunType type, Class<T> requestType, BiConsumer<T, Run> work) {
+        var previous = findResumable(runId, type);
+
+        T request;
+        try {
+            request = objectMapper.treeToValue(previous.request(), requestType);
+        } catch (JsonProcessingException e) {
+            throw new ServiceException("Run", "Could not read the request of run " + runId, e);
+        }
+
+        var run = new Run(type, retryProperties.getMaxRetriesPerRun(), retryProperties.getMaxRetriesPerTable(),
+                previous.request(), previous);
+        log.info("Resuming {} run {} as run {}, {} of its tables already succeeded", type, runId, run.getId(),
+                previous.tables().stream().filter(table -> table.state() == RunState.SUCCEEDED).count());
+        return submit(run, r -> work.accept(request, r));
+    }
+
+    private Run submit(Run run, Consumer<Run> work) {
+        var type = run.getType();
+        runs.put(run.getId(), run);
+        evictFinishedRuns();
+
+        try {
+            runTaskExecutor.execute(() -> execute(run, work));
+        } catch (TaskRejectedException e) {
+            runs.remove(run.getId());
+            throw new ServiceException("Run", "Too many runs in progress, please retry later", e);
+        }
+
+        log.info("Accepted {} run {}", type, run.getId());
+        return run;
+    }
+
+    private RunRecord findResumable(String runId, RunType type) {
+        var running = runs.get(runId);
+        if (nonNull(running) && !running.getState().isFinished()) {
+            throw new ConflictException("Run", runId + " is still " + running.getState());
+        }
+
+        var previous = runJournal.find(runId)
+                .orElseThrow(() -> new ResourceNotFoundException("Run journal", runId));
+        if (previous.type() != type) {
+            throw new ValidationException("Run " + runId + " is a " + previous.type() + " run, not a " + type + " run");
+        }
+        if (previous.state() == RunState.SUCCEEDED) {
+            throw new ConflictException("Run", runId + " already succeeded");
+        }
+        if (isNull(previous.request())) {
+            throw new ValidationException("Run " + runId + " was journaled without its request");
+        }
+        // A journal still RUNNING for a run this instance does not know belongs to a lost process
+        return previous;
+    }
+
+    /**
+     * Journals the progress of every unfinished run. Runs are also journaled when they start and finish.
+     */
+    @Scheduled(fixedDelayString = "${run.journal.checkpoint-interval:10s}")
+    public void checkpointRunningRuns() {
+        runs.values().stream()
+                .filter(run -> !run.getState().isFinished())
+                .forEach(this::checkpoint);
+    }
+
+    /**
+     * Writes the run's record unless it is unchanged since the last write. A journal that cannot be written
+     * does not fail the run, which then simply cannot be resumed from this point.
+     */
+    private void checkpoint(Run run) {
+        // Serialized per run so that an older record never overwrites a newer one
+        synchronized (run) {
+            var record = RunRecord.from(run);
+            if (record.equals(lastCheckpoints.get(run.getId()))) {
+                return;
+            }
+
+            try {
+                runJournal.save(record);
+                if (run.getState().isFinished()) {
+                    lastCheckpoints.remove(run.getId());
+                } else {
+                    lastCheckpoints.put(run.getId(), record);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not journal {} run {}: {}", run.getType(), run.getId(), e.getMessage());
+            }
+        }
+    }
+
+    public Run getRun(String runId) {
+        return findRun(runId)
+                .orElseThrow(() -> new ResourceNotFoundException("Run", runId));
+    }
+
+    public Optional<Run> findRun(String runId) {
+        return Optional.ofNullable(runs.get(runId));
+    }
+
+    /**
+     * The last journaled progress of a run this instance does not know, because it runs on another instance,
+     * was started before a restart or was evicted.
+     */
+    public RunRecord getJournaledRun(String runId) {
+        return runJournal.find(runId)
+                .orElseThrow(() -> new ResourceNotFoundException("Run", runId));
+    }
+
+    /**
+     * Cancels the run's running BigQuery jobs and stops it from starting more tables. Cancelling a
+     * finished run has no effect.
+     */
+    public Run cancel(String runId) {
+        var run = getRun(runId);
+        if (run.getState().isFinished()) {
+            log.info("{} run {} already finished as {}, nothing to cancel", run.getType(), runId, run.getState());
+            return run;
+        }
+
+        log.info("Cancelling {} run {}", run.getType(), runId);
+        run.cancel();
+        return run;
+    }
+
+    private void execute(Run run, Consumer<Run> work) {
+        if (run.isCancelRequested()) {
+            run.finishCancelled();
+            log.info("{} run {} was cancelled before it started", run.getType(), run.getId());
+            checkpoint(run);
+            return;
+        }
+
+        run.start();
+        log.info("Started {} run {}", run.getType(), run.getId());
+        checkpoint(run);
+
+        try {
+            work.accept(run);
+            run.succeed();
+            log.info("{} run {} succeeded", run.getType(), run.getId());
+        } catch (Exception e) {
+            if (run.isCancelRequested()) {
+                run.finishCancelled();
+                log.info("{} run {} was cancelled: {}", run.getType(), run.getId(), e.getMessage());
+            } else {
+                run.fail(e);
+                log.error("{} run {} failed: {}", run.getType(), run.getId(), e.getMessage(), e);
+            }
+        }
+        checkpoint(run);
+    }
+
+    private void evictFinishedRuns() {
+        var maxRuns = runProperties.getRetention().getMaxRuns();
+        var excess = runs.size() - maxRuns;
+        if (excess <= 0) {
+            return;
+        }
+
+        runs.values().stream()
+                .filter(run -> run.getState().isFinished())
+                .sorted(Comparator.comparing(Run::getCreatedAt))
+                .limit(excess)
+                .map(Run::getId)
+                .toList()
+                .forEach(runs::remove);
+    }
+}
@@ -0,0 +1,107 @@
+package com.bigquery.app.run.domain;
+
+import com.bigquery.app.common.retry.RetryBudget;
+import com.bigquery.app.run.dto.RunState;
+import lombok.Getter;
+
+import java.time.Instant;
+
+import static java.util.Objects.nonNull;
+
+@Getter
+public class TableRun {
+    private final String datasetName;
+    private final String tableName;
+    private volatile RunState state = RunState.PENDING;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile String referencedBackup;
+    private volatile boolean snapshotDone;
+    private volatile Long rows;
+    private volatile Long bytes;
+    private volatile String completedInRun;
+    private volatile boolean alreadyExported;
+    private final RetryBudget retryBudget;
+
+    public TableRun(String datasetName, String tableName, RetryBudget retryBudget) {
+        this.datasetName = datasetName;
+        this.tableName = tableName;
+        this.retryBudget = retryBudget;
+    }
+
+    public String getKey() {
+        return key(datasetName, tableName);
+    }
+
+    public void start() {
+        startedAt = Instant.now();
+        state = RunState.RUNNING;
+    }
+
+    public void succeed() {
+        finishedAt = Instant.now();
+        state = RunState.SUCCEEDED;
+    }
+
+    public void skip(String referencedBackup) {
+        this.referencedBackup = referencedBackup;
+        finishedAt = Instant.now();
+        state = RunState.SKIPPED;
+    }
+
+    public void markSnapshotDone() {
+        snapshotDone = true;
+    }
+
+    public void recordSize(Long rows, Long bytes) {
+        this.rows = rows;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Whether the table already succeeded in an earlier run that this run resumes.
+     */
+    public boolean isCompletedEarlier() {
+        return nonNull(completedInRun);
+    }
+
+    /**
+     * The table's files for this backup time were completed by an earlier attempt, so it was not exported again.
+     */
+    public void succeedWithEarlierExport() {
+        alreadyExported = true;
+        succeed();
+    }
+
+    /**
+     * Takes over the progress a table made in the run this run resumes. A table that succeeded there
+     * stays succeeded and is not processed again. A table whose snapshot was taken keeps the mark, but
+     * its snapshot is requested again in case it expired since.
+     */
+    void resumeFrom(RunRecord.TableRecord previous, String previousRunId) {
+        snapshotDone = previous.snapshotDone();
+        rows = previous.rows();
+        bytes = previous.bytes();
+        if (previous.state() == RunState.SUCCEEDED) {
+            completedInRun = nonNull(previous.completedInRun()) ? previous.completedInRun() : previousRunId;
+            finishedAt = previous.finishedAt();
+            state = RunState.SUCCEEDED;
+        }
+    }
+
+    public void cancel() {
+        finishedAt = Instant.now();
+        state = RunState.CANCELLED;
+    }
+
+    public void fail(Throwable cause) {
+        finishedAt = Instant.now();
+        error = nonNull(cause.getMessage()) ? cause.getMessage() : cause.getClass().getSimpleName();
+        state = RunState.FAILED;
+    }
+
+    static String key(String datasetName, String tableName) {
+        return datasetName + "." + tableName;
+    }
+}
@@ -0,0 +1,8 @@
+package com.bigquery.app.run.dto;
+
+public record CodecSummary(
+        long tables,
+        long bytes,
+        long durationMs
+) {
+}
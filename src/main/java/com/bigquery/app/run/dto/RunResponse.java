@@ -0,0 +1,82 @@
+package com.bigquery.app.run.dto;
+
+import com.bigquery.app.run.domain.Run;
+import com.bigquery.app.run.domain.RunRecord;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public record RunResponse(
+        String runId,
+        RunType type,
+        RunState state,
+        Instant createdAt,
+        Instant startedAt,
+        Instant finishedAt,
+        Long durationMs,
+        String error,
+        String resumedFrom,
+        int retries,
+        Map<String, Long> metadataCalls,
+        Map<String, CodecSummary> codecs,
+        Map<RunState, Long> tableSummary,
+        List<TableRunResponse> tables
+) {
+    public static RunResponse from(Run run) {
+        var tables = run.getTables().stream()
+                .map(TableRunResponse::from)
+                .toList();
+
+        var tableSummary = tables.stream()
+                .collect(Collectors.groupingBy(TableRunResponse::state, Collectors.counting()));
+
+        return new RunResponse(
+                run.getId(),
+                run.getType(),
+                run.getState(),
+                run.getCreatedAt(),
+                run.getStartedAt(),
+                run.getFinishedAt(),
+                TableRunResponse.durationMs(run.getStartedAt(), run.getFinishedAt()),
+                run.getError(),
+                run.getResumedFrom(),
+                run.getRetryBudget().getUsed(),
+                run.getMetadataCalls().getCounts(),
+                run.getCodecUsage().getSummary(),
+                tableSummary,
+                tables
+        );
+    }
+
+    /**
+     * A run known only from its journal. Retries, metadata calls and codecs are not journaled.
+     */
+    public static RunResponse from(RunRecord record) {
+        var tables = record.tables().stream()
+                .map(TableRunResponse::from)
+                .toList();
+
+        var tableSummary = tables.stream()
+                .collect(Collectors.groupingBy(TableRunResponse::state, Collectors.counting()));
+
+        return new RunResponse(
+                record.runId(),
+                record.type(),
+                record.state(),
+                record.createdAt(),
+                record.startedAt(),
+                record.finishedAt(),
+                TableRunResponse.durationMs(record.startedAt(), record.finishedAt()),
+                record.error(),
+                record.resumedFrom(),
+                0,
+                Map.of(),
+                Map.of(),
+                tableSummary,
+                tables
+        );
+    }
+}
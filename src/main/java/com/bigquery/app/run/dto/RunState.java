@@ -0,0 +1,14 @@
+package com.bigquery.app.run.dto;
+
+public enum RunState {
+    PENDING,
+    RUNNING,
+    SUCCEEDED,
+    SKIPPED,
+    FAILED,
+    CANCELLED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == SKIPPED || this == FAILED || this == CANCELLED;
+    }
+}
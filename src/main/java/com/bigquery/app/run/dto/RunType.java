@@ -0,0 +1,6 @@
+package com.bigquery.app.run.dto;
+
+public enum RunType {
+    BACKUP,
+    RESTORE
+}
@@ -0,0 +1,72 @@
+package com.bigquery.app.run.dto;
+
+import com.bigquery.app.run.domain.RunRecord;
+import com.bigquery.app.run.domain.TableRun;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static java.util.Objects.isNull;
+
+public record TableRunResponse(
+        String datasetName,
+        String tableName,
+        RunState state,
+        Instant startedAt,
+        Instant finishedAt,
+        Long durationMs,
+        String error,
+        int retries,
+        String referencedBackup,
+        boolean snapshotDone,
+        Long rows,
+        Long bytes,
+        String completedInRun,
+        boolean alreadyExported
+) {
+    public static TableRunResponse from(TableRun tableRun) {
+        return new TableRunResponse(
+                tableRun.getDatasetName(),
+                tableRun.getTableName(),
+                tableRun.getState(),
+                tableRun.getStartedAt(),
+                tableRun.getFinishedAt(),
+                durationMs(tableRun.getStartedAt(), tableRun.getFinishedAt()),
+                tableRun.getError(),
+                tableRun.getRetryBudget().getUsed(),
+                tableRun.getReferencedBackup(),
+                tableRun.isSnapshotDone(),
+                tableRun.getRows(),
+                tableRun.getBytes(),
+                tableRun.getCompletedInRun(),
+                tableRun.isAlreadyExported()
+        );
+    }
+
+    static TableRunResponse from(RunRecord.TableRecord record) {
+        return new TableRunResponse(
+                record.datasetName(),
+                record.tableName(),
+                record.state(),
+                null,
+                record.finishedAt(),
+                null,
+                record.error(),
+                0,
+                null,
+                record.snapshotDone(),
+                record.rows(),
+                record.bytes(),
+                record.completedInRun(),
+                false
+        );
+    }
+
+    static Long durationMs(Instant startedAt, Instant finishedAt) {
+        if (isNull(startedAt)) {
+            return null;
+        }
+        var end = isNull(finishedAt) ? Instant.now() : finishedAt;
+        return Duration.between(startedAt, end).toMillis();
+    }
+}
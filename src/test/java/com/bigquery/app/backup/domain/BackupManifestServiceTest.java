@@ -0,0 +1,335 @@
+package com.bigquery.app.backup.domain;
+
+import com.bigquery.app.backup.dto.BackupTime;
+import com.bigquery.app.backup.dto.ExportOptions;
+import com.bigquery.app.backup.dto.GcsOptions;
+import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.ColumnSchema;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
+import com.bigquery.app.common.bigquery.TableMetadata;
+import com.bigquery.app.common.config.GcsProperties;
+import com.bigquery.app.common.gcs.BackupManifest;
+import com.bigquery.app.common.gcs.ExportMarker;
+import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.common.gcs.TableLayout;
+import com.bigquery.app.common.util.GcsPathUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Clustering;
+import com.google.cloud.bigquery.DatasetId;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.SnapshotTableDefinition;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TimePartitioning;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.Bucket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.quality.Strictness.LENIENT;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = LENIENT)
+class BackupManifestServiceTest {
+
+    private static final String PROJECT = "test-project";
+    private static final String DATASET = "test-dataset";
+    private static final String MANIFEST_URI =
+            "gs://bucket/backups/20250301_100000/test-project/test-dataset/_manifest.json";
+    private static final DatasetId SNAPSHOT_DATASET = DatasetId.of(PROJECT, "snapshots");
+    private static final BackupTime BACKUP_TIME = new BackupTime(LocalDateTime.of(2025, 3, 1, 10, 0), "UTC");
+
+    @Mock
+    private BigQueryService bigQueryService;
+
+    @Mock
+    private GcsService gcsService;
+
+    @Mock
+    private SnapshotService snapshotService;
+
+    @Mock
+    private BigQuery bigQuery;
+
+    @Mock
+    private GcsOptions gcsOptions;
+
+    @Mock
+    private ExportOptions exportOptions;
+
+    @Mock
+    private Bucket bucket;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BackupManifestService backupManifestService;
+
+    @BeforeEach
+    void setUp() {
+        GcsPathUtil.setBackupPath(new GcsProperties());
+        backupManifestService = new BackupManifestService(bigQueryService, gcsService, snapshotService, objectMapper);
+
+        when(gcsOptions.uri()).thenReturn("gs://bucket");
+        when(gcsOptions.exportOptions()).thenReturn(exportOptions);
+        when(exportOptions.format()).thenReturn("AVRO");
+        when(gcsService.getBucket("gs://bucket")).thenReturn(bucket);
+        when(snapshotService.getSnapshotTableName("orders", "20250301_100000")).thenReturn("orders_SNAPSHOT_");
+    }
+
+    @Test
+    void testWriteManifestDescribesExportedAndReferencedTables() throws Exception {
+        // given
+        Blob first = blob("orders-000000000000.avro", 300L);
+        Blob second = blob("orders-000000000001.avro", 200L);
+        when(bigQueryService.getTableMetadata(bigQuery, PROJECT, "snapshots")).thenReturn(
+                CompletableFuture.completedFuture(Map.of(
+                        "orders_SNAPSHOT_", new TableMetadata("orders_SNAPSHOT_", 1L, 1000, 42)
+                )));
+        when(bigQueryService.getColumnSchemas(bigQuery, PROJECT, "snapshots")).thenReturn(
+                CompletableFuture.completedFuture(Map.of(
+                        "orders_SNAPSHOT_", List.of(new ColumnSchema("id", "INT64", false))
+                )));
+        when(gcsService.findTableFilesFromGcsFiles(eq(bucket),
+                eq("gs://bucket/backups/20250301_100000/test-project/test-dataset/"), any()))
+                .thenReturn(Map.of("orders", List.of(first, second)));
+
+        when(exportOptions.compressionCodec()).thenReturn("SNAPPY");
+        var sourceUris = List.of("gs://bucket/backups/20250301_100000/test-project/test-dataset/orders-*.avro");
+        var layout = new TableLayout(List.of(new TableLayout.Column("id", "INTEGER", "REQUIRED", null, null)),
+                null, null, null);
+
+        // when
+        Map<String, BackupManifest.TableEntry> exportedTables = backupManifestService.writeManifest(bigQuery, PROJECT, DATASET,
+                Set.of("orders"), Map.of("customers", "20250101_000000"), Map.of("orders", new ExportedTable(sourceUris, layout)), SNAPSHOT_DATASET, gcsOptions, BACKUP_TIME);
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(eq(MANIFEST_URI), content.capture());
+        BackupManifest manifest = objectMapper.readValue(content.getValue(), BackupManifest.class);
+        assertEquals("AVRO", manifest.format());
+        assertEquals("SNAPPY", manifest.compression());
+        assertEquals(Set.of("orders"), exportedTables.keySet());
+        assertEquals(500, exportedTables.get("orders").numBytes());
+        assertEquals(42, exportedTables.get("orders").numRows());
+        assertEquals("20250301_100000", manifest.backupTimestamp());
+        assertEquals(List.of(
+                new BackupManifest.TableEntry("customers", "20250101_000000", List.of(), 0, 0, null, null, null),
+                new BackupManifest.TableEntry("orders", null, List.of(
+                        "gs://bucket/orders-000000000000.avro",
+                        "gs://bucket/orders-000000000001.avro"
+                ), 500, 42, List.of(new ColumnSchema("id", "INT64", false)), sourceUris, layout)
+        ), manifest.tables());
+    }
+
+    @Test
+    void testWriteManifestOfTimeTravelBackupReadsSourceTables() {
+        // given
+        when(bigQueryService.getTableMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("orders", new TableMetadata("orders", 1L, 1000, 42))));
+        when(bigQueryService.getColumnSchemas(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of()));
+        when(gcsService.findTableFilesFromGcsFiles(eq(bucket), any(), any())).thenReturn(Map.of());
+
+        // when
+        backupManifestService.writeManifest(bigQuery, PROJECT, DATASET, Set.of("orders"), Map.of(), Map.of(), null,
+                gcsOptions, BACKUP_TIME);
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(eq(MANIFEST_URI), content.capture());
+        assertTrue(content.getValue().contains("\"numRows\":42"));
+        verify(snapshotService, never()).getSnapshotTableName(any(), any());
+    }
+
+    @Test
+    void testWriteManifestWithOnlyReferencedTablesRunsNoQueries() {
+        // when
+        backupManifestService.writeManifest(bigQuery, PROJECT, DATASET, Set.of(),
+                Map.of("customers", "20250101_000000"), Map.of(), null, gcsOptions, BACKUP_TIME);
+
+        // then
+        verify(gcsService).writeJsonObject(eq(MANIFEST_URI), any());
+        verifyNoInteractions(bigQueryService);
+    }
+
+    @Test
+    void testWriteManifestFailureDoesNotFailBackup() {
+        // given
+        when(bigQueryService.getTableMetadata(bigQuery, PROJECT, "snapshots"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("boom")));
+        when(bigQueryService.getColumnSchemas(bigQuery, PROJECT, "snapshots"))
+                .thenReturn(CompletableFuture.completedFuture(Map.of()));
+
+        // when
+        Map<String, BackupManifest.TableEntry> exportedTables = backupManifestService.writeManifest(bigQuery, PROJECT, DATASET,
+                Set.of("orders"), Map.of(), Map.of(), SNAPSHOT_DATASET, gcsOptions, BACKUP_TIME);
+
+        // then
+        assertEquals(Map.of(), exportedTables);
+        verify(gcsService, never()).writeJsonObject(any(), any());
+    }
+
+    @Test
+    void testWriteTableLayoutStoresSchemaPartitioningAndClusteringOfSnapshot() throws Exception {
+        // given
+        Table snapshot = mock(Table.class);
+        when(snapshot.getDefinition()).thenReturn(SnapshotTableDefinition.newBuilder()
+                .setSchema(Schema.of(
+                        Field.newBuilder("day", LegacySQLTypeName.DATE).setMode(Field.Mode.REQUIRED).build(),
+                        Field.of("customer", LegacySQLTypeName.RECORD, Field.of("id", LegacySQLTypeName.INTEGER))))
+                .setTimePartitioning(TimePartitioning.newBuilder(TimePartitioning.Type.DAY).setField("day").build())
+                .setClustering(Clustering.newBuilder().setFields(List.of("customer")).build())
+                .build());
+        when(snapshotService.getSnapshotTableName("orders", "20250301_100000")).thenReturn("orders_snapshot");
+        when(bigQuery.getTable(TableId.of(PROJECT, "snapshots", "orders_snapshot"))).thenReturn(snapshot);
+        var metadataCalls = new MetadataCallCounter();
+
+        // when
+        backupManifestService.writeTableLayout(bigQuery, PROJECT, DATASET, "orders", SNAPSHOT_DATASET, BACKUP_TIME,
+                gcsOptions, "20250301_100000", metadataCalls);
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(
+                eq("gs://bucket/backups/20250301_100000/test-project/test-dataset/orders.layout.json"),
+                content.capture());
+        TableLayout layout = objectMapper.readValue(content.getValue(), TableLayout.class);
+        assertEquals(List.of(
+                new TableLayout.Column("day", "DATE", "REQUIRED", null, null),
+                new TableLayout.Column("customer", "RECORD", null, null, List.of(
+                        new TableLayout.Column("id", "INTEGER", null, null, null)))
+        ), layout.schema());
+        assertEquals(new TableLayout.TimePartition("DAY", "day", null, null), layout.timePartitioning());
+        assertNull(layout.rangePartitioning());
+        assertEquals(List.of("customer"), layout.clusteringFields());
+        assertEquals(Map.of("getTable", 1L), metadataCalls.getCounts());
+        verify(bigQuery, never()).getTable(TableId.of(PROJECT, DATASET, "orders"));
+    }
+
+    @Test
+    void testWriteTableLayoutOfTimeTravelBackupHasColumnsAsOfBackupTime() throws Exception {
+        // given
+        Table table = mock(Table.class);
+        when(table.getDefinition()).thenReturn(StandardTableDefinition.newBuilder()
+                .setSchema(Schema.of(
+                        Field.of("day", LegacySQLTypeName.DATE),
+                        Field.of("added_after_backup", LegacySQLTypeName.STRING)))
+                .setTimePartitioning(TimePartitioning.newBuilder(TimePartitioning.Type.DAY).setField("day").build())
+                .build());
+        when(bigQuery.getTable(TableId.of(PROJECT, DATASET, "orders"))).thenReturn(table);
+        var metadataCalls = new MetadataCallCounter();
+        when(bigQueryService.getSchemaAsOf(bigQuery, TableId.of(PROJECT, DATASET, "orders"),
+                BACKUP_TIME.toFormattedUtcString(), metadataCalls))
+                .thenReturn(Schema.of(Field.of("day", LegacySQLTypeName.DATE)));
+
+        // when
+        backupManifestService.writeTableLayout(bigQuery, PROJECT, DATASET, "orders", null, BACKUP_TIME,
+                gcsOptions, "20250301_100000", metadataCalls);
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(
+                eq("gs://bucket/backups/20250301_100000/test-project/test-dataset/orders.layout.json"),
+                content.capture());
+        TableLayout layout = objectMapper.readValue(content.getValue(), TableLayout.class);
+        assertEquals(List.of(new TableLayout.Column("day", "DATE", null, null, null)), layout.schema());
+        assertEquals(new TableLayout.TimePartition("DAY", "day", null, null), layout.timePartitioning());
+    }
+
+    @Test
+    void testWriteTableLayoutFailureDoesNotFailBackup() {
+        // given
+        when(bigQuery.getTable(any(TableId.class))).thenThrow(new RuntimeException("boom"));
+
+        // when
+        backupManifestService.writeTableLayout(bigQuery, PROJECT, DATASET, "orders", SNAPSHOT_DATASET, BACKUP_TIME,
+                gcsOptions, "20250301_100000", new MetadataCallCounter());
+
+        // then
+        verify(gcsService, never()).writeJsonObject(any(), any());
+    }
+
+    @Test
+    void testWriteExportMarkerNextToTableFiles() throws Exception {
+        // when
+        backupManifestService.writeExportMarker(PROJECT, DATASET, "orders", gcsOptions, "20250301_100000");
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(
+                eq("gs://bucket/backups/20250301_100000/test-project/test-dataset/orders.avro.done.json"),
+                content.capture());
+        ExportMarker marker = objectMapper.readValue(content.getValue(), ExportMarker.class);
+        assertEquals("orders", marker.tableName());
+        assertEquals("AVRO", marker.format());
+    }
+
+    @Test
+    void testFindExportedTablesMatchesMarkersOfTheRequestedFormat() {
+        // given
+        Blob avroMarker = blob("orders.avro.done.json", 80L);
+        Blob parquetMarker = blob("customers.parquet.done.json", 80L);
+        Blob shard = blob("items-000000000000.avro", 300L);
+        when(gcsService.findTableFilesFromGcsFiles(eq(bucket),
+                eq("gs://bucket/backups/20250301_100000/test-project/test-dataset/"), any()))
+                .thenAnswer(invocation -> {
+                    Pattern pattern = invocation.getArgument(2);
+                    return Stream.of(avroMarker, parquetMarker, shard)
+                            .map(Blob::getName)
+                            .map(pattern::matcher)
+                            .filter(Matcher::matches)
+                            .collect(Collectors.toMap(matcher -> matcher.group(1), matcher -> List.<Blob>of()));
+                });
+
+        // when
+        Set<String> exportedTables = backupManifestService.findExportedTables(PROJECT, DATASET, gcsOptions,
+                BACKUP_TIME);
+
+        // then
+        assertEquals(Set.of("orders"), exportedTables);
+    }
+
+    @Test
+    void testFindExportedTablesFailureExportsEveryTable() {
+        // given
+        when(gcsService.getBucket("gs://bucket")).thenThrow(new RuntimeException("boom"));
+
+        // when
+        Set<String> exportedTables = backupManifestService.findExportedTables(PROJECT, DATASET, gcsOptions,
+                BACKUP_TIME);
+
+        // then
+        assertTrue(exportedTables.isEmpty());
+    }
+
+    private static Blob blob(String name, Long size) {
+        Blob blob = mock(Blob.class);
+        when(blob.getBucket()).thenReturn("bucket");
+        when(blob.getName()).thenReturn(name);
+        when(blob.getSize()).thenReturn(size);
+        return blob;
+    }
+}
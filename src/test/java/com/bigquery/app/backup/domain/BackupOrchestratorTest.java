@@ -3,29 +3,57 @@ package com.bigquery.app.backup.domain;
 import com.bigquery.app.backup.dto.BackupTime;
 import com.bigquery.app.backup.dto.ExportOptions;
 import com.bigquery.app.backup.dto.GcsOptions;
+import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.DatasetMetadataCache;
+import com.bigquery.app.common.bigquery.TableMetadata;
 import com.bigquery.app.common.concurrent.ThreadingService;
+import com.bigquery.app.common.config.RetryProperties;
 import com.bigquery.app.common.exception.ServiceException;
-import com.bigquery.app.common.util.DatasetUtil;
+import com.bigquery.app.common.exception.ValidationException;
+import com.bigquery.app.common.gcs.BackupManifest;
+import com.bigquery.app.common.gcs.TableManifest;
+import com.bigquery.app.common.retry.RetryExecutor;
+import com.bigquery.app.run.domain.Run;
+import com.bigquery.app.run.domain.RunRecord;
+import com.bigquery.app.run.dto.RunState;
+import com.bigquery.app.run.dto.RunType;
 import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryException;
 import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.Dataset;
 import com.google.cloud.bigquery.DatasetId;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.bigquery.app.common.util.TimeUtil.formatTimestampForFileName;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.mockito.quality.Strictness.LENIENT;
 
@@ -42,6 +70,21 @@ class BackupOrchestratorTest {
     @Mock
     private ThreadingService threadingService;
 
+    @Mock
+    private IncrementalBackupService incrementalBackupService;
+
+    @Mock
+    private BackupManifestService backupManifestService;
+
+    @Mock
+    private DatasetMetadataCache datasetMetadataCache;
+
+    @Mock
+    private BigQueryService bigQueryService;
+
+    @Mock
+    private ShardedExportService shardedExportService;
+
     @Mock
     private BigQuery bigQueryClient;
 
@@ -59,13 +102,23 @@ class BackupOrchestratorTest {
 
     private BackupOrchestrator backupOrchestrator;
 
+    private Run run;
+
     @BeforeEach
     void setUp() {
-        backupOrchestrator = new BackupOrchestrator(snapshotService, exportService, threadingService);
+        backupOrchestrator = new BackupOrchestrator(snapshotService, exportService, threadingService,
+                new RetryExecutor(new RetryProperties(), new SimpleMeterRegistry()), incrementalBackupService,
+                backupManifestService, datasetMetadataCache, bigQueryService, shardedExportService);
+        run = new Run(RunType.BACKUP, 100, 5);
 
         when(bigQueryClient.getOptions()).thenReturn(bigQueryOptions);
         when(bigQueryOptions.getProjectId()).thenReturn("test-project");
         when(gcsOptions.exportOptions()).thenReturn(exportOptions);
+        when(exportOptions.format()).thenReturn("PARQUET");
+        when(exportOptions.compressionCodec()).thenReturn("ZSTD");
+        when(exportService.exportSnapshotToStorage(any(), any(), any(), any(), any(), any(), any(), any(), any(),
+                any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(threadingService.getBackupExecutor(any())).thenReturn(Runnable::run);
     }
 
     @Test
@@ -77,41 +130,196 @@ class BackupOrchestratorTest {
         Set<String> tableNames = new HashSet<>(Arrays.asList("table1", "table2"));
         DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
 
-        try (MockedStatic<DatasetUtil> datasetUtilMock = mockStatic(DatasetUtil.class)) {
-            datasetUtilMock.when(() ->
-                    DatasetUtil.getDatasetLocation(bigQueryClient, DatasetId.of("test-project", datasetName))
-            ).thenReturn("US");
-
-            when(snapshotService.ensureSnapshotDatasetExists(bigQueryClient, "test-project", "US"))
-                    .thenReturn(snapshotDatasetId);
-
-            when(snapshotService.createTableSnapshot(
-                    any(BigQuery.class),
-                    eq("test-project"),
-                    eq(datasetName),
-                    any(String.class),
-                    eq(snapshotDatasetId),
-                    eq(backupTime)
-            )).thenReturn("timestamp");
-
-            when(snapshotService.getSnapshotTableName(any(String.class), eq("timestamp")))
-                    .thenReturn("snapshotTable");
-
-            // when
-            backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime);
-
-            // then
-            for (String tableName : tableNames) {
-                verify(snapshotService).createTableSnapshot(bigQueryClient, "test-project", datasetName,
-                        tableName, snapshotDatasetId, backupTime);
-                verify(snapshotService).getSnapshotTableName(tableName, "timestamp");
-                verify(exportService).exportSnapshotToStorage(bigQueryClient, "test-project",
-                        snapshotDatasetId.getDataset(), "snapshotTable",
-                        datasetName, tableName, gcsOptions, "timestamp");
-            }
-
-            verify(threadingService, never()).submitBackupTask(any());
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+
+        when(snapshotService.createTableSnapshot(
+                any(BigQuery.class),
+                eq("test-project"),
+                eq(datasetName),
+                any(String.class),
+                eq(snapshotDatasetId),
+                eq(backupTime), any(),
+                any()
+        )).thenReturn(CompletableFuture.completedFuture("timestamp"));
+
+        when(snapshotService.getSnapshotTableName(any(String.class), eq("timestamp")))
+                .thenReturn("snapshotTable");
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+
+        // then
+        for (String tableName : tableNames) {
+            verify(snapshotService).createTableSnapshot(bigQueryClient, "test-project", datasetName,
+                    tableName, snapshotDatasetId, backupTime, "US", run.getJobs());
+            verify(snapshotService).getSnapshotTableName(tableName, "timestamp");
+            verify(exportService).exportSnapshotToStorage(bigQueryClient, "test-project",
+                    snapshotDatasetId.getDataset(), "snapshotTable",
+                    datasetName, tableName, gcsOptions, "timestamp", "US", run.getJobs());
+            verify(backupManifestService).writeTableLayout(bigQueryClient, "test-project", datasetName,
+                    tableName, snapshotDatasetId, backupTime, gcsOptions, "timestamp", run.getMetadataCalls());
+            verify(backupManifestService).writeExportMarker("test-project", datasetName, tableName,
+                    gcsOptions, "timestamp");
+            assertEquals(RunState.SUCCEEDED, run.table(datasetName, tableName).getState());
         }
+
+        verify(threadingService, never()).submitBackupPipeline(any(), any(), any());
+    }
+
+    @Test
+    void testExportTablesRecordsExportedBytesPerCodec() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        String datasetName = "test-dataset";
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(BigQuery.class), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("timestamp"));
+        when(backupManifestService.writeManifest(any(), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(Map.of("table1", manifestEntry("table1", 300, 30), "table2", manifestEntry("table2", 200, 20)));
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, Set.of("table1", "table2"), gcsOptions,
+                backupTime, run);
+
+        // then
+        var codecs = run.getCodecUsage().getSummary();
+        assertEquals(Set.of("PARQUET/ZSTD"), codecs.keySet());
+        assertEquals(2, codecs.get("PARQUET/ZSTD").tables());
+        assertEquals(500, codecs.get("PARQUET/ZSTD").bytes());
+        assertEquals(30L, run.table(datasetName, "table1").getRows());
+        assertEquals(300L, run.table(datasetName, "table1").getBytes());
+    }
+
+    @Test
+    void testResumedExportSkipsCompletedTablesAndRequestsTakenSnapshotsAgain() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        when(backupTime.toUtcZonedDateTime()).thenReturn(ZonedDateTime.of(2025, 3, 1, 10, 0, 0, 0, ZoneOffset.UTC));
+        String datasetName = "test-dataset";
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("20250301_100000"));
+        when(snapshotService.getSnapshotTableName("table2", "20250301_100000")).thenReturn("snapshotTable2");
+
+        var previous = new RunRecord("previous-run", RunType.BACKUP, RunState.FAILED, Instant.now(), Instant.now(),
+                Instant.now(), "boom", null, null, List.of(
+                new RunRecord.TableRecord(datasetName, "table1", RunState.SUCCEEDED, true, 30L, 300L,
+                        Instant.now(), null, null),
+                new RunRecord.TableRecord(datasetName, "table2", RunState.FAILED, true, null, null,
+                        Instant.now(), null, "export failed")
+        ));
+        run = new Run(RunType.BACKUP, 100, 5, null, previous);
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, Set.of("table1", "table2"), gcsOptions,
+                backupTime, run);
+
+        // then
+        verify(snapshotService).createTableSnapshot(bigQueryClient, "test-project", datasetName, "table2",
+                snapshotDatasetId, backupTime, "US", run.getJobs());
+        verify(snapshotService, never()).createTableSnapshot(any(), any(), any(), eq("table1"), any(), any(), any(),
+                any());
+        verify(exportService).exportSnapshotToStorage(bigQueryClient, "test-project", "snapshot-dataset",
+                "snapshotTable2", datasetName, "table2", gcsOptions, "20250301_100000", "US", run.getJobs());
+        verify(exportService, never()).exportSnapshotToStorage(any(), any(), any(), any(), any(), eq("table1"),
+                any(), any(), any(), any());
+        verify(backupManifestService).writeManifest(eq(bigQueryClient), eq("test-project"), eq(datasetName),
+                eq(Set.of("table1", "table2")), eq(Map.of()), any(), eq(snapshotDatasetId), eq(gcsOptions),
+                eq(backupTime));
+        assertEquals("previous-run", run.table(datasetName, "table1").getCompletedInRun());
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "table1").getState());
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "table2").getState());
+    }
+
+    @Test
+    void testResumedTableWhoseSnapshotExpiredIsSnapshottedBeforeExport() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        String datasetName = "test-dataset";
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+        Set<String> existingSnapshots = new HashSet<>();
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(), any(), any(), eq("table1"), any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    existingSnapshots.add("snapshotTable1");
+                    return CompletableFuture.completedFuture("timestamp");
+                });
+        when(snapshotService.getSnapshotTableName("table1", "timestamp")).thenReturn("snapshotTable1");
+        when(exportService.exportSnapshotToStorage(any(), any(), any(), any(), any(), any(), any(), any(), any(),
+                any()))
+                .thenAnswer(invocation -> existingSnapshots.contains(invocation.<String>getArgument(3))
+                        ? CompletableFuture.completedFuture(null)
+                        : CompletableFuture.failedFuture(new BigQueryException(404, "Not found: Table")));
+
+        // The snapshot was taken by the failed run, but expired before the run was resumed
+        var previous = new RunRecord("previous-run", RunType.BACKUP, RunState.FAILED, Instant.now(), Instant.now(),
+                Instant.now(), "boom", null, null, List.of(
+                new RunRecord.TableRecord(datasetName, "table1", RunState.FAILED, true, null, null,
+                        Instant.now(), null, "export failed")
+        ));
+        run = new Run(RunType.BACKUP, 100, 5, null, previous);
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, Set.of("table1"), gcsOptions, backupTime, run);
+
+        // then
+        verify(snapshotService).createTableSnapshot(bigQueryClient, "test-project", datasetName, "table1",
+                snapshotDatasetId, backupTime, "US", run.getJobs());
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "table1").getState());
+    }
+
+    @Test
+    void testRerunOfBackupTimeSkipsTablesWithExportMarker() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        String datasetName = "test-dataset";
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("timestamp"));
+        when(snapshotService.getSnapshotTableName("table2", "timestamp")).thenReturn("snapshotTable2");
+        when(backupManifestService.findExportedTables("test-project", datasetName, gcsOptions, backupTime))
+                .thenReturn(Set.of("table1"));
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, Set.of("table1", "table2"), gcsOptions,
+                backupTime, run);
+
+        // then
+        verify(snapshotService, never()).createTableSnapshot(any(), any(), any(), eq("table1"), any(), any(), any(),
+                any());
+        verify(exportService, never()).exportSnapshotToStorage(any(), any(), any(), any(), any(), eq("table1"),
+                any(), any(), any(), any());
+        verify(exportService).exportSnapshotToStorage(bigQueryClient, "test-project", "snapshot-dataset",
+                "snapshotTable2", datasetName, "table2", gcsOptions, "timestamp", "US", run.getJobs());
+        verify(backupManifestService).writeManifest(eq(bigQueryClient), eq("test-project"), eq(datasetName),
+                eq(Set.of("table1", "table2")), eq(Map.of()), any(), eq(snapshotDatasetId), eq(gcsOptions),
+                eq(backupTime));
+        assertTrue(run.table(datasetName, "table1").isAlreadyExported());
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "table1").getState());
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "table2").getState());
     }
 
     @Test
@@ -123,49 +331,159 @@ class BackupOrchestratorTest {
         Set<String> tableNames = new HashSet<>(Arrays.asList("table1", "table2"));
         DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
 
-        try (MockedStatic<DatasetUtil> datasetUtilMock = mockStatic(DatasetUtil.class)) {
-            datasetUtilMock.when(() ->
-                    DatasetUtil.getDatasetLocation(bigQueryClient, DatasetId.of("test-project", datasetName))
-            ).thenReturn("US");
-
-            when(snapshotService.ensureSnapshotDatasetExists(bigQueryClient, "test-project", "US"))
-                    .thenReturn(snapshotDatasetId);
-
-            when(snapshotService.createTableSnapshot(
-                    any(BigQuery.class),
-                    eq("test-project"),
-                    eq(datasetName),
-                    any(String.class),
-                    eq(snapshotDatasetId),
-                    eq(backupTime)
-            )).thenReturn("timestamp");
-
-            when(snapshotService.getSnapshotTableName(any(String.class), eq("timestamp")))
-                    .thenReturn("snapshotTable");
-
-            when(threadingService.submitBackupTask(any()))
-                    .thenAnswer(invocation -> {
-                        Runnable task = invocation.getArgument(0);
-                        task.run();
-                        return CompletableFuture.completedFuture(null);
-                    });
-
-            // when
-            backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime);
-
-            // then
-            verify(threadingService).configureThreadPoolForExport(exportOptions);
-            verify(threadingService, times(tableNames.size())).submitBackupTask(any());
-
-            for (String tableName : tableNames) {
-                verify(snapshotService).createTableSnapshot(bigQueryClient, "test-project", datasetName,
-                        tableName, snapshotDatasetId, backupTime);
-                verify(snapshotService).getSnapshotTableName(tableName, "timestamp");
-                verify(exportService).exportSnapshotToStorage(bigQueryClient, "test-project",
-                        snapshotDatasetId.getDataset(), "snapshotTable",
-                        datasetName, tableName, gcsOptions, "timestamp");
-            }
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+
+        when(snapshotService.createTableSnapshot(
+                any(BigQuery.class),
+                eq("test-project"),
+                eq(datasetName),
+                any(String.class),
+                eq(snapshotDatasetId),
+                eq(backupTime), any(),
+                any()
+        )).thenReturn(CompletableFuture.completedFuture("timestamp"));
+
+        when(snapshotService.getSnapshotTableName(any(String.class), eq("timestamp")))
+                .thenReturn("snapshotTable");
+
+        when(threadingService.submitBackupPipeline(any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Supplier<CompletableFuture<String>> snapshotStage = invocation.getArgument(1);
+                    Function<String, CompletableFuture<Void>> exportStage = invocation.getArgument(2);
+                    return snapshotStage.get().thenCompose(exportStage);
+                });
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+
+        // then
+        verify(threadingService).configureThreadPoolForExport(run.getId(), exportOptions);
+        verify(threadingService).releaseRun(run.getId());
+        verify(threadingService, times(tableNames.size())).submitBackupPipeline(any(), any(), any());
+
+        for (String tableName : tableNames) {
+            verify(snapshotService).createTableSnapshot(bigQueryClient, "test-project", datasetName,
+                    tableName, snapshotDatasetId, backupTime, "US", run.getJobs());
+            verify(snapshotService).getSnapshotTableName(tableName, "timestamp");
+            verify(exportService).exportSnapshotToStorage(bigQueryClient, "test-project",
+                    snapshotDatasetId.getDataset(), "snapshotTable",
+                    datasetName, tableName, gcsOptions, "timestamp", "US", run.getJobs());
+        }
+    }
+
+    @Test
+    void testTableLayoutIsWrittenOnRunExecutorInsteadOfJobCallbackThread() throws Exception {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(true);
+        String datasetName = "test-dataset";
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+        ExecutorService runExecutor = Executors.newSingleThreadExecutor(task -> new Thread(task, "run-executor"));
+        ExecutorService jobCallbacks = Executors.newSingleThreadExecutor(task -> new Thread(task, "bq-job-callback"));
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("timestamp"));
+        when(exportService.exportSnapshotToStorage(any(), any(), any(), any(), any(), any(), any(), any(), any(),
+                any())).thenAnswer(invocation -> CompletableFuture.runAsync(() -> {
+                }, jobCallbacks));
+        when(threadingService.getBackupExecutor(run.getId())).thenReturn(runExecutor);
+        when(threadingService.submitBackupPipeline(any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Supplier<CompletableFuture<String>> snapshotStage = invocation.getArgument(1);
+                    Function<String, CompletableFuture<Void>> exportStage = invocation.getArgument(2);
+                    return snapshotStage.get().thenCompose(exportStage);
+                });
+        List<String> layoutThreads = new ArrayList<>();
+        doAnswer(invocation -> {
+            layoutThreads.add(Thread.currentThread().getName());
+            return Optional.empty();
+        })
+                .when(backupManifestService).writeTableLayout(any(), any(), any(), any(), any(), any(), any(),
+                        any(), any());
+
+        // when
+        try {
+            backupOrchestrator.exportTables(bigQueryClient, datasetName, Set.of("table1"), gcsOptions, backupTime,
+                    run);
+        } finally {
+            runExecutor.shutdown();
+            jobCallbacks.shutdown();
         }
+
+        // then
+        assertEquals(List.of("run-executor"), layoutThreads);
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "table1").getState());
+    }
+
+    @Test
+    void testExportTablesParallelStartsLargestTablesFirst() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(true);
+        String datasetName = "test-dataset";
+        Set<String> tableNames = new HashSet<>(Arrays.asList("small", "large", "medium", "unknown"));
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(bigQueryService.getTableMetadata(bigQueryClient, "test-project", datasetName)).thenReturn(
+                CompletableFuture.completedFuture(Map.of(
+                        "small", new TableMetadata("small", 1L, 10, 1),
+                        "large", new TableMetadata("large", 1L, 1000, 100),
+                        "medium", new TableMetadata("medium", 1L, 100, 10)
+                )));
+
+        List<String> startedTables = new ArrayList<>();
+        when(snapshotService.createTableSnapshot(any(BigQuery.class), eq("test-project"), eq(datasetName),
+                any(String.class), eq(snapshotDatasetId), eq(backupTime), any(), any()))
+                .thenAnswer(invocation -> {
+                    startedTables.add(invocation.getArgument(3));
+                    return CompletableFuture.completedFuture("timestamp");
+                });
+        when(snapshotService.getSnapshotTableName(any(String.class), eq("timestamp")))
+                .thenReturn("snapshotTable");
+        when(threadingService.submitBackupPipeline(any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Supplier<CompletableFuture<String>> snapshotStage = invocation.getArgument(1);
+                    Function<String, CompletableFuture<Void>> exportStage = invocation.getArgument(2);
+                    return snapshotStage.get().thenCompose(exportStage);
+                });
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+
+        // then
+        assertEquals(List.of("large", "medium", "small", "unknown"), startedTables);
+    }
+
+    @Test
+    void testExportTablesSequentialDoesNotReadTableSizes() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        String datasetName = "test-dataset";
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(BigQuery.class), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("timestamp"));
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, Set.of("table1", "table2"), gcsOptions,
+                backupTime, run);
+
+        // then
+        verifyNoInteractions(bigQueryService);
     }
 
     @Test
@@ -176,35 +494,368 @@ class BackupOrchestratorTest {
         Set<String> tableNames = new HashSet<>(List.of("table1"));
         DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
 
-        try (MockedStatic<DatasetUtil> datasetUtilMock = mockStatic(DatasetUtil.class)) {
-            datasetUtilMock.when(() ->
-                    DatasetUtil.getDatasetLocation(bigQueryClient, DatasetId.of("test-project", datasetName))
-            ).thenReturn("US");
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+
+        when(snapshotService.createTableSnapshot(
+                any(BigQuery.class),
+                eq("test-project"),
+                eq(datasetName),
+                any(String.class),
+                eq(snapshotDatasetId),
+                eq(backupTime), any(),
+                any()
+        )).thenReturn(CompletableFuture.completedFuture("timestamp"));
+
+        when(snapshotService.getSnapshotTableName(any(String.class), eq("timestamp")))
+                .thenReturn("snapshotTable");
+
+        when(threadingService.submitBackupPipeline(any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Task failed")));
+
+        // when + then
+        try {
+            backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+        } catch (ServiceException ex) {
+            assertTrue(ex.getMessage().contains("Error during parallel backup"));
+        }
+    }
+
+    @Test
+    void testExportTablesMarksFailedTableInRun() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+
+        String datasetName = "test-dataset";
+        Set<String> tableNames = Set.of("table1");
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
 
-            when(snapshotService.ensureSnapshotDatasetExists(bigQueryClient, "test-project", "US"))
-                    .thenReturn(snapshotDatasetId);
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
 
-            when(snapshotService.createTableSnapshot(
-                    any(BigQuery.class),
-                    eq("test-project"),
-                    eq(datasetName),
-                    any(String.class),
-                    eq(snapshotDatasetId),
-                    eq(backupTime)
-            )).thenReturn("timestamp");
+        when(snapshotService.createTableSnapshot(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new ServiceException("Snapshot Creation", "quota exceeded")));
+
+        // when
+        assertThrows(ServiceException.class, () ->
+                backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run));
+
+        // then
+        var tableRun = run.table(datasetName, "table1");
+        assertEquals(RunState.FAILED, tableRun.getState());
+        assertTrue(tableRun.getError().contains("quota exceeded"));
+        verify(exportService, never()).exportSnapshotToStorage(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any());
+    }
+
+    @Test
+    void testBatchedSnapshotsRetryFailedStatementOnItsOwn() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        when(exportOptions.isSnapshotBatched()).thenReturn(true);
+        when(snapshotService.supportsBatches()).thenReturn(true);
+        when(exportOptions.snapshotBatchSize()).thenReturn(10);
+
+        String datasetName = "test-dataset";
+        Set<String> tableNames = Set.of("table1", "table2", "table3");
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
 
-            when(snapshotService.getSnapshotTableName(any(String.class), eq("timestamp")))
-                    .thenReturn("snapshotTable");
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshots(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(
+                        new SnapshotBatch.Result("timestamp", Map.of("table2", "Exceeded rate limits"))));
+        when(snapshotService.createTableSnapshot(any(), any(), any(), eq("table2"), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("timestamp"));
+        when(snapshotService.getSnapshotTableName(any(String.class), eq("timestamp")))
+                .thenReturn("snapshotTable");
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+
+        // then
+        verify(snapshotService, times(1)).createTableSnapshots(eq(bigQueryClient), eq("test-project"),
+                eq(datasetName), any(), eq(snapshotDatasetId), eq(backupTime), any(), any());
+        verify(snapshotService).createTableSnapshot(bigQueryClient, "test-project", datasetName,
+                "table2", snapshotDatasetId, backupTime, "US", run.getJobs());
+        verify(snapshotService, never()).createTableSnapshot(any(), any(), any(), eq("table1"), any(), any(), any(),
+                any());
+        verify(snapshotService, never()).createTableSnapshot(any(), any(), any(), eq("table3"), any(), any(), any(),
+                any());
+        for (String tableName : tableNames) {
+            assertEquals(RunState.SUCCEEDED, run.table(datasetName, tableName).getState());
+        }
+    }
 
-            when(threadingService.submitBackupTask(any()))
-                    .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Task failed")));
+    @Test
+    void testTimeTravelExportSkipsSnapshots() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        when(exportOptions.isTimeTravelExport()).thenReturn(true);
+        ZonedDateTime time = ZonedDateTime.now(ZoneOffset.UTC).minusHours(1);
+        when(backupTime.toUtcZonedDateTime()).thenReturn(time);
+        when(exportService.exportTableAsOfToStorage(any(), any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
 
-            // when + then
-            try {
-                backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime);
-            } catch (ServiceException ex) {
-                assertTrue(ex.getMessage().contains("Error during parallel backup"));
-            }
+        String datasetName = "test-dataset";
+        Set<String> tableNames = Set.of("table1", "table2");
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+
+        // then
+        for (String tableName : tableNames) {
+            verify(exportService).exportTableAsOfToStorage(bigQueryClient, "test-project", datasetName,
+                    tableName, backupTime, gcsOptions, formatTimestampForFileName(time), "US", run.getJobs());
+            assertEquals(RunState.SUCCEEDED, run.table(datasetName, tableName).getState());
         }
+        verifyNoInteractions(snapshotService);
+        verify(exportService, never()).exportSnapshotToStorage(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any());
+        verify(backupManifestService).writeManifest(eq(bigQueryClient), eq("test-project"), eq(datasetName),
+                eq(tableNames), eq(Map.of()), any(), isNull(), eq(gcsOptions), eq(backupTime));
+    }
+
+    @Test
+    void testTimeTravelExportRejectsBackupTimeOutsideDatasetWindow() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        when(exportOptions.isTimeTravelExport()).thenReturn(true);
+        when(backupTime.toUtcZonedDateTime()).thenReturn(ZonedDateTime.now(ZoneOffset.UTC).minusDays(3));
+
+        String datasetName = "test-dataset";
+        Dataset dataset = mock(Dataset.class);
+        when(dataset.getMaxTimeTravelHours()).thenReturn(48L);
+        when(bigQueryClient.getDataset(DatasetId.of("test-project", datasetName))).thenReturn(dataset);
+
+        // when
+        ValidationException exception = assertThrows(ValidationException.class, () ->
+                backupOrchestrator.exportTables(bigQueryClient, datasetName, Set.of("table1"), gcsOptions,
+                        backupTime, run));
+
+        // then
+        assertTrue(exception.getMessage().contains("48 hours"));
+        verifyNoInteractions(exportService);
+    }
+
+    @Test
+    void testIncrementalExportSkipsUnchangedTables() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        when(exportOptions.isIncrementalBackup()).thenReturn(true);
+
+        String datasetName = "test-dataset";
+        Set<String> tableNames = Set.of("changed", "unchanged");
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+        IncrementalPlan plan = new IncrementalPlan("test-project", datasetName, Set.of("changed"),
+                Map.of("unchanged", "20250101_000000"), Map.of(), null, Map.of(), Map.of());
+        when(incrementalBackupService.plan(bigQueryClient, "test-project", datasetName, tableNames, gcsOptions))
+                .thenReturn(plan);
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("timestamp"));
+        when(snapshotService.getSnapshotTableName(any(String.class), eq("timestamp")))
+                .thenReturn("snapshotTable");
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+
+        // then
+        verify(snapshotService).createTableSnapshot(bigQueryClient, "test-project", datasetName,
+                "changed", snapshotDatasetId, backupTime, "US", run.getJobs());
+        verify(snapshotService, never()).createTableSnapshot(any(), any(), any(), eq("unchanged"), any(), any(), any(),
+                any());
+        verify(incrementalBackupService).writeReferences(plan, gcsOptions, backupTime);
+        verify(incrementalBackupService).saveState(plan, gcsOptions, backupTime);
+        verify(backupManifestService).writeManifest(eq(bigQueryClient), eq("test-project"), eq(datasetName),
+                eq(Set.of("changed")), eq(Map.of("unchanged", "20250101_000000")), any(), eq(snapshotDatasetId),
+                eq(gcsOptions), eq(backupTime));
+
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "changed").getState());
+        var unchangedRun = run.table(datasetName, "unchanged");
+        assertEquals(RunState.SKIPPED, unchangedRun.getState());
+        assertEquals("20250101_000000", unchangedRun.getReferencedBackup());
+    }
+
+    @Test
+    void testIncrementalPartitionExportWritesManifest() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(false);
+        when(exportOptions.isIncrementalBackup()).thenReturn(true);
+
+        String datasetName = "test-dataset";
+        Set<String> tableNames = Set.of("events");
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+        PartitionPlan partitionPlan = new PartitionPlan(Map.of("20250228", "filter"),
+                Map.of("20250228", "20250228"), Map.of("20250228", 1L), Map.of());
+        IncrementalPlan plan = new IncrementalPlan("test-project", datasetName, Set.of("events"),
+                Map.of(), Map.of(), null, Map.of("events", partitionPlan), Map.of());
+        when(incrementalBackupService.plan(bigQueryClient, "test-project", datasetName, tableNames, gcsOptions))
+                .thenReturn(plan);
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("timestamp"));
+        when(snapshotService.getSnapshotTableName("events", "timestamp"))
+                .thenReturn("snapshotTable");
+        when(exportService.exportPartitionToStorage(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        var partitionUri = "gs://bucket/events/partitions/20250228/events-*.avro";
+        when(incrementalBackupService.partitionFiles(eq("test-project"), eq(datasetName), eq("events"),
+                eq(partitionPlan), eq(gcsOptions), any()))
+                .thenReturn(List.of(new TableManifest.PartitionFile("20250228", "20250301_100000", partitionUri)));
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+
+        // then
+        ArgumentCaptor<Map<String, ExportedTable>> exportedByRun = ArgumentCaptor.forClass(Map.class);
+        verify(exportService).exportPartitionToStorage(bigQueryClient, "test-project", "snapshot-dataset",
+                "snapshotTable", null, datasetName, "events", "20250228", "filter", gcsOptions, "timestamp", "US", run.getJobs());
+        verify(backupManifestService).writeManifest(eq(bigQueryClient), eq("test-project"), eq(datasetName),
+                eq(Set.of("events")), eq(Map.of()), exportedByRun.capture(),
+                eq(snapshotDatasetId), eq(gcsOptions), eq(backupTime));
+        assertEquals(List.of(partitionUri), exportedByRun.getValue().get("events").sourceUris());
+        verify(exportService, never()).exportSnapshotToStorage(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any());
+        verify(incrementalBackupService).writeTableManifest("test-project", datasetName, "events",
+                partitionPlan, gcsOptions, "timestamp");
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "events").getState());
+    }
+
+    @Test
+    void testShardedExportRunsOneJobPerShard() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(true);
+        when(exportOptions.isShardedExport()).thenReturn(true);
+        when(exportOptions.exportShards()).thenReturn(2);
+
+        String datasetName = "test-dataset";
+        Set<String> tableNames = Set.of("events");
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+        PartitionPlan shardPlan = new PartitionPlan(Map.of("shard-000", "filter0", "shard-001", "filter1"),
+                Map.of(), Map.of(), Map.of());
+        when(bigQueryService.getTableMetadata(bigQueryClient, "test-project", datasetName)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("events", new TableMetadata("events", 1L, 5000, 50))));
+        when(shardedExportService.plan(eq(bigQueryClient), eq("test-project"), eq(datasetName), eq(Set.of("events")),
+                eq(Map.of("events", 5000L)), eq(2), any())).thenReturn(Map.of("events", shardPlan));
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("timestamp"));
+        when(snapshotService.getSnapshotTableName("events", "timestamp"))
+                .thenReturn("snapshotTable");
+        when(exportService.exportPartitionToStorage(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(threadingService.submitBackupPipeline(any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Supplier<CompletableFuture<String>> snapshotStage = invocation.getArgument(1);
+                    Function<String, CompletableFuture<Void>> exportStage = invocation.getArgument(2);
+                    return snapshotStage.get().thenCompose(exportStage);
+                });
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+
+        // then
+        verify(exportService).exportPartitionToStorage(bigQueryClient, "test-project", "snapshot-dataset",
+                "snapshotTable", null, datasetName, "events", "shard-000", "filter0", gcsOptions, "timestamp", "US", run.getJobs());
+        verify(exportService).exportPartitionToStorage(bigQueryClient, "test-project", "snapshot-dataset",
+                "snapshotTable", null, datasetName, "events", "shard-001", "filter1", gcsOptions, "timestamp", "US", run.getJobs());
+        verify(exportService, never()).exportSnapshotToStorage(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any());
+        verify(incrementalBackupService).writeTableManifest("test-project", datasetName, "events",
+                shardPlan, gcsOptions, "timestamp");
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "events").getState());
+    }
+
+    @Test
+    void testShardPlanningFailureExportsTablesWhole() {
+        // given
+        when(exportOptions.isMultiThreaded()).thenReturn(true);
+        when(exportOptions.isShardedExport()).thenReturn(true);
+        when(exportOptions.exportShards()).thenReturn(2);
+
+        String datasetName = "test-dataset";
+        DatasetId snapshotDatasetId = DatasetId.of("test-project", "snapshot-dataset");
+        when(bigQueryService.getTableMetadata(bigQueryClient, "test-project", datasetName)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("events", new TableMetadata("events", 1L, 5000, 50))));
+        when(shardedExportService.plan(any(), any(), any(), any(), any(), anyInt(), any()))
+                .thenThrow(new ServiceException("BigQuery", "boom"));
+
+        when(datasetMetadataCache.getLocation(eq(bigQueryClient), eq(DatasetId.of("test-project", datasetName)), any()))
+                .thenReturn("US");
+        when(snapshotService.ensureSnapshotDatasetExists(eq(bigQueryClient), eq("test-project"), eq("US"), any()))
+                .thenReturn(snapshotDatasetId);
+        when(snapshotService.createTableSnapshot(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture("timestamp"));
+        when(snapshotService.getSnapshotTableName("events", "timestamp"))
+                .thenReturn("snapshotTable");
+        when(threadingService.submitBackupPipeline(any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Supplier<CompletableFuture<String>> snapshotStage = invocation.getArgument(1);
+                    Function<String, CompletableFuture<Void>> exportStage = invocation.getArgument(2);
+                    return snapshotStage.get().thenCompose(exportStage);
+                });
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, Set.of("events"), gcsOptions, backupTime, run);
+
+        // then
+        verify(exportService).exportSnapshotToStorage(bigQueryClient, "test-project", "snapshot-dataset",
+                "snapshotTable", datasetName, "events", gcsOptions, "timestamp", "US", run.getJobs());
+        assertEquals(RunState.SUCCEEDED, run.table(datasetName, "events").getState());
+    }
+
+    @Test
+    void testIncrementalExportOfUnchangedDatasetDoesNoBigQueryWork() {
+        // given
+        when(exportOptions.isIncrementalBackup()).thenReturn(true);
+
+        String datasetName = "test-dataset";
+        Set<String> tableNames = Set.of("table1");
+        IncrementalPlan plan = new IncrementalPlan("test-project", datasetName, Set.of(),
+                Map.of("table1", "20250101_000000"), Map.of(), null, Map.of(), Map.of());
+        when(incrementalBackupService.plan(bigQueryClient, "test-project", datasetName, tableNames, gcsOptions))
+                .thenReturn(plan);
+
+        // when
+        backupOrchestrator.exportTables(bigQueryClient, datasetName, tableNames, gcsOptions, backupTime, run);
+
+        // then
+        verify(snapshotService, never()).ensureSnapshotDatasetExists(any(), any(), any(), any());
+        verify(snapshotService, never()).createTableSnapshot(any(), any(), any(), any(), any(), any(), any(), any());
+        verify(incrementalBackupService, never()).saveState(any(), any(), any());
+        verify(backupManifestService).writeManifest(eq(bigQueryClient), eq("test-project"), eq(datasetName),
+                eq(Set.of()), eq(Map.of("table1", "20250101_000000")), any(), isNull(), eq(gcsOptions),
+                eq(backupTime));
+        assertEquals(RunState.SKIPPED, run.table(datasetName, "table1").getState());
+    }
+
+    private static BackupManifest.TableEntry manifestEntry(String tableName, long numBytes, long numRows) {
+        return new BackupManifest.TableEntry(tableName, null, List.of(), numBytes, numRows, List.of(), null,
+                null);
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package com.bigquery.app.backup.domain;
 
 import com.bigquery.app.backup.dto.BackupTime;
 import com.bigquery.app.backup.dto.TableToBackup;
+import com.bigquery.app.common.bigquery.DatasetMetadataCache;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
 import com.bigquery.app.common.config.BackupProperties;
 import com.bigquery.app.common.exception.ResourceNotFoundException;
 import com.google.api.gax.paging.Page;
@@ -18,6 +20,7 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -45,6 +48,9 @@ public class DatastoreDiscoveryServiceTest {
     @Mock
     private BackupProperties.DatasetProperties.SnapshotProperties snapshotProperties;
 
+    @Mock
+    private DatasetMetadataCache datasetMetadataCache;
+
     @InjectMocks
     private DatastoreDiscoveryService discoveryService;
 
@@ -243,7 +249,7 @@ public class DatastoreDiscoveryServiceTest {
         when(bigQuery.listDatasets(eq("project"))).thenReturn(emptyPage);
 
         // when
-        List<TableToBackup> datasets = discoveryService.discoverAllDatasets(bigQuery);
+        List<TableToBackup> datasets = discoveryService.discoverAllDatasets(bigQuery, new MetadataCallCounter());
 
         // then
         assertNotNull(datasets);
@@ -292,11 +298,16 @@ public class DatastoreDiscoveryServiceTest {
         when(bigQuery.getOptions()).thenReturn(options);
         when(bigQuery.listDatasets(eq("project"))).thenReturn(datasetPage);
 
+        MetadataCallCounter callCounter = new MetadataCallCounter();
+
         // when
-        List<TableToBackup> datasets = discoveryService.discoverAllDatasets(bigQuery);
+        List<TableToBackup> datasets = discoveryService.discoverAllDatasets(bigQuery, callCounter);
 
         // then
         assertEquals(2, datasets.size(), "Should include all datasets except the snapshot dataset");
+        assertEquals(Map.of("listDatasets", 1L), callCounter.getCounts());
+        verify(datasetMetadataCache).putAll(datasetList);
+        verify(datasetPage, times(1)).iterateAll();
 
         List<String> datasetNames = datasets.stream()
                 .map(TableToBackup::datasetName)
@@ -0,0 +1,447 @@
+package com.bigquery.app.backup.domain;
+
+import com.bigquery.app.backup.dto.BackupState;
+import com.bigquery.app.backup.dto.BackupTime;
+import com.bigquery.app.backup.dto.ExportOptions;
+import com.bigquery.app.backup.dto.GcsOptions;
+import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.PartitionMetadata;
+import com.bigquery.app.common.bigquery.TableMetadata;
+import com.bigquery.app.common.config.BackupProperties;
+import com.bigquery.app.common.config.GcsProperties;
+import com.bigquery.app.common.gcs.BackupReference;
+import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.common.gcs.TableManifest;
+import com.bigquery.app.common.util.GcsPathUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TimePartitioning;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.quality.Strictness.LENIENT;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = LENIENT)
+class IncrementalBackupServiceTest {
+
+    private static final String PROJECT = "test-project";
+    private static final String DATASET = "test-dataset";
+    private static final String STATE_URI = "gs://bucket/backups/_state/test-project/test-dataset.json";
+    private static final LocalDateTime BACKUP_TIME = LocalDateTime.of(2025, 3, 1, 10, 0);
+    private static final long BEFORE_BACKUP = BACKUP_TIME.toInstant(ZoneOffset.UTC).toEpochMilli() - 1000;
+
+    @Mock
+    private BigQueryService bigQueryService;
+
+    @Mock
+    private GcsService gcsService;
+
+    @Mock
+    private BigQuery bigQuery;
+
+    @Mock
+    private GcsOptions gcsOptions;
+
+    @Mock
+    private ExportOptions exportOptions;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final BackupProperties backupProperties = new BackupProperties();
+
+    private IncrementalBackupService incrementalBackupService;
+
+    @BeforeEach
+    void setUp() {
+        GcsPathUtil.setBackupPath(new GcsProperties());
+        incrementalBackupService = new IncrementalBackupService(bigQueryService, gcsService, objectMapper,
+                backupProperties);
+
+        when(gcsOptions.uri()).thenReturn("gs://bucket");
+        when(gcsOptions.exportOptions()).thenReturn(exportOptions);
+        when(exportOptions.format()).thenReturn("AVRO");
+        when(bigQueryService.getTableMetadata(bigQuery, PROJECT, DATASET)).thenReturn(CompletableFuture.completedFuture(Map.of(
+                "same", new TableMetadata("same", BEFORE_BACKUP, 100, 0),
+                "modified", new TableMetadata("modified", BEFORE_BACKUP + 1, 100, 0),
+                "grown", new TableMetadata("grown", BEFORE_BACKUP, 200, 0),
+                "new", new TableMetadata("new", BEFORE_BACKUP, 50, 0)
+        )));
+    }
+
+    @Test
+    void testPlanSeparatesChangedAndUnchangedTables() throws Exception {
+        // given
+        givenState("AVRO");
+
+        // when
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET,
+                Set.of("same", "modified", "grown", "new"), gcsOptions);
+
+        // then
+        assertEquals(Set.of("modified", "grown", "new"), plan.changedTables());
+        assertEquals(Map.of("same", "20250101_000000"), plan.unchangedTables());
+    }
+
+    @Test
+    void testPlanExportsEverythingWithoutState() {
+        // given
+        when(gcsService.readObject(STATE_URI)).thenReturn(Optional.empty());
+
+        // when
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET,
+                Set.of("same", "new"), gcsOptions);
+
+        // then
+        assertEquals(Set.of("same", "new"), plan.changedTables());
+        assertTrue(plan.unchangedTables().isEmpty());
+    }
+
+    @Test
+    void testPlanIgnoresStateOfAnotherFormat() throws Exception {
+        // given
+        givenState("PARQUET");
+
+        // when
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET, Set.of("same"), gcsOptions);
+
+        // then
+        assertEquals(Set.of("same"), plan.changedTables());
+    }
+
+    @Test
+    void testWriteReferencesPointsToEarlierBackup() throws Exception {
+        // given
+        IncrementalPlan plan = new IncrementalPlan(PROJECT, DATASET, Set.of(),
+                Map.of("same", "20250101_000000"), Map.of(), null, Map.of(), Map.of());
+
+        // when
+        incrementalBackupService.writeReferences(plan, gcsOptions, new BackupTime(BACKUP_TIME, "UTC"));
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(
+                eq("gs://bucket/backups/20250301_100000/test-project/test-dataset/same.ref.json"), content.capture());
+        assertEquals(new BackupReference("20250101_000000", "AVRO"),
+                objectMapper.readValue(content.getValue(), BackupReference.class));
+    }
+
+    @Test
+    void testSaveStateRecordsExportedTablesAndKeepsUnchangedOnes() throws Exception {
+        // given
+        givenState("AVRO");
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET,
+                Set.of("same", "modified"), gcsOptions);
+
+        // when
+        incrementalBackupService.saveState(plan, gcsOptions, new BackupTime(BACKUP_TIME, "UTC"));
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(eq(STATE_URI), content.capture());
+        BackupState state = objectMapper.readValue(content.getValue(), BackupState.class);
+        assertEquals("20250101_000000", state.tables().get("same").backupTimestamp());
+        assertEquals(new BackupState.TableState(BEFORE_BACKUP + 1, 100, "20250301_100000", null),
+                state.tables().get("modified"));
+    }
+
+    @Test
+    void testSaveStateSkipsTablesModifiedAfterBackupTime() throws Exception {
+        // given
+        when(gcsService.readObject(STATE_URI)).thenReturn(Optional.empty());
+        IncrementalPlan plan = new IncrementalPlan(PROJECT, DATASET, Set.of("late"), Map.of(),
+                Map.of("late", new TableMetadata("late", BEFORE_BACKUP + 60_000, 10, 0)), null, Map.of(), Map.of());
+
+        // when
+        incrementalBackupService.saveState(plan, gcsOptions, new BackupTime(BACKUP_TIME, "UTC"));
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(eq(STATE_URI), content.capture());
+        assertTrue(objectMapper.readValue(content.getValue(), BackupState.class).tables().isEmpty());
+    }
+
+    @Test
+    void testPlanExportsOnlyChangedPartitions() throws Exception {
+        // given
+        givenPartitionedTable();
+        when(bigQueryService.getPartitionMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("modified", List.of(
+                        new PartitionMetadata("20250227", BEFORE_BACKUP - 5000),
+                        new PartitionMetadata("20250228", BEFORE_BACKUP + 1)
+                ))));
+
+        // when
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET,
+                Set.of("same", "modified"), gcsOptions);
+
+        // then
+        PartitionPlan partitionPlan = plan.partitionPlans().get("modified");
+        assertEquals(Map.of("20250228", "`day` >= DATE '2025-02-28' AND `day` < DATE '2025-03-01'"),
+                partitionPlan.changedPartitionFilters());
+        assertEquals(Map.of("20250227", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null)),
+                partitionPlan.unchangedPartitions());
+    }
+
+    @Test
+    void testPlanExportsTableInFullWithoutPartitionState() throws Exception {
+        // given
+        givenState("AVRO");
+        when(exportOptions.isIncrementalPartitionBackup()).thenReturn(true);
+        when(bigQueryService.getPartitionMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("modified", List.of(
+                        new PartitionMetadata("20250228", BEFORE_BACKUP + 1)
+                ))));
+
+        // when
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET, Set.of("modified"), gcsOptions);
+
+        // then
+        assertTrue(plan.partitionPlans().isEmpty());
+        assertEquals(List.of(new PartitionMetadata("20250228", BEFORE_BACKUP + 1)),
+                plan.partitionMetadata().get("modified"));
+        verify(bigQuery, never()).getTable(any(TableId.class));
+    }
+
+    @Test
+    void testPlanExportsTableInFullWhenMostPartitionsChanged() throws Exception {
+        // given
+        givenPartitionedTable();
+        when(bigQueryService.getPartitionMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("modified", List.of(
+                        new PartitionMetadata("20250227", BEFORE_BACKUP + 1),
+                        new PartitionMetadata("20250228", BEFORE_BACKUP + 1)
+                ))));
+
+        // when
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET, Set.of("modified"), gcsOptions);
+
+        // then
+        assertEquals(Set.of("modified"), plan.changedTables());
+        assertTrue(plan.partitionPlans().isEmpty());
+    }
+
+    @Test
+    void testPlanExportsConsecutiveChangedPartitionsTogether() throws Exception {
+        // given
+        givenPartitionedTable(Map.of(
+                "20250224", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null),
+                "20250225", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null),
+                "20250226", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null),
+                "20250227", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null),
+                "20250228", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null)));
+        when(bigQueryService.getPartitionMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("modified", List.of(
+                        new PartitionMetadata("20250224", BEFORE_BACKUP - 5000),
+                        new PartitionMetadata("20250225", BEFORE_BACKUP - 5000),
+                        new PartitionMetadata("20250226", BEFORE_BACKUP - 5000),
+                        new PartitionMetadata("20250227", BEFORE_BACKUP + 1),
+                        new PartitionMetadata("20250228", BEFORE_BACKUP + 1),
+                        new PartitionMetadata("20250301", BEFORE_BACKUP + 1)
+                ))));
+
+        // when
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET, Set.of("modified"), gcsOptions);
+
+        // then
+        PartitionPlan partitionPlan = plan.partitionPlans().get("modified");
+        assertEquals(Map.of("20250227-20250301", "`day` >= DATE '2025-02-27' AND `day` < DATE '2025-03-02'"),
+                partitionPlan.changedPartitionFilters());
+        assertEquals(Map.of("20250227", "20250227-20250301", "20250228", "20250227-20250301",
+                "20250301", "20250227-20250301"), partitionPlan.changedPartitionFiles());
+        assertEquals(Set.of("20250224", "20250225", "20250226"), partitionPlan.unchangedPartitions().keySet());
+    }
+
+    @Test
+    void testPlanExportsAgainPartitionsSharingFilesWithChangedOne() throws Exception {
+        // given
+        givenPartitionedTable(Map.of(
+                "20250225", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null),
+                "20250226", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", "20250226-20250227"),
+                "20250227", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", "20250226-20250227"),
+                "20250228", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null)));
+        when(bigQueryService.getPartitionMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("modified", List.of(
+                        new PartitionMetadata("20250225", BEFORE_BACKUP - 5000),
+                        new PartitionMetadata("20250226", BEFORE_BACKUP - 5000),
+                        new PartitionMetadata("20250227", BEFORE_BACKUP + 1),
+                        new PartitionMetadata("20250228", BEFORE_BACKUP - 5000)
+                ))));
+
+        // when
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET, Set.of("modified"), gcsOptions);
+
+        // then
+        PartitionPlan partitionPlan = plan.partitionPlans().get("modified");
+        assertEquals(Set.of("20250226-20250227"), partitionPlan.changedPartitionFilters().keySet());
+        assertEquals(Set.of("20250225", "20250228"), partitionPlan.unchangedPartitions().keySet());
+    }
+
+    @Test
+    void testPlanExportsTableInFullWhenPartitionCannotBeSelected() throws Exception {
+        // given
+        givenPartitionedTable();
+        backupProperties.getIncremental().setMaxChangedPartitionShare(1.0);
+        when(bigQueryService.getPartitionMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("modified", List.of(
+                        new PartitionMetadata("20250228", BEFORE_BACKUP + 1),
+                        new PartitionMetadata("__UNPARTITIONED__", BEFORE_BACKUP + 1)
+                ))));
+
+        // when
+        IncrementalPlan plan = incrementalBackupService.plan(bigQuery, PROJECT, DATASET, Set.of("modified"), gcsOptions);
+
+        // then
+        assertEquals(Set.of("modified"), plan.changedTables());
+        assertTrue(plan.partitionPlans().isEmpty());
+    }
+
+    @Test
+    void testSaveStateRecordsPartitionsExportedBeforeBackupTime() throws Exception {
+        // given
+        when(gcsService.readObject(STATE_URI)).thenReturn(Optional.empty());
+        PartitionPlan partitionPlan = new PartitionPlan(
+                Map.of("20250228", "filter", "20250301-20250302", "filter"),
+                Map.of("20250228", "20250228", "20250301", "20250301-20250302", "20250302", "20250301-20250302"),
+                Map.of("20250302", BEFORE_BACKUP, "20250227", BEFORE_BACKUP - 5000, "20250228", BEFORE_BACKUP, "20250301", BEFORE_BACKUP + 60_000),
+                Map.of("20250227", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null)));
+        IncrementalPlan plan = new IncrementalPlan(PROJECT, DATASET, Set.of("events"), Map.of(),
+                Map.of("events", new TableMetadata("events", BEFORE_BACKUP + 60_000, 10, 0)), null,
+                Map.of("events", partitionPlan), Map.of());
+
+        // when
+        incrementalBackupService.saveState(plan, gcsOptions, new BackupTime(BACKUP_TIME, "UTC"));
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(eq(STATE_URI), content.capture());
+        BackupState.TableState tableState = objectMapper.readValue(content.getValue(), BackupState.class)
+                .tables().get("events");
+        assertEquals(-1, tableState.lastModifiedTime());
+        assertEquals(Map.of(
+                "20250227", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null),
+                "20250228", new BackupState.PartitionState(BEFORE_BACKUP, "20250301_100000", null)
+        ), tableState.partitions());
+    }
+
+    @Test
+    void testSaveStateRecordsPartitionsOfTableExportedInFull() throws Exception {
+        // given
+        when(gcsService.readObject(STATE_URI)).thenReturn(Optional.empty());
+        IncrementalPlan plan = new IncrementalPlan(PROJECT, DATASET, Set.of("events"), Map.of(),
+                Map.of("events", new TableMetadata("events", BEFORE_BACKUP, 10, 0)), null, Map.of(),
+                Map.of("events", List.of(new PartitionMetadata("20250228", BEFORE_BACKUP))));
+
+        // when
+        incrementalBackupService.saveState(plan, gcsOptions, new BackupTime(BACKUP_TIME, "UTC"));
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(eq(STATE_URI), content.capture());
+        assertEquals(Map.of("20250228", new BackupState.PartitionState(BEFORE_BACKUP, null, null)),
+                objectMapper.readValue(content.getValue(), BackupState.class).tables().get("events").partitions());
+    }
+
+    @Test
+    void testWriteTableManifestListsSharedFilesOnce() throws Exception {
+        // given
+        PartitionPlan partitionPlan = new PartitionPlan(
+                Map.of("20250228", "filter"),
+                Map.of("20250228", "20250228"),
+                Map.of("20250226", BEFORE_BACKUP - 5000, "20250227", BEFORE_BACKUP - 5000, "20250228", BEFORE_BACKUP),
+                Map.of("20250226", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", "20250226-20250227"),
+                        "20250227", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", "20250226-20250227")));
+
+        // when
+        List<TableManifest.PartitionFile> files = incrementalBackupService.partitionFiles(PROJECT, DATASET, "events",
+                partitionPlan, gcsOptions, "20250301_100000");
+
+        // then
+        assertEquals(List.of(
+                new TableManifest.PartitionFile("20250226-20250227", "20250101_000000",
+                        "gs://bucket/backups/20250101_000000/test-project/test-dataset/events/partitions/20250226-20250227/events-*.avro"),
+                new TableManifest.PartitionFile("20250228", "20250301_100000",
+                        "gs://bucket/backups/20250301_100000/test-project/test-dataset/events/partitions/20250228/events-*.avro")
+        ), files);
+    }
+
+    @Test
+    void testWriteTableManifestAssemblesFullTable() throws Exception {
+        // given
+        PartitionPlan partitionPlan = new PartitionPlan(
+                Map.of("20250228", "filter"),
+                Map.of("20250228", "20250228"),
+                Map.of("20250227", BEFORE_BACKUP - 5000, "20250228", BEFORE_BACKUP),
+                Map.of("20250227", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null)));
+
+        // when
+        incrementalBackupService.writeTableManifest(PROJECT, DATASET, "events", partitionPlan, gcsOptions,
+                "20250301_100000");
+
+        // then
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(gcsService).writeJsonObject(
+                eq("gs://bucket/backups/20250301_100000/test-project/test-dataset/events.manifest.json"),
+                content.capture());
+        assertEquals(new TableManifest("AVRO", List.of(
+                new TableManifest.PartitionFile("20250227", "20250101_000000",
+                        "gs://bucket/backups/20250101_000000/test-project/test-dataset/events/partitions/20250227/events-*.avro"),
+                new TableManifest.PartitionFile("20250228", "20250301_100000",
+                        "gs://bucket/backups/20250301_100000/test-project/test-dataset/events/partitions/20250228/events-*.avro")
+        )), objectMapper.readValue(content.getValue(), TableManifest.class));
+    }
+
+    private void givenPartitionedTable() throws Exception {
+        givenPartitionedTable(Map.of(
+                "20250227", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null),
+                "20250228", new BackupState.PartitionState(BEFORE_BACKUP - 5000, "20250101_000000", null)));
+    }
+
+    private void givenPartitionedTable(Map<String, BackupState.PartitionState> partitions) throws Exception {
+        when(exportOptions.isIncrementalPartitionBackup()).thenReturn(true);
+        BackupState state = new BackupState(PROJECT, DATASET, "AVRO", Map.of(
+                "same", new BackupState.TableState(BEFORE_BACKUP, 100, "20250101_000000", null),
+                "modified", new BackupState.TableState(BEFORE_BACKUP, 100, "20250101_000000", partitions)
+        ));
+        when(gcsService.readObject(STATE_URI)).thenReturn(Optional.of(objectMapper.writeValueAsString(state)));
+
+        Table table = mock(Table.class);
+        when(table.getDefinition()).thenReturn(StandardTableDefinition.newBuilder()
+                .setSchema(Schema.of(Field.of("day", LegacySQLTypeName.DATE)))
+                .setTimePartitioning(TimePartitioning.newBuilder(TimePartitioning.Type.DAY).setField("day").build())
+                .build());
+        when(bigQuery.getTable(TableId.of(PROJECT, DATASET, "modified"))).thenReturn(table);
+    }
+
+    private void givenState(String format) throws Exception {
+        BackupState state = new BackupState(PROJECT, DATASET, format, Map.of(
+                "same", new BackupState.TableState(BEFORE_BACKUP, 100, "20250101_000000", null),
+                "modified", new BackupState.TableState(BEFORE_BACKUP, 100, "20250101_000000", null),
+                "grown", new BackupState.TableState(BEFORE_BACKUP, 100, "20250101_000000", null)
+        ));
+        when(gcsService.readObject(STATE_URI)).thenReturn(Optional.of(objectMapper.writeValueAsString(state)));
+    }
+}
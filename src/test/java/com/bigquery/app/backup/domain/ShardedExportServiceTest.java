@@ -0,0 +1,135 @@
+package com.bigquery.app.backup.domain;
+
+import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
+import com.bigquery.app.common.bigquery.PartitionMetadata;
+import com.bigquery.app.common.config.BackupProperties;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TimePartitioning;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.mockito.quality.Strictness.LENIENT;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = LENIENT)
+class ShardedExportServiceTest {
+
+    private static final String PROJECT = "test-project";
+    private static final String DATASET = "test-dataset";
+
+    @Mock
+    private BigQueryService bigQueryService;
+
+    @Mock
+    private BigQuery bigQuery;
+
+    private ShardedExportService shardedExportService;
+
+    @BeforeEach
+    void setUp() {
+        var backupProperties = new BackupProperties();
+        backupProperties.getSharding().setMinTableSize(DataSize.ofBytes(1000));
+        shardedExportService = new ShardedExportService(bigQueryService, backupProperties);
+    }
+
+    @Test
+    void testLargePartitionedTableIsSplitIntoRanges() {
+        // given
+        when(bigQueryService.getPartitionMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("events", List.of(
+                        new PartitionMetadata("20250104", 1L),
+                        new PartitionMetadata("20250101", 1L),
+                        new PartitionMetadata("__NULL__", 1L),
+                        new PartitionMetadata("20250103", 1L),
+                        new PartitionMetadata("20250102", 1L)
+                ))));
+        mockDailyPartitionedTable("events");
+        var metadataCalls = new MetadataCallCounter();
+
+        // when
+        var plans = shardedExportService.plan(bigQuery, PROJECT, DATASET, Set.of("events"),
+                Map.of("events", 5000L), 2, metadataCalls);
+
+        // then
+        assertEquals(Map.of(
+                "shard-000", "(`day` < DATE '2025-01-03' OR `day` IS NULL)",
+                "shard-001", "`day` >= DATE '2025-01-03'"
+        ), plans.get("events").changedPartitionFilters());
+        assertTrue(plans.get("events").unchangedPartitions().isEmpty());
+        assertEquals(Map.of("getTable", 1L), metadataCalls.getCounts());
+    }
+
+    @Test
+    void testShardCountIsLimitedByPartitionCount() {
+        // given
+        when(bigQueryService.getPartitionMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of("events", List.of(
+                        new PartitionMetadata("20250101", 1L),
+                        new PartitionMetadata("20250102", 1L)
+                ))));
+        mockDailyPartitionedTable("events");
+
+        // when
+        var plans = shardedExportService.plan(bigQuery, PROJECT, DATASET, Set.of("events"),
+                Map.of("events", 5000L), 8, new MetadataCallCounter());
+
+        // then
+        assertEquals(Set.of("shard-000", "shard-001"), plans.get("events").changedPartitionFilters().keySet());
+    }
+
+    @Test
+    void testSmallTablesAreNotShardedAndRunNoQueries() {
+        // when
+        var plans = shardedExportService.plan(bigQuery, PROJECT, DATASET, Set.of("small"),
+                Map.of("small", 999L), 4, new MetadataCallCounter());
+
+        // then
+        assertTrue(plans.isEmpty());
+        verifyNoInteractions(bigQueryService, bigQuery);
+    }
+
+    @Test
+    void testUnpartitionedTableIsNotSharded() {
+        // given
+        when(bigQueryService.getPartitionMetadata(bigQuery, PROJECT, DATASET)).thenReturn(
+                CompletableFuture.completedFuture(Map.of()));
+
+        // when
+        var plans = shardedExportService.plan(bigQuery, PROJECT, DATASET, Set.of("plain"),
+                Map.of("plain", 5000L), 4, new MetadataCallCounter());
+
+        // then
+        assertTrue(plans.isEmpty());
+        verify(bigQuery, never()).getTable(any(TableId.class));
+    }
+
+    private void mockDailyPartitionedTable(String tableName) {
+        Table table = mock(Table.class);
+        when(table.getDefinition()).thenReturn(StandardTableDefinition.newBuilder()
+                .setSchema(Schema.of(Field.of("day", LegacySQLTypeName.DATE)))
+                .setTimePartitioning(TimePartitioning.newBuilder(TimePartitioning.Type.DAY).setField("day").build())
+                .build());
+        when(bigQuery.getTable(TableId.of(PROJECT, DATASET, tableName))).thenReturn(table);
+    }
+}
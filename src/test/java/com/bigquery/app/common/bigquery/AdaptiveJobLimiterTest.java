@@ -0,0 +1,151 @@
+package com.bigquery.app.common.bigquery;
+
+import com.bigquery.app.common.config.AdaptiveConcurrencyProperties;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.JobConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdaptiveJobLimiterTest {
+
+    private static final String PROJECT = "project";
+
+    private AdaptiveConcurrencyProperties properties;
+    private AdaptiveJobLimiter limiter;
+    private BigQuery bigQuery;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AdaptiveConcurrencyProperties();
+        properties.setInitialLimit(4);
+        properties.setMaxLimit(6);
+        limiter = new AdaptiveJobLimiter(properties);
+
+        bigQuery = mock(BigQuery.class);
+        BigQueryOptions options = mock(BigQueryOptions.class);
+        when(bigQuery.getOptions()).thenReturn(options);
+        when(options.getProjectId()).thenReturn(PROJECT);
+    }
+
+    @Test
+    void testRaisesLimitAfterAWindowOfSuccessfulJobs() {
+        // when
+        for (int i = 0; i < 4; i++) {
+            limiter.submit(bigQuery, JobConfiguration.Type.QUERY, () -> CompletableFuture.completedFuture("ok")).join();
+        }
+
+        // then
+        assertEquals(5, limiter.getLimit(PROJECT, JobConfiguration.Type.QUERY));
+        assertEquals(4, limiter.getLimit(PROJECT, JobConfiguration.Type.LOAD));
+    }
+
+    @Test
+    void testDoesNotRaiseLimitAboveMaximum() {
+        // when
+        for (int i = 0; i < 50; i++) {
+            limiter.submit(bigQuery, JobConfiguration.Type.EXTRACT, () -> CompletableFuture.completedFuture("ok")).join();
+        }
+
+        // then
+        assertEquals(6, limiter.getLimit(PROJECT, JobConfiguration.Type.EXTRACT));
+    }
+
+    @Test
+    void testLowersLimitAndFailsRateLimitedJob() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+
+        // when
+        CompletableFuture<String> result = limiter.submit(bigQuery, JobConfiguration.Type.QUERY, () -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(rateLimitException());
+        });
+
+        // then
+        CompletionException thrown = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(BigQueryException.class, thrown.getCause());
+        assertEquals(1, attempts.get());
+        assertEquals(2, limiter.getLimit(PROJECT, JobConfiguration.Type.QUERY));
+        assertEquals(0, limiter.getInFlight(PROJECT, JobConfiguration.Type.QUERY));
+    }
+
+    @Test
+    void testCreatesQueuedJobOffTheThreadThatReleasedItsPermit() {
+        // given
+        properties.setInitialLimit(1);
+        limiter = new AdaptiveJobLimiter(properties);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        limiter.submit(bigQuery, JobConfiguration.Type.QUERY, () -> running);
+        AtomicReference<Thread> creatingThread = new AtomicReference<>();
+        CompletableFuture<String> queued = limiter.submit(bigQuery, JobConfiguration.Type.QUERY, () -> {
+            creatingThread.set(Thread.currentThread());
+            return CompletableFuture.completedFuture("ok");
+        });
+
+        // when
+        running.complete("done");
+
+        // then
+        assertEquals("ok", queued.join());
+        assertNotSame(Thread.currentThread(), creatingThread.get());
+        assertTrue(creatingThread.get().getName().startsWith("bq-job-submit-"));
+        limiter.stop();
+    }
+
+    @Test
+    void testLowersLimitOnlyOncePerCooldown() {
+        // when
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<String> result = limiter.submit(bigQuery, JobConfiguration.Type.LOAD,
+                    () -> CompletableFuture.failedFuture(new BigQueryException(429, "Too many requests")));
+            assertThrows(CompletionException.class, result::join);
+        }
+
+        // then
+        assertEquals(2, limiter.getLimit(PROJECT, JobConfiguration.Type.LOAD));
+    }
+
+    @Test
+    void testPassesOtherErrorsThroughWithoutChangingLimit() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+
+        // when
+        CompletableFuture<String> result = limiter.submit(bigQuery, JobConfiguration.Type.QUERY, () -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new BigQueryException(403, "Access denied",
+                    new BigQueryError("accessDenied", "", "Access denied")));
+        });
+
+        // then
+        assertThrows(CompletionException.class, result::join);
+        assertEquals(1, attempts.get());
+        assertEquals(4, limiter.getLimit(PROJECT, JobConfiguration.Type.QUERY));
+    }
+
+    @Test
+    void testRecognisesRateLimitErrors() {
+        assertTrue(AdaptiveJobLimiter.isRateLimited(rateLimitException()));
+        assertTrue(AdaptiveJobLimiter.isRateLimited(new BigQueryException(429, "Too many requests")));
+        assertFalse(AdaptiveJobLimiter.isRateLimited(new BigQueryException(500, "Backend error")));
+        assertFalse(AdaptiveJobLimiter.isRateLimited(new BigQueryException(403, "Forbidden")));
+        assertFalse(AdaptiveJobLimiter.isRateLimited(new IllegalStateException("boom")));
+    }
+
+    private static BigQueryException rateLimitException() {
+        return new BigQueryException(403, "Exceeded rate limits",
+                new BigQueryError("rateLimitExceeded", "", "Exceeded rate limits"));
+    }
+}
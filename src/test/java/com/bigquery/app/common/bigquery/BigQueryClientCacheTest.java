@@ -0,0 +1,88 @@
+package com.bigquery.app.common.bigquery;
+
+import com.google.cloud.bigquery.BigQuery;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class BigQueryClientCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+    private final List<String> createdFor = new ArrayList<>();
+
+    private BigQueryClientCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new BigQueryClientCache(2, Duration.ofMinutes(30), projectId -> {
+            createdFor.add(projectId);
+            return mock(BigQuery.class);
+        }, meterRegistry, clock::get);
+    }
+
+    @Test
+    void testReusesClientPerProject() {
+        // when
+        BigQuery first = cache.get("project-a");
+        BigQuery second = cache.get("project-a");
+        BigQuery other = cache.get("project-b");
+
+        // then
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(List.of("project-a", "project-b"), createdFor);
+        assertEquals(1, gets("hit"));
+        assertEquals(2, gets("miss"));
+        assertEquals(2, meterRegistry.get("cache.size").gauge().value());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedClientBeyondMaxSize() {
+        // given
+        cache.get("project-a");
+        cache.get("project-b");
+        cache.get("project-a");
+
+        // when
+        cache.get("project-c");
+        cache.get("project-a");
+        cache.get("project-b");
+
+        // then
+        assertEquals(List.of("project-a", "project-b", "project-c", "project-b"), createdFor);
+        assertEquals(2, cache.size());
+        assertEquals(2, meterRegistry.get("cache.evictions").counter().count());
+    }
+
+    @Test
+    void testEvictsIdleClients() {
+        // given
+        cache.get("project-a");
+        clock.addAndGet(Duration.ofMinutes(20).toNanos());
+        cache.get("project-b");
+
+        // when
+        clock.addAndGet(Duration.ofMinutes(15).toNanos());
+        cache.get("project-b");
+
+        // then
+        assertEquals(1, cache.size());
+        assertEquals(1, meterRegistry.get("cache.evictions").counter().count());
+
+        cache.get("project-a");
+        assertEquals(List.of("project-a", "project-b", "project-a"), createdFor);
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,278 @@
+package com.bigquery.app.common.bigquery;
+
+import com.bigquery.app.common.config.JobEngineProperties;
+import com.google.cloud.bigquery.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.bigquery.app.common.util.JobUtil.deterministicJobId;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+import static org.mockito.quality.Strictness.LENIENT;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = LENIENT)
+class BigQueryJobEngineTest {
+
+    private static final JobId JOB_ID = JobId.of("project", "job-1");
+
+    @Mock
+    private BigQuery bigQuery;
+
+    @Mock
+    private JobInfo jobInfo;
+
+    private BigQueryJobEngine jobEngine;
+
+    @BeforeEach
+    void setUp() {
+        JobEngineProperties properties = new JobEngineProperties();
+        properties.setPollTick(Duration.ofMillis(5));
+        properties.setInitialPollInterval(Duration.ofMillis(5));
+        properties.setMaxPollInterval(Duration.ofMillis(20));
+        properties.setMaxConsecutivePollFailures(2);
+
+        jobEngine = new BigQueryJobEngine(properties);
+        jobEngine.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobEngine.stop();
+    }
+
+    @Test
+    void testSubmitCompletesWhenPolledJobIsDone() {
+        // given
+        Job runningJob = mockJob(JobStatus.State.RUNNING, null);
+        Job doneJob = mockJob(JobStatus.State.DONE, null);
+        when(bigQuery.create(jobInfo)).thenReturn(runningJob);
+        when(bigQuery.getJob(JOB_ID)).thenReturn(runningJob).thenReturn(doneJob);
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, jobInfo);
+
+        // then
+        assertSame(doneJob, future.join());
+        verify(bigQuery, times(2)).getJob(JOB_ID);
+        assertEquals(0, jobEngine.getInFlightJobCount());
+    }
+
+    @Test
+    void testSubmitFailsWithMappedErrorWhenJobFails() {
+        // given
+        Job runningJob = mockJob(JobStatus.State.RUNNING, null);
+        Job failedJob = mockJob(JobStatus.State.DONE, new BigQueryError("duplicate", null, "Already Exists"));
+        when(bigQuery.create(jobInfo)).thenReturn(runningJob);
+        when(bigQuery.getJob(JOB_ID)).thenReturn(failedJob);
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, jobInfo);
+
+        // then
+        CompletionException thrown = assertThrows(CompletionException.class, future::join);
+        BigQueryException cause = assertInstanceOf(BigQueryException.class, thrown.getCause());
+        assertEquals(409, cause.getCode());
+        assertEquals("duplicate", cause.getError().getReason());
+    }
+
+    @Test
+    void testSubmitDoesNotPollJobThatIsAlreadyDone() {
+        // given
+        Job doneJob = mockJob(JobStatus.State.DONE, null);
+        when(bigQuery.create(jobInfo)).thenReturn(doneJob);
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, jobInfo);
+
+        // then
+        assertSame(doneJob, future.join());
+        verify(bigQuery, never()).getJob(any(JobId.class));
+    }
+
+    @Test
+    void testSubmitReturnsFailedFutureWhenCreateFails() {
+        // given
+        when(bigQuery.create(jobInfo)).thenThrow(new BigQueryException(403, "Access Denied"));
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, jobInfo);
+
+        // then
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(0, jobEngine.getInFlightJobCount());
+    }
+
+    @Test
+    void testSubmitFailsAfterConsecutivePollFailures() {
+        // given
+        Job runningJob = mockJob(JobStatus.State.RUNNING, null);
+        when(bigQuery.create(jobInfo)).thenReturn(runningJob);
+        when(bigQuery.getJob(JOB_ID)).thenThrow(new BigQueryException(503, "Backend error"));
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, jobInfo);
+
+        // then
+        CompletionException thrown = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(BigQueryException.class, thrown.getCause());
+        verify(bigQuery, times(2)).getJob(JOB_ID);
+    }
+
+    @Test
+    void testCancelledGroupCancelsRunningJob() {
+        // given
+        Job runningJob = mockJob(JobStatus.State.RUNNING, null);
+        Job stoppedJob = mockJob(JobStatus.State.DONE, new BigQueryError("stopped", null, "Job execution was cancelled"));
+        when(bigQuery.create(jobInfo)).thenReturn(runningJob);
+        when(bigQuery.getJob(JOB_ID)).thenReturn(runningJob);
+        when(bigQuery.cancel(JOB_ID)).thenAnswer(invocation -> {
+            when(bigQuery.getJob(JOB_ID)).thenReturn(stoppedJob);
+            return true;
+        });
+        JobGroup group = new JobGroup();
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, jobInfo, group);
+
+        // when
+        assertTrue(group.cancel("run failed"));
+
+        // then
+        assertThrows(CancellationException.class, future::join);
+        verify(bigQuery).cancel(JOB_ID);
+        assertEquals(0, group.getRunningJobCount());
+        assertFalse(group.cancel("run failed again"));
+    }
+
+    @Test
+    void testSubmitInCancelledGroupCreatesNoJob() {
+        // given
+        JobGroup group = new JobGroup();
+        group.cancel("run cancelled");
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, jobInfo, group);
+
+        // then
+        assertThrows(CancellationException.class, future::join);
+        verify(bigQuery, never()).create(any(JobInfo.class));
+    }
+
+    @Test
+    void testExistingRunningJobIsAttachedTo() {
+        // given
+        JobInfo deterministicJob = JobInfo.of(JobId.of("bqbackup_export_abc"), QueryJobConfiguration.newBuilder("SELECT 1").build());
+        Job runningJob = mockJob(JobStatus.State.RUNNING, null);
+        Job doneJob = mockJob(JobStatus.State.DONE, null);
+        when(bigQuery.create(any(JobInfo.class))).thenThrow(new BigQueryException(409, "Already Exists"));
+        when(bigQuery.getJob(JobId.of("bqbackup_export_abc_0"))).thenReturn(runningJob);
+        when(bigQuery.getJob(JOB_ID)).thenReturn(doneJob);
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, deterministicJob);
+
+        // then
+        assertSame(doneJob, future.join());
+        verify(bigQuery, times(1)).create(any(JobInfo.class));
+    }
+
+    @Test
+    void testExistingRegionalJobIsLookedUpInItsLocation() {
+        // given
+        JobInfo deterministicJob = JobInfo.of(deterministicJobId("load", "europe-west3", "dataset", "table"),
+                QueryJobConfiguration.newBuilder("SELECT 1").build());
+        Job runningJob = mockJob(JobStatus.State.RUNNING, null);
+        Job doneJob = mockJob(JobStatus.State.DONE, null);
+        when(bigQuery.create(any(JobInfo.class))).thenThrow(new BigQueryException(409, "Already Exists"));
+        // Outside the US and EU multi-regions BigQuery only finds a job by its id and location
+        when(bigQuery.getJob(any(JobId.class))).thenAnswer(invocation -> {
+            JobId jobId = invocation.getArgument(0);
+            if (JOB_ID.equals(jobId)) {
+                return doneJob;
+            }
+            return "europe-west3".equals(jobId.getLocation()) ? runningJob : null;
+        });
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, deterministicJob);
+
+        // then
+        assertSame(doneJob, future.join());
+        ArgumentCaptor<JobInfo> created = ArgumentCaptor.forClass(JobInfo.class);
+        verify(bigQuery, times(1)).create(created.capture());
+        assertEquals("europe-west3", created.getValue().getJobId().getLocation());
+    }
+
+    @Test
+    void testFailedOrOldAttemptIsRetriedUnderNextJobId() {
+        // given
+        JobInfo deterministicJob = JobInfo.of(JobId.of("bqbackup_load_abc"), QueryJobConfiguration.newBuilder("SELECT 1").build());
+        Job failedJob = mockJob(JobStatus.State.DONE, new BigQueryError("invalid", null, "Bad file"));
+        Job oldJob = mockJob(JobStatus.State.DONE, null);
+        JobStatistics oldStatistics = mock(JobStatistics.class);
+        when(oldStatistics.getEndTime()).thenReturn(System.currentTimeMillis() - Duration.ofDays(1).toMillis());
+        when(oldJob.<JobStatistics>getStatistics()).thenReturn(oldStatistics);
+        Job newJob = mockJob(JobStatus.State.DONE, null);
+
+        doThrow(new BigQueryException(409, "Already Exists")).when(bigQuery)
+                .create(argThat((JobInfo info) -> !info.getJobId().getJob().endsWith("_2")));
+        doReturn(newJob).when(bigQuery)
+                .create(argThat((JobInfo info) -> info.getJobId().getJob().equals("bqbackup_load_abc_2")));
+        when(bigQuery.getJob(JobId.of("bqbackup_load_abc_0"))).thenReturn(failedJob);
+        when(bigQuery.getJob(JobId.of("bqbackup_load_abc_1"))).thenReturn(oldJob);
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, deterministicJob);
+
+        // then
+        assertSame(newJob, future.join());
+        verify(bigQuery, times(3)).create(any(JobInfo.class));
+    }
+
+    @Test
+    void testRecentlySucceededJobIsRunAgainUnderNextJobId() {
+        // given
+        JobInfo deterministicJob = JobInfo.of(JobId.of("bqbackup_load_abc"), QueryJobConfiguration.newBuilder("SELECT 1").build());
+        // The same load succeeded minutes ago, but the table was dropped since and the restore is run again
+        Job succeededJob = mockJob(JobStatus.State.DONE, null);
+        JobStatistics statistics = mock(JobStatistics.class);
+        when(statistics.getEndTime()).thenReturn(System.currentTimeMillis() - Duration.ofMinutes(5).toMillis());
+        when(succeededJob.<JobStatistics>getStatistics()).thenReturn(statistics);
+        Job newJob = mockJob(JobStatus.State.DONE, null);
+
+        doThrow(new BigQueryException(409, "Already Exists")).when(bigQuery)
+                .create(argThat((JobInfo info) -> info.getJobId().getJob().endsWith("_0")));
+        doReturn(newJob).when(bigQuery)
+                .create(argThat((JobInfo info) -> info.getJobId().getJob().equals("bqbackup_load_abc_1")));
+        when(bigQuery.getJob(JobId.of("bqbackup_load_abc_0"))).thenReturn(succeededJob);
+
+        // when
+        CompletableFuture<Job> future = jobEngine.submit(bigQuery, deterministicJob);
+
+        // then
+        assertSame(newJob, future.join());
+        verify(bigQuery, times(2)).create(any(JobInfo.class));
+    }
+
+    private Job mockJob(JobStatus.State state, BigQueryError error) {
+        Job job = mock(Job.class);
+        JobStatus status = mock(JobStatus.class);
+        when(job.getJobId()).thenReturn(JOB_ID);
+        when(job.getStatus()).thenReturn(status);
+        when(status.getState()).thenReturn(state);
+        when(status.getError()).thenReturn(error);
+        return job;
+    }
+}
@@ -1,14 +1,27 @@
 package com.bigquery.app.common.bigquery;
 
+import com.bigquery.app.common.config.AdaptiveConcurrencyProperties;
 import com.bigquery.app.common.exception.ConflictException;
 import com.bigquery.app.common.exception.ServiceException;
+import com.bigquery.app.common.gcs.TableLayout;
 import com.google.cloud.bigquery.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.bigquery.app.common.util.FutureUtil.await;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -19,6 +32,15 @@ public class BigQueryServiceTest {
     @Mock
     private BigQuery mockBigQuery;
 
+    @Mock
+    private BigQueryJobEngine jobEngine;
+
+    @Spy
+    private AdaptiveJobLimiter jobLimiter = new AdaptiveJobLimiter(new AdaptiveConcurrencyProperties());
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private BigQueryService bigQueryService;
 
@@ -34,7 +56,7 @@ public class BigQueryServiceTest {
         // when + then
         BigQueryException thrown = assertThrows(
                 BigQueryException.class,
-                () -> bigQueryService.ensureDatasetExists(mockBigQuery, datasetId, "desc", "location")
+                () -> bigQueryService.ensureDatasetExists(mockBigQuery, datasetId, "desc", "location", new MetadataCallCounter())
         );
         assertEquals(500, thrown.getCode());
         assertEquals("Failed to create dataset", thrown.getMessage());
@@ -44,99 +66,514 @@ public class BigQueryServiceTest {
     }
 
     @Test
-    public void testCreateSnapshotOfTable_ConflictException() throws InterruptedException {
+    public void testCreateSnapshotOfTable_SubmitsSnapshotQuery() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+
+        // when
+        await(bigQueryService.createSnapshotOfTable(
+                mockBigQuery, "project", "srcDataset", "srcTable",
+                "destDataset", "snapshotTable", 1_609_459_200_000L, 1L, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        QueryJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertTrue(configuration.getQuery().contains("CREATE SNAPSHOT TABLE IF NOT EXISTS project.destDataset.snapshotTable"));
+        assertTrue(configuration.getQuery().contains("CLONE project.srcDataset.srcTable"));
+        assertTrue(configuration.getQuery().contains("FOR SYSTEM_TIME AS OF TIMESTAMP_MILLIS(1609459200000)"));
+        verify(mockBigQuery, never()).create(any(JobInfo.class));
+        verify(mockBigQuery, never()).getTable(any(TableId.class));
+    }
+
+    @Test
+    public void testCreateSnapshotOfTable_ReusesSkippedSnapshotOfSameTime() {
         // given
-        BigQueryException conflictException = new BigQueryException(409, "Snapshot already exists");
-        when(mockBigQuery.query(any(QueryJobConfiguration.class))).thenThrow(conflictException);
+        givenSkippedSnapshotStatement();
+        givenExistingSnapshot("2021-01-01T00:00:00Z");
+
+        // when
+        await(bigQueryService.createSnapshotOfTable(
+                mockBigQuery, "project", "srcDataset", "srcTable",
+                "destDataset", "snapshotTable", 1_609_459_200_000L, 1L, "europe-west3", null
+        ));
+
+        // then
+        verify(mockBigQuery).getTable(TableId.of("project", "destDataset", "snapshotTable"));
+    }
+
+    @Test
+    public void testCreateSnapshotOfTable_ConflictWhenSkippedSnapshotIsOfAnotherTime() {
+        // given
+        givenSkippedSnapshotStatement();
+        givenExistingSnapshot("2021-01-01T00:00:00.500Z");
 
         // when + then
         ConflictException thrown = assertThrows(
                 ConflictException.class,
-                () -> bigQueryService.createSnapshotOfTable(
+                () -> await(bigQueryService.createSnapshotOfTable(
                         mockBigQuery, "project", "srcDataset", "srcTable",
-                        "destDataset", "snapshotTable", "2021-01-01T00:00:00Z", 1L
-                )
+                        "destDataset", "snapshotTable", 1_609_459_200_000L, 1L, "europe-west3", null
+                ))
         );
 
-        assertTrue(thrown.getMessage().contains("Snapshot"));
-        assertTrue(thrown.getMessage().contains("already exists"));
+        assertTrue(thrown.getMessage().contains("destDataset.snapshotTable"));
+    }
+
+    @Test
+    public void testCreateSnapshotsOfTables_SubmitsOneScriptAndReportsFailedTables() throws Exception {
+        // given
+        FieldValue tableName = mock(FieldValue.class);
+        when(tableName.getStringValue()).thenReturn("srcTable2");
+        FieldValue errorMessage = mock(FieldValue.class);
+        when(errorMessage.getStringValue()).thenReturn("Not found: Table project:srcDataset.srcTable2");
+        FieldValueList row = mock(FieldValueList.class);
+        when(row.get("table_name")).thenReturn(tableName);
+        when(row.get("error_message")).thenReturn(errorMessage);
+        TableResult result = mock(TableResult.class);
+        when(result.iterateAll()).thenReturn(List.of(row));
+        Job job = mock(Job.class);
+        when(job.getQueryResults()).thenReturn(result);
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(job));
+
+        Map<String, String> snapshotTables = new LinkedHashMap<>();
+        snapshotTables.put("srcTable1", "snapshotTable1");
+        snapshotTables.put("srcTable2", "snapshotTable2");
+
+        // when
+        Map<String, String> failures = await(bigQueryService.createSnapshotsOfTables(
+                mockBigQuery, "project", "srcDataset", snapshotTables,
+                "destDataset", 1_609_459_200_000L, 1L, "europe-west3", null
+        ));
+
+        // then
+        assertEquals(Map.of("srcTable2", "Not found: Table project:srcDataset.srcTable2"), failures);
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine, times(1)).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        String script = ((QueryJobConfiguration) jobCaptor.getValue().getConfiguration()).getQuery();
+        assertTrue(script.contains("CREATE SNAPSHOT TABLE IF NOT EXISTS project.destDataset.snapshotTable1"));
+        assertTrue(script.contains("CREATE SNAPSHOT TABLE IF NOT EXISTS project.destDataset.snapshotTable2"));
+        assertTrue(script.contains("STRUCT('srcTable2' AS table_name, @@error.message AS error_message)"));
+        assertTrue(script.contains("FROM `project.destDataset`.INFORMATION_SCHEMA.TABLE_SNAPSHOTS"));
+        assertTrue(script.contains("WHERE table_name IN ('snapshotTable1', 'snapshotTable2') "
+                + "AND snapshot_time != TIMESTAMP_MILLIS(1609459200000)"));
+        assertTrue(script.contains("SELECT table_name, error_message FROM UNNEST(failures)"));
+    }
+
+    @Test
+    public void testCreateSnapshotsOfTables_EscapesTableNamesInStringLiterals() throws Exception {
+        // given
+        TableResult result = mock(TableResult.class);
+        when(result.iterateAll()).thenReturn(List.of());
+        Job job = mock(Job.class);
+        when(job.getQueryResults()).thenReturn(result);
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(job));
+
+        // when
+        await(bigQueryService.createSnapshotsOfTables(
+                mockBigQuery, "project", "srcDataset", Map.of("it's\\", "snapshotTable"),
+                "destDataset", 1_609_459_200_000L, 1L, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        String script = ((QueryJobConfiguration) jobCaptor.getValue().getConfiguration()).getQuery();
+        assertTrue(script.contains("STRUCT('it\\'s\\\\' AS table_name, @@error.message AS error_message)"));
+    }
 
-        verify(mockBigQuery).query(any(QueryJobConfiguration.class));
+    @Test
+    public void testCreateSnapshotOfTableWithCopyJob_SubmitsSnapshotCopyJob() {
+        // given
+        JobStatistics.CopyStatistics statistics = mock(JobStatistics.CopyStatistics.class);
+        when(statistics.getStartTime()).thenReturn(1_000L);
+        when(statistics.getEndTime()).thenReturn(1_500L);
+        Job job = mock(Job.class);
+        when(job.getStatistics()).thenReturn(statistics);
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(job));
+
+        // when
+        await(bigQueryService.createSnapshotOfTableWithCopyJob(
+                mockBigQuery, "project", "srcDataset", "srcTable",
+                "destDataset", "snapshotTable", 1_740_823_200_000L, 1L, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        CopyJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertEquals("SNAPSHOT", configuration.getOperationType());
+        assertEquals(TableId.of("project", "destDataset", "snapshotTable"), configuration.getDestinationTable());
+        assertEquals(List.of(TableId.of("project", "srcDataset", "srcTable@1740823200000")),
+                configuration.getSourceTables());
+        assertNotNull(configuration.getDestinationExpirationTime());
+        assertEquals(0.5, meterRegistry.get(BigQueryService.SNAPSHOT_DURATION_METRIC)
+                .tag("method", "copy_job").timer().totalTime(TimeUnit.SECONDS));
     }
 
     @Test
-    public void testCreateSnapshotOfTable_InterruptedException() throws InterruptedException {
+    public void testCreateSnapshotOfTableWithCopyJob_ConflictException() {
         // given
-        InterruptedException interruptedException = new InterruptedException("Operation interrupted");
-        when(mockBigQuery.query(any(QueryJobConfiguration.class))).thenThrow(interruptedException);
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.failedFuture(new BigQueryException(409, "Already Exists")));
 
         // when + then
-        ServiceException thrown = assertThrows(
-                ServiceException.class,
-                () -> bigQueryService.createSnapshotOfTable(
-                        mockBigQuery, "project", "srcDataset", "srcTable",
-                        "destDataset", "snapshotTable", "2021-01-01T00:00:00Z", 1L
-                )
-        );
+        assertThrows(ConflictException.class, () -> await(bigQueryService.createSnapshotOfTableWithCopyJob(
+                mockBigQuery, "project", "srcDataset", "srcTable",
+                "destDataset", "snapshotTable", 1_740_823_200_000L, 1L, "europe-west3", null
+        )));
+    }
 
-        assertTrue(thrown.getMessage().contains("Snapshot Creation"));
-        assertTrue(thrown.getMessage().contains("interrupted"));
+    @Test
+    public void testCreateSnapshotOfTableWithCopyJob_ReusesExistingSnapshot() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.failedFuture(new BigQueryException(409, "Already Exists")));
+        givenExistingSnapshot("2025-03-01T10:00:00Z");
+
+        // when
+        await(bigQueryService.createSnapshotOfTableWithCopyJob(
+                mockBigQuery, "project", "srcDataset", "srcTable",
+                "destDataset", "snapshotTable", 1_740_823_200_000L, 1L, "europe-west3", null
+        ));
+
+        // then
+        verify(mockBigQuery).getTable(TableId.of("project", "destDataset", "snapshotTable"));
+    }
 
-        assertTrue(Thread.currentThread().isInterrupted());
+    @Test
+    public void testExecuteExport_RepeatedExportGetsSameJobId() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+        TableId table = TableId.of("project", "dataset", "table");
+
+        // when
+        await(bigQueryService.executeExport(mockBigQuery, table, "gs://bucket/a/table-*.avro", "AVRO", null, null,
+                null, true, "europe-west3", null));
+        await(bigQueryService.executeExport(mockBigQuery, table, "gs://bucket/a/table-*.avro", "AVRO", null, null,
+                null, true, "europe-west3", null));
+        await(bigQueryService.executeExport(mockBigQuery, table, "gs://bucket/b/table-*.avro", "AVRO", null, null,
+                null, true, "europe-west3", null));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine, times(3)).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        List<JobInfo> jobs = jobCaptor.getAllValues();
+        assertTrue(jobs.get(0).getJobId().getJob().startsWith("bqbackup_export_"));
+        assertEquals("europe-west3", jobs.get(0).getJobId().getLocation());
+        assertEquals(jobs.get(0).getJobId(), jobs.get(1).getJobId());
+        assertNotEquals(jobs.get(0).getJobId(), jobs.get(2).getJobId());
+    }
 
-        verify(mockBigQuery).query(any(QueryJobConfiguration.class));
+    @Test
+    public void testExecuteExport_SubmitsCsvExportQuery() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+
+        // when
+        await(bigQueryService.executeExport(
+                mockBigQuery,
+                TableId.of("project", "dataset", "table"),
+                "gs://bucket/path", "CSV", true, ",", "GZIP", true, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        QueryJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertTrue(configuration.getQuery().contains("uri='gs://bucket/path'"));
+        assertTrue(configuration.getQuery().contains("compression='GZIP'"));
+        assertTrue(configuration.getQuery().contains("SELECT * FROM project.dataset.table"));
     }
 
     @Test
-    public void testExecuteExport_InterruptedException() throws InterruptedException {
+    public void testExecuteExport_CompressesParquetWithSelectedCodec() {
         // given
-        BigQueryService spyService = spy(bigQueryService);
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+
+        // when
+        await(bigQueryService.executeExport(
+                mockBigQuery,
+                TableId.of("project", "dataset", "table"),
+                "gs://bucket/path", "PARQUET", null, null, "zstd", true, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        QueryJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertTrue(configuration.getQuery().contains("format='PARQUET', overwrite=true, compression='ZSTD'"));
+    }
 
-        InterruptedException interruptedException = new InterruptedException("Export interrupted");
-        doThrow(interruptedException).when(spyService).executeQuery(eq(mockBigQuery), anyString());
+    @Test
+    public void testExecuteExport_OmitsCompressionForNone() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+
+        // when
+        await(bigQueryService.executeExport(
+                mockBigQuery,
+                TableId.of("project", "dataset", "table"),
+                "gs://bucket/path", "AVRO", null, null, "NONE", true, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        QueryJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertFalse(configuration.getQuery().contains("compression"));
+    }
 
-        // when + then
-        ServiceException thrown = assertThrows(
-                ServiceException.class,
-                () -> spyService.executeExport(
-                        mockBigQuery,
-                        TableId.of("project", "dataset", "table"),
-                        "gs://bucket/path", "CSV", true, ",", "GZIP", true
-                )
-        );
+    @Test
+    public void testExecuteExport_ReadsTableAsOfSystemTime() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+
+        // when
+        await(bigQueryService.executeExport(
+                mockBigQuery,
+                TableId.of("project", "dataset", "table"),
+                "2025-03-01 10:00:00 UTC", null,
+                "gs://bucket/path", "AVRO", null, null, null, true, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        QueryJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertTrue(configuration.getQuery().contains(
+                "SELECT * FROM project.dataset.table FOR SYSTEM_TIME AS OF TIMESTAMP('2025-03-01 10:00:00 UTC')"));
+    }
 
-        assertTrue(thrown.getMessage().contains("BigQuery"));
-        assertTrue(thrown.getMessage().contains("interrupted"));
+    @Test
+    public void testExecuteExtract_SubmitsExtractJobAndRecordsThroughput() {
+        // given
+        JobStatistics.ExtractStatistics statistics = mock(JobStatistics.ExtractStatistics.class);
+        when(statistics.getStartTime()).thenReturn(1_000L);
+        when(statistics.getEndTime()).thenReturn(3_000L);
+        when(statistics.getInputBytes()).thenReturn(2048L);
+        Job job = mock(Job.class);
+        when(job.getStatistics()).thenReturn(statistics);
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(job));
+
+        // when
+        await(bigQueryService.executeExtract(
+                mockBigQuery,
+                TableId.of("project", "dataset", "table"),
+                "gs://bucket/path-*.csv", "CSV", true, ";", "GZIP", "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        ExtractJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertEquals(TableId.of("project", "dataset", "table"), configuration.getSourceTable());
+        assertEquals(List.of("gs://bucket/path-*.csv"), configuration.getDestinationUris());
+        assertEquals("CSV", configuration.getFormat());
+        assertEquals("GZIP", configuration.getCompression());
+        assertEquals(";", configuration.getFieldDelimiter());
+        assertEquals(2048, meterRegistry.get(BigQueryService.EXPORT_BYTES_METRIC)
+                .tag("strategy", "extract_job").tag("format", "CSV").tag("compression", "GZIP").counter().count());
+        assertEquals(2, meterRegistry.get(BigQueryService.EXPORT_DURATION_METRIC)
+                .tag("strategy", "extract_job").timer().totalTime(TimeUnit.SECONDS));
+    }
 
-        assertTrue(Thread.currentThread().isInterrupted());
+    @Test
+    public void testExecuteExtract_CompressesAvroWithSelectedCodec() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+
+        // when
+        await(bigQueryService.executeExtract(
+                mockBigQuery,
+                TableId.of("project", "dataset", "table"),
+                "gs://bucket/path-*.avro", "AVRO", null, null, "SNAPPY", "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        ExtractJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertEquals("AVRO", configuration.getFormat());
+        assertEquals("SNAPPY", configuration.getCompression());
+    }
 
-        verify(spyService).executeQuery(eq(mockBigQuery), anyString());
+    @Test
+    public void testExecuteExtract_MapsJsonToNewlineDelimitedJson() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+
+        // when
+        await(bigQueryService.executeExtract(
+                mockBigQuery,
+                TableId.of("project", "dataset", "table"),
+                "gs://bucket/path-*.json", "JSON", null, null, null, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        ExtractJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertEquals("NEWLINE_DELIMITED_JSON", configuration.getFormat());
     }
 
     @Test
-    public void testExecuteImport_InterruptedException() throws InterruptedException {
+    public void testExecuteImport_JobFailure() {
         // given
-        Job mockJob = mock(Job.class);
-        when(mockBigQuery.create(any(JobInfo.class))).thenReturn(mockJob);
-        when(mockJob.waitFor()).thenThrow(new InterruptedException("Import interrupted"));
+        BigQueryError error = new BigQueryError("invalid", "gs://bucket/path", "Error while reading data");
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.failedFuture(new BigQueryException(400, error.getMessage(), error)));
 
         // when + then
         ServiceException thrown = assertThrows(
                 ServiceException.class,
-                () -> bigQueryService.executeImport(
+                () -> await(bigQueryService.executeImport(
                         mockBigQuery,
                         TableId.of("project", "dataset", "table"),
                         "gs://bucket/path", "AVRO", true, ",", true, 0,
-                        JobInfo.WriteDisposition.WRITE_TRUNCATE
-                )
+                        JobInfo.WriteDisposition.WRITE_TRUNCATE, "europe-west3", null
+                ))
         );
 
-        assertTrue(thrown.getMessage().contains("Import interrupted"));
+        assertTrue(thrown.getMessage().contains("Failed to import to table"));
+        assertInstanceOf(BigQueryException.class, thrown.getCause());
+    }
+
+    @Test
+    public void testExecuteImport_DifferentWriteDispositionGetsDifferentJobId() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+        TableId table = TableId.of("project", "dataset", "table");
+
+        // when
+        await(bigQueryService.executeImport(mockBigQuery, table, "gs://bucket/table-*.avro", "AVRO", false, ",",
+                false, 0, JobInfo.WriteDisposition.WRITE_TRUNCATE, "europe-west3", null));
+        await(bigQueryService.executeImport(mockBigQuery, table, "gs://bucket/table-*.avro", "AVRO", false, ",",
+                false, 0, JobInfo.WriteDisposition.WRITE_TRUNCATE, "europe-west3", null));
+        await(bigQueryService.executeImport(mockBigQuery, table, "gs://bucket/table-*.avro", "AVRO", false, ",",
+                false, 0, JobInfo.WriteDisposition.WRITE_APPEND, "europe-west3", null));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine, times(3)).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        List<JobInfo> jobs = jobCaptor.getAllValues();
+        assertEquals(jobs.get(0).getJobId(), jobs.get(1).getJobId());
+        assertNotEquals(jobs.get(0).getJobId(), jobs.get(2).getJobId());
+    }
+
+    @Test
+    public void testExecuteImport_LoadsCsvWithBackedUpLayout() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+        var layout = new TableLayout(
+                List.of(new TableLayout.Column("day", "DATE", "REQUIRED", null, null),
+                        new TableLayout.Column("customer", "STRING", "NULLABLE", null, null)),
+                new TableLayout.TimePartition("DAY", "day", null, null),
+                null,
+                List.of("customer"));
+
+        // when
+        await(bigQueryService.executeImport(
+                mockBigQuery,
+                TableId.of("project", "dataset", "table"),
+                List.of("gs://bucket/path-*.csv"), "CSV", true, ",", true, 0,
+                JobInfo.WriteDisposition.WRITE_TRUNCATE, layout, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        LoadJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertFalse(configuration.getAutodetect());
+        assertEquals(List.of("day", "customer"),
+                configuration.getSchema().getFields().stream().map(Field::getName).toList());
+        assertEquals(Field.Mode.REQUIRED, configuration.getSchema().getFields().get("day").getMode());
+        assertEquals("day", configuration.getTimePartitioning().getField());
+        assertEquals(List.of("customer"), configuration.getClustering().getFields());
+    }
+
+    @Test
+    public void testExecuteImport_LeavesAvroSchemaToTheFiles() {
+        // given
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(Job.class)));
+        var layout = new TableLayout(
+                List.of(new TableLayout.Column("day", "DATE", "NULLABLE", null, null)),
+                new TableLayout.TimePartition("DAY", "day", null, null),
+                null,
+                null);
+
+        // when
+        await(bigQueryService.executeImport(
+                mockBigQuery,
+                TableId.of("project", "dataset", "table"),
+                List.of("gs://bucket/path-*.avro"), "AVRO", true, ",", true, 0,
+                JobInfo.WriteDisposition.WRITE_TRUNCATE, layout, "europe-west3", null
+        ));
+
+        // then
+        ArgumentCaptor<JobInfo> jobCaptor = ArgumentCaptor.forClass(JobInfo.class);
+        verify(jobEngine).submit(eq(mockBigQuery), jobCaptor.capture(), any());
+        LoadJobConfiguration configuration = jobCaptor.getValue().getConfiguration();
+        assertFalse(configuration.getAutodetect());
+        assertNull(configuration.getSchema());
+        assertEquals("day", configuration.getTimePartitioning().getField());
+    }
 
-        assertTrue(Thread.currentThread().isInterrupted());
+    @Test
+    public void testCreateTable_ReturnsFalseWhenTableExists() {
+        // given
+        when(mockBigQuery.create(any(TableInfo.class))).thenThrow(new BigQueryException(409, "Already Exists"));
+        var callCounter = new MetadataCallCounter();
 
-        verify(mockBigQuery).create(any(JobInfo.class));
-        verify(mockJob).waitFor();
+        // when
+        var created = bigQueryService.createTable(mockBigQuery,
+                TableInfo.of(TableId.of("dataset", "table"), StandardTableDefinition.of(Schema.of())), callCounter);
+
+        // then
+        assertFalse(created);
+        assertEquals(Map.of("createTable", 1L), callCounter.getCounts());
+    }
+
+    @Test
+    public void testGetSchemaAsOf_ReadsSchemaOfTimeTravelQuery() {
+        // given
+        var schema = Schema.of(Field.of("day", LegacySQLTypeName.DATE));
+        JobStatistics.QueryStatistics statistics = mock(JobStatistics.QueryStatistics.class);
+        when(statistics.getSchema()).thenReturn(schema);
+        Job dryRun = mock(Job.class);
+        when(dryRun.getStatistics()).thenReturn(statistics);
+        when(mockBigQuery.create(any(JobInfo.class))).thenReturn(dryRun);
+        var callCounter = new MetadataCallCounter();
+
+        // when
+        var result = bigQueryService.getSchemaAsOf(mockBigQuery, TableId.of("project", "dataset", "table"),
+                "2025-03-01 10:00:00", callCounter);
+
+        // then
+        assertSame(schema, result);
+        ArgumentCaptor<JobInfo> jobInfo = ArgumentCaptor.forClass(JobInfo.class);
+        verify(mockBigQuery).create(jobInfo.capture());
+        QueryJobConfiguration configuration = jobInfo.getValue().getConfiguration();
+        assertTrue(configuration.getQuery().contains(
+                "`project.dataset.table` FOR SYSTEM_TIME AS OF TIMESTAMP('2025-03-01 10:00:00')"));
+        assertEquals(Map.of("dryRunQuery", 1L), callCounter.getCounts());
+        verify(jobEngine, never()).submit(any(), any(), any());
     }
 
     @Test
@@ -148,28 +585,45 @@ public class BigQueryServiceTest {
                         mockBigQuery,
                         TableId.of("project", "dataset", "table"),
                         "gs://bucket/path", "INVALID_FORMAT", true, ",", true, 0,
-                        JobInfo.WriteDisposition.WRITE_TRUNCATE
+                        JobInfo.WriteDisposition.WRITE_TRUNCATE, "europe-west3", null
                 )
         );
 
-        verify(mockBigQuery, never()).create(any(JobInfo.class));
+        verify(jobEngine, never()).submit(any(), any());
     }
 
     @Test
-    public void testExecuteQuery_BigQueryException() throws InterruptedException {
+    public void testSubmitQuery_BigQueryException() {
         // given
         BigQueryException exception = new BigQueryException(400, "Query syntax error");
-        when(mockBigQuery.query(any(QueryJobConfiguration.class))).thenThrow(exception);
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.failedFuture(exception));
 
         // when + then
-        BigQueryException thrown = assertThrows(
-                BigQueryException.class,
-                () -> bigQueryService.executeQuery(mockBigQuery, "SELECT * FROM invalid.syntax")
+        CompletionException thrown = assertThrows(
+                CompletionException.class,
+                () -> bigQueryService.submitQuery(mockBigQuery, "SELECT * FROM invalid.syntax").join()
         );
 
-        assertEquals(400, thrown.getCode());
-        assertEquals("Query syntax error", thrown.getMessage());
+        BigQueryException cause = assertInstanceOf(BigQueryException.class, thrown.getCause());
+        assertEquals(400, cause.getCode());
+        assertEquals("Query syntax error", cause.getMessage());
+    }
+
+    private void givenSkippedSnapshotStatement() {
+        JobStatistics.QueryStatistics statistics = mock(JobStatistics.QueryStatistics.class);
+        when(statistics.getDdlOperationPerformed()).thenReturn("SKIP");
+        Job job = mock(Job.class);
+        when(job.getStatistics()).thenReturn(statistics);
+        when(jobEngine.submit(eq(mockBigQuery), any(JobInfo.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(job));
+    }
 
-        verify(mockBigQuery).query(any(QueryJobConfiguration.class));
+    private void givenExistingSnapshot(String snapshotTime) {
+        Table snapshot = mock(Table.class);
+        when(snapshot.getDefinition()).thenReturn(SnapshotTableDefinition.newBuilder()
+                .setSnapshotTime(snapshotTime)
+                .build());
+        when(mockBigQuery.getTable(TableId.of("project", "destDataset", "snapshotTable"))).thenReturn(snapshot);
     }
-}
\ No newline at end of file
+}
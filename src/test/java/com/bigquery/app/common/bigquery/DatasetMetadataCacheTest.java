@@ -0,0 +1,136 @@
+package com.bigquery.app.common.bigquery;
+
+import com.bigquery.app.common.config.MetadataCacheProperties;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.Dataset;
+import com.google.cloud.bigquery.DatasetId;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DatasetMetadataCacheTest {
+
+    private static final DatasetId DATASET_ID = DatasetId.of("project", "dataset");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+    private final BigQueryService bigQueryService = mock(BigQueryService.class);
+    private final BigQuery bigQuery = mock(BigQuery.class);
+
+    private DatasetMetadataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        MetadataCacheProperties properties = new MetadataCacheProperties();
+        properties.setTtl(Duration.ofMinutes(10));
+        cache = new DatasetMetadataCache(bigQueryService, properties, meterRegistry, clock::get);
+    }
+
+    @Test
+    void testGetLocationLooksUpDatasetOncePerTtl() {
+        // given
+        Dataset dataset = dataset(DATASET_ID, "EU");
+        when(bigQuery.getDataset(DATASET_ID)).thenReturn(dataset);
+        MetadataCallCounter callCounter = new MetadataCallCounter();
+
+        // when
+        String first = cache.getLocation(bigQuery, DATASET_ID, callCounter);
+        String second = cache.getLocation(bigQuery, DATASET_ID, callCounter);
+
+        // then
+        assertEquals("EU", first);
+        assertEquals("EU", second);
+        verify(bigQuery, times(1)).getDataset(DATASET_ID);
+        assertEquals(Map.of("getDataset", 1L), callCounter.getCounts());
+        assertEquals(1, gets("hit"));
+        assertEquals(1, gets("miss"));
+    }
+
+    @Test
+    void testGetLocationReloadsAfterTtl() {
+        // given
+        Dataset dataset = dataset(DATASET_ID, "EU");
+        when(bigQuery.getDataset(DATASET_ID)).thenReturn(dataset);
+        MetadataCallCounter callCounter = new MetadataCallCounter();
+        cache.getLocation(bigQuery, DATASET_ID, callCounter);
+
+        // when
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+        cache.getLocation(bigQuery, DATASET_ID, callCounter);
+
+        // then
+        verify(bigQuery, times(2)).getDataset(DATASET_ID);
+        assertEquals(Map.of("getDataset", 2L), callCounter.getCounts());
+    }
+
+    @Test
+    void testListedDatasetsAreServedFromCache() {
+        // given
+        cache.putAll(List.of(dataset(DATASET_ID, "US")));
+        MetadataCallCounter callCounter = new MetadataCallCounter();
+
+        // when
+        String location = cache.getLocation(bigQuery, DATASET_ID, callCounter);
+
+        // then
+        assertEquals("US", location);
+        verifyNoInteractions(bigQuery);
+        assertEquals(Map.of(), callCounter.getCounts());
+    }
+
+    @Test
+    void testEnsureExistsSkipsKnownDatasets() {
+        // given
+        Dataset dataset = dataset(DATASET_ID, "EU");
+        when(bigQueryService.ensureDatasetExists(any(), any(), any(), any(), any())).thenReturn(dataset);
+        MetadataCallCounter callCounter = new MetadataCallCounter();
+
+        // when
+        cache.ensureExists(bigQuery, DATASET_ID, "desc", "EU", callCounter);
+        cache.ensureExists(bigQuery, DATASET_ID, "desc", "EU", callCounter);
+        String location = cache.getLocation(bigQuery, DATASET_ID, callCounter);
+
+        // then
+        assertEquals("EU", location);
+        verify(bigQueryService, times(1)).ensureDatasetExists(bigQuery, DATASET_ID, "desc", "EU", callCounter);
+        verifyNoInteractions(bigQuery);
+    }
+
+    @Test
+    void testZeroTtlDisablesCaching() {
+        // given
+        MetadataCacheProperties properties = new MetadataCacheProperties();
+        properties.setTtl(Duration.ZERO);
+        cache = new DatasetMetadataCache(bigQueryService, properties, meterRegistry, clock::get);
+        Dataset dataset = dataset(DATASET_ID, "EU");
+        when(bigQuery.getDataset(DATASET_ID)).thenReturn(dataset);
+
+        // when
+        cache.getLocation(bigQuery, DATASET_ID, new MetadataCallCounter());
+        cache.getLocation(bigQuery, DATASET_ID, new MetadataCallCounter());
+
+        // then
+        verify(bigQuery, times(2)).getDataset(DATASET_ID);
+    }
+
+    private static Dataset dataset(DatasetId datasetId, String location) {
+        Dataset dataset = mock(Dataset.class);
+        when(dataset.getDatasetId()).thenReturn(datasetId);
+        when(dataset.getLocation()).thenReturn(location);
+        return dataset;
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", DatasetMetadataCache.CACHE_NAME)
+                .tag("result", result).counter().count();
+    }
+}
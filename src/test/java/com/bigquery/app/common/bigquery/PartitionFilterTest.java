@@ -0,0 +1,158 @@
+package com.bigquery.app.common.bigquery;
+
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.TimePartitioning;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionFilterTest {
+
+    @Test
+    void testDailyDatePartition() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.newBuilder(TimePartitioning.Type.DAY)
+                .setField("event_date")
+                .build();
+
+        // when
+        Optional<String> filter = PartitionFilter.forPartition(partitioning, LegacySQLTypeName.DATE, "20250228");
+
+        // then
+        assertEquals(Optional.of("`event_date` >= DATE '2025-02-28' AND `event_date` < DATE '2025-03-01'"), filter);
+    }
+
+    @Test
+    void testHourlyTimestampPartition() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.newBuilder(TimePartitioning.Type.HOUR)
+                .setField("created_at")
+                .build();
+
+        // when
+        Optional<String> filter = PartitionFilter.forPartition(partitioning, LegacySQLTypeName.TIMESTAMP,
+                "2025030123");
+
+        // then
+        assertEquals(Optional.of("`created_at` >= TIMESTAMP '2025-03-01 23:00:00 UTC'"
+                + " AND `created_at` < TIMESTAMP '2025-03-02 00:00:00 UTC'"), filter);
+    }
+
+    @Test
+    void testMonthlyDatetimePartition() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.newBuilder(TimePartitioning.Type.MONTH)
+                .setField("updated")
+                .build();
+
+        // when
+        Optional<String> filter = PartitionFilter.forPartition(partitioning, LegacySQLTypeName.DATETIME, "202512");
+
+        // then
+        assertEquals(Optional.of("`updated` >= DATETIME '2025-12-01 00:00:00'"
+                + " AND `updated` < DATETIME '2026-01-01 00:00:00'"), filter);
+    }
+
+    @Test
+    void testIngestionTimePartitionUsesPartitionTime() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.of(TimePartitioning.Type.YEAR);
+
+        // when
+        Optional<String> filter = PartitionFilter.forPartition(partitioning, null, "2024");
+
+        // then
+        assertEquals(Optional.of("_PARTITIONTIME >= TIMESTAMP '2024-01-01 00:00:00 UTC'"
+                + " AND _PARTITIONTIME < TIMESTAMP '2025-01-01 00:00:00 UTC'"), filter);
+    }
+
+    @Test
+    void testNullPartition() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.newBuilder(TimePartitioning.Type.DAY)
+                .setField("event_date")
+                .build();
+
+        // when / then
+        assertEquals(Optional.of("`event_date` IS NULL"),
+                PartitionFilter.forPartition(partitioning, LegacySQLTypeName.DATE, "__NULL__"));
+        assertTrue(PartitionFilter.forPartition(TimePartitioning.of(TimePartitioning.Type.DAY), null, "__NULL__")
+                .isEmpty());
+    }
+
+    @Test
+    void testSpecialPartitionsCannotBeSelected() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.newBuilder(TimePartitioning.Type.DAY)
+                .setField("event_date")
+                .build();
+
+        // when / then
+        assertTrue(PartitionFilter.forPartition(partitioning, LegacySQLTypeName.DATE, "__UNPARTITIONED__").isEmpty());
+        assertTrue(PartitionFilter.forPartition(partitioning, LegacySQLTypeName.STRING, "20250228").isEmpty());
+    }
+
+    @Test
+    void testRangeBetweenPartitions() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.newBuilder(TimePartitioning.Type.DAY)
+                .setField("event_date")
+                .build();
+
+        // when
+        Optional<String> filter = PartitionFilter.forRange(partitioning, LegacySQLTypeName.DATE,
+                "20250101", "20250201");
+
+        // then
+        assertEquals(Optional.of("`event_date` >= DATE '2025-01-01' AND `event_date` < DATE '2025-02-01'"), filter);
+    }
+
+    @Test
+    void testOpenRangesCoverNullAndLaterPartitions() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.of(TimePartitioning.Type.DAY);
+
+        // when
+        Optional<String> first = PartitionFilter.forRange(partitioning, null, null, "20250101");
+        Optional<String> last = PartitionFilter.forRange(partitioning, null, "20250101", null);
+
+        // then
+        assertEquals(Optional.of("(_PARTITIONTIME < TIMESTAMP '2025-01-01 00:00:00 UTC' OR _PARTITIONTIME IS NULL)"),
+                first);
+        assertEquals(Optional.of("_PARTITIONTIME >= TIMESTAMP '2025-01-01 00:00:00 UTC'"), last);
+    }
+
+    @Test
+    void testRangeOverUnsupportedColumnTypeCannotBeSelected() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.newBuilder(TimePartitioning.Type.DAY)
+                .setField("event_date")
+                .build();
+
+        // when / then
+        assertTrue(PartitionFilter.forRange(partitioning, LegacySQLTypeName.STRING, "20250101", null).isEmpty());
+        assertTrue(PartitionFilter.isTimePartition(partitioning, "20250101"));
+        assertTrue(!PartitionFilter.isTimePartition(partitioning, "__UNPARTITIONED__"));
+    }
+
+    @Test
+    void testConsecutivePartitionsAreSelectedAsOneRange() {
+        // given
+        TimePartitioning partitioning = TimePartitioning.newBuilder(TimePartitioning.Type.DAY)
+                .setField("event_date")
+                .build();
+
+        // when
+        Optional<String> filter = PartitionFilter.forPartitions(partitioning, LegacySQLTypeName.DATE,
+                "20250130", "20250201");
+
+        // then
+        assertEquals(Optional.of("`event_date` >= DATE '2025-01-30' AND `event_date` < DATE '2025-02-02'"), filter);
+        assertTrue(PartitionFilter.isFollowedBy(partitioning, "20250131", "20250201"));
+        assertTrue(!PartitionFilter.isFollowedBy(partitioning, "20250131", "20250202"));
+        assertTrue(!PartitionFilter.isFollowedBy(partitioning, "20250131", "__NULL__"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.bigquery.app.common.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTest {
+
+    private final Executor directExecutor = Runnable::run;
+
+    @Test
+    void testLimitsTasksInFlightUntilTheirFuturesComplete() {
+        // given
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+        List<CompletableFuture<String>> jobs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            jobs.add(new CompletableFuture<>());
+        }
+
+        // when
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        List<Integer> started = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int index = i;
+            results.add(limiter.submit(() -> {
+                started.add(index);
+                return jobs.get(index);
+            }, directExecutor));
+        }
+
+        // then
+        assertEquals(List.of(0, 1), started);
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getWaiting());
+
+        jobs.get(0).complete("first");
+
+        assertEquals("first", results.get(0).join());
+        assertEquals(List.of(0, 1, 2), started);
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    void testReleasesPermitWhenTaskFails() {
+        // given
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+
+        // when
+        CompletableFuture<Object> failed = limiter.submit(() -> {
+            throw new IllegalStateException("boom");
+        }, directExecutor);
+        CompletableFuture<String> next = limiter.submit(() -> CompletableFuture.completedFuture("ok"), directExecutor);
+
+        // then
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals("ok", next.join());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testRaisingLimitStartsWaitingTasks() {
+        // given
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        limiter.submit(CompletableFuture::new, directExecutor);
+        CompletableFuture<String> waiting = limiter.submit(() -> CompletableFuture.completedFuture("ok"), directExecutor);
+        assertFalse(waiting.isDone());
+
+        // when
+        limiter.setLimit(2);
+
+        // then
+        assertEquals("ok", waiting.join());
+    }
+
+    @Test
+    void testStartsQueuedTasksOnQueuedExecutor() {
+        // given
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        List<Runnable> queuedStarts = new ArrayList<>();
+        CompletableFuture<String> first = new CompletableFuture<>();
+        limiter.submit(() -> first, directExecutor, queuedStarts::add);
+        CompletableFuture<String> queued = limiter.submit(() -> CompletableFuture.completedFuture("ok"),
+                directExecutor, queuedStarts::add);
+
+        // when
+        first.complete("first");
+
+        // then
+        assertFalse(queued.isDone());
+        assertEquals(1, queuedStarts.size());
+        queuedStarts.get(0).run();
+        assertEquals("ok", queued.join());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,100 @@
+package com.bigquery.app.common.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StagedPipelineTest {
+
+    private final Executor directExecutor = Runnable::run;
+
+    @Test
+    void testFirstStageRunsAheadOfSecondStageUpToQueueCapacity() {
+        // given
+        StagedPipeline pipeline = new StagedPipeline();
+        pipeline.configure(2, 1, 1);
+
+        List<CompletableFuture<Integer>> firstStageJobs = new ArrayList<>();
+        List<CompletableFuture<String>> secondStageJobs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            firstStageJobs.add(new CompletableFuture<>());
+            secondStageJobs.add(new CompletableFuture<>());
+        }
+
+        List<Integer> firstStarted = new ArrayList<>();
+        List<Integer> secondStarted = new ArrayList<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            results.add(pipeline.submit(
+                    () -> {
+                        firstStarted.add(index);
+                        return firstStageJobs.get(index);
+                    },
+                    value -> {
+                        secondStarted.add(value);
+                        return secondStageJobs.get(value);
+                    },
+                    directExecutor));
+        }
+
+        // then
+        assertEquals(List.of(0, 1), firstStarted);
+
+        firstStageJobs.get(0).complete(0);
+        firstStageJobs.get(1).complete(1);
+
+        assertEquals(List.of(0, 1, 2, 3), firstStarted);
+        assertEquals(List.of(0), secondStarted);
+        assertEquals(1, pipeline.getSecondStageInFlight());
+
+        firstStageJobs.get(2).complete(2);
+        firstStageJobs.get(3).complete(3);
+
+        assertEquals(List.of(0, 1, 2, 3), firstStarted, "queue between stages is full");
+
+        secondStageJobs.get(0).complete("done-0");
+
+        assertEquals("done-0", results.get(0).join());
+        assertEquals(List.of(0, 1), secondStarted);
+        assertEquals(List.of(0, 1, 2, 3, 4), firstStarted);
+    }
+
+    @Test
+    void testFirstStageFailureSkipsSecondStageAndReleasesPermits() {
+        // given
+        StagedPipeline pipeline = new StagedPipeline();
+        pipeline.configure(1, 1, 0);
+        List<Integer> secondStarted = new ArrayList<>();
+
+        // when
+        CompletableFuture<String> failed = pipeline.submit(
+                () -> CompletableFuture.<Integer>failedFuture(new IllegalStateException("snapshot failed")),
+                value -> {
+                    secondStarted.add(value);
+                    return CompletableFuture.completedFuture("unexpected");
+                },
+                directExecutor);
+        CompletableFuture<String> next = pipeline.submit(
+                () -> CompletableFuture.completedFuture(1),
+                value -> {
+                    secondStarted.add(value);
+                    return CompletableFuture.completedFuture("ok");
+                },
+                directExecutor);
+
+        // then
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals("ok", next.join());
+        assertEquals(List.of(1), secondStarted);
+        assertEquals(0, pipeline.getFirstStageInFlight());
+        assertEquals(0, pipeline.getSecondStageInFlight());
+    }
+}
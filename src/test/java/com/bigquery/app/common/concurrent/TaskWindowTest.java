@@ -0,0 +1,83 @@
+package com.bigquery.app.common.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskWindowTest {
+
+    @Test
+    void testSubmitBlocksWhileWindowIsFull() throws Exception {
+        // given
+        TaskWindow window = new TaskWindow(2);
+        List<CompletableFuture<Void>> tasks = List.of(
+                new CompletableFuture<>(), new CompletableFuture<>(), new CompletableFuture<>());
+        List<Integer> started = new ArrayList<>();
+
+        // when
+        var submitter = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < tasks.size(); i++) {
+                int index = i;
+                try {
+                    window.submit(() -> {
+                        synchronized (started) {
+                            started.add(index);
+                        }
+                        return tasks.get(index);
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        });
+
+        // then
+        assertThrows(TimeoutException.class, () -> submitter.get(200, TimeUnit.MILLISECONDS));
+        synchronized (started) {
+            assertEquals(List.of(0, 1), started);
+        }
+
+        tasks.get(0).complete(null);
+        submitter.get(5, TimeUnit.SECONDS);
+        synchronized (started) {
+            assertEquals(List.of(0, 1, 2), started);
+        }
+    }
+
+    @Test
+    void testAwaitAllWaitsForEveryTaskAndReportsFirstFailure() throws Exception {
+        // given
+        TaskWindow window = new TaskWindow(4);
+        var failing = new CompletableFuture<Void>();
+        var pending = new CompletableFuture<Void>();
+        window.submit(() -> failing);
+        window.submit(() -> pending);
+
+        // when
+        failing.completeExceptionally(new IllegalStateException("boom"));
+        var awaiting = CompletableFuture.runAsync(() -> {
+            try {
+                window.awaitAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+            }
+        });
+
+        // then
+        assertThrows(TimeoutException.class, () -> awaiting.get(200, TimeUnit.MILLISECONDS));
+
+        pending.complete(null);
+        var thrown = assertThrows(ExecutionException.class, () -> awaiting.get(5, TimeUnit.SECONDS));
+        assertEquals("boom", thrown.getCause().getMessage());
+    }
+}
@@ -0,0 +1,125 @@
+package com.bigquery.app.common.concurrent;
+
+import com.bigquery.app.backup.dto.ExportOptions;
+import com.bigquery.app.common.config.ThreadPoolProperties;
+import com.bigquery.app.restore.dto.ImportOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ThreadingServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ThreadingService threadingService;
+
+    @BeforeEach
+    void setUp() {
+        threadingService = new ThreadingService(new ThreadPoolProperties(), meterRegistry);
+    }
+
+    @Test
+    void testRunsHaveTheirOwnBackupLimits() throws Exception {
+        // given
+        threadingService.configureThreadPoolForExport("run-a", exportOptions());
+        threadingService.configureThreadPoolForExport("run-b", exportOptions());
+
+        var firstOfRunA = new CompletableFuture<Void>();
+        var secondOfRunA = new CompletableFuture<Void>();
+        var firstOfRunB = new CompletableFuture<Void>();
+
+        // when
+        submitPendingTable("run-a", firstOfRunA);
+        submitPendingTable("run-a", secondOfRunA);
+        submitPendingTable("run-b", firstOfRunB);
+
+        // then
+        firstOfRunA.get(5, TimeUnit.SECONDS);
+        firstOfRunB.get(5, TimeUnit.SECONDS);
+        assertFalse(secondOfRunA.isDone());
+        assertEquals(1, gauge(ThreadingService.ACTIVE_TASKS_METRIC, "run-a", "snapshot"));
+        assertEquals(1, gauge(ThreadingService.QUEUED_TASKS_METRIC, "run-a", "snapshot"));
+        assertEquals(1, gauge(ThreadingService.ACTIVE_TASKS_METRIC, "run-b", "snapshot"));
+        assertEquals(0, gauge(ThreadingService.QUEUED_TASKS_METRIC, "run-b", "snapshot"));
+    }
+
+    @Test
+    void testReleaseRunRemovesItsMetricsAndExecutor() {
+        // given
+        ImportOptions importOptions = mock(ImportOptions.class);
+        when(importOptions.threadPoolSize()).thenReturn(2);
+        when(importOptions.threadQueueCapacity()).thenReturn(10);
+        threadingService.configureThreadPoolForImport("run-a", importOptions);
+        threadingService.configureThreadPoolForImport("run-b", importOptions);
+
+        // when
+        threadingService.releaseRun("run-a");
+
+        // then
+        assertNull(meterRegistry.find(ThreadingService.ACTIVE_TASKS_METRIC).tag("run", "run-a").gauge());
+        assertNotNull(meterRegistry.find(ThreadingService.ACTIVE_TASKS_METRIC).tag("run", "run-b").gauge());
+        assertThrows(IllegalStateException.class,
+                () -> threadingService.submitRestoreJob("run-a", () -> CompletableFuture.completedFuture(null)));
+    }
+
+    @Test
+    void testFullPoolRunsTaskOnCallerInsteadOfRejecting() {
+        // given
+        var pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                ThreadingService.RUN_ON_CALLER);
+        var blocker = new CountDownLatch(1);
+        pool.execute(() -> awaitQuietly(blocker));
+        var ranOn = new AtomicReference<Thread>();
+
+        // when
+        pool.execute(() -> ranOn.set(Thread.currentThread()));
+
+        // then
+        assertEquals(Thread.currentThread(), ranOn.get());
+        blocker.countDown();
+        pool.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> { }));
+    }
+
+    private void submitPendingTable(String runId, CompletableFuture<Void> started) {
+        threadingService.submitBackupPipeline(runId,
+                () -> {
+                    started.complete(null);
+                    return new CompletableFuture<String>();
+                },
+                CompletableFuture::completedFuture);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private double gauge(String metric, String runId, String stage) {
+        return meterRegistry.get(metric).tag("run", runId).tag("stage", stage).gauge().value();
+    }
+
+    private static ExportOptions exportOptions() {
+        ExportOptions exportOptions = mock(ExportOptions.class);
+        when(exportOptions.threadPoolSize()).thenReturn(1);
+        when(exportOptions.threadQueueCapacity()).thenReturn(10);
+        when(exportOptions.snapshotConcurrency()).thenReturn(1);
+        when(exportOptions.stageQueueCapacity()).thenReturn(5);
+        return exportOptions;
+    }
+}
@@ -16,6 +16,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -129,4 +130,59 @@ public class GcsServiceTest {
         assertEquals(1, tableNames.size());
         assertTrue(tableNames.contains("table1"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFindTableFilesFromGcsFiles_groupsFilesByTable() {
+        // given
+        String basePath = "gs://my-bucket/folder";
+        Pattern pattern = Pattern.compile("(?i)^([^-]+)-.*\\.avro");
+
+        Blob first = createMockBlob("folder/table1-000000000000.avro");
+        Blob second = createMockBlob("folder/table1-000000000001.avro");
+        Blob other = createMockBlob("folder/table2-000000000000.avro");
+        Blob reference = createMockBlob("folder/table3.ref.json");
+
+        Page<Blob> pageMock = (Page<Blob>) mock(Page.class);
+        when(pageMock.iterateAll()).thenReturn(List.of(first, second, other, reference));
+
+        Bucket bucketMock = mock(Bucket.class);
+        when(bucketMock.list(ArgumentMatchers.<Storage.BlobListOption>any()))
+                .thenReturn(pageMock);
+
+        // when
+        Map<String, List<Blob>> tableFiles = gcsService.findTableFilesFromGcsFiles(bucketMock, basePath, pattern);
+
+        // then
+        assertEquals(Map.of("table1", List.of(first, second), "table2", List.of(other)), tableFiles);
+    }
+
+    @Test
+    public void testFindTableFilesPerPattern_listsPathOnce() {
+        // given
+        String basePath = "gs://my-bucket/folder";
+        Pattern filePattern = Pattern.compile("(?i)^([^-]+)-.*\\.avro");
+        Pattern referencePattern = Pattern.compile("(?i)^([^-.]+)\\.(ref|manifest)\\.json");
+
+        Blob file = createMockBlob("folder/table1-000000000000.avro");
+        Blob reference = createMockBlob("folder/table2.ref.json");
+        Blob manifest = createMockBlob("folder/table3.manifest.json");
+
+        Page<Blob> pageMock = (Page<Blob>) mock(Page.class);
+        when(pageMock.iterateAll()).thenReturn(List.of(file, reference, manifest));
+
+        Bucket bucketMock = mock(Bucket.class);
+        when(bucketMock.list(ArgumentMatchers.<Storage.BlobListOption>any()))
+                .thenReturn(pageMock);
+
+        // when
+        List<Map<String, List<Blob>>> tableFiles = gcsService.findTableFilesPerPattern(bucketMock, basePath,
+                List.of(filePattern, referencePattern));
+
+        // then
+        assertEquals(List.of(
+                Map.of("table1", List.of(file)),
+                Map.of("table2", List.of(reference), "table3", List.of(manifest))
+        ), tableFiles);
+        verify(bucketMock, times(1)).list(ArgumentMatchers.<Storage.BlobListOption>any());
+    }
+}
@@ -0,0 +1,153 @@
+package com.bigquery.app.common.retry;
+
+import com.bigquery.app.common.config.RetryProperties;
+import com.bigquery.app.common.exception.ServiceException;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryExecutorTest {
+
+    private RetryProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private RetryExecutor retryExecutor;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RetryProperties();
+        properties.setBaseDelay(Duration.ofMillis(1));
+        properties.setMaxDelay(Duration.ofMillis(5));
+        meterRegistry = new SimpleMeterRegistry();
+        retryExecutor = new RetryExecutor(properties, meterRegistry);
+    }
+
+    @Test
+    void testRetriesTransientErrorUntilSuccess() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        RetryBudget budget = new RetryBudget(5);
+
+        // when
+        String result = retryExecutor.execute("export", budget, () -> attempts.incrementAndGet() < 3
+                ? CompletableFuture.failedFuture(new BigQueryException(503, "Service unavailable"))
+                : CompletableFuture.completedFuture("done")).join();
+
+        // then
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, budget.getUsed());
+        assertEquals(2.0, meterRegistry.counter(RetryExecutor.RETRY_METRIC,
+                "operation", "export", "reason", "503").count());
+    }
+
+    @Test
+    void testDoesNotRetryPermanentError() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+
+        // when
+        CompletableFuture<String> result = retryExecutor.execute("snapshot", new RetryBudget(5), () -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new BigQueryException(400, "Invalid query",
+                    new BigQueryError("invalidQuery", "", "Invalid query")));
+        });
+
+        // then
+        CompletionException thrown = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(BigQueryException.class, thrown.getCause());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void testStopsRetryingWhenBudgetIsSpent() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        RetryBudget runBudget = new RetryBudget(10);
+        RetryBudget tableBudget = runBudget.child(2);
+
+        // when
+        CompletableFuture<String> result = retryExecutor.execute("restore", tableBudget, () -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new BigQueryException(500, "Backend error",
+                    new BigQueryError("backendError", "", "Backend error")));
+        });
+
+        // then
+        assertThrows(CompletionException.class, result::join);
+        assertEquals(3, attempts.get());
+        assertEquals(2, tableBudget.getUsed());
+        assertEquals(2, runBudget.getUsed());
+    }
+
+    @Test
+    void testMakesRetriesOnGivenExecutor() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger executed = new AtomicInteger();
+        Executor executor = task -> {
+            executed.incrementAndGet();
+            task.run();
+        };
+
+        // when
+        String result = retryExecutor.execute("restore", new RetryBudget(5), executor,
+                () -> attempts.incrementAndGet() < 3
+                        ? CompletableFuture.failedFuture(new BigQueryException(403, "Quota exceeded",
+                                new BigQueryError("quotaExceeded", "", "Quota exceeded")))
+                        : CompletableFuture.completedFuture("done")).join();
+
+        // then
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, executed.get());
+    }
+
+    @Test
+    void testRunBudgetCapsRetriesAcrossTables() {
+        // given
+        RetryBudget runBudget = new RetryBudget(1);
+        RetryBudget firstTable = runBudget.child(5);
+        RetryBudget secondTable = runBudget.child(5);
+
+        // when + then
+        assertTrue(firstTable.tryAcquire());
+        assertFalse(secondTable.tryAcquire());
+        assertEquals(0, secondTable.getUsed());
+    }
+
+    @Test
+    void testRecognisesRetryableErrorsInCauseChain() {
+        BigQueryException rateLimited = new BigQueryException(403, "Exceeded rate limits",
+                new BigQueryError("rateLimitExceeded", "", "Exceeded rate limits"));
+
+        assertEquals("rateLimitExceeded", RetryExecutor.retryableReason(
+                new ServiceException("Restore", "Failed to restore table", rateLimited)).orElseThrow());
+        assertTrue(RetryExecutor.retryableReason(new BigQueryException(404, "Not found")).isEmpty());
+        assertTrue(RetryExecutor.retryableReason(new IllegalStateException("boom")).isEmpty());
+    }
+
+    @Test
+    void testDelaysStayWithinBaseAndMaximum() {
+        // given
+        properties.setBaseDelay(Duration.ofMillis(100));
+        properties.setMaxDelay(Duration.ofMillis(1000));
+
+        // when + then
+        long delay = 100;
+        for (int i = 0; i < 20; i++) {
+            long next = retryExecutor.nextDelayMillis(delay);
+            assertTrue(next >= 100 && next <= Math.min(1000, delay * 3), "delay " + next);
+            delay = next;
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.bigquery.app.dto;
 
+import com.bigquery.app.backup.api.BackupRequest;
+import com.bigquery.app.backup.dto.BackupStorage;
+import com.bigquery.app.backup.dto.BackupTime;
+import com.bigquery.app.backup.dto.BigQueryBackupDetails;
 import com.bigquery.app.backup.dto.ExportOptions;
+import com.bigquery.app.backup.dto.ExportStrategy;
+import com.bigquery.app.backup.dto.GcsOptions;
 import com.bigquery.app.backup.dto.TableToBackup;
 import com.bigquery.app.restore.dto.ImportOptions;
 import jakarta.validation.ConstraintViolation;
@@ -10,9 +16,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.HashSet;
 import java.util.Set;
 
+import static com.bigquery.app.util.ConfigTestUtil.setupExportProperties;
+import static com.bigquery.app.util.ConfigTestUtil.setupImportProperties;
 import static jakarta.validation.Validation.buildDefaultValidatorFactory;
 import static java.lang.Boolean.TRUE;
 import static org.junit.jupiter.api.Assertions.*;
@@ -25,6 +35,8 @@ class DtoValidationTest {
     void setUp() {
         ValidatorFactory factory = buildDefaultValidatorFactory();
         validator = factory.getValidator();
+        setupExportProperties();
+        setupImportProperties();
     }
 
     @Test
@@ -38,6 +50,14 @@ class DtoValidationTest {
                 null,
                 null,
                 null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
                 null
         );
 
@@ -59,6 +79,14 @@ class DtoValidationTest {
                 "GZIP",
                 ",",
                 null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
                 null
         );
 
@@ -80,6 +108,14 @@ class DtoValidationTest {
                 null,
                 null,
                 null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
                 null
         );
 
@@ -104,7 +140,15 @@ class DtoValidationTest {
                 null,
                 null,
                 0,
-                10
+                10,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
         );
 
         // when
@@ -128,7 +172,15 @@ class DtoValidationTest {
                 null,
                 null,
                 null,
-                10
+                10,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
         );
 
         // when
@@ -141,6 +193,196 @@ class DtoValidationTest {
         assertTrue(violation.getMessage().contains("threadQueueCapacity"));
     }
 
+    @Test
+    @DisplayName("Test ExportOptions validation for incrementalPartitions without incremental")
+    void testExportOptionsInvalidIncrementalPartitionsWithoutIncremental() {
+        // given
+        ExportOptions options = new ExportOptions(
+                "AVRO",
+                true,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                false,
+                true,
+                null,
+                null,
+                null,
+                null
+        );
+
+        // when
+        Set<ConstraintViolation<ExportOptions>> violations = validator.validate(options);
+
+        // then
+        assertFalse(violations.isEmpty());
+        assertEquals(1, violations.size());
+        ConstraintViolation<ExportOptions> violation = violations.iterator().next();
+        assertTrue(violation.getMessage().contains("incrementalPartitions"));
+    }
+
+    @Test
+    @DisplayName("Test ExportOptions validation for Parquet with ZSTD compression")
+    void testExportOptionsValidParquetCompression() {
+        // given
+        ExportOptions options = new ExportOptions(
+                "PARQUET",
+                true,
+                null,
+                "ZSTD",
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
+        );
+
+        // when
+        Set<ConstraintViolation<ExportOptions>> violations = validator.validate(options);
+
+        // then
+        assertTrue(violations.isEmpty());
+        assertEquals("ZSTD", options.compressionCodec());
+    }
+
+    @Test
+    @DisplayName("Test ExportOptions validation for a codec the format does not support")
+    void testExportOptionsIgnoresUnsupportedAvroCompression() {
+        // given
+        ExportOptions options = new ExportOptions(
+                "AVRO",
+                true,
+                null,
+                "ZSTD",
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null
+        );
+
+        // when
+        Set<ConstraintViolation<ExportOptions>> violations = validator.validate(options);
+
+        // then
+        assertTrue(violations.isEmpty());
+        assertFalse(options.isCompressionSupported());
+        assertEquals(ExportOptions.NO_COMPRESSION, options.compressionCodec());
+    }
+
+    @Test
+    @DisplayName("Test ExportOptions validation for extract jobs exporting changed partitions")
+    void testExportOptionsInvalidExtractJobWithIncrementalPartitions() {
+        // given
+        ExportOptions options = new ExportOptions(
+                "AVRO",
+                true,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                true,
+                true,
+                null,
+                ExportStrategy.EXTRACT_JOB,
+                null,
+                null
+        );
+
+        // when
+        Set<ConstraintViolation<ExportOptions>> violations = validator.validate(options);
+
+        // then
+        assertEquals(1, violations.size());
+        assertTrue(violations.iterator().next().getMessage().contains("EXTRACT_JOB"));
+    }
+
+    @Test
+    @DisplayName("Test ExportOptions validation for extract jobs without overwrite")
+    void testExportOptionsInvalidExtractJobWithoutOverwrite() {
+        // given
+        ExportOptions options = new ExportOptions(
+                "AVRO",
+                false,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                ExportStrategy.EXTRACT_JOB,
+                null,
+                null
+        );
+
+        // when
+        Set<ConstraintViolation<ExportOptions>> violations = validator.validate(options);
+
+        // then
+        assertEquals(1, violations.size());
+        assertTrue(violations.iterator().next().getMessage().contains("overwrite"));
+    }
+
+    @Test
+    @DisplayName("Test BackupRequest validation for time travel export beyond the time travel window")
+    void testBackupRequestInvalidTimeTravelBeyondWindow() {
+        // given
+        ExportOptions options = new ExportOptions(
+                "AVRO",
+                true,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                ExportStrategy.TIME_TRAVEL,
+                null,
+                null
+        );
+        BackupRequest request = new BackupRequest(
+                new BigQueryBackupDetails("project", null),
+                new BackupStorage(new GcsOptions("gs://bucket", options)),
+                new BackupTime(LocalDateTime.now(ZoneOffset.UTC).minusDays(8), "UTC")
+        );
+
+        // when
+        Set<ConstraintViolation<BackupRequest>> violations = validator.validate(request);
+
+        // then
+        assertEquals(1, violations.size());
+        ConstraintViolation<BackupRequest> violation = violations.iterator().next();
+        assertTrue(violation.getMessage().contains("TIME_TRAVEL"));
+        assertTrue(validator.validate(new BackupRequest(request.bigQuery(), request.backupStorage())).isEmpty());
+    }
+
     @Test
     @DisplayName("Test ImportOptions validation for AVRO format")
     void testImportOptionsValidAvro() {
@@ -154,6 +396,7 @@ class DtoValidationTest {
                 0,
                 "WRITE_TRUNCATE",
                 null,
+                null,
                 null
         );
 
@@ -177,6 +420,7 @@ class DtoValidationTest {
                 0,
                 "WRITE_TRUNCATE",
                 null,
+                null,
                 null
         );
 
@@ -200,6 +444,7 @@ class DtoValidationTest {
                 0,
                 "WRITE_TRUNCATE",
                 null,
+                null,
                 null
         );
 
@@ -226,7 +471,8 @@ class DtoValidationTest {
                 0,
                 "WRITE_TRUNCATE",
                 0,
-                10
+                10,
+                null
         );
         // when
         Set<ConstraintViolation<ImportOptions>> violations = validator.validate(options);
@@ -5,9 +5,12 @@ import com.bigquery.app.backup.domain.DatastoreDiscoveryService;
 import com.bigquery.app.common.config.BackupProperties;
 import com.bigquery.app.common.config.BigQueryConfig;
 import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.run.dto.RunResponse;
+import com.bigquery.app.run.dto.RunState;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.bigquery.QueryJobConfiguration;
 import com.google.cloud.storage.Bucket;
 import com.google.cloud.storage.Storage;
@@ -33,7 +36,9 @@ import java.util.Set;
 import static com.bigquery.app.util.BigQueryMockUtil.*;
 import static com.bigquery.app.util.ConfigTestUtil.setupConfigurationMocks;
 import static com.bigquery.app.util.GcsMockUtil.*;
+import static com.bigquery.app.util.RunTestUtil.awaitRunCompletion;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -114,17 +119,23 @@ class BigQueryBackupTest {
 
         // when
         HttpEntity<String> request = new HttpEntity<>(requestJson, headers);
-        ResponseEntity<String> response = restTemplate.postForEntity("/api/v1/backup", request, String.class);
+        ResponseEntity<RunResponse> response = restTemplate.postForEntity("/api/v1/backup", request, RunResponse.class);
 
         // then
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("backup has been successfully taken", response.getBody());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertNotNull(response.getBody());
+
+        RunResponse run = awaitRunCompletion(restTemplate, response.getBody().runId());
+        assertEquals(RunState.SUCCEEDED, run.state());
+        assertEquals(4, run.tables().size());
+        assertEquals(4L, run.tableSummary().get(RunState.SUCCEEDED));
 
         verify(backupOrchestrator).exportTables(
                 eq(bigQuery),
                 eq("datasetA"),
                 eq(Set.of("table_A1", "table_A2")),
                 any(),
+                any(),
                 any()
         );
 
@@ -133,6 +144,7 @@ class BigQueryBackupTest {
                 eq("datasetB"),
                 eq(Set.of("table_B1", "table_B2")),
                 any(),
+                any(),
                 any()
         );
 
@@ -143,8 +155,10 @@ class BigQueryBackupTest {
         assertTrue(listedDatasets.contains("datasetB"));
         verify(bigQuery).listDatasets(eq(PROJECT_ID));
 
-        ArgumentCaptor<QueryJobConfiguration> queryCaptor = createQueryCaptor();
-        verify(bigQuery, times(8)).query(queryCaptor.capture());
+        ArgumentCaptor<JobInfo> jobCaptor = createJobInfoCaptor();
+        // snapshot and export per table, plus the two metadata queries of each dataset's backup manifest
+        verify(bigQuery, times(12)).create(jobCaptor.capture());
+        verify(bigQuery, never()).query(any(QueryJobConfiguration.class));
 
         ArgumentCaptor<String> bucketNameCaptor = createBucketNameCaptor();
         verify(storage).get(bucketNameCaptor.capture());
@@ -171,24 +185,29 @@ class BigQueryBackupTest {
 
         // when
         HttpEntity<String> request = new HttpEntity<>(requestJson, headers);
-        ResponseEntity<String> response = restTemplate.postForEntity("/api/v1/backup", request, String.class);
+        ResponseEntity<RunResponse> response = restTemplate.postForEntity("/api/v1/backup", request, RunResponse.class);
 
         // then
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("backup has been successfully taken", response.getBody());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertNotNull(response.getBody());
+
+        RunResponse run = awaitRunCompletion(restTemplate, response.getBody().runId());
+        assertEquals(RunState.SUCCEEDED, run.state());
 
         verify(backupOrchestrator).exportTables(
                 eq(bigQuery),
                 eq("ecommerce_data"),
                 eq(Set.of("orders", "sales_2024_01")),
                 any(),
+                any(),
                 any()
         );
 
         verify(storage).get(BUCKET_NAME);
         verify(storage).testIamPermissions(eq(BUCKET_NAME), anyList());
 
-        verify(bigQuery, times(4)).query(any(QueryJobConfiguration.class));
+        // plus the table size query used to start the largest tables first
+        verify(bigQuery, times(7)).create(any(JobInfo.class));
     }
 
     @Test
@@ -203,24 +222,28 @@ class BigQueryBackupTest {
         Bucket mockBucket = setupMockGcsEnvironment(storage, BUCKET_NAME);
 
         HttpEntity<String> request = new HttpEntity<>(requestJson, headers);
-        ResponseEntity<String> response = restTemplate.postForEntity("/api/v1/backup", request, String.class);
+        ResponseEntity<RunResponse> response = restTemplate.postForEntity("/api/v1/backup", request, RunResponse.class);
 
         // then
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("backup has been successfully taken", response.getBody());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertNotNull(response.getBody());
+
+        RunResponse run = awaitRunCompletion(restTemplate, response.getBody().runId());
+        assertEquals(RunState.SUCCEEDED, run.state());
 
         verify(backupOrchestrator).exportTables(
                 eq(bigQuery),
                 eq("analytics_dataset"),
                 eq(Set.of("product_metrics", "customer_segmentation")),
                 any(),
+                any(),
                 any()
         );
 
         verify(storage).get(BUCKET_NAME);
         verify(storage).testIamPermissions(eq(BUCKET_NAME), anyList());
 
-        verify(bigQuery, times(4)).query(any(QueryJobConfiguration.class));
+        verify(bigQuery, times(6)).create(any(JobInfo.class));
     }
 
     private String readJsonFromFile(String filePath) throws IOException {
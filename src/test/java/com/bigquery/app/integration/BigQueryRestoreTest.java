@@ -5,6 +5,8 @@ import com.bigquery.app.common.config.RestoreProperties;
 import com.bigquery.app.common.gcs.GcsService;
 import com.bigquery.app.restore.domain.RestoreOrchestrator;
 import com.bigquery.app.util.ConfigTestUtil;
+import com.bigquery.app.run.dto.RunResponse;
+import com.bigquery.app.run.dto.RunState;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.bigquery.*;
 import com.google.cloud.storage.Bucket;
@@ -34,7 +36,9 @@ import static com.bigquery.app.util.BigQueryMockUtil.mockSuccessfulQueryExecutio
 import static com.bigquery.app.util.ConfigTestUtil.*;
 import static com.bigquery.app.util.GcsMockUtil.createMockBucket;
 import static com.bigquery.app.util.GcsMockUtil.mockBlobListing;
+import static com.bigquery.app.util.RunTestUtil.awaitRunCompletion;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -118,13 +122,18 @@ class BigQueryRestoreTest {
 
         // when
         HttpEntity<String> request = new HttpEntity<>(requestJson, headers);
-        ResponseEntity<String> response = restTemplate.postForEntity("/api/v1/restore", request, String.class);
+        ResponseEntity<RunResponse> response = restTemplate.postForEntity("/api/v1/restore", request, RunResponse.class);
 
         // then
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("restore has been successfully processed", response.getBody());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertNotNull(response.getBody());
 
-        verify(restoreOrchestrator).restore(eq(bigQuery), any());
+        RunResponse run = awaitRunCompletion(restTemplate, response.getBody().runId());
+        assertEquals(RunState.SUCCEEDED, run.state());
+        assertEquals(2, run.tables().size());
+        assertEquals(2L, run.tableSummary().get(RunState.SUCCEEDED));
+
+        verify(restoreOrchestrator).restore(eq(bigQuery), any(), any());
 
         ArgumentCaptor<DatasetInfo> datasetCaptor = ArgumentCaptor.forClass(DatasetInfo.class);
         verify(bigQuery).create(datasetCaptor.capture());
@@ -181,13 +190,16 @@ class BigQueryRestoreTest {
 
         // when
         HttpEntity<String> request = new HttpEntity<>(requestJson, headers);
-        ResponseEntity<String> response = restTemplate.postForEntity("/api/v1/restore", request, String.class);
+        ResponseEntity<RunResponse> response = restTemplate.postForEntity("/api/v1/restore", request, RunResponse.class);
 
         // then
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("restore has been successfully processed", response.getBody());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertNotNull(response.getBody());
+
+        RunResponse run = awaitRunCompletion(restTemplate, response.getBody().runId());
+        assertEquals(RunState.SUCCEEDED, run.state());
 
-        verify(restoreOrchestrator).restore(eq(bigQuery), any());
+        verify(restoreOrchestrator).restore(eq(bigQuery), any(), any());
 
         ArgumentCaptor<DatasetInfo> datasetCaptor = ArgumentCaptor.forClass(DatasetInfo.class);
         verify(bigQuery, times(2)).create(datasetCaptor.capture());
@@ -0,0 +1,112 @@
+package com.bigquery.app.restore.domain;
+
+import com.bigquery.app.common.config.GcsProperties;
+import com.bigquery.app.common.gcs.BackupManifest;
+import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.common.util.GcsPathUtil;
+import com.bigquery.app.restore.dto.GcsOptions;
+import com.bigquery.app.restore.dto.ImportOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.Bucket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mockito.quality.Strictness.LENIENT;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = LENIENT)
+class GcsTableDiscoveryServiceTest {
+
+    private static final String DATASET = "dataset";
+
+    @Mock
+    private GcsService gcsService;
+
+    @Mock
+    private ImportOptions importOptions;
+
+    @Mock
+    private Bucket bucket;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private GcsTableDiscoveryService discoveryService;
+
+    private GcsOptions gcsOptions;
+
+    @BeforeEach
+    void setUp() {
+        GcsPathUtil.setBackupPath(new GcsProperties());
+        discoveryService = new GcsTableDiscoveryService(gcsService, objectMapper);
+        gcsOptions = new GcsOptions("gs://bucket", "20250301_100000", "project", importOptions);
+
+        when(importOptions.format()).thenReturn("AVRO");
+        when(gcsService.getBucket("gs://bucket")).thenReturn(bucket);
+    }
+
+    @Test
+    void testDiscoverFromManifestOrdersTablesLargestFirst() throws Exception {
+        // given
+        var manifest = new BackupManifest("project", DATASET, "20250301_100000", "AVRO", "SNAPPY", List.of(
+                new BackupManifest.TableEntry("customers", "20250101_000000", List.of(), 0, 0, null, null, null),
+                new BackupManifest.TableEntry("events", null, List.of(), 5000, 50, null, null, null),
+                new BackupManifest.TableEntry("orders", null, List.of(), 300, 3, null, null, null)
+        ));
+        when(gcsService.readObject(any())).thenReturn(Optional.of(objectMapper.writeValueAsString(manifest)));
+
+        // when
+        BackedUpTables tables = discoveryService.discoverBackedUpTables(gcsOptions, DATASET);
+
+        // then
+        assertEquals(List.of("events", "orders", "customers"), List.copyOf(tables.tableNames()));
+        assertEquals("AVRO/SNAPPY", tables.codec());
+        assertEquals("20250101_000000", tables.manifestEntries().get("customers").referencedBackup());
+        verify(gcsService, never()).getBucket(any());
+    }
+
+    @Test
+    void testDiscoverFromListingOrdersTablesByExportedBytes() {
+        // given
+        var ordersFiles = List.of(blob("orders-000000000000.avro", 100L), blob("orders-000000000001.avro", 150L));
+        var eventsFiles = List.of(blob("events-000000000000.avro", 200L));
+        var customersReference = List.of(blob("customers.ref.json", 10L));
+        when(gcsService.readObject(any())).thenReturn(Optional.empty());
+        when(gcsService.findTableFilesPerPattern(eq(bucket), any(), anyList()))
+                .thenReturn(List.of(Map.of("orders", ordersFiles, "events", eventsFiles),
+                        Map.of("customers", customersReference)));
+
+        // when
+        BackedUpTables tables = discoveryService.discoverBackedUpTables(gcsOptions, DATASET);
+
+        // then
+        assertEquals(List.of("orders", "events", "customers"), List.copyOf(tables.tableNames()));
+        assertEquals(Map.of("orders", 250L, "events", 200L, "customers", 0L), tables.tableSizes());
+        assertEquals("AVRO/UNKNOWN", tables.codec());
+        verify(gcsService).validateFileFormat("orders-000000000000.avro", "AVRO");
+        verify(gcsService).validateFileFormat("events-000000000000.avro", "AVRO");
+        verify(gcsService).findTableFilesPerPattern(eq(bucket), any(), anyList());
+        assertTrue(tables.manifestEntries().isEmpty());
+    }
+
+    private static Blob blob(String name, Long size) {
+        Blob blob = mock(Blob.class);
+        when(blob.getName()).thenReturn(name);
+        when(blob.getSize()).thenReturn(size);
+        return blob;
+    }
+}
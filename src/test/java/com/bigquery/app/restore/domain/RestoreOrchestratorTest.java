@@ -1,28 +1,49 @@
 package com.bigquery.app.restore.domain;
 
+import com.bigquery.app.common.bigquery.AdaptiveJobLimiter;
+import com.bigquery.app.common.bigquery.BigQueryJobEngine;
+import com.bigquery.app.common.bigquery.BigQueryService;
 import com.bigquery.app.common.concurrent.ThreadingService;
+import com.bigquery.app.common.config.AdaptiveConcurrencyProperties;
+import com.bigquery.app.common.config.RetryProperties;
 import com.bigquery.app.common.exception.ServiceException;
+import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.common.retry.RetryExecutor;
 import com.bigquery.app.restore.api.RestoreRequest;
 import com.bigquery.app.restore.dto.BigQueryRestoreDetails;
 import com.bigquery.app.restore.dto.GcsOptions;
 import com.bigquery.app.restore.dto.ImportOptions;
 import com.bigquery.app.restore.dto.RestoreStorage;
+import com.bigquery.app.run.domain.Run;
+import com.bigquery.app.run.dto.RunState;
+import com.bigquery.app.run.dto.RunType;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.JobInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static com.bigquery.app.util.ConfigTestUtil.setupGcsProperties;
 import static com.bigquery.app.util.ConfigTestUtil.setupImportProperties;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
@@ -47,22 +68,35 @@ public class RestoreOrchestratorTest {
     @Mock
     private BigQuery bigQuery;
 
+    @Spy
+    private RetryExecutor retryExecutor = new RetryExecutor(new RetryProperties(), new SimpleMeterRegistry());
+
     @InjectMocks
     private RestoreOrchestrator restoreOrchestrator;
 
+    private Run run;
+
     @BeforeEach
     public void setUp() {
+        run = new Run(RunType.RESTORE, 100, 5);
         BigQueryOptions bigQueryOptions = mock(BigQueryOptions.class);
         when(bigQuery.getOptions()).thenReturn(bigQueryOptions);
         when(bigQueryOptions.getProjectId()).thenReturn("test-project");
 
         setupGcsProperties();
         setupImportProperties();
+
+        when(tableRestoreService.restoreTable(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
     }
 
     private RestoreRequest createRestoreRequest(Integer threadCount, Integer queueCapacity) {
+        return createRestoreRequest(threadCount, queueCapacity, false);
+    }
+
+    private RestoreRequest createRestoreRequest(Integer threadCount, Integer queueCapacity, boolean failFast) {
         ImportOptions importOptions = new ImportOptions("europe-west3", "AVRO", Boolean.TRUE, null,
-                Boolean.TRUE, 0, "WRITE_TRUNCATE", threadCount, queueCapacity);
+                Boolean.TRUE, 0, "WRITE_TRUNCATE", threadCount, queueCapacity, failFast);
         GcsOptions gcsOptions = new GcsOptions("gs://test-bucket", "2021-01-01T00:00:00Z", "backup-project", importOptions);
         RestoreStorage restoreStorage = new RestoreStorage(gcsOptions);
         BigQueryRestoreDetails restoreDetails = new BigQueryRestoreDetails("test-project", List.of("dataset1"));
@@ -74,21 +108,25 @@ public class RestoreOrchestratorTest {
         // given
         RestoreRequest request = createRestoreRequest(1, null);
 
-        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString()))
+        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString(), any()))
                 .thenReturn("restored_dataset1");
 
         when(tableDiscoveryService.discoverBackedUpTables(any(), eq("dataset1")))
-                .thenReturn(Set.of("table1", "table2"));
+                .thenReturn(backedUpTables("table1", "table2"));
 
         // when
-        restoreOrchestrator.restore(bigQuery, request);
+        restoreOrchestrator.restore(bigQuery, request, run);
 
         // then
-        verify(threadingService, never()).configureThreadPoolForImport(any());
-        verify(datasetRestoreService).createDestinationDataset(eq(bigQuery), eq("dataset1"), eq("europe-west3"));
+        verify(threadingService, never()).configureThreadPoolForImport(any(), any());
+        verify(datasetRestoreService).createDestinationDataset(eq(bigQuery), eq("dataset1"), eq("europe-west3"), any());
         verify(tableDiscoveryService).discoverBackedUpTables(any(), eq("dataset1"));
         verify(tableRestoreService, times(2)).restoreTable(eq(bigQuery), any(), eq("dataset1"),
-                eq("restored_dataset1"), anyString());
+                eq("restored_dataset1"), anyString(), any(), any(), any());
+        assertEquals(2, run.getTables().size());
+        assertTrue(run.getTables().stream().allMatch(table -> table.getState() == RunState.SUCCEEDED));
+        assertEquals(2, run.getCodecUsage().getSummary().get("AVRO/SNAPPY").tables());
+        assertEquals(200, run.getCodecUsage().getSummary().get("AVRO/SNAPPY").bytes());
     }
 
     @Test
@@ -96,22 +134,27 @@ public class RestoreOrchestratorTest {
         // given
         RestoreRequest request = createRestoreRequest(2, 10);
 
-        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString()))
+        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString(), any()))
                 .thenReturn("restored_dataset1");
 
         when(tableDiscoveryService.discoverBackedUpTables(any(), eq("dataset1")))
-                .thenReturn(Set.of("table1"));
+                .thenReturn(backedUpTables("table1"));
 
-        CompletableFuture<Void> mockFuture = CompletableFuture.completedFuture(null);
-        when(threadingService.submitRestoreTask(any())).thenReturn(mockFuture);
+        when(threadingService.submitRestoreJob(any(), any())).thenAnswer(invocation -> {
+            Supplier<CompletableFuture<Void>> job = invocation.getArgument(1);
+            return job.get();
+        });
 
         // when
-        restoreOrchestrator.restore(bigQuery, request);
+        restoreOrchestrator.restore(bigQuery, request, run);
 
         // then
-        verify(threadingService).configureThreadPoolForImport(any());
-        verify(threadingService).submitRestoreTask(any());
-        verify(datasetRestoreService).createDestinationDataset(eq(bigQuery), eq("dataset1"), eq("europe-west3"));
+        verify(threadingService).configureThreadPoolForImport(any(), any());
+        verify(threadingService).submitRestoreJob(any(), any());
+        verify(threadingService).getRestoreExecutor(run.getId());
+        verify(tableRestoreService).restoreTable(eq(bigQuery), any(), eq("dataset1"), eq("restored_dataset1"), eq("table1"), any(), any(), any());
+        assertEquals(RunState.SUCCEEDED, run.table("dataset1", "table1").getState());
+        verify(datasetRestoreService).createDestinationDataset(eq(bigQuery), eq("dataset1"), eq("europe-west3"), any());
         verify(tableDiscoveryService).discoverBackedUpTables(any(), eq("dataset1"));
     }
 
@@ -120,19 +163,19 @@ public class RestoreOrchestratorTest {
         // given
         RestoreRequest request = createRestoreRequest(1, null);
 
-        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString()))
+        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString(), any()))
                 .thenReturn("restored_dataset1");
 
         when(tableDiscoveryService.discoverBackedUpTables(any(), eq("dataset1")))
-                .thenReturn(Set.of());
+                .thenReturn(backedUpTables());
 
         // when
-        restoreOrchestrator.restore(bigQuery, request);
+        restoreOrchestrator.restore(bigQuery, request, run);
 
         // then
-        verify(datasetRestoreService).createDestinationDataset(eq(bigQuery), eq("dataset1"), eq("europe-west3"));
+        verify(datasetRestoreService).createDestinationDataset(eq(bigQuery), eq("dataset1"), eq("europe-west3"), any());
         verify(tableDiscoveryService).discoverBackedUpTables(any(), eq("dataset1"));
-        verify(tableRestoreService, never()).restoreTable(any(), any(), any(), any(), any());
+        verify(tableRestoreService, never()).restoreTable(any(), any(), any(), any(), any(), any(), any(), any());
     }
 
     @Test
@@ -140,18 +183,85 @@ public class RestoreOrchestratorTest {
         // given
         RestoreRequest request = createRestoreRequest(1, null);
 
-        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString()))
+        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString(), any()))
                 .thenReturn("restored_dataset1");
 
         when(tableDiscoveryService.discoverBackedUpTables(any(), eq("dataset1")))
-                .thenReturn(Set.of("table1"));
+                .thenReturn(backedUpTables("table1"));
 
-        doThrow(new ServiceException("Restore", "Import failed", new Exception("Import failed")))
-                .when(tableRestoreService)
-                .restoreTable(eq(bigQuery), any(), eq("dataset1"), eq("restored_dataset1"), eq("table1"));
+        when(tableRestoreService.restoreTable(eq(bigQuery), any(), eq("dataset1"), eq("restored_dataset1"), eq("table1"), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new ServiceException("Restore", "Import failed", new Exception("Import failed"))));
 
         // when + then
-        Exception exception = assertThrows(ServiceException.class, () -> restoreOrchestrator.restore(bigQuery, request));
+        Exception exception = assertThrows(ServiceException.class, () -> restoreOrchestrator.restore(bigQuery, request, run));
         assertTrue(exception.getMessage().contains("Import failed"));
+        assertEquals(RunState.FAILED, run.table("dataset1", "table1").getState());
+    }
+
+    @Test
+    public void testFailFastRestoreCancelsRunWhenTableFails() {
+        // given
+        RestoreRequest request = createRestoreRequest(2, 10, true);
+
+        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString(), any()))
+                .thenReturn("restored_dataset1");
+
+        when(tableDiscoveryService.discoverBackedUpTables(any(), eq("dataset1")))
+                .thenReturn(backedUpTables("table1", "table2"));
+
+        when(threadingService.submitRestoreJob(any(), any())).thenAnswer(invocation -> {
+            Supplier<CompletableFuture<Void>> job = invocation.getArgument(1);
+            return job.get();
+        });
+
+        when(tableRestoreService.restoreTable(eq(bigQuery), any(), eq("dataset1"), eq("restored_dataset1"), eq("table1"), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new ServiceException("Restore", "Import failed")));
+
+        // when
+        assertThrows(ServiceException.class, () -> restoreOrchestrator.restore(bigQuery, request, run));
+
+        // then
+        assertTrue(run.getJobs().isCancelled());
+        assertEquals(RunState.FAILED, run.table("dataset1", "table1").getState());
+        verify(tableRestoreService, never()).restoreTable(any(), any(), any(), any(), eq("table2"), any(), any(), any());
+    }
+
+    @Test
+    public void testTableWhoseLoadIsCancelledEndsCancelled() {
+        // given
+        RestoreRequest request = createRestoreRequest(1, null);
+        BigQueryJobEngine jobEngine = mock(BigQueryJobEngine.class);
+        BigQueryService bigQueryService = new BigQueryService(jobEngine,
+                new AdaptiveJobLimiter(new AdaptiveConcurrencyProperties()), new SimpleMeterRegistry());
+        RestoreOrchestrator orchestrator = new RestoreOrchestrator(tableDiscoveryService, datasetRestoreService,
+                new TableRestoreService(bigQueryService, mock(GcsService.class), new ObjectMapper()),
+                threadingService, retryExecutor);
+
+        when(datasetRestoreService.createDestinationDataset(eq(bigQuery), eq("dataset1"), anyString(), any()))
+                .thenReturn("restored_dataset1");
+        when(tableDiscoveryService.discoverBackedUpTables(any(), eq("dataset1")))
+                .thenReturn(backedUpTables("table1"));
+
+        // The run is cancelled while the load job is in flight, so the job ends with the run's cancellation
+        when(jobEngine.submit(eq(bigQuery), any(JobInfo.class), eq(run.getJobs()))).thenAnswer(invocation -> {
+            run.getJobs().cancel("cancelled by user");
+            return CompletableFuture.failedFuture(run.getJobs().cancellation());
+        });
+
+        // when
+        assertThrows(CancellationException.class, () -> orchestrator.restore(bigQuery, request, run));
+
+        // then
+        assertEquals(RunState.CANCELLED, run.table("dataset1", "table1").getState());
+        assertNull(run.table("dataset1", "table1").getError());
+    }
+
+    private static BackedUpTables backedUpTables(String... tableNames) {
+        var tableSizes = new HashMap<String, Long>();
+        for (String tableName : tableNames) {
+            tableSizes.put(tableName, 100L);
+        }
+        return new BackedUpTables(new LinkedHashSet<>(List.of(tableNames)), tableSizes, "AVRO/SNAPPY", Map.of());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,182 @@
+package com.bigquery.app.restore.domain;
+
+import com.bigquery.app.common.bigquery.BigQueryService;
+import com.bigquery.app.common.bigquery.JobGroup;
+import com.bigquery.app.common.bigquery.MetadataCallCounter;
+import com.bigquery.app.common.config.GcsProperties;
+import com.bigquery.app.common.gcs.BackupManifest;
+import com.bigquery.app.common.gcs.GcsService;
+import com.bigquery.app.common.gcs.TableLayout;
+import com.bigquery.app.common.util.GcsPathUtil;
+import com.bigquery.app.restore.dto.GcsOptions;
+import com.bigquery.app.restore.dto.ImportOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.StandardTableDefinition;
+import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TableInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static com.bigquery.app.common.util.FutureUtil.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+import static org.mockito.quality.Strictness.LENIENT;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = LENIENT)
+class TableRestoreServiceTest {
+
+    private static final String BACKUP_PATH = "gs://bucket/backups/20250301_100000/project/dataset/";
+    private static final TableId DESTINATION_TABLE = TableId.of("restored_dataset", "orders");
+    private static final TableLayout LAYOUT = new TableLayout(
+            List.of(new TableLayout.Column("day", "DATE", "REQUIRED", null, null)),
+            new TableLayout.TimePartition("DAY", "day", null, null),
+            null,
+            List.of("day"));
+
+    @Mock
+    private BigQueryService bigQueryService;
+
+    @Mock
+    private GcsService gcsService;
+
+    @Mock
+    private BigQuery bigQuery;
+
+    @Mock
+    private ImportOptions importOptions;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final MetadataCallCounter metadataCalls = new MetadataCallCounter();
+
+    private final JobGroup jobs = new JobGroup();
+
+    private TableRestoreService tableRestoreService;
+
+    private GcsOptions gcsOptions;
+
+    @BeforeEach
+    void setUp() {
+        GcsPathUtil.setBackupPath(new GcsProperties());
+        tableRestoreService = new TableRestoreService(bigQueryService, gcsService, objectMapper);
+        gcsOptions = new GcsOptions("gs://bucket", "20250301_100000", "project", importOptions);
+
+        when(importOptions.format()).thenReturn("CSV");
+        when(importOptions.restoreRegion()).thenReturn("europe-west3");
+        when(importOptions.header()).thenReturn(true);
+        when(importOptions.fieldDelimiter()).thenReturn(",");
+        when(importOptions.ignoreUnknownValues()).thenReturn(true);
+        when(importOptions.maxBadRecords()).thenReturn(0);
+        when(importOptions.writeDisposition()).thenReturn("WRITE_TRUNCATE");
+        when(gcsService.readObject(any())).thenReturn(Optional.empty());
+        when(bigQueryService.executeImport(any(), any(), anyList(), anyString(), anyBoolean(), any(), anyBoolean(),
+                anyInt(), any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void testRestoreCreatesTableWithBackedUpLayout() throws Exception {
+        // given
+        when(gcsService.readObject(BACKUP_PATH + "orders.layout.json"))
+                .thenReturn(Optional.of(objectMapper.writeValueAsString(LAYOUT)));
+        when(bigQueryService.createTable(eq(bigQuery), any(), eq(metadataCalls))).thenReturn(true);
+
+        // when
+        await(tableRestoreService.restoreTable(bigQuery, gcsOptions, "dataset", "restored_dataset", "orders",
+                null, metadataCalls, jobs));
+
+        // then
+        ArgumentCaptor<TableInfo> tableInfo = ArgumentCaptor.forClass(TableInfo.class);
+        verify(bigQueryService).createTable(eq(bigQuery), tableInfo.capture(), eq(metadataCalls));
+        assertEquals(DESTINATION_TABLE, tableInfo.getValue().getTableId());
+        StandardTableDefinition definition = tableInfo.getValue().getDefinition();
+        assertEquals("day", definition.getTimePartitioning().getField());
+        assertEquals(List.of("day"), definition.getClustering().getFields());
+        verify(bigQueryService).executeImport(bigQuery, DESTINATION_TABLE, List.of(BACKUP_PATH + "orders-*.csv"),
+                "CSV", true, ",", true, 0, JobInfo.WriteDisposition.WRITE_TRUNCATE, LAYOUT, "europe-west3", jobs);
+    }
+
+    @Test
+    void testRestoreIntoExistingTableLoadsSchemaOnly() throws Exception {
+        // given
+        when(gcsService.readObject(BACKUP_PATH + "orders.layout.json"))
+                .thenReturn(Optional.of(objectMapper.writeValueAsString(LAYOUT)));
+        when(bigQueryService.createTable(eq(bigQuery), any(), eq(metadataCalls))).thenReturn(false);
+
+        // when
+        await(tableRestoreService.restoreTable(bigQuery, gcsOptions, "dataset", "restored_dataset", "orders",
+                null, metadataCalls, jobs));
+
+        // then
+        verify(bigQueryService).executeImport(bigQuery, DESTINATION_TABLE, List.of(BACKUP_PATH + "orders-*.csv"),
+                "CSV", true, ",", true, 0, JobInfo.WriteDisposition.WRITE_TRUNCATE, LAYOUT.schemaOnly(),
+                "europe-west3", jobs);
+    }
+
+    @Test
+    void testRestoreWithoutLayoutInfersSchema() {
+        // when
+        await(tableRestoreService.restoreTable(bigQuery, gcsOptions, "dataset", "restored_dataset", "orders",
+                null, metadataCalls, jobs));
+
+        // then
+        verify(bigQueryService, never()).createTable(any(), any(), any());
+        verify(bigQueryService).executeImport(eq(bigQuery), eq(DESTINATION_TABLE), anyList(), eq("CSV"),
+                anyBoolean(), any(), anyBoolean(), anyInt(), any(), isNull(), any(), eq(jobs));
+    }
+
+    @Test
+    void testRestoreFromManifestEntryReadsNoOtherObject() {
+        // given
+        var sourceUris = List.of(BACKUP_PATH + "orders/partitions/20250101/orders-*.csv",
+                "gs://bucket/backups/20250201_100000/project/dataset/orders/partitions/20250102/orders-*.csv");
+        var entry = new BackupManifest.TableEntry("orders", null, List.of(), 100, 10, List.of(), sourceUris, LAYOUT);
+        when(bigQueryService.createTable(eq(bigQuery), any(), eq(metadataCalls))).thenReturn(true);
+
+        // when
+        await(tableRestoreService.restoreTable(bigQuery, gcsOptions, "dataset", "restored_dataset", "orders",
+                entry, metadataCalls, jobs));
+
+        // then
+        verify(gcsService, never()).readObject(any());
+        verify(bigQueryService).executeImport(bigQuery, DESTINATION_TABLE, sourceUris, "CSV", true, ",", true, 0,
+                JobInfo.WriteDisposition.WRITE_TRUNCATE, LAYOUT, "europe-west3", jobs);
+    }
+
+    @Test
+    void testRestoreOfReferencedEntryReadsFilesOfReferencedBackup() throws Exception {
+        // given
+        var referencedPath = "gs://bucket/backups/20250201_100000/project/dataset/";
+        var entry = new BackupManifest.TableEntry("orders", "20250201_100000", List.of(), 0, 0, null, null, null);
+        when(gcsService.readObject(referencedPath + "orders.layout.json"))
+                .thenReturn(Optional.of(objectMapper.writeValueAsString(LAYOUT)));
+        when(bigQueryService.createTable(eq(bigQuery), any(), eq(metadataCalls))).thenReturn(true);
+
+        // when
+        await(tableRestoreService.restoreTable(bigQuery, gcsOptions, "dataset", "restored_dataset", "orders",
+                entry, metadataCalls, jobs));
+
+        // then
+        verify(gcsService, never()).readObject(BACKUP_PATH + "orders.ref.json");
+        verify(bigQueryService).executeImport(bigQuery, DESTINATION_TABLE, List.of(referencedPath + "orders-*.csv"),
+                "CSV", true, ",", true, 0, JobInfo.WriteDisposition.WRITE_TRUNCATE, LAYOUT, "europe-west3", jobs);
+    }
+}
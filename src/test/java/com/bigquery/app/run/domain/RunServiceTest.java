@@ -0,0 +1,242 @@
+package com.bigquery.app.run.domain;
+
+import com.bigquery.app.common.config.RetryProperties;
+import com.bigquery.app.common.config.RunProperties;
+import com.bigquery.app.common.exception.ConflictException;
+import com.bigquery.app.common.exception.ResourceNotFoundException;
+import com.bigquery.app.common.exception.ServiceException;
+import com.bigquery.app.run.dto.RunState;
+import com.bigquery.app.run.dto.RunType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.quality.Strictness.LENIENT;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = LENIENT)
+class RunServiceTest {
+
+    @Mock
+    private ThreadPoolTaskExecutor runTaskExecutor;
+
+    private RunProperties runProperties;
+
+    private final InMemoryRunJournal runJournal = new InMemoryRunJournal();
+
+    private RunService runService;
+
+    @BeforeEach
+    void setUp() {
+        runProperties = new RunProperties();
+        runService = new RunService(runTaskExecutor, runProperties, new RetryProperties(), runJournal,
+                new ObjectMapper());
+
+        doAnswer(invocation -> {
+            Runnable task = invocation.getArgument(0);
+            task.run();
+            return null;
+        }).when(runTaskExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void testStartRunSucceeds() {
+        // when
+        Run run = runService.start(RunType.BACKUP, null, r -> {
+            r.registerTables("dataset1", Set.of("table1"));
+            r.table("dataset1", "table1").start();
+            r.table("dataset1", "table1").succeed();
+        });
+
+        // then
+        assertSame(run, runService.getRun(run.getId()));
+        assertEquals(RunState.SUCCEEDED, run.getState());
+        assertNotNull(run.getStartedAt());
+        assertNotNull(run.getFinishedAt());
+        assertEquals(RunState.SUCCEEDED, run.table("dataset1", "table1").getState());
+    }
+
+    @Test
+    void testStartRunRecordsFailure() {
+        // when
+        Run run = runService.start(RunType.RESTORE, null, r -> {
+            throw new ServiceException("Restore", "boom");
+        });
+
+        // then
+        assertEquals(RunState.FAILED, run.getState());
+        assertTrue(run.getError().contains("boom"));
+    }
+
+    @Test
+    void testStartRunRejectedWhenExecutorIsSaturated() {
+        // given
+        doThrow(new TaskRejectedException("full")).when(runTaskExecutor).execute(any(Runnable.class));
+
+        // when + then
+        assertThrows(ServiceException.class, () -> runService.start(RunType.BACKUP, null, r -> {
+        }));
+    }
+
+    @Test
+    void testCancelledRunEndsCancelled() {
+        // when
+        Run run = runService.start(RunType.BACKUP, null, r -> {
+            r.registerTables("dataset1", Set.of("table1", "table2"));
+            r.table("dataset1", "table1").start();
+            runService.cancel(r.getId());
+            r.getJobs().throwIfCancelled();
+        });
+
+        // then
+        assertEquals(RunState.CANCELLED, run.getState());
+        assertTrue(run.getJobs().isCancelled());
+        assertEquals(RunState.CANCELLED, run.table("dataset1", "table2").getState());
+    }
+
+    @Test
+    void testCancelFinishedRunHasNoEffect() {
+        // given
+        Run run = runService.start(RunType.RESTORE, null, r -> {
+        });
+
+        // when
+        runService.cancel(run.getId());
+
+        // then
+        assertEquals(RunState.SUCCEEDED, run.getState());
+        assertFalse(run.getJobs().isCancelled());
+    }
+
+    @Test
+    void testFinishedRunIsJournaledWithItsRequestAndTables() {
+        // when
+        Run run = runService.start(RunType.BACKUP, Map.of("dataset", "dataset1"), r -> {
+            r.registerTables("dataset1", Set.of("table1"));
+            r.table("dataset1", "table1").start();
+            r.table("dataset1", "table1").markSnapshotDone();
+            throw new ServiceException("Backup", "boom");
+        });
+
+        // then
+        RunRecord record = runJournal.find(run.getId()).orElseThrow();
+        assertEquals(RunState.FAILED, record.state());
+        assertEquals("dataset1", record.request().get("dataset").asText());
+        assertEquals(1, record.tables().size());
+        assertTrue(record.tables().get(0).snapshotDone());
+    }
+
+    @Test
+    void testResumeRerunsOnlyUnfinishedTables() {
+        // given
+        Run failed = runService.start(RunType.BACKUP, Map.of("dataset", "dataset1"), r -> {
+            r.registerTables("dataset1", Set.of("table1", "table2"));
+            r.table("dataset1", "table1").start();
+            r.table("dataset1", "table1").succeed();
+            r.table("dataset1", "table2").start();
+            r.table("dataset1", "table2").markSnapshotDone();
+            throw new ServiceException("Backup", "boom");
+        });
+        List<String> resumedTables = new ArrayList<>();
+
+        // when
+        Run resumed = runService.resume(failed.getId(), RunType.BACKUP, Map.class, (request, r) -> {
+            assertEquals("dataset1", request.get("dataset"));
+            r.registerTables("dataset1", Set.of("table1", "table2"));
+            r.getTables().stream()
+                    .filter(table -> !table.isCompletedEarlier())
+                    .forEach(table -> {
+                        resumedTables.add(table.getTableName());
+                        assertTrue(table.isSnapshotDone());
+                        table.start();
+                        table.succeed();
+                    });
+        });
+
+        // then
+        assertEquals(RunState.SUCCEEDED, resumed.getState());
+        assertEquals(failed.getId(), resumed.getResumedFrom());
+        assertEquals(List.of("table2"), resumedTables);
+        assertEquals(failed.getId(), resumed.table("dataset1", "table1").getCompletedInRun());
+        assertEquals(RunState.SUCCEEDED, runJournal.find(resumed.getId()).orElseThrow().state());
+    }
+
+    @Test
+    void testResumeSucceededRunConflicts() {
+        // given
+        Run run = runService.start(RunType.RESTORE, Map.of(), r -> {
+        });
+
+        // when + then
+        assertThrows(ConflictException.class,
+                () -> runService.resume(run.getId(), RunType.RESTORE, Map.class, (request, r) -> {
+                }));
+    }
+
+    @Test
+    void testResumeUnknownRunThrowsNotFound() {
+        assertThrows(ResourceNotFoundException.class,
+                () -> runService.resume("unknown", RunType.BACKUP, Map.class, (request, r) -> {
+                }));
+    }
+
+    @Test
+    void testGetUnknownRunThrowsNotFound() {
+        assertThrows(ResourceNotFoundException.class, () -> runService.getRun("unknown"));
+    }
+
+    @Test
+    void testRunOfAnotherInstanceIsFoundInJournal() {
+        // given
+        Run run = runService.start(RunType.BACKUP, Map.of("dataset", "dataset1"), r -> {
+            r.registerTables("dataset1", Set.of("table1"));
+            r.table("dataset1", "table1").start();
+            r.table("dataset1", "table1").succeed();
+        });
+        RunService otherInstance = new RunService(runTaskExecutor, runProperties, new RetryProperties(), runJournal,
+                new ObjectMapper());
+
+        // when
+        RunRecord record = otherInstance.getJournaledRun(run.getId());
+
+        // then
+        assertTrue(otherInstance.findRun(run.getId()).isEmpty());
+        assertEquals(RunState.SUCCEEDED, record.state());
+        assertEquals(1, record.tables().size());
+        assertThrows(ResourceNotFoundException.class, () -> otherInstance.getJournaledRun("unknown"));
+    }
+
+    @Test
+    void testFinishedRunsAreEvictedBeyondRetention() {
+        // given
+        runProperties.getRetention().setMaxRuns(2);
+
+        Run first = runService.start(RunType.BACKUP, null, r -> {
+        });
+        runService.start(RunType.BACKUP, null, r -> {
+        });
+
+        // when
+        Run third = runService.start(RunType.BACKUP, null, r -> {
+        });
+
+        // then
+        assertThrows(ResourceNotFoundException.class, () -> runService.getRun(first.getId()));
+        assertSame(third, runService.getRun(third.getId()));
+    }
+}
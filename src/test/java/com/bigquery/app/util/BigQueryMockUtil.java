@@ -129,7 +129,9 @@ public class BigQueryMockUtil {
         when(bigQuery.create(any(JobInfo.class))).thenReturn(job);
         when(job.waitFor()).thenReturn(job);
         when(job.isDone()).thenReturn(true);
+        when(job.getJobId()).thenReturn(JobId.of(PROJECT_ID, "mock-job-id"));
         when(job.getStatus()).thenReturn(jobStatus);
+        when(jobStatus.getState()).thenReturn(JobStatus.State.DONE);
         when(jobStatus.getError()).thenReturn(null);
     }
 
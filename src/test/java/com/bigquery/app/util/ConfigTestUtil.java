@@ -1,6 +1,7 @@
 package com.bigquery.app.util;
 
 import com.bigquery.app.backup.dto.ExportOptions;
+import com.bigquery.app.backup.dto.ExportStrategy;
 import com.bigquery.app.common.config.*;
 import com.bigquery.app.common.util.GcsPathUtil;
 import com.bigquery.app.restore.dto.ImportOptions;
@@ -57,6 +58,11 @@ public class ConfigTestUtil {
         Mockito.when(defaultProps.getFieldDelimiter()).thenReturn(",");
         Mockito.when(defaultProps.getThreadPoolSize()).thenReturn(4);
         Mockito.when(defaultProps.getThreadQueueCapacity()).thenReturn(10);
+        Mockito.when(defaultProps.getSnapshotConcurrency()).thenReturn(8);
+        Mockito.when(defaultProps.getStageQueueCapacity()).thenReturn(20);
+        Mockito.when(defaultProps.getSnapshotBatchSize()).thenReturn(1);
+        Mockito.when(defaultProps.getExportStrategy()).thenReturn(ExportStrategy.SNAPSHOT);
+        Mockito.when(defaultProps.getExportShards()).thenReturn(1);
 
         ExportProperties exportProps = Mockito.mock(ExportProperties.class);
         Mockito.when(exportProps.getDefaultProps()).thenReturn(defaultProps);
@@ -75,6 +81,7 @@ public class ConfigTestUtil {
         Mockito.when(defaultProps.getRestoreRegion()).thenReturn("europe-west3");
         Mockito.when(defaultProps.getThreadPoolSize()).thenReturn(5);
         Mockito.when(defaultProps.getThreadQueueCapacity()).thenReturn(15);
+        Mockito.when(defaultProps.getFailFast()).thenReturn(false);
 
         ImportProperties importProps = Mockito.mock(ImportProperties.class);
         Mockito.when(importProps.getDefaultProps()).thenReturn(defaultProps);
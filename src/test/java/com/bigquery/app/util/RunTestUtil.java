@@ -0,0 +1,19 @@
+package com.bigquery.app.util;
+
+import com.bigquery.app.run.dto.RunResponse;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+
+import java.time.Duration;
+
+import static org.awaitility.Awaitility.await;
+
+public class RunTestUtil {
+
+    public static RunResponse awaitRunCompletion(TestRestTemplate restTemplate, String runId) {
+        return await()
+                .atMost(Duration.ofSeconds(10))
+                .pollInterval(Duration.ofMillis(50))
+                .until(() -> restTemplate.getForObject("/api/v1/runs/" + runId, RunResponse.class),
+                        run -> run.state().isFinished());
+    }
+}